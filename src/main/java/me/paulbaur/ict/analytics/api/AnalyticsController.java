@@ -8,10 +8,18 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
+import me.paulbaur.ict.analytics.api.dto.LatencyPercentileMergeRequestDto;
+import me.paulbaur.ict.analytics.domain.DashboardAnalytics;
+import me.paulbaur.ict.analytics.domain.LatencyAnomaly;
+import me.paulbaur.ict.analytics.domain.LatencyBaseline;
 import me.paulbaur.ict.analytics.domain.LatencyMetrics;
+import me.paulbaur.ict.analytics.domain.LatencyPercentiles;
+import me.paulbaur.ict.analytics.domain.LatencyWindow;
 import me.paulbaur.ict.analytics.domain.StateChange;
 import me.paulbaur.ict.analytics.domain.TimeSeriesDataPoint;
 import me.paulbaur.ict.analytics.domain.UptimeMetrics;
+import me.paulbaur.ict.analytics.service.LatencyBaselineService;
+import me.paulbaur.ict.analytics.service.LatencyPercentileService;
 import me.paulbaur.ict.analytics.service.ProbeAnalyticsService;
 import me.paulbaur.ict.common.model.ErrorResponse;
 import org.springframework.http.MediaType;
@@ -35,9 +43,12 @@ import java.util.List;
 public class AnalyticsController {
 
     private static final int MAX_STATE_CHANGE_LIMIT = 1000;
-    private static final String DEFAULT_TIME_SERIES_INTERVAL = "1h";
+    private static final String DEFAULT_TIME_SERIES_INTERVAL = "auto";
+    private static final int MAX_MERGED_HISTOGRAMS = 100;
 
     private final ProbeAnalyticsService analyticsService;
+    private final LatencyPercentileService latencyPercentileService;
+    private final LatencyBaselineService latencyBaselineService;
 
     @Operation(
             summary = "Get uptime metrics for a target",
@@ -111,6 +122,116 @@ public class AnalyticsController {
         return ResponseEntity.ok(metrics);
     }
 
+    @Operation(
+            summary = "Get latency percentiles for a target",
+            description = "Returns p50/p95/p99/p999 latency over a recent sliding window (5m, 1h or 24h), computed from in-memory histograms without querying Elasticsearch. The encoded histogram can be merged with those of other nodes through the merge endpoint."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Latency percentiles",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
+                            schema = @Schema(implementation = LatencyPercentiles.class))
+            ),
+            @ApiResponse(responseCode = "400", description = "Invalid request parameters",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
+                            schema = @Schema(implementation = ErrorResponse.class))
+            )
+    })
+    @GetMapping("/targets/{targetId}/latency/percentiles")
+    public ResponseEntity<LatencyPercentiles> getLatencyPercentiles(
+            @Parameter(description = "Target ID (UUID)", required = true)
+            @PathVariable String targetId,
+            @Parameter(description = "Sliding window: 5m, 1h or 24h", example = "5m")
+            @RequestParam(name = "window", defaultValue = "5m") String window
+    ) {
+        validateTargetId(targetId);
+        LatencyWindow latencyWindow = LatencyWindow.fromLabel(window);
+
+        return ResponseEntity.ok(latencyPercentileService.getPercentiles(targetId, latencyWindow));
+    }
+
+    @Operation(
+            summary = "Merge latency percentiles exported by several nodes",
+            description = "Combines the encoded histograms returned by the latency percentiles endpoint of each node into one set of percentiles, without losing the tail."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Merged latency percentiles",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
+                            schema = @Schema(implementation = LatencyPercentiles.class))
+            ),
+            @ApiResponse(responseCode = "400", description = "Invalid request parameters or histogram",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
+                            schema = @Schema(implementation = ErrorResponse.class))
+            )
+    })
+    @PostMapping(path = "/targets/{targetId}/latency/percentiles/merge", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<LatencyPercentiles> mergeLatencyPercentiles(
+            @Parameter(description = "Target ID (UUID)", required = true)
+            @PathVariable String targetId,
+            @Parameter(description = "Sliding window the histograms cover: 5m, 1h or 24h", example = "5m")
+            @RequestParam(name = "window", defaultValue = "5m") String window,
+            @RequestBody(required = false) LatencyPercentileMergeRequestDto request
+    ) {
+        validateTargetId(targetId);
+        LatencyWindow latencyWindow = LatencyWindow.fromLabel(window);
+        if (request == null || request.histograms() == null || request.histograms().isEmpty()) {
+            throw new IllegalArgumentException("histograms must not be empty");
+        }
+        if (request.histograms().size() > MAX_MERGED_HISTOGRAMS) {
+            throw new IllegalArgumentException("at most " + MAX_MERGED_HISTOGRAMS + " histograms can be merged");
+        }
+
+        return ResponseEntity.ok(LatencyPercentileService.merge(targetId, latencyWindow, request.histograms()));
+    }
+
+    @Operation(
+            summary = "Get the latency baseline for a target",
+            description = "Returns the exponentially weighted moving mean and standard deviation of the target's latency, updated on every probe result, and whether the latest sample is anomalous."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Latency baseline",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
+                            schema = @Schema(implementation = LatencyBaseline.class))
+            ),
+            @ApiResponse(responseCode = "400", description = "Invalid request parameters",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
+                            schema = @Schema(implementation = ErrorResponse.class))
+            )
+    })
+    @GetMapping("/targets/{targetId}/latency/baseline")
+    public ResponseEntity<LatencyBaseline> getLatencyBaseline(
+            @Parameter(description = "Target ID (UUID)", required = true)
+            @PathVariable String targetId
+    ) {
+        validateTargetId(targetId);
+        return ResponseEntity.ok(latencyBaselineService.getBaseline(targetId));
+    }
+
+    @Operation(
+            summary = "Get recent latency anomalies for a target",
+            description = "Returns the most recent latency anomalies detected on this node, newest first. Each entry marks the first sample of a run far above the baseline."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Recent latency anomalies",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
+                            schema = @Schema(implementation = LatencyAnomaly.class))
+            ),
+            @ApiResponse(responseCode = "400", description = "Invalid request parameters",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
+                            schema = @Schema(implementation = ErrorResponse.class))
+            )
+    })
+    @GetMapping("/targets/{targetId}/latency/anomalies")
+    public ResponseEntity<List<LatencyAnomaly>> getLatencyAnomalies(
+            @Parameter(description = "Target ID (UUID)", required = true)
+            @PathVariable String targetId,
+            @Parameter(description = "Maximum number of anomalies to return", example = "20")
+            @RequestParam(name = "limit", defaultValue = "20") int limit
+    ) {
+        validateTargetId(targetId);
+        validateStateChangeLimit(limit);
+        return ResponseEntity.ok(latencyBaselineService.getRecentAnomalies(targetId, limit));
+    }
+
     @Operation(
             summary = "Get state changes for a target",
             description = "Returns a list of state change events (UP to DOWN or DOWN to UP transitions) for the specified time range."
@@ -152,7 +273,7 @@ public class AnalyticsController {
 
     @Operation(
             summary = "Get time series data for a target",
-            description = "Returns time-bucketed metrics including uptime percentage, average latency, and probe counts for the specified time range."
+            description = "Returns time-bucketed metrics including uptime percentage, average latency, and probe counts for the specified time range. With interval=auto the bucket size is chosen to keep the series around 200 points; explicit intervals that would produce too many buckets are rejected."
     )
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Time series data points",
@@ -176,7 +297,7 @@ public class AnalyticsController {
             @RequestParam(name = "start") String start,
             @Parameter(description = "End of the time range (ISO-8601)", example = "2025-12-31T23:59:59Z", required = true)
             @RequestParam(name = "end") String end,
-            @Parameter(description = "Time bucket interval (e.g., '1h', '1d')", example = "1h")
+            @Parameter(description = "Time bucket interval (e.g., '5m', '1h', '1d') or 'auto'", example = "auto")
             @RequestParam(name = "interval", defaultValue = DEFAULT_TIME_SERIES_INTERVAL) String interval
     ) {
         validateTargetId(targetId);
@@ -189,6 +310,46 @@ public class AnalyticsController {
         return ResponseEntity.ok(timeSeries);
     }
 
+    @Operation(
+            summary = "Get dashboard analytics for a target",
+            description = "Returns uptime, latency and time series for the specified time range, computed from a single search. "
+                    + "Equivalent to calling the uptime, latency and time-series endpoints with the same parameters."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Dashboard analytics",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
+                            schema = @Schema(implementation = DashboardAnalytics.class))
+            ),
+            @ApiResponse(responseCode = "400", description = "Invalid request parameters",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
+                            schema = @Schema(implementation = ErrorResponse.class))
+            ),
+            @ApiResponse(responseCode = "500", description = "Internal server error",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
+                            schema = @Schema(implementation = ErrorResponse.class))
+            )
+    })
+    @GetMapping("/targets/{targetId}/dashboard")
+    public ResponseEntity<DashboardAnalytics> getDashboard(
+            @Parameter(description = "Target ID (UUID)", required = true)
+            @PathVariable String targetId,
+            @Parameter(description = "Start of the time range (ISO-8601)", example = "2025-12-01T00:00:00Z", required = true)
+            @RequestParam(name = "start") String start,
+            @Parameter(description = "End of the time range (ISO-8601)", example = "2025-12-31T23:59:59Z", required = true)
+            @RequestParam(name = "end") String end,
+            @Parameter(description = "Time bucket interval (e.g., '5m', '1h', '1d') or 'auto'", example = "auto")
+            @RequestParam(name = "interval", defaultValue = DEFAULT_TIME_SERIES_INTERVAL) String interval
+    ) {
+        validateTargetId(targetId);
+        Instant startInstant = parseIsoInstant("start", start);
+        Instant endInstant = parseIsoInstant("end", end);
+        validateTimeRange(startInstant, endInstant);
+        validateInterval(interval);
+
+        DashboardAnalytics dashboard = analyticsService.getDashboard(targetId, startInstant, endInstant, interval);
+        return ResponseEntity.ok(dashboard);
+    }
+
     private void validateTargetId(String targetId) {
         if (!hasText(targetId)) {
             throw new IllegalArgumentException("targetId is required");
@@ -211,9 +372,8 @@ public class AnalyticsController {
         if (!hasText(interval)) {
             throw new IllegalArgumentException("interval is required");
         }
-        // Basic validation - could be enhanced to validate specific interval formats
-        if (!interval.matches("\\d+[smhd]")) {
-            throw new IllegalArgumentException("interval must be in format like '1h', '30m', '1d'");
+        if (!interval.equalsIgnoreCase("auto") && !interval.matches("[1-9]\\d*[smhd]")) {
+            throw new IllegalArgumentException("interval must be 'auto' or in format like '1h', '30m', '1d'");
         }
     }
 
@@ -0,0 +1,163 @@
+package me.paulbaur.ict.analytics.api;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import me.paulbaur.ict.analytics.api.dto.AnalyticsJobRequestDto;
+import me.paulbaur.ict.analytics.domain.AnalyticsJob;
+import me.paulbaur.ict.analytics.domain.AnalyticsJobRequest;
+import me.paulbaur.ict.analytics.domain.AnalyticsJobType;
+import me.paulbaur.ict.analytics.service.AnalyticsJobService;
+import me.paulbaur.ict.analytics.service.FleetAnalyticsService;
+import me.paulbaur.ict.common.exception.NotFoundException;
+import me.paulbaur.ict.common.model.ErrorResponse;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.net.URI;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * REST API for running expensive analytics requests as asynchronous jobs.
+ */
+@RestController
+@RequestMapping(path = "/api/analytics/jobs", produces = MediaType.APPLICATION_JSON_VALUE)
+@RequiredArgsConstructor
+@Tag(
+        name = "Analytics jobs",
+        description = "Submit long-running analytics computations and poll for their results."
+)
+public class AnalyticsJobController {
+
+    private static final int MAX_WAIT_SECONDS = 30;
+
+    private final AnalyticsJobService jobService;
+    private final FleetAnalyticsService fleetAnalyticsService;
+
+    @Operation(
+            summary = "Submit an analytics job",
+            description = "Starts a dashboard, fleet or latency heatmap computation in the background and returns its job. "
+                    + "Submitting the same parameters again returns the existing job while it runs or holds a result."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "202", description = "Job accepted",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
+                            schema = @Schema(implementation = AnalyticsJob.class))
+            ),
+            @ApiResponse(responseCode = "400", description = "Invalid request body",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
+                            schema = @Schema(implementation = ErrorResponse.class))
+            ),
+            @ApiResponse(responseCode = "503", description = "Job queue is full",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
+                            schema = @Schema(implementation = ErrorResponse.class))
+            )
+    })
+    @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<AnalyticsJob> submitJob(@RequestBody(required = false) AnalyticsJobRequestDto request) {
+        AnalyticsJob job = jobService.submit(toJobRequest(request));
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/analytics/jobs/" + job.jobId()))
+                .body(job);
+    }
+
+    @Operation(
+            summary = "Get an analytics job",
+            description = "Returns the job's state and, once it has succeeded, its result. With waitSeconds the request "
+                    + "is held until the job finishes or the wait elapses, without occupying a server thread."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Job state",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
+                            schema = @Schema(implementation = AnalyticsJob.class))
+            ),
+            @ApiResponse(responseCode = "400", description = "Invalid request parameters",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
+                            schema = @Schema(implementation = ErrorResponse.class))
+            ),
+            @ApiResponse(responseCode = "404", description = "Unknown or expired job",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
+                            schema = @Schema(implementation = ErrorResponse.class))
+            )
+    })
+    @GetMapping("/{jobId}")
+    public DeferredResult<ResponseEntity<AnalyticsJob>> getJob(
+            @Parameter(description = "Job ID", required = true)
+            @PathVariable String jobId,
+            @Parameter(description = "Seconds to wait for the job to finish (0-" + MAX_WAIT_SECONDS + ")", example = "20")
+            @RequestParam(name = "waitSeconds", defaultValue = "0") int waitSeconds
+    ) {
+        if (waitSeconds < 0 || waitSeconds > MAX_WAIT_SECONDS) {
+            throw new IllegalArgumentException("waitSeconds must be between 0 and " + MAX_WAIT_SECONDS);
+        }
+        AnalyticsJob current = jobService.findJob(jobId)
+                .orElseThrow(() -> new NotFoundException("Analytics job not found: " + jobId));
+
+        DeferredResult<ResponseEntity<AnalyticsJob>> result = new DeferredResult<>(TimeUnit.SECONDS.toMillis(waitSeconds));
+        if (waitSeconds == 0 || current.status().isDone()) {
+            result.setResult(ResponseEntity.ok(current));
+            return result;
+        }
+        result.onTimeout(() -> result.setResult(ResponseEntity.ok(jobService.findJob(jobId).orElse(current))));
+        jobService.whenDone(jobId).thenAccept(job -> result.setResult(ResponseEntity.ok(job)));
+        return result;
+    }
+
+    private AnalyticsJobRequest toJobRequest(AnalyticsJobRequestDto request) {
+        if (request == null || request.type() == null) {
+            throw new IllegalArgumentException("type is required");
+        }
+        Instant start = parseIsoInstant("start", request.start());
+        Instant end = parseIsoInstant("end", request.end());
+        if (!start.isBefore(end)) {
+            throw new IllegalArgumentException("start must be before end");
+        }
+        String interval = request.interval() == null || request.interval().isBlank() ? "auto" : request.interval().trim();
+
+        List<String> targetIds = fleetAnalyticsService.resolveTargets(request.targets());
+        if (request.type() == AnalyticsJobType.DASHBOARD && targetIds.size() != 1) {
+            throw new IllegalArgumentException("DASHBOARD jobs require exactly one target");
+        }
+        boolean heatmap = request.type() == AnalyticsJobType.LATENCY_HEATMAP;
+        return new AnalyticsJobRequest(
+                request.type(),
+                targetIds,
+                start,
+                end,
+                interval,
+                heatmap ? valueOrDefault(request.latencyBucketMs(), 10.0) : null,
+                heatmap ? valueOrDefault(request.maxLatencyMs(), 1000.0) : null
+        );
+    }
+
+    private static Double valueOrDefault(Double value, double defaultValue) {
+        return value != null ? value : defaultValue;
+    }
+
+    private Instant parseIsoInstant(String paramName, String value) {
+        if (value == null || value.trim().isEmpty()) {
+            throw new IllegalArgumentException(paramName + " is required");
+        }
+        try {
+            return Instant.parse(value.trim());
+        } catch (DateTimeParseException ex) {
+            throw new IllegalArgumentException(paramName + " must be an ISO-8601 timestamp");
+        }
+    }
+}
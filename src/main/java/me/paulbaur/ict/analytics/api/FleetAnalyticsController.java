@@ -0,0 +1,195 @@
+package me.paulbaur.ict.analytics.api;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import me.paulbaur.ict.analytics.domain.LatencyHeatmap;
+import me.paulbaur.ict.analytics.domain.LatencyMetrics;
+import me.paulbaur.ict.analytics.domain.TargetTimeSeries;
+import me.paulbaur.ict.analytics.domain.UptimeMetrics;
+import me.paulbaur.ict.analytics.service.FleetAnalyticsService;
+import me.paulbaur.ict.common.model.ErrorResponse;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+
+/**
+ * REST API for analytics across many targets, each answered in a single aggregation round trip.
+ */
+@RestController
+@RequestMapping(path = "/api/analytics/fleet", produces = MediaType.APPLICATION_JSON_VALUE)
+@RequiredArgsConstructor
+@Tag(
+        name = "Fleet Analytics",
+        description = "Operations for retrieving uptime, latency and time series of many targets in one request."
+)
+public class FleetAnalyticsController {
+
+    private final FleetAnalyticsService fleetAnalyticsService;
+
+    @Operation(
+            summary = "Get uptime metrics for many targets",
+            description = "Returns uptime statistics for each requested target, computed in a single aggregation. Targets without probes are included with zero counts."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Uptime metrics per target",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
+                            array = @ArraySchema(schema = @Schema(implementation = UptimeMetrics.class)))
+            ),
+            @ApiResponse(responseCode = "400", description = "Invalid request parameters",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
+                            schema = @Schema(implementation = ErrorResponse.class))
+            )
+    })
+    @GetMapping("/uptime")
+    public ResponseEntity<List<UptimeMetrics>> getUptimeMetrics(
+            @Parameter(description = "Comma-separated target IDs, or 'all'", example = "all")
+            @RequestParam(name = "targets", defaultValue = FleetAnalyticsService.ALL_TARGETS) List<String> targets,
+            @Parameter(description = "Start of the time range (ISO-8601)", example = "2025-12-01T00:00:00Z", required = true)
+            @RequestParam(name = "start") String start,
+            @Parameter(description = "End of the time range (ISO-8601)", example = "2025-12-31T23:59:59Z", required = true)
+            @RequestParam(name = "end") String end
+    ) {
+        Instant startInstant = parseIsoInstant("start", start);
+        Instant endInstant = parseIsoInstant("end", end);
+        validateTimeRange(startInstant, endInstant);
+
+        List<String> targetIds = fleetAnalyticsService.resolveTargets(targets);
+        return ResponseEntity.ok(fleetAnalyticsService.getUptimeMetrics(targetIds, startInstant, endInstant));
+    }
+
+    @Operation(
+            summary = "Get latency metrics for many targets",
+            description = "Returns average, minimum and maximum latency for each requested target, computed in a single aggregation."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Latency metrics per target",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
+                            array = @ArraySchema(schema = @Schema(implementation = LatencyMetrics.class)))
+            ),
+            @ApiResponse(responseCode = "400", description = "Invalid request parameters",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
+                            schema = @Schema(implementation = ErrorResponse.class))
+            )
+    })
+    @GetMapping("/latency")
+    public ResponseEntity<List<LatencyMetrics>> getLatencyMetrics(
+            @Parameter(description = "Comma-separated target IDs, or 'all'", example = "all")
+            @RequestParam(name = "targets", defaultValue = FleetAnalyticsService.ALL_TARGETS) List<String> targets,
+            @Parameter(description = "Start of the time range (ISO-8601)", example = "2025-12-01T00:00:00Z", required = true)
+            @RequestParam(name = "start") String start,
+            @Parameter(description = "End of the time range (ISO-8601)", example = "2025-12-31T23:59:59Z", required = true)
+            @RequestParam(name = "end") String end
+    ) {
+        Instant startInstant = parseIsoInstant("start", start);
+        Instant endInstant = parseIsoInstant("end", end);
+        validateTimeRange(startInstant, endInstant);
+
+        List<String> targetIds = fleetAnalyticsService.resolveTargets(targets);
+        return ResponseEntity.ok(fleetAnalyticsService.getLatencyMetrics(targetIds, startInstant, endInstant));
+    }
+
+    @Operation(
+            summary = "Get time series data for many targets",
+            description = "Returns time-bucketed metrics for each requested target with one shared interval, computed in a single aggregation. "
+                    + "The bucket budget is shared by all targets, so interval=auto gets coarser for larger fleets."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Time series per target",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
+                            array = @ArraySchema(schema = @Schema(implementation = TargetTimeSeries.class)))
+            ),
+            @ApiResponse(responseCode = "400", description = "Invalid request parameters",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
+                            schema = @Schema(implementation = ErrorResponse.class))
+            )
+    })
+    @GetMapping("/time-series")
+    public ResponseEntity<List<TargetTimeSeries>> getTimeSeries(
+            @Parameter(description = "Comma-separated target IDs, or 'all'", example = "all")
+            @RequestParam(name = "targets", defaultValue = FleetAnalyticsService.ALL_TARGETS) List<String> targets,
+            @Parameter(description = "Start of the time range (ISO-8601)", example = "2025-12-01T00:00:00Z", required = true)
+            @RequestParam(name = "start") String start,
+            @Parameter(description = "End of the time range (ISO-8601)", example = "2025-12-31T23:59:59Z", required = true)
+            @RequestParam(name = "end") String end,
+            @Parameter(description = "Time bucket interval (e.g., '5m', '1h', '1d') or 'auto'", example = "auto")
+            @RequestParam(name = "interval", defaultValue = "auto") String interval
+    ) {
+        Instant startInstant = parseIsoInstant("start", start);
+        Instant endInstant = parseIsoInstant("end", end);
+        validateTimeRange(startInstant, endInstant);
+
+        List<String> targetIds = fleetAnalyticsService.resolveTargets(targets);
+        return ResponseEntity.ok(fleetAnalyticsService.getTimeSeries(targetIds, startInstant, endInstant, interval));
+    }
+
+    @Operation(
+            summary = "Get a latency heatmap for one or many targets",
+            description = "Returns probe counts per time bucket and latency bucket, computed in a single aggregation, in columnar form: "
+                    + "a timestamps array (rows), a latency bucket array (columns) and a row-major count matrix. "
+                    + "The last latency bucket is open-ended. With interval=auto the time interval is chosen to keep the matrix within the cell budget."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Latency heatmap",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
+                            schema = @Schema(implementation = LatencyHeatmap.class))
+            ),
+            @ApiResponse(responseCode = "400", description = "Invalid request parameters",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
+                            schema = @Schema(implementation = ErrorResponse.class))
+            )
+    })
+    @GetMapping("/latency-heatmap")
+    public ResponseEntity<LatencyHeatmap> getLatencyHeatmap(
+            @Parameter(description = "Comma-separated target IDs, or 'all'", example = "all")
+            @RequestParam(name = "targets", defaultValue = FleetAnalyticsService.ALL_TARGETS) List<String> targets,
+            @Parameter(description = "Start of the time range (ISO-8601)", example = "2025-12-01T00:00:00Z", required = true)
+            @RequestParam(name = "start") String start,
+            @Parameter(description = "End of the time range (ISO-8601)", example = "2025-12-31T23:59:59Z", required = true)
+            @RequestParam(name = "end") String end,
+            @Parameter(description = "Time bucket interval (e.g., '5m', '1h', '1d') or 'auto'", example = "auto")
+            @RequestParam(name = "interval", defaultValue = "auto") String interval,
+            @Parameter(description = "Width of each latency bucket in milliseconds", example = "10")
+            @RequestParam(name = "latencyBucketMs", defaultValue = "10") double latencyBucketMs,
+            @Parameter(description = "Latencies at or above this go into one open-ended bucket", example = "1000")
+            @RequestParam(name = "maxLatencyMs", defaultValue = "1000") double maxLatencyMs
+    ) {
+        Instant startInstant = parseIsoInstant("start", start);
+        Instant endInstant = parseIsoInstant("end", end);
+        validateTimeRange(startInstant, endInstant);
+
+        List<String> targetIds = fleetAnalyticsService.resolveTargets(targets);
+        return ResponseEntity.ok(fleetAnalyticsService.getLatencyHeatmap(
+                targetIds, startInstant, endInstant, interval, latencyBucketMs, maxLatencyMs));
+    }
+
+    private void validateTimeRange(Instant start, Instant end) {
+        if (!start.isBefore(end)) {
+            throw new IllegalArgumentException("start must be before end");
+        }
+    }
+
+    private Instant parseIsoInstant(String paramName, String value) {
+        if (value == null || value.trim().isEmpty()) {
+            throw new IllegalArgumentException(paramName + " is required");
+        }
+        try {
+            return Instant.parse(value.trim());
+        } catch (DateTimeParseException ex) {
+            throw new IllegalArgumentException(paramName + " must be an ISO-8601 timestamp");
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package me.paulbaur.ict.analytics.api;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import me.paulbaur.ict.analytics.domain.DownTargets;
+import me.paulbaur.ict.analytics.domain.FleetCycleStatus;
+import me.paulbaur.ict.analytics.domain.OutageCorrelation;
+import me.paulbaur.ict.analytics.domain.OutageOverlap;
+import me.paulbaur.ict.analytics.service.OutageCorrelationService;
+import me.paulbaur.ict.analytics.service.OutageIndexService;
+import me.paulbaur.ict.common.exception.NotFoundException;
+import me.paulbaur.ict.common.model.ErrorResponse;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+
+/**
+ * REST API for fleet-wide outage questions, answered from the in-memory outage index and the
+ * fleet status matrix.
+ */
+@RestController
+@RequestMapping(path = "/api/analytics/outages", produces = MediaType.APPLICATION_JSON_VALUE)
+@RequiredArgsConstructor
+@Tag(
+        name = "Outages",
+        description = "Operations for finding which targets were down at a point in time or within a time range, and whether outages were local or remote."
+)
+public class OutageController {
+
+    private final OutageIndexService outageIndexService;
+    private final OutageCorrelationService outageCorrelationService;
+
+    @Operation(
+            summary = "Get the targets that were down at a point in time",
+            description = "Returns the targets whose recorded state at the given moment was DOWN."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Targets down at the given time",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
+                            schema = @Schema(implementation = DownTargets.class))
+            ),
+            @ApiResponse(responseCode = "400", description = "Invalid request parameters",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
+                            schema = @Schema(implementation = ErrorResponse.class))
+            ),
+            @ApiResponse(responseCode = "503", description = "Outage index is still loading",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
+                            schema = @Schema(implementation = ErrorResponse.class))
+            )
+    })
+    @GetMapping("/down")
+    public ResponseEntity<DownTargets> getDownAt(
+            @Parameter(description = "Point in time (ISO-8601)", example = "2025-12-01T02:00:00Z", required = true)
+            @RequestParam(name = "at") String at
+    ) {
+        Instant atInstant = parseIsoInstant("at", at);
+        return ResponseEntity.ok(outageIndexService.getDownAt(atInstant));
+    }
+
+    @Operation(
+            summary = "Get the targets that were down during a time range",
+            description = "Returns the targets that were DOWN at any point within the time range."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Targets down during the range",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
+                            schema = @Schema(implementation = DownTargets.class))
+            ),
+            @ApiResponse(responseCode = "400", description = "Invalid request parameters",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
+                            schema = @Schema(implementation = ErrorResponse.class))
+            ),
+            @ApiResponse(responseCode = "503", description = "Outage index is still loading",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
+                            schema = @Schema(implementation = ErrorResponse.class))
+            )
+    })
+    @GetMapping("/down-during")
+    public ResponseEntity<DownTargets> getDownDuring(
+            @Parameter(description = "Start of the time range (ISO-8601)", example = "2025-12-01T00:00:00Z", required = true)
+            @RequestParam(name = "start") String start,
+            @Parameter(description = "End of the time range (ISO-8601)", example = "2025-12-01T06:00:00Z", required = true)
+            @RequestParam(name = "end") String end
+    ) {
+        Instant startInstant = parseIsoInstant("start", start);
+        Instant endInstant = parseIsoInstant("end", end);
+        validateTimeRange(startInstant, endInstant);
+
+        return ResponseEntity.ok(outageIndexService.getDownDuring(startInstant, endInstant));
+    }
+
+    @Operation(
+            summary = "Get overlapping outages within a time range",
+            description = "Returns how many targets were down during the time range and the largest number down at the same moment."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Outage overlap",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
+                            schema = @Schema(implementation = OutageOverlap.class))
+            ),
+            @ApiResponse(responseCode = "400", description = "Invalid request parameters",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
+                            schema = @Schema(implementation = ErrorResponse.class))
+            ),
+            @ApiResponse(responseCode = "503", description = "Outage index is still loading",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
+                            schema = @Schema(implementation = ErrorResponse.class))
+            )
+    })
+    @GetMapping("/overlap")
+    public ResponseEntity<OutageOverlap> getOverlap(
+            @Parameter(description = "Start of the time range (ISO-8601)", example = "2025-12-01T00:00:00Z", required = true)
+            @RequestParam(name = "start") String start,
+            @Parameter(description = "End of the time range (ISO-8601)", example = "2025-12-01T06:00:00Z", required = true)
+            @RequestParam(name = "end") String end
+    ) {
+        Instant startInstant = parseIsoInstant("start", start);
+        Instant endInstant = parseIsoInstant("end", end);
+        validateTimeRange(startInstant, endInstant);
+
+        return ResponseEntity.ok(outageIndexService.getOverlap(startInstant, endInstant));
+    }
+
+    @Operation(
+            summary = "Tell local outages from remote ones",
+            description = "Classifies the probe rounds within the time range: rounds in which every target was down at once point at this monitor's own connectivity, "
+                    + "rounds in which only some were down point at those targets. Available on the node that runs the probes."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Outage correlation",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
+                            schema = @Schema(implementation = OutageCorrelation.class))
+            ),
+            @ApiResponse(responseCode = "400", description = "Invalid request parameters",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
+                            schema = @Schema(implementation = ErrorResponse.class))
+            ),
+            @ApiResponse(responseCode = "503", description = "This node does not run the probes",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
+                            schema = @Schema(implementation = ErrorResponse.class))
+            )
+    })
+    @GetMapping("/correlation")
+    public ResponseEntity<OutageCorrelation> getCorrelation(
+            @Parameter(description = "Start of the time range (ISO-8601)", example = "2025-12-01T00:00:00Z", required = true)
+            @RequestParam(name = "start") String start,
+            @Parameter(description = "End of the time range (ISO-8601)", example = "2025-12-01T06:00:00Z", required = true)
+            @RequestParam(name = "end") String end
+    ) {
+        Instant startInstant = parseIsoInstant("start", start);
+        Instant endInstant = parseIsoInstant("end", end);
+        validateTimeRange(startInstant, endInstant);
+
+        return ResponseEntity.ok(outageCorrelationService.getCorrelation(startInstant, endInstant));
+    }
+
+    @Operation(
+            summary = "Get the status of the latest probe round",
+            description = "Returns which targets were down in the most recently completed round of the probe rotation, and whether that looks local or remote."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Latest round",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
+                            schema = @Schema(implementation = FleetCycleStatus.class))
+            ),
+            @ApiResponse(responseCode = "404", description = "No round has completed yet",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
+                            schema = @Schema(implementation = ErrorResponse.class))
+            ),
+            @ApiResponse(responseCode = "503", description = "This node does not run the probes",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
+                            schema = @Schema(implementation = ErrorResponse.class))
+            )
+    })
+    @GetMapping("/cycles/latest")
+    public ResponseEntity<FleetCycleStatus> getLatestCycle() {
+        return ResponseEntity.ok(outageCorrelationService.getLatestCycle()
+                .orElseThrow(() -> new NotFoundException("No probe round has completed yet")));
+    }
+
+    private void validateTimeRange(Instant start, Instant end) {
+        if (!start.isBefore(end)) {
+            throw new IllegalArgumentException("start must be before end");
+        }
+    }
+
+    private Instant parseIsoInstant(String paramName, String value) {
+        if (value == null || value.trim().isEmpty()) {
+            throw new IllegalArgumentException(paramName + " is required");
+        }
+        try {
+            return Instant.parse(value.trim());
+        } catch (DateTimeParseException ex) {
+            throw new IllegalArgumentException(paramName + " must be an ISO-8601 timestamp");
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package me.paulbaur.ict.analytics.api.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import me.paulbaur.ict.analytics.domain.AnalyticsJobType;
+
+import java.util.List;
+
+@Schema(description = "Payload for submitting an asynchronous analytics job")
+public record AnalyticsJobRequestDto(
+        @Schema(description = "Computation to run", example = "FLEET_TIME_SERIES")
+        AnalyticsJobType type,
+
+        @Schema(description = "Target IDs, or 'all'; exactly one target for DASHBOARD", example = "[\"all\"]")
+        List<String> targets,
+
+        @Schema(description = "Start of the time range (ISO-8601)", example = "2025-12-01T00:00:00Z")
+        String start,
+
+        @Schema(description = "End of the time range (ISO-8601)", example = "2025-12-31T23:59:59Z")
+        String end,
+
+        @Schema(description = "Time bucket interval (e.g., '5m', '1h', '1d') or 'auto'", example = "auto")
+        String interval,
+
+        @Schema(description = "Latency bucket width in milliseconds, for LATENCY_HEATMAP", example = "10")
+        Double latencyBucketMs,
+
+        @Schema(description = "Upper bound of the latency axis in milliseconds, for LATENCY_HEATMAP", example = "1000")
+        Double maxLatencyMs
+) {
+}
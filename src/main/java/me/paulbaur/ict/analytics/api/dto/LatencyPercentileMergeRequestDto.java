@@ -0,0 +1,12 @@
+package me.paulbaur.ict.analytics.api.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.List;
+
+@Schema(description = "Payload for merging latency histograms exported by several nodes")
+public record LatencyPercentileMergeRequestDto(
+        @Schema(description = "Base64 compressed HdrHistograms, as returned in the 'histogram' field of latency percentiles")
+        List<String> histograms
+) {
+}
@@ -0,0 +1,59 @@
+package me.paulbaur.ict.analytics.domain;
+
+import java.time.Instant;
+import java.util.function.DoubleBinaryOperator;
+
+/**
+ * Mergeable probe counts and latency totals for a time range {@code [start, end)}.
+ *
+ * <p>Buckets for closed, time-aligned ranges never change once the range has passed, so they
+ * are cached and merged with freshly queried edge buckets to answer arbitrary ranges.</p>
+ */
+public record AnalyticsBucket(
+        Instant start,
+        Instant end,
+        long totalProbes,
+        long successfulProbes,
+        long failedProbes,
+        long latencyCount,
+        double latencySumMs,
+        Double minLatencyMs,
+        Double maxLatencyMs
+) {
+
+    public static AnalyticsBucket empty(Instant start, Instant end) {
+        return new AnalyticsBucket(start, end, 0, 0, 0, 0, 0.0, null, null);
+    }
+
+    /**
+     * Combine two buckets; the result spans both ranges.
+     */
+    public AnalyticsBucket merge(AnalyticsBucket other) {
+        return new AnalyticsBucket(
+                start.isBefore(other.start) ? start : other.start,
+                end.isAfter(other.end) ? end : other.end,
+                totalProbes + other.totalProbes,
+                successfulProbes + other.successfulProbes,
+                failedProbes + other.failedProbes,
+                latencyCount + other.latencyCount,
+                latencySumMs + other.latencySumMs,
+                combine(minLatencyMs, other.minLatencyMs, Math::min),
+                combine(maxLatencyMs, other.maxLatencyMs, Math::max)
+        );
+    }
+
+    // Not a nested ternary: mixing Double and double there unboxes a null min or max
+    private static Double combine(Double a, Double b, DoubleBinaryOperator operator) {
+        if (a == null) {
+            return b;
+        }
+        if (b == null) {
+            return a;
+        }
+        return operator.applyAsDouble(a, b);
+    }
+
+    public Double averageLatencyMs() {
+        return latencyCount > 0 ? latencySumMs / latencyCount : null;
+    }
+}
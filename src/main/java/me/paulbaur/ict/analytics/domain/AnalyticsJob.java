@@ -0,0 +1,39 @@
+package me.paulbaur.ict.analytics.domain;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.time.Instant;
+
+/**
+ * Snapshot of an asynchronous analytics job.
+ */
+@Schema(description = "State of an asynchronous analytics job, with its result once it has succeeded")
+public record AnalyticsJob(
+        @Schema(description = "Job ID", example = "6f1c2a9e-3b7d-4c55-9a0e-1f2d3c4b5a69")
+        String jobId,
+
+        @Schema(description = "Computation the job runs", example = "FLEET_TIME_SERIES")
+        AnalyticsJobType type,
+
+        @Schema(description = "Current state", example = "RUNNING")
+        AnalyticsJobStatus status,
+
+        @Schema(description = "When the job was submitted", example = "2025-12-29T12:00:00Z")
+        Instant submittedAt,
+
+        @Schema(description = "When the job started running; null while queued", example = "2025-12-29T12:00:01Z")
+        Instant startedAt,
+
+        @Schema(description = "When the job finished; null until then", example = "2025-12-29T12:00:09Z")
+        Instant completedAt,
+
+        @Schema(description = "Result, shaped like the response of the matching synchronous endpoint; null unless succeeded")
+        Object result,
+
+        @Schema(description = "Error code of a failed job", example = "QUERY_TOO_EXPENSIVE")
+        String errorCode,
+
+        @Schema(description = "Error message of a failed job")
+        String errorMessage
+) {
+}
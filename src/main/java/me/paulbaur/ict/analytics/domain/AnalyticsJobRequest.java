@@ -0,0 +1,22 @@
+package me.paulbaur.ict.analytics.domain;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Validated parameters of an analytics job. Identical requests describe the same computation.
+ *
+ * @param targetIds       resolved, sorted target IDs; exactly one for {@link AnalyticsJobType#DASHBOARD}
+ * @param latencyBucketMs heatmap bucket width, null for other job types
+ * @param maxLatencyMs    heatmap upper bound, null for other job types
+ */
+public record AnalyticsJobRequest(
+        AnalyticsJobType type,
+        List<String> targetIds,
+        Instant start,
+        Instant end,
+        String interval,
+        Double latencyBucketMs,
+        Double maxLatencyMs
+) {
+}
@@ -0,0 +1,15 @@
+package me.paulbaur.ict.analytics.domain;
+
+/**
+ * Lifecycle of an asynchronous analytics job.
+ */
+public enum AnalyticsJobStatus {
+    QUEUED,
+    RUNNING,
+    SUCCEEDED,
+    FAILED;
+
+    public boolean isDone() {
+        return this == SUCCEEDED || this == FAILED;
+    }
+}
@@ -0,0 +1,12 @@
+package me.paulbaur.ict.analytics.domain;
+
+/**
+ * Analytics computations that can run as asynchronous jobs, mirroring the synchronous endpoints.
+ */
+public enum AnalyticsJobType {
+    DASHBOARD,
+    FLEET_UPTIME,
+    FLEET_LATENCY,
+    FLEET_TIME_SERIES,
+    LATENCY_HEATMAP
+}
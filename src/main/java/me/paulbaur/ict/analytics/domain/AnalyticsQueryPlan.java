@@ -0,0 +1,18 @@
+package me.paulbaur.ict.analytics.domain;
+
+/**
+ * How an analytics search is executed, chosen from an estimate of the documents it would read.
+ *
+ * @param estimatedDocs       probe results matching the request's targets and range
+ * @param samplingProbability share of those documents aggregated; 1.0 reads all of them
+ */
+public record AnalyticsQueryPlan(long estimatedDocs, double samplingProbability) {
+
+    public static AnalyticsQueryPlan exact(long estimatedDocs) {
+        return new AnalyticsQueryPlan(estimatedDocs, 1.0);
+    }
+
+    public boolean isSampled() {
+        return samplingProbability < 1.0;
+    }
+}
@@ -0,0 +1,21 @@
+package me.paulbaur.ict.analytics.domain;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.time.Instant;
+
+/**
+ * A run of consecutive probe rounds in which (nearly) every target was down.
+ */
+@Schema(description = "A period in which (nearly) every target was down at once")
+public record CorrelatedOutage(
+        @Schema(description = "Start of the first affected round", example = "2025-12-01T02:00:00Z")
+        Instant startTime,
+
+        @Schema(description = "End of the last affected round", example = "2025-12-01T02:04:10Z")
+        Instant endTime,
+
+        @Schema(description = "Number of consecutive affected rounds", example = "25")
+        int cycles
+) {
+}
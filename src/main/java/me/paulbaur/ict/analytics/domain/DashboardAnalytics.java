@@ -0,0 +1,37 @@
+package me.paulbaur.ict.analytics.domain;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Uptime, latency and time series of a target over one time range, as shown on its detail view.
+ */
+@Schema(description = "Uptime, latency and time series of a target over a time range, computed together")
+public record DashboardAnalytics(
+        @Schema(description = "Target ID", example = "00000000-0000-0000-0000-000000000000")
+        String targetId,
+
+        @Schema(description = "Start of the time range", example = "2025-12-01T00:00:00Z")
+        Instant startTime,
+
+        @Schema(description = "End of the time range", example = "2025-12-31T23:59:59Z")
+        Instant endTime,
+
+        @Schema(description = "Time series bucket interval in seconds", example = "3600")
+        long intervalSeconds,
+
+        @Schema(description = "Uptime statistics over the whole range")
+        UptimeMetrics uptime,
+
+        @Schema(description = "Latency statistics over the whole range")
+        LatencyMetrics latency,
+
+        @Schema(description = "Time-bucketed metrics in ascending time order")
+        List<TimeSeriesDataPoint> timeSeries,
+
+        @Schema(description = "Set when the range was too large to aggregate every probe; null for exact results")
+        QuerySampling sampling
+) {
+}
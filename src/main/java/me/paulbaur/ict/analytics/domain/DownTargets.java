@@ -0,0 +1,25 @@
+package me.paulbaur.ict.analytics.domain;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Targets that were down at a moment or at any point within a time range.
+ */
+@Schema(description = "Targets that were down at a point in time, or at any point within a time range")
+public record DownTargets(
+        @Schema(description = "Start of the time range; equal to endTime for a point-in-time query", example = "2025-12-01T00:00:00Z")
+        Instant startTime,
+
+        @Schema(description = "End of the time range", example = "2025-12-01T06:00:00Z")
+        Instant endTime,
+
+        @Schema(description = "Number of targets that were down", example = "2")
+        int count,
+
+        @Schema(description = "IDs of the targets that were down")
+        List<String> targetIds
+) {
+}
@@ -0,0 +1,34 @@
+package me.paulbaur.ict.analytics.domain;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Status of every target over one full round of the probe rotation.
+ */
+@Schema(description = "Status of the fleet over one full round of the probe rotation, in which every target was probed once")
+public record FleetCycleStatus(
+        @Schema(description = "Probe cycle ID of the first probe in the round", example = "e8f0d94e-1c67-4a39-9d34-1c0fbf5b0e4c")
+        String probeCycleId,
+
+        @Schema(description = "Time of the first probe in the round", example = "2025-12-01T00:00:00Z")
+        Instant startTime,
+
+        @Schema(description = "Time of the last probe in the round", example = "2025-12-01T00:00:09Z")
+        Instant endTime,
+
+        @Schema(description = "Number of targets probed in the round", example = "10")
+        int targetsProbed,
+
+        @Schema(description = "Number of targets that were down", example = "1")
+        int targetsDown,
+
+        @Schema(description = "IDs of the targets that were down")
+        List<String> downTargetIds,
+
+        @Schema(description = "Whether the failures look local or remote")
+        OutageScope scope
+) {
+}
@@ -0,0 +1,30 @@
+package me.paulbaur.ict.analytics.domain;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.time.Instant;
+
+/**
+ * Start of a run of latency samples far above a target's moving baseline.
+ */
+@Schema(description = "A latency sample far above the target's moving baseline, starting an anomaly")
+public record LatencyAnomaly(
+        @Schema(description = "Target ID", example = "00000000-0000-0000-0000-000000000000")
+        String targetId,
+
+        @Schema(description = "Time of the sample", example = "2025-12-29T12:34:56Z")
+        Instant timestamp,
+
+        @Schema(description = "Latency of the sample in milliseconds", example = "180.5")
+        double latencyMs,
+
+        @Schema(description = "Baseline mean before the sample, in milliseconds", example = "24.1")
+        double baselineMeanMs,
+
+        @Schema(description = "Baseline standard deviation before the sample, in milliseconds", example = "3.2")
+        double baselineStdDevMs,
+
+        @Schema(description = "Standard deviations above the baseline mean", example = "48.9")
+        double zScore
+) {
+}
@@ -0,0 +1,33 @@
+package me.paulbaur.ict.analytics.domain;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.time.Instant;
+
+/**
+ * Exponentially weighted moving latency baseline of a target.
+ */
+@Schema(description = "Exponentially weighted moving mean and standard deviation of a target's latency")
+public record LatencyBaseline(
+        @Schema(description = "Target ID", example = "00000000-0000-0000-0000-000000000000")
+        String targetId,
+
+        @Schema(description = "Number of latency samples seen", example = "3600")
+        long sampleCount,
+
+        @Schema(description = "Moving mean latency in milliseconds; null before the first sample", example = "24.1")
+        Double meanLatencyMs,
+
+        @Schema(description = "Moving standard deviation in milliseconds; null before the first sample", example = "3.2")
+        Double stdDevLatencyMs,
+
+        @Schema(description = "Most recent latency sample in milliseconds", example = "25.0")
+        Double lastLatencyMs,
+
+        @Schema(description = "Whether the most recent sample was an anomaly", example = "false")
+        boolean anomalous,
+
+        @Schema(description = "Time of the most recent sample", example = "2025-12-29T12:34:56Z")
+        Instant lastSampleAt
+) {
+}
@@ -0,0 +1,125 @@
+package me.paulbaur.ict.analytics.domain;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Probe counts per time bucket and latency bucket, in columnar form: one axis array per dimension
+ * and a dense row-major count matrix, so the payload stays small for wide ranges.
+ *
+ * <p>The arrays are copied on the way in and out, so an instance is immutable, and equality
+ * compares their contents.</p>
+ */
+@Schema(description = "Time x latency count matrix of one or more targets")
+public record LatencyHeatmap(
+        @Schema(description = "Targets whose probes are counted")
+        List<String> targetIds,
+
+        @Schema(description = "Start of the time range", example = "2025-12-01T00:00:00Z")
+        Instant startTime,
+
+        @Schema(description = "End of the time range", example = "2025-12-31T23:59:59Z")
+        Instant endTime,
+
+        @Schema(description = "Time bucket interval in seconds", example = "3600")
+        long intervalSeconds,
+
+        @Schema(description = "Width of each latency bucket in milliseconds", example = "10")
+        double latencyBucketMs,
+
+        @Schema(description = "Start of each time bucket as epoch milliseconds, ascending; one per row of counts")
+        long[] timestamps,
+
+        @Schema(description = "Lower bound of each latency bucket in milliseconds, ascending; one per column of counts. "
+                + "The last bucket is open-ended and holds every latency at or above its bound")
+        double[] latencyBucketsMs,
+
+        @Schema(description = "counts[row][column]: probes in time bucket row with latency in latency bucket column")
+        long[][] counts,
+
+        @Schema(description = "Total probes with a latency across the matrix", example = "86400")
+        long totalSamples,
+
+        @Schema(description = "Set when the range was too large to aggregate every probe; counts are then scaled estimates")
+        QuerySampling sampling
+) {
+
+    public LatencyHeatmap {
+        targetIds = List.copyOf(targetIds);
+        timestamps = timestamps.clone();
+        latencyBucketsMs = latencyBucketsMs.clone();
+        counts = deepCopy(counts);
+    }
+
+    @Override
+    public long[] timestamps() {
+        return timestamps.clone();
+    }
+
+    @Override
+    public double[] latencyBucketsMs() {
+        return latencyBucketsMs.clone();
+    }
+
+    @Override
+    public long[][] counts() {
+        return deepCopy(counts);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof LatencyHeatmap other)) {
+            return false;
+        }
+        return intervalSeconds == other.intervalSeconds
+                && Double.compare(latencyBucketMs, other.latencyBucketMs) == 0
+                && totalSamples == other.totalSamples
+                && targetIds.equals(other.targetIds)
+                && Objects.equals(startTime, other.startTime)
+                && Objects.equals(endTime, other.endTime)
+                && Arrays.equals(timestamps, other.timestamps)
+                && Arrays.equals(latencyBucketsMs, other.latencyBucketsMs)
+                && Arrays.deepEquals(counts, other.counts)
+                && Objects.equals(sampling, other.sampling);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = Objects.hash(targetIds, startTime, endTime, intervalSeconds, latencyBucketMs, totalSamples, sampling);
+        result = 31 * result + Arrays.hashCode(timestamps);
+        result = 31 * result + Arrays.hashCode(latencyBucketsMs);
+        result = 31 * result + Arrays.deepHashCode(counts);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "LatencyHeatmap{" +
+                "targetIds=" + targetIds +
+                ", startTime=" + startTime +
+                ", endTime=" + endTime +
+                ", intervalSeconds=" + intervalSeconds +
+                ", latencyBucketMs=" + latencyBucketMs +
+                ", timestamps=" + Arrays.toString(timestamps) +
+                ", latencyBucketsMs=" + Arrays.toString(latencyBucketsMs) +
+                ", counts=" + Arrays.deepToString(counts) +
+                ", totalSamples=" + totalSamples +
+                ", sampling=" + sampling +
+                '}';
+    }
+
+    private static long[][] deepCopy(long[][] matrix) {
+        long[][] copy = new long[matrix.length][];
+        for (int row = 0; row < matrix.length; row++) {
+            copy[row] = matrix[row].clone();
+        }
+        return copy;
+    }
+}
@@ -0,0 +1,40 @@
+package me.paulbaur.ict.analytics.domain;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+/**
+ * Latency percentiles for a target over a recent sliding window.
+ */
+@Schema(description = "Latency percentiles for a target over a recent sliding window, computed in memory")
+public record LatencyPercentiles(
+        @Schema(description = "Target ID", example = "00000000-0000-0000-0000-000000000000")
+        String targetId,
+
+        @Schema(description = "Sliding window", example = "5m")
+        String window,
+
+        @Schema(description = "Number of latency samples in the window", example = "300")
+        long sampleCount,
+
+        @Schema(description = "Minimum latency in milliseconds; null without samples", example = "9.8")
+        Double minLatencyMs,
+
+        @Schema(description = "Median latency in milliseconds; null without samples", example = "21.3")
+        Double p50LatencyMs,
+
+        @Schema(description = "95th percentile latency in milliseconds; null without samples", example = "48.1")
+        Double p95LatencyMs,
+
+        @Schema(description = "99th percentile latency in milliseconds; null without samples", example = "97.0")
+        Double p99LatencyMs,
+
+        @Schema(description = "99.9th percentile latency in milliseconds; null without samples", example = "180.2")
+        Double p999LatencyMs,
+
+        @Schema(description = "Maximum latency in milliseconds; null without samples", example = "212.0")
+        Double maxLatencyMs,
+
+        @Schema(description = "Base64 compressed HdrHistogram of the window, in microseconds, for merging across nodes or windows")
+        String histogram
+) {
+}
@@ -0,0 +1,56 @@
+package me.paulbaur.ict.analytics.domain;
+
+import java.time.Duration;
+
+/**
+ * Sliding windows kept by the in-memory latency percentile tracker.
+ *
+ * <p>Each window is a ring of {@code slotCount} sub-histograms of {@code slotDuration}. The
+ * oldest slot rotates out as a whole, so a window covers between {@code slotCount - 1} and
+ * {@code slotCount} slots of data.</p>
+ */
+public enum LatencyWindow {
+    FIVE_MINUTES("5m", Duration.ofMinutes(1), 5),
+    ONE_HOUR("1h", Duration.ofMinutes(5), 12),
+    ONE_DAY("24h", Duration.ofHours(1), 24);
+
+    private final String label;
+    private final Duration slotDuration;
+    private final int slotCount;
+
+    LatencyWindow(String label, Duration slotDuration, int slotCount) {
+        this.label = label;
+        this.slotDuration = slotDuration;
+        this.slotCount = slotCount;
+    }
+
+    public String label() {
+        return label;
+    }
+
+    public Duration slotDuration() {
+        return slotDuration;
+    }
+
+    public int slotCount() {
+        return slotCount;
+    }
+
+    public Duration duration() {
+        return slotDuration.multipliedBy(slotCount);
+    }
+
+    /**
+     * Resolve a window from its label, e.g. {@code "5m"}.
+     *
+     * @throws IllegalArgumentException if no window has that label
+     */
+    public static LatencyWindow fromLabel(String label) {
+        for (LatencyWindow window : values()) {
+            if (window.label.equalsIgnoreCase(label == null ? "" : label.trim())) {
+                return window;
+            }
+        }
+        throw new IllegalArgumentException("window must be one of 5m, 1h, 24h");
+    }
+}
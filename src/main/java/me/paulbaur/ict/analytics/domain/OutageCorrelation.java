@@ -0,0 +1,35 @@
+package me.paulbaur.ict.analytics.domain;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Local versus remote outages over a time range, from the per-round fleet status matrix.
+ */
+@Schema(description = "Whether outages within a time range were local (all targets down together) or remote (individual targets)")
+public record OutageCorrelation(
+        @Schema(description = "Start of the time range", example = "2025-12-01T00:00:00Z")
+        Instant startTime,
+
+        @Schema(description = "End of the time range", example = "2025-12-01T06:00:00Z")
+        Instant endTime,
+
+        @Schema(description = "Number of complete probe rounds in the range", example = "2160")
+        int cycles,
+
+        @Schema(description = "Rounds in which (nearly) every target was down", example = "25")
+        int localOutageCycles,
+
+        @Schema(description = "Rounds in which only some targets were down", example = "40")
+        int remoteOutageCycles,
+
+        @Schema(description = "Periods of consecutive local-outage rounds")
+        List<CorrelatedOutage> localOutages,
+
+        @Schema(description = "Per target, the number of rounds it was down while the rest of the fleet was not")
+        Map<String, Integer> remoteDownCycles
+) {
+}
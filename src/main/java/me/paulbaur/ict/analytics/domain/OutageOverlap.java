@@ -0,0 +1,27 @@
+package me.paulbaur.ict.analytics.domain;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.time.Instant;
+
+/**
+ * How many targets were down at the same time within a time range.
+ */
+@Schema(description = "Overlapping outages within a time range")
+public record OutageOverlap(
+        @Schema(description = "Start of the time range", example = "2025-12-01T00:00:00Z")
+        Instant startTime,
+
+        @Schema(description = "End of the time range", example = "2025-12-01T06:00:00Z")
+        Instant endTime,
+
+        @Schema(description = "Number of targets that were down at any point in the range", example = "3")
+        int targetsAffected,
+
+        @Schema(description = "Largest number of targets down at the same moment", example = "2")
+        int peakConcurrent,
+
+        @Schema(description = "First moment the peak was reached; null if no target was down", example = "2025-12-01T02:15:00Z")
+        Instant peakAt
+) {
+}
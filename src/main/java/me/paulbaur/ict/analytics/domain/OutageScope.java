@@ -0,0 +1,18 @@
+package me.paulbaur.ict.analytics.domain;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+/**
+ * How widespread the failures in one fleet probe cycle were.
+ */
+@Schema(description = "Whether failures in a probe cycle point at this monitor's own connectivity or at individual targets")
+public enum OutageScope {
+    @Schema(description = "No target was down")
+    NONE,
+
+    @Schema(description = "Some targets were down; the problem is on their side")
+    REMOTE,
+
+    @Schema(description = "All or nearly all targets were down at once; most likely this monitor's own uplink")
+    LOCAL
+}
@@ -0,0 +1,42 @@
+package me.paulbaur.ict.analytics.domain;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+/**
+ * Describes a result aggregated from a random sample of the matching probes instead of all of them.
+ * Counts in the result are scaled up by {@code 1 / probability}; ratios and averages are not.
+ */
+@Schema(description = "Random sampling applied to a large analytics query, with 95% error margins")
+public record QuerySampling(
+        @Schema(description = "Probability with which each matching probe was aggregated", example = "0.02")
+        double probability,
+
+        @Schema(description = "Probes matching the request", example = "52000000")
+        long estimatedDocs,
+
+        @Schema(description = "Probes actually aggregated", example = "1040000")
+        long sampledDocs,
+
+        @Schema(description = "95% margin of error of range-wide percentages such as uptime, in percentage points", example = "0.1")
+        double percentageMarginPct,
+
+        @Schema(description = "95% relative margin of error of range-wide counts, in percent", example = "0.19")
+        double countMarginPct
+) {
+
+    private static final double Z_95 = 1.96;
+
+    /**
+     * Margins of a Bernoulli sample of {@code sampledDocs} documents drawn with {@code probability}.
+     * The percentage margin is the worst case, at 50%; a bucket's margin grows with
+     * {@code 1 / sqrt(its sampled count)}.
+     */
+    public static QuerySampling of(double probability, long estimatedDocs, long sampledDocs) {
+        if (sampledDocs <= 0) {
+            return new QuerySampling(probability, estimatedDocs, 0, 100.0, 100.0);
+        }
+        double percentageMargin = Z_95 * Math.sqrt(0.25 / sampledDocs) * 100.0;
+        double countMargin = Z_95 * Math.sqrt((1.0 - probability) / sampledDocs) * 100.0;
+        return new QuerySampling(probability, estimatedDocs, sampledDocs, percentageMargin, countMargin);
+    }
+}
@@ -0,0 +1,76 @@
+package me.paulbaur.ict.analytics.domain;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * Trailing uptime windows answered from in-memory counters instead of Elasticsearch.
+ *
+ * <p>Each window is a ring of {@code slotCount} counters of {@code slotDuration}; the oldest
+ * slot rotates out as a whole, so results are exact to within one slot.</p>
+ */
+public enum StandardWindow {
+    ONE_HOUR("1h", Duration.ofMinutes(1), 60),
+    ONE_DAY("24h", Duration.ofMinutes(15), 96),
+    SEVEN_DAYS("7d", Duration.ofHours(1), 168),
+    THIRTY_DAYS("30d", Duration.ofHours(6), 120);
+
+    private final String label;
+    private final Duration slotDuration;
+    private final int slotCount;
+
+    StandardWindow(String label, Duration slotDuration, int slotCount) {
+        this.label = label;
+        this.slotDuration = slotDuration;
+        this.slotCount = slotCount;
+    }
+
+    public String label() {
+        return label;
+    }
+
+    public Duration slotDuration() {
+        return slotDuration;
+    }
+
+    public int slotCount() {
+        return slotCount;
+    }
+
+    public Duration duration() {
+        return slotDuration.multipliedBy(slotCount);
+    }
+
+    /**
+     * The window that {@code [start, end]} describes, if it ends now and spans a standard
+     * duration, both to within one slot of that window.
+     */
+    public static Optional<StandardWindow> matching(Instant start, Instant end, Instant now) {
+        for (StandardWindow window : values()) {
+            if (window.matches(start, end, now, window.slotDuration)) {
+                return Optional.of(window);
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * The window that {@code [start, end]} describes, if it ends now and spans a standard
+     * duration, both to within {@code tolerance}.
+     */
+    public static Optional<StandardWindow> matching(Instant start, Instant end, Instant now, Duration tolerance) {
+        for (StandardWindow window : values()) {
+            if (window.matches(start, end, now, tolerance)) {
+                return Optional.of(window);
+            }
+        }
+        return Optional.empty();
+    }
+
+    private boolean matches(Instant start, Instant end, Instant now, Duration tolerance) {
+        long toleranceMillis = tolerance.toMillis();
+        return Math.abs(Duration.between(end, now).toMillis()) <= toleranceMillis
+                && Math.abs(Duration.between(start, end).minus(duration()).toMillis()) <= toleranceMillis;
+    }
+}
@@ -23,6 +23,9 @@ public record StateChange(
         ProbeStatus toStatus,
 
         @Schema(description = "Error message if transitioning to DOWN", example = "connection refused")
-        String errorMessage
+        String errorMessage,
+
+        @Schema(description = "How long the target had been in the previous status, in milliseconds; null if unknown", example = "3600000")
+        Long durationMs
 ) {
 }
@@ -0,0 +1,16 @@
+package me.paulbaur.ict.analytics.domain;
+
+import me.paulbaur.ict.common.model.ProbeStatus;
+
+import java.time.Instant;
+
+/**
+ * Number of probes of one target with one status in a fixed-interval bucket.
+ */
+public record StatusCount(
+        String targetId,
+        Instant bucketStart,
+        ProbeStatus status,
+        long count
+) {
+}
@@ -0,0 +1,18 @@
+package me.paulbaur.ict.analytics.domain;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.List;
+
+/**
+ * Time series of one target within a fleet-wide request.
+ */
+@Schema(description = "Time-bucketed metrics of one target")
+public record TargetTimeSeries(
+        @Schema(description = "Target ID", example = "00000000-0000-0000-0000-000000000000")
+        String targetId,
+
+        @Schema(description = "Data points in ascending time order; empty if the target has no probes in the range")
+        List<TimeSeriesDataPoint> dataPoints
+) {
+}
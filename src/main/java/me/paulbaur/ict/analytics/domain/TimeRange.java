@@ -0,0 +1,9 @@
+package me.paulbaur.ict.analytics.domain;
+
+import java.time.Instant;
+
+/**
+ * Half-open time range {@code [start, end)} used to request analytics buckets.
+ */
+public record TimeRange(Instant start, Instant end) {
+}
@@ -0,0 +1,30 @@
+package me.paulbaur.ict.analytics.event;
+
+import me.paulbaur.ict.analytics.domain.LatencyAnomaly;
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * Domain event published when a target's latency rises far above its moving baseline.
+ * Published once per anomaly, when the first anomalous sample arrives.
+ */
+public class LatencyAnomalyEvent extends ApplicationEvent {
+
+    private final LatencyAnomaly anomaly;
+
+    public LatencyAnomalyEvent(Object source, LatencyAnomaly anomaly) {
+        super(source);
+        this.anomaly = anomaly;
+    }
+
+    public LatencyAnomaly getAnomaly() {
+        return anomaly;
+    }
+
+    @Override
+    public String toString() {
+        return "LatencyAnomalyEvent{" +
+                "anomaly=" + anomaly +
+                ", timestamp=" + getTimestamp() +
+                '}';
+    }
+}
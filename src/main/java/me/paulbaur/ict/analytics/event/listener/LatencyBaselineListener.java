@@ -0,0 +1,27 @@
+package me.paulbaur.ict.analytics.event.listener;
+
+import lombok.RequiredArgsConstructor;
+import me.paulbaur.ict.analytics.service.LatencyBaselineService;
+import me.paulbaur.ict.probe.domain.ProbeResult;
+import me.paulbaur.ict.probe.event.ProbeResultEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Feeds the latency of every successful probe into the moving baseline.
+ * The update is a few arithmetic operations, so it runs synchronously on the publishing thread.
+ */
+@Component
+@RequiredArgsConstructor
+public class LatencyBaselineListener {
+
+    private final LatencyBaselineService latencyBaselineService;
+
+    @EventListener
+    public void handleProbeResultEvent(ProbeResultEvent event) {
+        ProbeResult result = event.getResult();
+        if (result.latencyMs() != null) {
+            latencyBaselineService.record(result.targetId(), result.latencyMs(), result.timestamp());
+        }
+    }
+}
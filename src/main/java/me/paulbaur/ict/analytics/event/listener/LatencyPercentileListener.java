@@ -0,0 +1,27 @@
+package me.paulbaur.ict.analytics.event.listener;
+
+import lombok.RequiredArgsConstructor;
+import me.paulbaur.ict.analytics.service.LatencyPercentileService;
+import me.paulbaur.ict.probe.domain.ProbeResult;
+import me.paulbaur.ict.probe.event.ProbeResultEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Feeds the latency of every successful probe into the in-memory percentile histograms.
+ * Recording is a few array updates, so it runs synchronously on the publishing thread.
+ */
+@Component
+@RequiredArgsConstructor
+public class LatencyPercentileListener {
+
+    private final LatencyPercentileService latencyPercentileService;
+
+    @EventListener
+    public void handleProbeResultEvent(ProbeResultEvent event) {
+        ProbeResult result = event.getResult();
+        if (result.latencyMs() != null) {
+            latencyPercentileService.record(result.targetId(), result.latencyMs());
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package me.paulbaur.ict.analytics.event.listener;
+
+import lombok.RequiredArgsConstructor;
+import me.paulbaur.ict.analytics.service.OutageCorrelationService;
+import me.paulbaur.ict.probe.domain.ProbeResult;
+import me.paulbaur.ict.probe.event.ProbeResultEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Adds every probe result to the fleet status matrix.
+ * Recording sets two bits, so it runs synchronously on the publishing thread.
+ */
+@Component
+@RequiredArgsConstructor
+public class OutageCorrelationListener {
+
+    private final OutageCorrelationService outageCorrelationService;
+
+    @EventListener
+    public void handleProbeResultEvent(ProbeResultEvent event) {
+        ProbeResult result = event.getResult();
+        if (result.timestamp() == null) {
+            return;
+        }
+        outageCorrelationService.record(result.targetId(), result.status(), result.probeCycleId(), result.timestamp());
+    }
+}
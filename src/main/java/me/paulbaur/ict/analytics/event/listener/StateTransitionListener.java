@@ -0,0 +1,29 @@
+package me.paulbaur.ict.analytics.event.listener;
+
+import lombok.RequiredArgsConstructor;
+import me.paulbaur.ict.analytics.service.StateTransitionService;
+import me.paulbaur.ict.probe.event.ProbeResultEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Writes a transition document for every probe result that changes a target's status.
+ *
+ * <p>Runs on the publishing probe thread rather than the task executor: each transition's
+ * duration is measured from the one before it, so they must be recorded in order. Transitions
+ * are rare, so the extra write seldom delays a probe.</p>
+ */
+@Component
+@RequiredArgsConstructor
+public class StateTransitionListener {
+
+    private final StateTransitionService stateTransitionService;
+
+    @EventListener
+    public void handleProbeResultEvent(ProbeResultEvent event) {
+        if (!event.isStateChange() || event.getPreviousStatus() == null) {
+            return;
+        }
+        stateTransitionService.recordTransition(event.getResult(), event.getPreviousStatus());
+    }
+}
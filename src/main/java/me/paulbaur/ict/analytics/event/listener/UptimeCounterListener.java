@@ -0,0 +1,25 @@
+package me.paulbaur.ict.analytics.event.listener;
+
+import lombok.RequiredArgsConstructor;
+import me.paulbaur.ict.analytics.service.UptimeCounterService;
+import me.paulbaur.ict.probe.domain.ProbeResult;
+import me.paulbaur.ict.probe.event.ProbeResultEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Counts every probe result in the in-memory uptime windows.
+ * Counting is a few array updates, so it runs synchronously on the publishing thread.
+ */
+@Component
+@RequiredArgsConstructor
+public class UptimeCounterListener {
+
+    private final UptimeCounterService uptimeCounterService;
+
+    @EventListener
+    public void handleProbeResultEvent(ProbeResultEvent event) {
+        ProbeResult result = event.getResult();
+        uptimeCounterService.record(result.targetId(), result.status(), result.timestamp());
+    }
+}
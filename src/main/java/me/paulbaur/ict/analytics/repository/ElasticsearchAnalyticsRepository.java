@@ -1,29 +1,54 @@
 package me.paulbaur.ict.analytics.repository;
 
 import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.FieldValue;
+import co.elastic.clients.elasticsearch._types.SortOrder;
 import co.elastic.clients.elasticsearch._types.aggregations.*;
 import co.elastic.clients.elasticsearch._types.query_dsl.BoolQuery;
 import co.elastic.clients.elasticsearch._types.query_dsl.Query;
 import co.elastic.clients.elasticsearch._types.query_dsl.RangeQuery;
 import co.elastic.clients.elasticsearch._types.query_dsl.TermQuery;
+import co.elastic.clients.elasticsearch._types.query_dsl.TermsQuery;
+import co.elastic.clients.elasticsearch.core.CountRequest;
+import co.elastic.clients.elasticsearch.core.IndexRequest;
 import co.elastic.clients.elasticsearch.core.SearchRequest;
 import co.elastic.clients.elasticsearch.core.SearchResponse;
+import co.elastic.clients.elasticsearch.core.search.Hit;
 import co.elastic.clients.json.JsonData;
+import co.elastic.clients.json.JsonpMapper;
+import jakarta.json.Json;
+import jakarta.json.JsonObject;
+import jakarta.json.JsonObjectBuilder;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import me.paulbaur.ict.analytics.domain.AnalyticsBucket;
+import me.paulbaur.ict.analytics.domain.AnalyticsQueryPlan;
+import me.paulbaur.ict.analytics.domain.DashboardAnalytics;
+import me.paulbaur.ict.analytics.domain.LatencyHeatmap;
 import me.paulbaur.ict.analytics.domain.LatencyMetrics;
+import me.paulbaur.ict.analytics.domain.QuerySampling;
 import me.paulbaur.ict.analytics.domain.StateChange;
+import me.paulbaur.ict.analytics.domain.StatusCount;
+import me.paulbaur.ict.analytics.domain.TimeRange;
 import me.paulbaur.ict.analytics.domain.TimeSeriesDataPoint;
 import me.paulbaur.ict.analytics.domain.UptimeMetrics;
+import me.paulbaur.ict.common.elasticsearch.ElasticsearchRequestExecutor;
+import me.paulbaur.ict.common.exception.QueryTooExpensiveException;
 import me.paulbaur.ict.common.model.ProbeStatus;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Repository;
 
 import java.io.IOException;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Consumer;
 
 import static net.logstash.logback.argument.StructuredArguments.kv;
 
@@ -35,161 +60,758 @@ import static net.logstash.logback.argument.StructuredArguments.kv;
 @Slf4j
 public class ElasticsearchAnalyticsRepository {
 
+    private static final int COMPOSITE_PAGE_SIZE = 1000;
+    private static final int TRANSITIONS_PAGE_SIZE = 1000;
+    private static final String SAMPLER = "sampled";
+    // Fixed seed: a request samples the same documents every time, so recomputed results stay stable
+    private static final int SAMPLER_SEED = 7;
+
     private final ElasticsearchClient elasticsearchClient;
+    // Request-path searches go through here so they are cancelled when the caller stops waiting
+    private final ElasticsearchRequestExecutor requestExecutor;
 
     @Value("${ict.elasticsearch.index}")
     private String indexPattern;
 
+    // Deliberately outside indexPattern + "*" so transitions never count as probe results
+    @Value("${ict.elasticsearch.transitions-index:probe-transitions}")
+    private String transitionsIndex;
+
+    // Per-request budgets of analytics searches; a search exceeding either fails instead of returning partial results
+    @Value("${ict.analytics.query-guard.timeout:10s}")
+    private Duration searchTimeout = Duration.ofSeconds(10);
+
+    @Value("${ict.analytics.query-guard.max-docs:50000000}")
+    private long maxDocsPerShard = 50_000_000;
+
     /**
-     * Calculate uptime metrics for a target within a time range.
+     * Find state changes for a target within a time range, newest first.
+     * Transitions are written to their own index at ingest, so this is a small indexed range
+     * query regardless of how many probe results the range holds.
      */
-    public UptimeMetrics calculateUptime(String targetId, Instant start, Instant end) throws IOException {
-        log.debug("Calculating uptime metrics", kv("targetId", targetId), kv("start", start), kv("end", end));
+    public List<StateChange> findStateChanges(String targetId, Instant start, Instant end, int limit) throws IOException {
+        log.debug("Finding state changes", kv("targetId", targetId), kv("start", start), kv("end", end));
 
         SearchRequest searchRequest = SearchRequest.of(s -> s
-                .index(indexPattern + "*")
-                .size(0)
-                .query(buildRangeQuery(targetId, start, end))
-                .aggregations("by_status", Aggregation.of(a -> a
-                        .terms(TermsAggregation.of(t -> t
-                                .field("status.keyword")
+                .index(transitionsIndex)
+                .size(limit)
+                .query(q -> q
+                        .bool(BoolQuery.of(b -> b
+                                .filter(Query.of(f -> f
+                                        .term(TermQuery.of(t -> t.field("targetId").value(targetId)))
+                                ))
+                                .filter(Query.of(f -> f
+                                        .range(RangeQuery.of(r -> r
+                                                .field("timestamp")
+                                                .gte(JsonData.of(start.toString()))
+                                                .lte(JsonData.of(end.toString()))
+                                        ))
+                                ))
                         ))
-                ))
+                )
+                .sort(so -> so.field(f -> f.field("timestamp").order(SortOrder.Desc)))
+                .ignoreUnavailable(true)
         );
 
-        SearchResponse<Void> response = elasticsearchClient.search(searchRequest, Void.class);
+        SearchResponse<StateChange> response = requestExecutor.execute(client -> client.search(searchRequest, StateChange.class));
+        List<StateChange> stateChanges = new ArrayList<>();
+        for (Hit<StateChange> hit : response.hits().hits()) {
+            if (hit.source() != null) {
+                stateChanges.add(hit.source());
+            }
+        }
+        return stateChanges;
+    }
+
+    /**
+     * Find the most recent state change of a target, if any has been recorded.
+     */
+    public Optional<StateChange> findLatestStateChange(String targetId) throws IOException {
+        SearchRequest searchRequest = SearchRequest.of(s -> s
+                .index(transitionsIndex)
+                .size(1)
+                .query(q -> q.term(TermQuery.of(t -> t.field("targetId").value(targetId))))
+                .sort(so -> so.field(f -> f.field("timestamp").order(SortOrder.Desc)))
+                .ignoreUnavailable(true)
+        );
 
-        long totalProbes = response.hits().total().value();
-        long successfulProbes = 0;
-        long failedProbes = 0;
+        SearchResponse<StateChange> response = elasticsearchClient.search(searchRequest, StateChange.class);
+        return response.hits().hits().stream()
+                .map(Hit::source)
+                .filter(Objects::nonNull)
+                .findFirst();
+    }
+
+    /**
+     * Stream every state change with {@code start <= timestamp <= end} in ascending time order,
+     * paging with {@code search_after}.
+     */
+    public void forEachStateChange(Instant start, Instant end, Consumer<StateChange> consumer) throws IOException {
+        List<FieldValue> searchAfter = null;
+        while (true) {
+            List<FieldValue> after = searchAfter;
+            SearchRequest searchRequest = SearchRequest.of(s -> {
+                s.index(transitionsIndex)
+                        .size(TRANSITIONS_PAGE_SIZE)
+                        .query(q -> q.range(RangeQuery.of(r -> r
+                                .field("timestamp")
+                                .gte(JsonData.of(start.toString()))
+                                .lte(JsonData.of(end.toString()))
+                        )))
+                        .sort(so -> so.field(f -> f.field("timestamp").order(SortOrder.Asc)))
+                        .sort(so -> so.field(f -> f.field("targetId").order(SortOrder.Asc)))
+                        .ignoreUnavailable(true);
+                if (after != null) {
+                    s.searchAfter(after);
+                }
+                return s;
+            });
 
-        StringTermsAggregate byStatus = response.aggregations().get("by_status").sterms();
-        for (StringTermsBucket bucket : byStatus.buckets().array()) {
-            if ("UP".equals(bucket.key().stringValue())) {
-                successfulProbes = bucket.docCount();
-            } else if ("DOWN".equals(bucket.key().stringValue())) {
-                failedProbes = bucket.docCount();
+            List<Hit<StateChange>> hits = elasticsearchClient.search(searchRequest, StateChange.class).hits().hits();
+            for (Hit<StateChange> hit : hits) {
+                if (hit.source() != null) {
+                    consumer.accept(hit.source());
+                }
+            }
+            if (hits.size() < TRANSITIONS_PAGE_SIZE) {
+                return;
             }
+            searchAfter = hits.get(hits.size() - 1).sort();
         }
+    }
 
-        return UptimeMetrics.calculate(targetId, start, end, totalProbes, successfulProbes, failedProbes);
+    /**
+     * Stream the most recent state change of every target with {@code timestamp < before},
+     * one per target. Pages through a composite aggregation over target IDs, each bucket
+     * holding its newest transition.
+     */
+    public void forEachLatestStateChangeBefore(Instant before, Consumer<StateChange> consumer) throws IOException {
+        JsonpMapper mapper = elasticsearchClient._jsonpMapper();
+        Map<String, FieldValue> afterKey = null;
+        do {
+            Map<String, FieldValue> after = afterKey;
+            SearchRequest searchRequest = SearchRequest.of(s -> s
+                    .index(transitionsIndex)
+                    .size(0)
+                    .query(q -> q.range(RangeQuery.of(r -> r
+                            .field("timestamp")
+                            .lt(JsonData.of(before.toString()))
+                    )))
+                    .aggregations("targets", Aggregation.of(a -> a
+                            .composite(CompositeAggregation.of(c -> {
+                                c.size(COMPOSITE_PAGE_SIZE)
+                                        .sources(List.of(Map.of("target", CompositeAggregationSource.of(cs -> cs
+                                                .terms(t -> t.field("targetId"))))));
+                                if (after != null) {
+                                    c.after(after);
+                                }
+                                return c;
+                            }))
+                            .aggregations("latest", Aggregation.of(l -> l
+                                    .topHits(th -> th
+                                            .size(1)
+                                            .sort(so -> so.field(f -> f.field("timestamp").order(SortOrder.Desc))))
+                            ))
+                    ))
+                    .ignoreUnavailable(true)
+            );
+
+            SearchResponse<Void> response = elasticsearchClient.search(searchRequest, Void.class);
+            Aggregate targets = response.aggregations().get("targets");
+            if (targets == null) {
+                return;
+            }
+            CompositeAggregate composite = targets.composite();
+            for (CompositeBucket bucket : composite.buckets().array()) {
+                for (Hit<JsonData> hit : bucket.aggregations().get("latest").topHits().hits().hits()) {
+                    if (hit.source() != null) {
+                        consumer.accept(hit.source().to(StateChange.class, mapper));
+                    }
+                }
+            }
+            afterKey = composite.buckets().array().size() < COMPOSITE_PAGE_SIZE ? null : composite.afterKey();
+        } while (afterKey != null && !afterKey.isEmpty());
     }
 
     /**
-     * Calculate latency metrics for a target within a time range.
+     * Record a state change in the transitions index.
      */
-    public LatencyMetrics calculateLatency(String targetId, Instant start, Instant end) throws IOException {
-        log.debug("Calculating latency metrics", kv("targetId", targetId), kv("start", start), kv("end", end));
+    public void saveStateChange(StateChange stateChange) throws IOException {
+        elasticsearchClient.index(IndexRequest.of(i -> i
+                .index(transitionsIndex)
+                .document(stateChange)
+        ));
+    }
 
-        SearchRequest searchRequest = SearchRequest.of(s -> s
+    /**
+     * Calculate time series data points with bucketed metrics, one per epoch-aligned {@code interval}.
+     */
+    public List<TimeSeriesDataPoint> calculateTimeSeries(String targetId, Instant start, Instant end, Duration interval) throws IOException {
+        log.debug("Calculating time series", kv("targetId", targetId), kv("start", start), kv("end", end), kv("interval", interval));
+
+        SearchRequest searchRequest = SearchRequest.of(s -> withinBudget(s)
                 .index(indexPattern + "*")
                 .size(0)
-                .query(buildLatencyQuery(targetId, start, end))
-                .aggregations("latency_stats", Aggregation.of(a -> a
-                        .stats(StatsAggregation.of(st -> st
-                                .field("latencyMs")
-                        ))
-                ))
+                .query(buildRangeQuery(targetId, start, end))
+                .aggregations("time_buckets", timeBucketsAggregation(interval))
+        );
+
+        SearchResponse<Void> response = searchWithinBudget(searchRequest);
+
+        List<TimeSeriesDataPoint> dataPoints = new ArrayList<>();
+        for (DateHistogramBucket bucket : response.aggregations().get("time_buckets").dateHistogram().buckets().array()) {
+            dataPoints.add(toDataPoint(bucket));
+        }
+
+        return dataPoints;
+    }
+
+    /**
+     * Uptime, latency and time series of a target in a single search: the range-wide statistics and
+     * the {@code interval} histogram are aggregations over the same filter, so the index is scanned once.
+     * A sampled {@code plan} aggregates a random sample and scales the counts up.
+     */
+    public DashboardAnalytics calculateDashboard(String targetId, Instant start, Instant end, Duration interval,
+                                                 AnalyticsQueryPlan plan) throws IOException {
+        log.debug("Calculating dashboard analytics", kv("targetId", targetId), kv("start", start), kv("end", end),
+                kv("interval", interval), kv("samplingProbability", plan.samplingProbability()));
+
+        Map<String, Aggregation> aggregations = new LinkedHashMap<>(bucketSubAggregations());
+        aggregations.put("time_buckets", timeBucketsAggregation(interval));
+        SearchRequest searchRequest = SearchRequest.of(s -> withinBudget(s)
+                .index(indexPattern + "*")
+                .size(0)
+                // Exact probe count; the default stops counting at 10,000 hits
+                .trackTotalHits(t -> t.enabled(!plan.isSampled()))
+                .query(buildRangeQuery(targetId, start, end))
+                .aggregations(sampled(aggregations, plan))
         );
 
-        SearchResponse<Void> response = elasticsearchClient.search(searchRequest, Void.class);
+        SearchResponse<Void> response = searchWithinBudget(searchRequest);
+        long totalProbes = response.hits().total() != null ? response.hits().total().value() : 0;
+        SampledAggregations result = unwrap(response, plan, totalProbes);
 
-        StatsAggregate latencyStats = response.aggregations().get("latency_stats").stats();
+        double probability = plan.samplingProbability();
+        AnalyticsBucket bucket = toBucket(start, end, scale(result.docCount(), probability), result.aggregations(), probability);
+        List<TimeSeriesDataPoint> dataPoints = new ArrayList<>();
+        for (DateHistogramBucket histogramBucket : result.aggregations().get("time_buckets").dateHistogram().buckets().array()) {
+            dataPoints.add(toDataPoint(histogramBucket, probability));
+        }
 
-        return new LatencyMetrics(
+        return new DashboardAnalytics(
                 targetId,
                 start,
                 end,
-                latencyStats.avg(),
-                latencyStats.min(),
-                latencyStats.max(),
-                latencyStats.count()
+                interval.toSeconds(),
+                UptimeMetrics.calculate(targetId, start, end, bucket.totalProbes(), bucket.successfulProbes(), bucket.failedProbes()),
+                new LatencyMetrics(targetId, start, end, bucket.averageLatencyMs(), bucket.minLatencyMs(),
+                        bucket.maxLatencyMs(), bucket.latencyCount()),
+                dataPoints,
+                samplingOf(plan, result)
         );
     }
 
     /**
-     * Find state changes for a target within a time range.
-     * This is a simplified implementation that looks for consecutive documents with different statuses.
+     * Count the probe results of the given targets with {@code start <= timestamp <= end}, the filter
+     * of the analytics searches, to plan them. With a positive {@code limit} each shard stops counting
+     * once it reaches it, so the count is exact only below the limit.
      */
-    public List<StateChange> findStateChanges(String targetId, Instant start, Instant end, int limit) throws IOException {
-        log.debug("Finding state changes", kv("targetId", targetId), kv("start", start), kv("end", end));
+    public long countProbes(Collection<String> targetIds, Instant start, Instant end, long limit) throws IOException {
+        if (targetIds.isEmpty()) {
+            return 0;
+        }
+        CountRequest countRequest = CountRequest.of(c -> {
+            c.index(indexPattern + "*").query(buildFleetQuery(targetIds, start, end));
+            if (limit > 0) {
+                c.terminateAfter(limit);
+            }
+            return c;
+        });
+        return requestExecutor.execute(client -> client.count(countRequest)).count();
+    }
 
-        // For a full implementation, this would need a more complex query or
-        // post-processing logic to detect actual state transitions.
-        // This is a placeholder that returns an empty list.
-        // A production implementation might use a scripted metric aggregation
-        // or retrieve sorted documents and detect changes in application code.
+    /**
+     * Aggregate probe counts and latency totals for each of the given ranges in a single search.
+     * Buckets are returned in the order of {@code ranges}; ranges without probes yield empty buckets.
+     */
+    public List<AnalyticsBucket> calculateBuckets(String targetId, List<TimeRange> ranges) throws IOException {
+        if (ranges.isEmpty()) {
+            return List.of();
+        }
+        log.debug("Calculating analytics buckets", kv("targetId", targetId), kv("ranges", ranges.size()));
+
+        Instant minStart = ranges.get(0).start();
+        Instant maxEnd = ranges.get(0).end();
+        Map<String, Query> filters = new LinkedHashMap<>();
+        for (int i = 0; i < ranges.size(); i++) {
+            TimeRange range = ranges.get(i);
+            minStart = range.start().isBefore(minStart) ? range.start() : minStart;
+            maxEnd = range.end().isAfter(maxEnd) ? range.end() : maxEnd;
+            filters.put(Integer.toString(i), Query.of(q -> q
+                    .range(RangeQuery.of(r -> r
+                            .field("timestamp")
+                            .gte(JsonData.of(range.start().toString()))
+                            .lt(JsonData.of(range.end().toString()))
+                    ))
+            ));
+        }
+        Instant queryStart = minStart;
+        Instant queryEnd = maxEnd;
 
-        return new ArrayList<>();
+        SearchRequest searchRequest = SearchRequest.of(s -> withinBudget(s)
+                .index(indexPattern + "*")
+                .size(0)
+                .query(Query.of(q -> q
+                        .bool(BoolQuery.of(b -> b
+                                .filter(Query.of(f -> f
+                                        .term(TermQuery.of(t -> t
+                                                .field("targetId.keyword")
+                                                .value(targetId)
+                                        ))
+                                ))
+                                .filter(Query.of(f -> f
+                                        .range(RangeQuery.of(r -> r
+                                                .field("timestamp")
+                                                .gte(JsonData.of(queryStart.toString()))
+                                                .lt(JsonData.of(queryEnd.toString()))
+                                        ))
+                                ))
+                        ))
+                ))
+                .aggregations("ranges", Aggregation.of(a -> a
+                        .filters(FiltersAggregation.of(f -> f
+                                .filters(Buckets.of(b -> b.keyed(filters)))
+                        ))
+                        .aggregations(bucketSubAggregations())
+                ))
+        );
+
+        SearchResponse<Void> response = searchWithinBudget(searchRequest);
+        Map<String, FiltersBucket> keyed = response.aggregations().get("ranges").filters().buckets().keyed();
+
+        List<AnalyticsBucket> buckets = new ArrayList<>(ranges.size());
+        for (int i = 0; i < ranges.size(); i++) {
+            TimeRange range = ranges.get(i);
+            FiltersBucket bucket = keyed.get(Integer.toString(i));
+            if (bucket == null || bucket.docCount() == 0) {
+                buckets.add(AnalyticsBucket.empty(range.start(), range.end()));
+                continue;
+            }
+
+            buckets.add(toBucket(range.start(), range.end(), bucket.docCount(), bucket.aggregations()));
+        }
+        return buckets;
     }
 
     /**
-     * Calculate time series data points with bucketed metrics.
+     * Aggregate probe counts and latency totals of several targets over {@code start <= timestamp <= end}
+     * in a single search, one {@code terms} bucket per target. Every requested target is present in
+     * the result, with an empty bucket if it has no probes.
      */
-    public List<TimeSeriesDataPoint> calculateTimeSeries(String targetId, Instant start, Instant end, String interval) throws IOException {
-        log.debug("Calculating time series", kv("targetId", targetId), kv("start", start), kv("end", end), kv("interval", interval));
+    public Map<String, AnalyticsBucket> calculateFleetBuckets(Collection<String> targetIds, Instant start, Instant end) throws IOException {
+        log.debug("Calculating fleet analytics buckets", kv("targets", targetIds.size()), kv("start", start), kv("end", end));
+        Map<String, AnalyticsBucket> buckets = new LinkedHashMap<>();
+        for (String targetId : targetIds) {
+            buckets.put(targetId, AnalyticsBucket.empty(start, end));
+        }
+        if (targetIds.isEmpty()) {
+            return buckets;
+        }
 
-        SearchRequest searchRequest = SearchRequest.of(s -> s
+        SearchRequest searchRequest = SearchRequest.of(s -> withinBudget(s)
                 .index(indexPattern + "*")
                 .size(0)
-                .query(buildRangeQuery(targetId, start, end))
-                .aggregations("time_buckets", Aggregation.of(a -> a
-                        .dateHistogram(DateHistogramAggregation.of(dh -> dh
-                                .field("timestamp")
-                                .calendarInterval(CalendarInterval.Hour) // Could be parameterized
+                .query(buildFleetQuery(targetIds, start, end))
+                .aggregations("by_target", Aggregation.of(a -> a
+                        .terms(TermsAggregation.of(t -> t
+                                .field("targetId.keyword")
+                                .size(targetIds.size())
+                        ))
+                        .aggregations(bucketSubAggregations())
+                ))
+        );
+
+        SearchResponse<Void> response = searchWithinBudget(searchRequest);
+        for (StringTermsBucket bucket : response.aggregations().get("by_target").sterms().buckets().array()) {
+            String targetId = bucket.key().stringValue();
+            if (buckets.containsKey(targetId)) {
+                buckets.put(targetId, toBucket(start, end, bucket.docCount(), bucket.aggregations()));
+            }
+        }
+        return buckets;
+    }
+
+    /**
+     * Time series of several targets in a single search: a {@code terms} bucket per target with an
+     * epoch-aligned {@code interval} histogram inside. Targets without probes map to an empty list.
+     */
+    public Map<String, List<TimeSeriesDataPoint>> calculateFleetTimeSeries(Collection<String> targetIds, Instant start, Instant end,
+                                                                           Duration interval) throws IOException {
+        log.debug("Calculating fleet time series", kv("targets", targetIds.size()), kv("start", start), kv("end", end), kv("interval", interval));
+        Map<String, List<TimeSeriesDataPoint>> series = new LinkedHashMap<>();
+        for (String targetId : targetIds) {
+            series.put(targetId, new ArrayList<>());
+        }
+        if (targetIds.isEmpty()) {
+            return series;
+        }
+
+        SearchRequest searchRequest = SearchRequest.of(s -> withinBudget(s)
+                .index(indexPattern + "*")
+                .size(0)
+                .query(buildFleetQuery(targetIds, start, end))
+                .aggregations("by_target", Aggregation.of(a -> a
+                        .terms(TermsAggregation.of(t -> t
+                                .field("targetId.keyword")
+                                .size(targetIds.size())
                         ))
-                        .aggregations("avg_latency", Aggregation.of(agg -> agg
-                                .avg(AverageAggregation.of(avg -> avg.field("latencyMs")))
+                        .aggregations("time_buckets", timeBucketsAggregation(interval))
+                ))
+        );
+
+        SearchResponse<Void> response = searchWithinBudget(searchRequest);
+        for (StringTermsBucket bucket : response.aggregations().get("by_target").sterms().buckets().array()) {
+            String targetId = bucket.key().stringValue();
+            if (!series.containsKey(targetId)) {
+                continue;
+            }
+            List<TimeSeriesDataPoint> dataPoints = new ArrayList<>();
+            for (DateHistogramBucket timeBucket : bucket.aggregations().get("time_buckets").dateHistogram().buckets().array()) {
+                dataPoints.add(toDataPoint(timeBucket));
+            }
+            series.put(targetId, dataPoints);
+        }
+        return series;
+    }
+
+    /**
+     * Count the probes of several targets per {@code interval} time bucket and {@code latencyBucketMs}
+     * latency bucket in a single search: a {@code histogram} on latency inside a {@code date_histogram}
+     * on time. Latencies of {@code latencyBuckets * latencyBucketMs} and above land in one extra
+     * open-ended column. Rows cover every epoch-aligned bucket of the range, including empty ones.
+     * A sampled {@code plan} aggregates a random sample and scales the counts up.
+     */
+    public LatencyHeatmap calculateLatencyHeatmap(Collection<String> targetIds, Instant start, Instant end, Duration interval,
+                                                  double latencyBucketMs, int latencyBuckets, AnalyticsQueryPlan plan) throws IOException {
+        log.debug("Calculating latency heatmap", kv("targets", targetIds.size()), kv("start", start), kv("end", end),
+                kv("interval", interval), kv("latencyBucketMs", latencyBucketMs), kv("latencyBuckets", latencyBuckets));
+        long intervalMillis = interval.toMillis();
+        long firstSlot = Math.floorDiv(start.toEpochMilli(), intervalMillis);
+        int rows = Math.toIntExact(Math.floorDiv(end.toEpochMilli(), intervalMillis) - firstSlot + 1);
+        double overflowFrom = latencyBucketMs * latencyBuckets;
+
+        long[] timestamps = new long[rows];
+        for (int row = 0; row < rows; row++) {
+            timestamps[row] = (firstSlot + row) * intervalMillis;
+        }
+        double[] bounds = new double[latencyBuckets + 1];
+        for (int column = 0; column <= latencyBuckets; column++) {
+            bounds[column] = column * latencyBucketMs;
+        }
+        long[][] counts = new long[rows][latencyBuckets + 1];
+        if (targetIds.isEmpty()) {
+            return new LatencyHeatmap(List.copyOf(targetIds), start, end, interval.toSeconds(), latencyBucketMs,
+                    timestamps, bounds, counts, 0, null);
+        }
+
+        Map<String, Aggregation> aggregations = Map.of("time_buckets", Aggregation.of(a -> a
+                .dateHistogram(DateHistogramAggregation.of(dh -> dh
+                        .field("timestamp")
+                        .fixedInterval(ti -> ti.time(interval.toSeconds() + "s"))
+                ))
+                .aggregations("latency", Aggregation.of(agg -> agg
+                        .histogram(HistogramAggregation.of(h -> h
+                                .field("latencyMs")
+                                .interval(latencyBucketMs)
+                                .minDocCount(1)
+                                .hardBounds(b -> b.min(0.0).max(overflowFrom))
                         ))
-                        .aggregations("by_status", Aggregation.of(agg -> agg
-                                .terms(TermsAggregation.of(t -> t.field("status.keyword")))
+                ))
+                .aggregations("latency_overflow", Aggregation.of(agg -> agg
+                        .filter(Query.of(f -> f
+                                .range(RangeQuery.of(r -> r
+                                        .field("latencyMs")
+                                        .gte(JsonData.of(overflowFrom))
+                                ))
                         ))
                 ))
+        ));
+
+        SearchRequest searchRequest = SearchRequest.of(s -> withinBudget(s)
+                .index(indexPattern + "*")
+                .size(0)
+                .query(buildFleetQuery(targetIds, start, end))
+                .aggregations(sampled(aggregations, plan))
         );
 
-        SearchResponse<Void> response = elasticsearchClient.search(searchRequest, Void.class);
+        SearchResponse<Void> response = searchWithinBudget(searchRequest);
+        SampledAggregations result = unwrap(response, plan, 0);
+        double probability = plan.samplingProbability();
+        long totalSamples = 0;
+        for (DateHistogramBucket timeBucket : result.aggregations().get("time_buckets").dateHistogram().buckets().array()) {
+            long row = Math.floorDiv(timeBucket.key(), intervalMillis) - firstSlot;
+            if (row < 0 || row >= rows) {
+                continue;
+            }
+            long[] rowCounts = counts[(int) row];
+            for (HistogramBucket latencyBucket : timeBucket.aggregations().get("latency").histogram().buckets().array()) {
+                int column = (int) Math.floor(latencyBucket.key() / latencyBucketMs);
+                if (column >= 0 && column < latencyBuckets) {
+                    long count = scale(latencyBucket.docCount(), probability);
+                    rowCounts[column] += count;
+                    totalSamples += count;
+                }
+            }
+            long overflow = scale(timeBucket.aggregations().get("latency_overflow").filter().docCount(), probability);
+            rowCounts[latencyBuckets] += overflow;
+            totalSamples += overflow;
+        }
+        return new LatencyHeatmap(List.copyOf(targetIds), start, end, interval.toSeconds(), latencyBucketMs,
+                timestamps, bounds, counts, totalSamples, samplingOf(plan, result));
+    }
 
-        List<TimeSeriesDataPoint> dataPoints = new ArrayList<>();
-        DateHistogramAggregate timeBuckets = response.aggregations().get("time_buckets").dateHistogram();
-
-        for (DateHistogramBucket bucket : timeBuckets.buckets().array()) {
-            long totalCount = bucket.docCount();
-            Double avgLatency = bucket.aggregations().get("avg_latency").avg().value();
-
-            // Count successful probes
-            long successfulCount = 0;
-            StringTermsAggregate statusBuckets = bucket.aggregations().get("by_status").sterms();
-            for (StringTermsBucket statusBucket : statusBuckets.buckets().array()) {
-                if ("UP".equals(statusBucket.key().stringValue())) {
-                    successfulCount = statusBucket.docCount();
-                    break;
+    /**
+     * Stream probe counts of every target per status and {@code interval} bucket for
+     * {@code start <= timestamp < end}. Buckets are aligned to the epoch, so a bucket start
+     * divided by the interval is a stable slot number. Pages through a composite aggregation,
+     * so the number of targets and buckets is not limited by {@code search.max_buckets}.
+     */
+    public void forEachStatusCount(Instant start, Instant end, Duration interval, Consumer<StatusCount> consumer) throws IOException {
+        log.debug("Scanning status counts", kv("start", start), kv("end", end), kv("interval", interval));
+
+        Map<String, FieldValue> afterKey = null;
+        do {
+            Map<String, FieldValue> after = afterKey;
+            SearchRequest searchRequest = SearchRequest.of(s -> s
+                    .index(indexPattern + "*")
+                    .size(0)
+                    .query(Query.of(q -> q
+                            .range(RangeQuery.of(r -> r
+                                    .field("timestamp")
+                                    .gte(JsonData.of(start.toString()))
+                                    .lt(JsonData.of(end.toString()))
+                            ))
+                    ))
+                    .aggregations("counts", Aggregation.of(a -> a
+                            .composite(CompositeAggregation.of(c -> {
+                                c.size(COMPOSITE_PAGE_SIZE)
+                                        .sources(List.of(
+                                                Map.of("target", CompositeAggregationSource.of(cs -> cs
+                                                        .terms(t -> t.field("targetId.keyword")))),
+                                                Map.of("slot", CompositeAggregationSource.of(cs -> cs
+                                                        .dateHistogram(dh -> dh
+                                                                .field("timestamp")
+                                                                .fixedInterval(ti -> ti.time(interval.toSeconds() + "s"))))),
+                                                Map.of("status", CompositeAggregationSource.of(cs -> cs
+                                                        .terms(t -> t.field("status.keyword"))))
+                                        ));
+                                if (after != null) {
+                                    c.after(after);
+                                }
+                                return c;
+                            }))
+                    ))
+            );
+
+            SearchResponse<Void> response = elasticsearchClient.search(searchRequest, Void.class);
+            CompositeAggregate counts = response.aggregations().get("counts").composite();
+
+            for (CompositeBucket bucket : counts.buckets().array()) {
+                ProbeStatus status = parseStatus(bucket.key().get("status").stringValue());
+                if (status == null) {
+                    continue;
                 }
+                consumer.accept(new StatusCount(
+                        bucket.key().get("target").stringValue(),
+                        Instant.ofEpochMilli(bucket.key().get("slot").longValue()),
+                        status,
+                        bucket.docCount()
+                ));
             }
+            afterKey = counts.buckets().array().size() < COMPOSITE_PAGE_SIZE ? null : counts.afterKey();
+        } while (afterKey != null && !afterKey.isEmpty());
+    }
 
-            double uptimePercentage = totalCount > 0 ? (successfulCount * 100.0 / totalCount) : 0.0;
+    private SearchRequest.Builder withinBudget(SearchRequest.Builder builder) {
+        return builder
+                .timeout(searchTimeout.toMillis() + "ms")
+                .terminateAfter(maxDocsPerShard);
+    }
 
-            dataPoints.add(new TimeSeriesDataPoint(
-                    Instant.ofEpochMilli(Long.parseLong(bucket.keyAsString())),
-                    avgLatency,
-                    totalCount,
-                    successfulCount,
-                    uptimePercentage
-            ));
+    /**
+     * Run an analytics search, failing it if it ran out of time or documents: a partial
+     * aggregation would be reported, and cached, as if it were complete.
+     */
+    private SearchResponse<Void> searchWithinBudget(SearchRequest searchRequest) throws IOException {
+        SearchResponse<Void> response = requestExecutor.execute(client -> client.search(searchRequest, Void.class));
+        if (response.timedOut() || Boolean.TRUE.equals(response.terminatedEarly())) {
+            log.warn("Analytics search exceeded its budget",
+                    kv("timedOut", response.timedOut()),
+                    kv("terminatedEarly", response.terminatedEarly()),
+                    kv("tookMs", response.took()));
+            throw new QueryTooExpensiveException("The query exceeded its budget of " + searchTimeout.toSeconds() + "s / "
+                    + maxDocsPerShard + " probes per shard; narrow the time range or the set of targets");
         }
+        return response;
+    }
 
-        return dataPoints;
+    /**
+     * Nest {@code aggregations} under a {@code random_sampler} when the plan samples.
+     */
+    private static Map<String, Aggregation> sampled(Map<String, Aggregation> aggregations, AnalyticsQueryPlan plan) {
+        if (!plan.isSampled()) {
+            return aggregations;
+        }
+        return Map.of(SAMPLER, Aggregation.of(a -> a
+                ._custom("random_sampler", Map.of("probability", plan.samplingProbability(), "seed", SAMPLER_SEED))
+                .aggregations(aggregations)
+        ));
     }
 
     /**
-     * Build a query for a target within a time range.
+     * The aggregations of a request built with {@link #sampled} and the number of documents they cover.
      */
-    private Query buildRangeQuery(String targetId, Instant start, Instant end) {
+    private SampledAggregations unwrap(SearchResponse<Void> response, AnalyticsQueryPlan plan, long totalDocs) {
+        if (!plan.isSampled()) {
+            return new SampledAggregations(response.aggregations(), totalDocs);
+        }
+        // This client version has no random_sampler type. Its result is a single bucket like a filter's,
+        // plus its settings, which must be dropped to read the sub-aggregations.
+        JsonpMapper mapper = elasticsearchClient._jsonpMapper();
+        JsonObject raw = response.aggregations().get(SAMPLER)._custom().toJson(mapper).asJsonObject();
+        JsonObjectBuilder bucket = Json.createObjectBuilder();
+        raw.forEach((name, value) -> {
+            if (name.equals("doc_count") || name.indexOf('#') > 0) {
+                bucket.add(name, value);
+            }
+        });
+        FilterAggregate sample = JsonData.of(bucket.build()).to(FilterAggregate.class, mapper);
+        return new SampledAggregations(sample.aggregations(), sample.docCount());
+    }
+
+    private static QuerySampling samplingOf(AnalyticsQueryPlan plan, SampledAggregations result) {
+        return plan.isSampled()
+                ? QuerySampling.of(plan.samplingProbability(), plan.estimatedDocs(), result.docCount())
+                : null;
+    }
+
+    /**
+     * Estimate of a full count from a count over a sample drawn with {@code probability}.
+     */
+    private static long scale(long sampledCount, double probability) {
+        return probability >= 1.0 ? sampledCount : Math.round(sampledCount / probability);
+    }
+
+    private record SampledAggregations(Map<String, Aggregate> aggregations, long docCount) {
+    }
+
+    private static ProbeStatus parseStatus(String value) {
+        try {
+            return ProbeStatus.valueOf(value);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static Aggregation timeBucketsAggregation(Duration interval) {
+        return Aggregation.of(a -> a
+                .dateHistogram(DateHistogramAggregation.of(dh -> dh
+                        .field("timestamp")
+                        .fixedInterval(ti -> ti.time(interval.toSeconds() + "s"))
+                ))
+                .aggregations("avg_latency", Aggregation.of(agg -> agg
+                        .avg(AverageAggregation.of(avg -> avg.field("latencyMs")))
+                ))
+                .aggregations("by_status", Aggregation.of(agg -> agg
+                        .terms(TermsAggregation.of(t -> t.field("status.keyword")))
+                ))
+        );
+    }
+
+    private static TimeSeriesDataPoint toDataPoint(DateHistogramBucket bucket) {
+        return toDataPoint(bucket, 1.0);
+    }
+
+    private static TimeSeriesDataPoint toDataPoint(DateHistogramBucket bucket, double probability) {
+        long totalCount = scale(bucket.docCount(), probability);
+        Double avgLatency = bucket.aggregations().get("avg_latency").avg().value();
+
+        // Count successful probes
+        long successfulCount = 0;
+        StringTermsAggregate statusBuckets = bucket.aggregations().get("by_status").sterms();
+        for (StringTermsBucket statusBucket : statusBuckets.buckets().array()) {
+            if ("UP".equals(statusBucket.key().stringValue())) {
+                successfulCount = scale(statusBucket.docCount(), probability);
+                break;
+            }
+        }
+
+        double uptimePercentage = totalCount > 0 ? (successfulCount * 100.0 / totalCount) : 0.0;
+
+        return new TimeSeriesDataPoint(
+                Instant.ofEpochMilli(bucket.key()),
+                avgLatency,
+                totalCount,
+                successfulCount,
+                uptimePercentage
+        );
+    }
+
+    private static Map<String, Aggregation> bucketSubAggregations() {
+        return Map.of(
+                "latency_stats", Aggregation.of(agg -> agg
+                        .stats(StatsAggregation.of(st -> st.field("latencyMs")))),
+                "by_status", Aggregation.of(agg -> agg
+                        .terms(TermsAggregation.of(t -> t.field("status.keyword"))))
+        );
+    }
+
+    private static AnalyticsBucket toBucket(Instant start, Instant end, long docCount, Map<String, Aggregate> aggregations) {
+        return toBucket(start, end, docCount, aggregations, 1.0);
+    }
+
+    /**
+     * @param docCount    probes in the bucket, already scaled if sampled
+     * @param probability sampling probability of {@code aggregations}, whose counts are scaled by its inverse
+     */
+    private static AnalyticsBucket toBucket(Instant start, Instant end, long docCount, Map<String, Aggregate> aggregations,
+                                            double probability) {
+        long successful = 0;
+        long failed = 0;
+        for (StringTermsBucket statusBucket : aggregations.get("by_status").sterms().buckets().array()) {
+            if ("UP".equals(statusBucket.key().stringValue())) {
+                successful = scale(statusBucket.docCount(), probability);
+            } else if ("DOWN".equals(statusBucket.key().stringValue())) {
+                failed = scale(statusBucket.docCount(), probability);
+            }
+        }
+
+        StatsAggregate latency = aggregations.get("latency_stats").stats();
+        boolean hasLatency = latency.count() > 0;
+        return new AnalyticsBucket(
+                start,
+                end,
+                docCount,
+                successful,
+                failed,
+                scale(latency.count(), probability),
+                hasLatency ? latency.sum() / probability : 0.0,
+                hasLatency ? latency.min() : null,
+                hasLatency ? latency.max() : null
+        );
+    }
+
+    /**
+     * Build a query for several targets within a time range.
+     */
+    private Query buildFleetQuery(Collection<String> targetIds, Instant start, Instant end) {
+        List<FieldValue> values = targetIds.stream().map(FieldValue::of).toList();
         return Query.of(q -> q
                 .bool(BoolQuery.of(b -> b
                         .filter(Query.of(f -> f
-                                .term(TermQuery.of(t -> t
+                                .terms(TermsQuery.of(t -> t
                                         .field("targetId.keyword")
-                                        .value(targetId)
+                                        .terms(tf -> tf.value(values))
                                 ))
                         ))
                         .filter(Query.of(f -> f
@@ -204,9 +826,9 @@ public class ElasticsearchAnalyticsRepository {
     }
 
     /**
-     * Build a query for latency calculation (only include probes with latency data).
+     * Build a query for a target within a time range.
      */
-    private Query buildLatencyQuery(String targetId, Instant start, Instant end) {
+    private Query buildRangeQuery(String targetId, Instant start, Instant end) {
         return Query.of(q -> q
                 .bool(BoolQuery.of(b -> b
                         .filter(Query.of(f -> f
@@ -222,9 +844,6 @@ public class ElasticsearchAnalyticsRepository {
                                         .lte(JsonData.of(end.toString()))
                                 ))
                         ))
-                        .filter(Query.of(f -> f
-                                .exists(e -> e.field("latencyMs"))
-                        ))
                 ))
         );
     }
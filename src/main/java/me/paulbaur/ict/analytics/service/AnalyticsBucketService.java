@@ -0,0 +1,189 @@
+package me.paulbaur.ict.analytics.service;
+
+import lombok.extern.slf4j.Slf4j;
+import me.paulbaur.ict.analytics.domain.AnalyticsBucket;
+import me.paulbaur.ict.analytics.domain.TimeRange;
+import me.paulbaur.ict.analytics.repository.ElasticsearchAnalyticsRepository;
+import me.paulbaur.ict.common.logging.LogRateLimiter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+import static net.logstash.logback.argument.StructuredArguments.kv;
+
+/**
+ * Answers range aggregations from time-aligned buckets.
+ *
+ * <p>A range is split into an unaligned head, whole UTC days and hours that have closed, and
+ * an open tail ending at {@code end}. Closed buckets are immutable and cached in the
+ * {@value #BUCKET_CACHE} region under stable keys; the head, the tail and any uncached closed
+ * buckets are fetched together in one search. A rolling "last 24h" dashboard therefore
+ * re-queries only its two small edges on every refresh.</p>
+ *
+ * <p>Closed buckets without any probes are not cached: they may only be empty because ingest
+ * lagged behind the settle time, and would otherwise hide the late results for the cache TTL.</p>
+ */
+@Service
+@Slf4j
+public class AnalyticsBucketService {
+
+    public static final String BUCKET_CACHE = "analytics-buckets";
+
+    private static final Duration HOUR = Duration.ofHours(1);
+    private static final Duration DAY = Duration.ofDays(1);
+    private static final LogRateLimiter cacheFailureLimiter = new LogRateLimiter(Duration.ofMinutes(1));
+
+    private final ElasticsearchAnalyticsRepository analyticsRepository;
+    private final CacheManager cacheManager;
+    private final Clock clock;
+
+    // How long after a bucket's end late results may still arrive before it is treated as closed
+    @Value("${ict.analytics.bucket-settle-time:60s}")
+    private Duration settleTime = Duration.ofSeconds(60);
+
+    @Autowired
+    public AnalyticsBucketService(ElasticsearchAnalyticsRepository analyticsRepository, CacheManager cacheManager) {
+        this(analyticsRepository, cacheManager, Clock.systemUTC());
+    }
+
+    AnalyticsBucketService(ElasticsearchAnalyticsRepository analyticsRepository, CacheManager cacheManager, Clock clock) {
+        this.analyticsRepository = analyticsRepository;
+        this.cacheManager = cacheManager;
+        this.clock = clock;
+    }
+
+    /**
+     * Aggregate all probes of a target with {@code start <= timestamp <= end} into one bucket.
+     */
+    public AnalyticsBucket aggregate(String targetId, Instant start, Instant end) throws IOException {
+        // Inclusive end, matching the other analytics queries
+        Instant endExclusive = end.plusMillis(1);
+        Instant alignedStart = ceilToHour(start);
+        Instant closedEnd = min(end.truncatedTo(ChronoUnit.HOURS), clock.instant().minus(settleTime).truncatedTo(ChronoUnit.HOURS));
+
+        if (!alignedStart.isBefore(closedEnd)) {
+            return analyticsRepository.calculateBuckets(targetId, List.of(new TimeRange(start, endExclusive))).get(0);
+        }
+
+        List<TimeRange> closedRanges = closedRanges(alignedStart, closedEnd);
+        List<TimeRange> toQuery = new ArrayList<>();
+        AnalyticsBucket result = AnalyticsBucket.empty(start, endExclusive);
+
+        Cache cache = bucketCache();
+        for (TimeRange range : closedRanges) {
+            AnalyticsBucket cached = getCached(cache, targetId, range);
+            if (cached != null) {
+                result = result.merge(cached);
+            } else {
+                toQuery.add(range);
+            }
+        }
+        int missingClosed = toQuery.size();
+
+        if (start.isBefore(alignedStart)) {
+            toQuery.add(new TimeRange(start, alignedStart));
+        }
+        toQuery.add(new TimeRange(closedEnd, endExclusive));
+
+        List<AnalyticsBucket> fetched = analyticsRepository.calculateBuckets(targetId, toQuery);
+        for (int i = 0; i < fetched.size(); i++) {
+            AnalyticsBucket bucket = fetched.get(i);
+            if (i < missingClosed && bucket.totalProbes() > 0) {
+                putCached(cache, targetId, bucket);
+            }
+            result = result.merge(bucket);
+        }
+
+        log.debug("Aggregated analytics from buckets",
+                kv("targetId", targetId),
+                kv("closedBuckets", closedRanges.size()),
+                kv("cachedBuckets", closedRanges.size() - missingClosed),
+                kv("queriedRanges", toQuery.size()));
+
+        return result;
+    }
+
+    /**
+     * Split {@code [from, to)} (both hour-aligned) into whole UTC days where possible and hours otherwise.
+     */
+    static List<TimeRange> closedRanges(Instant from, Instant to) {
+        List<TimeRange> ranges = new ArrayList<>();
+        Instant cursor = from;
+        while (cursor.isBefore(to)) {
+            Duration size = cursor.equals(cursor.truncatedTo(ChronoUnit.DAYS)) && !cursor.plus(DAY).isAfter(to)
+                    ? DAY
+                    : HOUR;
+            Instant next = cursor.plus(size);
+            ranges.add(new TimeRange(cursor, next));
+            cursor = next;
+        }
+        return ranges;
+    }
+
+    static String cacheKey(String targetId, TimeRange range) {
+        String size = Duration.between(range.start(), range.end()).equals(DAY) ? "1d" : "1h";
+        return targetId + ":" + size + ":" + range.start().getEpochSecond();
+    }
+
+    private Cache bucketCache() {
+        try {
+            return cacheManager.getCache(BUCKET_CACHE);
+        } catch (RuntimeException e) {
+            log.warn("Analytics bucket cache unavailable", kv("error", e.getMessage()));
+            return null;
+        }
+    }
+
+    private AnalyticsBucket getCached(Cache cache, String targetId, TimeRange range) {
+        if (cache == null) {
+            return null;
+        }
+        try {
+            return cache.get(cacheKey(targetId, range), AnalyticsBucket.class);
+        } catch (RuntimeException e) {
+            // A cache outage or an unreadable entry must not fail analytics; fall back to querying the bucket
+            logCacheFailure("read", targetId, e);
+            return null;
+        }
+    }
+
+    private void putCached(Cache cache, String targetId, AnalyticsBucket bucket) {
+        if (cache == null) {
+            return;
+        }
+        try {
+            cache.put(cacheKey(targetId, new TimeRange(bucket.start(), bucket.end())), bucket);
+        } catch (RuntimeException e) {
+            logCacheFailure("write", targetId, e);
+        }
+    }
+
+    // Rate limited: while Redis is down or a bucket cannot be serialized, every aggregation fails the same way
+    private static void logCacheFailure(String operation, String targetId, RuntimeException e) {
+        if (cacheFailureLimiter.shouldLog(operation)) {
+            log.warn("Failed to " + operation + " analytics bucket cache",
+                    kv("targetId", targetId),
+                    kv("error", e.getMessage()),
+                    e);
+        }
+    }
+
+    private static Instant ceilToHour(Instant instant) {
+        Instant floor = instant.truncatedTo(ChronoUnit.HOURS);
+        return floor.equals(instant) ? floor : floor.plus(HOUR);
+    }
+
+    private static Instant min(Instant a, Instant b) {
+        return a.isBefore(b) ? a : b;
+    }
+}
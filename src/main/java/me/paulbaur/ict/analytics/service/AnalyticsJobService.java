@@ -0,0 +1,274 @@
+package me.paulbaur.ict.analytics.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import me.paulbaur.ict.analytics.domain.AnalyticsJob;
+import me.paulbaur.ict.analytics.domain.AnalyticsJobRequest;
+import me.paulbaur.ict.analytics.domain.AnalyticsJobStatus;
+import me.paulbaur.ict.common.exception.DeadlineExceededException;
+import me.paulbaur.ict.common.exception.NotFoundException;
+import me.paulbaur.ict.common.exception.QueryTooExpensiveException;
+import me.paulbaur.ict.common.exception.ServiceUnavailableException;
+import me.paulbaur.ict.common.logging.LoggingContext;
+import me.paulbaur.ict.common.web.RequestCorrelationFilter;
+import me.paulbaur.ict.common.web.RequestDeadline;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import static net.logstash.logback.argument.StructuredArguments.kv;
+
+/**
+ * Runs expensive analytics requests as jobs on a bounded executor, so they do not hold a servlet
+ * thread for the whole Elasticsearch call.
+ *
+ * <p>Identical submissions share one job while it is queued, running or recently succeeded.
+ * Results come from the same cached service methods as the synchronous endpoints, so a finished
+ * job also warms the cache for them. Jobs are kept in memory on the node that accepted them and
+ * dropped {@code ict.analytics.jobs.retention} after they finish.</p>
+ *
+ * <p>A job runs under its own deadline instead of the submitting request's, and keeps that
+ * request's ID so its Elasticsearch tasks can be traced back to it.</p>
+ */
+@Service
+@Slf4j
+public class AnalyticsJobService {
+
+    private final ProbeAnalyticsService analyticsService;
+    private final FleetAnalyticsService fleetAnalyticsService;
+    private final Executor executor;
+    private final MeterRegistry meterRegistry;
+    private final Clock clock;
+
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+    private final Map<AnalyticsJobRequest, Job> jobsByRequest = new ConcurrentHashMap<>();
+
+    // How long finished jobs and their results stay available for polling
+    @Value("${ict.analytics.jobs.retention:15m}")
+    private Duration retention = Duration.ofMinutes(15);
+
+    // Elasticsearch requests of a job still running this long after it started are cancelled
+    @Value("${ict.analytics.jobs.deadline:5m}")
+    private Duration deadline = Duration.ofMinutes(5);
+
+    // Jobs kept at once, finished or not; further submissions are rejected with 503
+    @Value("${ict.analytics.jobs.max-retained:1000}")
+    private int maxRetained = 1000;
+
+    @Autowired
+    public AnalyticsJobService(ProbeAnalyticsService analyticsService,
+                               FleetAnalyticsService fleetAnalyticsService,
+                               @Qualifier("analyticsJobExecutor") Executor executor,
+                               MeterRegistry meterRegistry) {
+        this(analyticsService, fleetAnalyticsService, executor, meterRegistry, Clock.systemUTC());
+    }
+
+    AnalyticsJobService(ProbeAnalyticsService analyticsService,
+                        FleetAnalyticsService fleetAnalyticsService,
+                        Executor executor,
+                        MeterRegistry meterRegistry,
+                        Clock clock) {
+        this.analyticsService = analyticsService;
+        this.fleetAnalyticsService = fleetAnalyticsService;
+        this.executor = executor;
+        this.meterRegistry = meterRegistry;
+        this.clock = clock;
+        meterRegistry.gauge("analytics.jobs.retained", jobs, Map::size);
+    }
+
+    /**
+     * Submit a job, or return the job already computing or holding the same result.
+     *
+     * @throws ServiceUnavailableException if too many jobs are queued or retained
+     */
+    public AnalyticsJob submit(AnalyticsJobRequest request) {
+        Job existing = jobsByRequest.get(request);
+        if (existing != null && existing.status != AnalyticsJobStatus.FAILED) {
+            count("reused");
+            return existing.snapshot();
+        }
+        if (jobs.size() >= maxRetained) {
+            prune();
+            if (jobs.size() >= maxRetained) {
+                count("rejected");
+                throw new ServiceUnavailableException("Too many analytics jobs, retry later");
+            }
+        }
+
+        // Checked again atomically, so concurrent identical submissions still share one job
+        Job[] created = new Job[1];
+        Job job = jobsByRequest.compute(request, (key, current) -> {
+            if (current != null && current.status != AnalyticsJobStatus.FAILED) {
+                return current;
+            }
+            created[0] = new Job(UUID.randomUUID().toString(), request, MDC.get(RequestCorrelationFilter.MDC_KEY), clock.instant());
+            jobs.put(created[0].id, created[0]);
+            return created[0];
+        });
+        if (created[0] == null) {
+            count("reused");
+            return job.snapshot();
+        }
+        try {
+            executor.execute(() -> run(job));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.id);
+            jobsByRequest.remove(request, job);
+            count("rejected");
+            throw new ServiceUnavailableException("Analytics job queue is full, retry later", e);
+        }
+
+        log.info("Submitted analytics job",
+                kv("jobId", job.id),
+                kv("type", request.type()),
+                kv("targets", request.targetIds().size()),
+                kv("start", request.start()),
+                kv("end", request.end()));
+        return job.snapshot();
+    }
+
+    /**
+     * Current state of a job, or empty if it is unknown or has expired.
+     */
+    public Optional<AnalyticsJob> findJob(String jobId) {
+        return Optional.ofNullable(jobs.get(jobId)).map(Job::snapshot);
+    }
+
+    /**
+     * Completes with the final state of a job once it has finished.
+     *
+     * @throws NotFoundException if the job is unknown or has expired
+     */
+    public CompletableFuture<AnalyticsJob> whenDone(String jobId) {
+        Job job = jobs.get(jobId);
+        if (job == null) {
+            throw new NotFoundException("Analytics job not found: " + jobId);
+        }
+        return job.done;
+    }
+
+    /**
+     * Drop finished jobs past the retention period.
+     */
+    @Scheduled(fixedDelayString = "${ict.analytics.jobs.prune-interval-ms:60000}")
+    public void prune() {
+        Instant cutoff = clock.instant().minus(retention);
+        jobs.values().removeIf(job -> {
+            Instant completedAt = job.completedAt;
+            boolean expired = completedAt != null && completedAt.isBefore(cutoff);
+            if (expired) {
+                jobsByRequest.remove(job.request, job);
+            }
+            return expired;
+        });
+    }
+
+    private void run(Job job) {
+        job.startedAt = clock.instant();
+        job.status = AnalyticsJobStatus.RUNNING;
+        AnalyticsJobStatus outcome = AnalyticsJobStatus.FAILED;
+        String requestId = job.requestId != null ? job.requestId : job.id;
+        try (LoggingContext ignored = LoggingContext.withValue(RequestCorrelationFilter.MDC_KEY, requestId);
+             RequestDeadline ignoredDeadline = RequestDeadline.at(job.startedAt.plus(deadline))) {
+            job.result = compute(job.request);
+            outcome = AnalyticsJobStatus.SUCCEEDED;
+        } catch (RuntimeException e) {
+            job.errorCode = errorCode(e);
+            job.errorMessage = "INTERNAL_ERROR".equals(job.errorCode) ? "Analytics job failed" : e.getMessage();
+            log.warn("Analytics job failed",
+                    kv("jobId", job.id),
+                    kv("type", job.request.type()),
+                    kv("errorCode", job.errorCode),
+                    kv("error", e.getMessage()));
+        } finally {
+            // An Error still propagates to the executor, but must not leave the job RUNNING forever
+            if (outcome == AnalyticsJobStatus.FAILED && job.errorCode == null) {
+                job.errorCode = "INTERNAL_ERROR";
+                job.errorMessage = "Analytics job failed";
+            }
+            job.completedAt = clock.instant();
+            // Written last, so a snapshot that sees the final status also sees the result
+            job.status = outcome;
+            count(outcome.name().toLowerCase());
+            job.done.complete(job.snapshot());
+        }
+    }
+
+    private Object compute(AnalyticsJobRequest request) {
+        return switch (request.type()) {
+            case DASHBOARD -> analyticsService.getDashboard(
+                    request.targetIds().get(0), request.start(), request.end(), request.interval());
+            case FLEET_UPTIME -> fleetAnalyticsService.getUptimeMetrics(
+                    request.targetIds(), request.start(), request.end());
+            case FLEET_LATENCY -> fleetAnalyticsService.getLatencyMetrics(
+                    request.targetIds(), request.start(), request.end());
+            case FLEET_TIME_SERIES -> fleetAnalyticsService.getTimeSeries(
+                    request.targetIds(), request.start(), request.end(), request.interval());
+            case LATENCY_HEATMAP -> fleetAnalyticsService.getLatencyHeatmap(
+                    request.targetIds(), request.start(), request.end(), request.interval(),
+                    request.latencyBucketMs(), request.maxLatencyMs());
+        };
+    }
+
+    // Same codes the synchronous endpoints return for these failures
+    private static String errorCode(RuntimeException e) {
+        if (e instanceof IllegalArgumentException) {
+            return "VALIDATION_ERROR";
+        }
+        if (e instanceof QueryTooExpensiveException) {
+            return "QUERY_TOO_EXPENSIVE";
+        }
+        if (e instanceof ServiceUnavailableException) {
+            return "SERVICE_UNAVAILABLE";
+        }
+        if (e instanceof DeadlineExceededException) {
+            return "DEADLINE_EXCEEDED";
+        }
+        return "INTERNAL_ERROR";
+    }
+
+    private void count(String outcome) {
+        meterRegistry.counter("analytics.jobs", "outcome", outcome).increment();
+    }
+
+    private static final class Job {
+        private final String id;
+        private final AnalyticsJobRequest request;
+        private final String requestId;
+        private final Instant submittedAt;
+        private final CompletableFuture<AnalyticsJob> done = new CompletableFuture<>();
+
+        private volatile AnalyticsJobStatus status = AnalyticsJobStatus.QUEUED;
+        private volatile Instant startedAt;
+        private volatile Instant completedAt;
+        private volatile Object result;
+        private volatile String errorCode;
+        private volatile String errorMessage;
+
+        private Job(String id, AnalyticsJobRequest request, String requestId, Instant submittedAt) {
+            this.id = id;
+            this.request = request;
+            this.requestId = requestId;
+            this.submittedAt = submittedAt;
+        }
+
+        private AnalyticsJob snapshot() {
+            return new AnalyticsJob(id, request.type(), status, submittedAt, startedAt, completedAt,
+                    result, errorCode, errorMessage);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package me.paulbaur.ict.analytics.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import me.paulbaur.ict.analytics.domain.AnalyticsQueryPlan;
+import me.paulbaur.ict.analytics.repository.ElasticsearchAnalyticsRepository;
+import me.paulbaur.ict.analytics.service.ProbeAnalyticsService.AnalyticsException;
+import me.paulbaur.ict.common.exception.QueryTooExpensiveException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Collection;
+
+import static net.logstash.logback.argument.StructuredArguments.kv;
+
+/**
+ * Cost guard for analytics searches over raw probe results. Counts the documents a request would
+ * aggregate before running it, then runs it exactly, runs it over a random sample, or rejects it.
+ *
+ * <p>Results that can report sampling error are sampled above {@code sample-above-docs}, at a
+ * probability that reads about {@code sample-size} documents. Other results are rejected above
+ * {@code max-docs}. Per-target uptime and latency are not planned: they are assembled from cached
+ * hourly and daily rollups by {@link AnalyticsBucketService}.</p>
+ */
+@Service
+@Slf4j
+public class AnalyticsQueryPlanner {
+
+    // random_sampler accepts probabilities up to 0.5; closer to 1 sampling saves little anyway
+    private static final double MAX_SAMPLING_PROBABILITY = 0.5;
+
+    private final ElasticsearchAnalyticsRepository analyticsRepository;
+    private final Counter exactPlans;
+    private final Counter sampledPlans;
+    private final Counter rejectedPlans;
+
+    @Value("${ict.analytics.query-guard.sample-above-docs:5000000}")
+    private long sampleAboveDocs = 5_000_000;
+
+    @Value("${ict.analytics.query-guard.sample-size:500000}")
+    private long sampleSize = 500_000;
+
+    @Value("${ict.analytics.query-guard.max-docs:50000000}")
+    private long maxDocs = 50_000_000;
+
+    public AnalyticsQueryPlanner(ElasticsearchAnalyticsRepository analyticsRepository, MeterRegistry meterRegistry) {
+        this.analyticsRepository = analyticsRepository;
+        this.exactPlans = planCounter(meterRegistry, "exact");
+        this.sampledPlans = planCounter(meterRegistry, "sampled");
+        this.rejectedPlans = planCounter(meterRegistry, "rejected");
+    }
+
+    /**
+     * Plan a search over the probes of {@code targetIds} with {@code start <= timestamp <= end}.
+     *
+     * @param samplingSupported whether the result can report sampling, and so may be sampled
+     * @throws QueryTooExpensiveException if the search may not be sampled and would read more than {@code max-docs}
+     */
+    public AnalyticsQueryPlan plan(Collection<String> targetIds, Instant start, Instant end, boolean samplingSupported) {
+        // Only whether the limit is exceeded matters when the search cannot be sampled
+        long estimatedDocs = count(targetIds, start, end, samplingSupported ? 0 : maxDocs + 1);
+
+        if (samplingSupported && estimatedDocs > sampleAboveDocs) {
+            double probability = (double) sampleSize / estimatedDocs;
+            if (probability <= MAX_SAMPLING_PROBABILITY) {
+                sampledPlans.increment();
+                log.info("Sampling analytics query",
+                        kv("targets", targetIds.size()),
+                        kv("start", start),
+                        kv("end", end),
+                        kv("estimatedDocs", estimatedDocs),
+                        kv("samplingProbability", probability));
+                return new AnalyticsQueryPlan(estimatedDocs, probability);
+            }
+        }
+        if (!samplingSupported && estimatedDocs > maxDocs) {
+            rejectedPlans.increment();
+            throw new QueryTooExpensiveException("The query would aggregate more than " + maxDocs
+                    + " probes; narrow the time range or the set of targets");
+        }
+        exactPlans.increment();
+        return AnalyticsQueryPlan.exact(estimatedDocs);
+    }
+
+    private long count(Collection<String> targetIds, Instant start, Instant end, long limit) {
+        try {
+            return analyticsRepository.countProbes(targetIds, start, end, limit);
+        } catch (IOException e) {
+            log.error("Failed to estimate analytics query size", kv("targets", targetIds.size()), kv("error", e.getMessage()), e);
+            throw new AnalyticsException("Failed to estimate the size of the query", e);
+        }
+    }
+
+    private static Counter planCounter(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("analytics.query.plans")
+                .tag("outcome", outcome)
+                .description("Analytics searches planned by the query cost guard")
+                .register(meterRegistry);
+    }
+}
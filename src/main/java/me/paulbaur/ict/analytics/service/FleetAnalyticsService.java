@@ -0,0 +1,236 @@
+package me.paulbaur.ict.analytics.service;
+
+import lombok.extern.slf4j.Slf4j;
+import me.paulbaur.ict.analytics.domain.AnalyticsBucket;
+import me.paulbaur.ict.analytics.domain.AnalyticsQueryPlan;
+import me.paulbaur.ict.analytics.domain.LatencyHeatmap;
+import me.paulbaur.ict.analytics.domain.LatencyMetrics;
+import me.paulbaur.ict.analytics.domain.TargetTimeSeries;
+import me.paulbaur.ict.analytics.domain.TimeSeriesDataPoint;
+import me.paulbaur.ict.analytics.domain.UptimeMetrics;
+import me.paulbaur.ict.analytics.repository.ElasticsearchAnalyticsRepository;
+import me.paulbaur.ict.analytics.service.ProbeAnalyticsService.AnalyticsException;
+import me.paulbaur.ict.common.cache.SingleFlightCache;
+import me.paulbaur.ict.target.domain.Target;
+import me.paulbaur.ict.target.store.TargetRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeSet;
+import java.util.UUID;
+
+import static net.logstash.logback.argument.StructuredArguments.kv;
+
+/**
+ * Analytics for many targets at once, each answered by a single Elasticsearch search with a
+ * {@code terms} aggregation on the target ID instead of one search per target.
+ *
+ * <p>Uptime and latency share one cached aggregation per target set and range. Trailing
+ * standard uptime windows are answered from the in-memory counters when available.</p>
+ */
+@Service
+@Slf4j
+public class FleetAnalyticsService {
+
+    public static final String ALL_TARGETS = "all";
+    public static final int MAX_TARGETS = 1000;
+    public static final int MAX_LATENCY_BUCKETS = 500;
+
+    private final ElasticsearchAnalyticsRepository analyticsRepository;
+    private final TargetRepository targetRepository;
+    private final UptimeCounterService uptimeCounters;
+    private final SingleFlightCache analyticsResultCache;
+    private final AnalyticsQueryPlanner queryPlanner;
+
+    @Value("${ict.analytics.time-series.target-buckets:200}")
+    private int timeSeriesTargetBuckets = 200;
+
+    // Total data points across all targets of one fleet time series; bounds the aggregation size
+    @Value("${ict.analytics.fleet.max-buckets:20000}")
+    private int fleetMaxBuckets = 20_000;
+
+    // Cells (time buckets x latency buckets) of one latency heatmap; bounds the aggregation size
+    @Value("${ict.analytics.heatmap.max-cells:50000}")
+    private int heatmapMaxCells = 50_000;
+
+    public FleetAnalyticsService(ElasticsearchAnalyticsRepository analyticsRepository,
+                                 TargetRepository targetRepository,
+                                 UptimeCounterService uptimeCounters,
+                                 SingleFlightCache analyticsResultCache,
+                                 AnalyticsQueryPlanner queryPlanner) {
+        this.analyticsRepository = analyticsRepository;
+        this.targetRepository = targetRepository;
+        this.uptimeCounters = uptimeCounters;
+        this.analyticsResultCache = analyticsResultCache;
+        this.queryPlanner = queryPlanner;
+    }
+
+    /**
+     * Resolve the requested target IDs, or every known target for {@code all}, sorted and deduplicated.
+     *
+     * @throws IllegalArgumentException if more than {@value #MAX_TARGETS} targets are requested
+     */
+    public List<String> resolveTargets(Collection<String> requested) {
+        TreeSet<String> targetIds = new TreeSet<>();
+        if (requested == null || requested.isEmpty() || requested.stream().anyMatch(ALL_TARGETS::equalsIgnoreCase)) {
+            for (Target target : targetRepository.findAll()) {
+                targetIds.add(target.getId().toString());
+            }
+        } else {
+            for (String targetId : requested) {
+                if (targetId == null || targetId.isBlank()) {
+                    throw new IllegalArgumentException("targets must not contain blank IDs");
+                }
+                targetIds.add(targetId.trim());
+            }
+        }
+        if (targetIds.size() > MAX_TARGETS) {
+            throw new IllegalArgumentException("at most " + MAX_TARGETS + " targets can be requested at once");
+        }
+        return new ArrayList<>(targetIds);
+    }
+
+    public List<UptimeMetrics> getUptimeMetrics(List<String> targetIds, Instant start, Instant end) {
+        List<UptimeMetrics> fromCounters = new ArrayList<>(targetIds.size());
+        for (String targetId : targetIds) {
+            Optional<UptimeMetrics> metrics = uptimeCounters.getUptimeMetrics(targetId, start, end);
+            if (metrics.isEmpty()) {
+                break;
+            }
+            fromCounters.add(metrics.get());
+        }
+        if (fromCounters.size() == targetIds.size()) {
+            return fromCounters;
+        }
+
+        return fleetBuckets(targetIds, start, end).entrySet().stream()
+                .map(entry -> UptimeMetrics.calculate(
+                        entry.getKey(),
+                        start,
+                        end,
+                        entry.getValue().totalProbes(),
+                        entry.getValue().successfulProbes(),
+                        entry.getValue().failedProbes()))
+                .toList();
+    }
+
+    public List<LatencyMetrics> getLatencyMetrics(List<String> targetIds, Instant start, Instant end) {
+        return fleetBuckets(targetIds, start, end).entrySet().stream()
+                .map(entry -> new LatencyMetrics(
+                        entry.getKey(),
+                        start,
+                        end,
+                        entry.getValue().averageLatencyMs(),
+                        entry.getValue().minLatencyMs(),
+                        entry.getValue().maxLatencyMs(),
+                        entry.getValue().latencyCount()))
+                .toList();
+    }
+
+    /**
+     * Time series of every target with one shared interval. The bucket budget is split across the
+     * targets, so {@code auto} gets coarser as the fleet grows.
+     *
+     * @throws IllegalArgumentException if an explicit interval would exceed the fleet bucket budget
+     */
+    public List<TargetTimeSeries> getTimeSeries(List<String> targetIds, Instant start, Instant end, String interval) {
+        if (targetIds.isEmpty()) {
+            return List.of();
+        }
+        int perTargetMax = Math.max(1, fleetMaxBuckets / targetIds.size());
+        Duration resolved = TimeSeriesIntervals.resolve(interval, start, end,
+                Math.min(timeSeriesTargetBuckets, perTargetMax), perTargetMax);
+
+        Map<String, List<TimeSeriesDataPoint>> series = analyticsResultCache.get(
+                "fleet-time-series-" + fingerprint(targetIds) + "-" + start.getEpochSecond() + "-" + end.getEpochSecond()
+                        + "-" + resolved.toSeconds(),
+                () -> {
+                    log.info("Calculating fleet time series", kv("targets", targetIds.size()), kv("start", start),
+                            kv("end", end), kv("interval", resolved));
+                    queryPlanner.plan(targetIds, start, end, false);
+                    try {
+                        return analyticsRepository.calculateFleetTimeSeries(targetIds, start, end, resolved);
+                    } catch (IOException e) {
+                        log.error("Failed to calculate fleet time series", kv("targets", targetIds.size()), kv("error", e.getMessage()), e);
+                        throw new AnalyticsException("Failed to calculate time series for " + targetIds.size() + " targets", e);
+                    }
+                });
+        return series.entrySet().stream()
+                .map(entry -> new TargetTimeSeries(entry.getKey(), entry.getValue()))
+                .toList();
+    }
+
+    /**
+     * Time x latency count matrix of the given targets combined. Latency buckets are
+     * {@code latencyBucketMs} wide up to {@code maxLatencyMs}, plus one open-ended bucket above it;
+     * the time interval is chosen so the matrix stays within the heatmap cell budget. Very large
+     * ranges are computed from a random sample, reported in {@link LatencyHeatmap#sampling()}.
+     *
+     * @throws IllegalArgumentException if the latency buckets are invalid or an explicit interval
+     *                                  would exceed the cell budget
+     */
+    public LatencyHeatmap getLatencyHeatmap(List<String> targetIds, Instant start, Instant end, String interval,
+                                            double latencyBucketMs, double maxLatencyMs) {
+        if (!(latencyBucketMs > 0) || Double.isInfinite(latencyBucketMs)) {
+            throw new IllegalArgumentException("latencyBucketMs must be positive");
+        }
+        if (!(maxLatencyMs >= latencyBucketMs) || Double.isInfinite(maxLatencyMs)) {
+            throw new IllegalArgumentException("maxLatencyMs must be at least latencyBucketMs");
+        }
+        long latencyBuckets = (long) Math.ceil(maxLatencyMs / latencyBucketMs);
+        if (latencyBuckets > MAX_LATENCY_BUCKETS) {
+            throw new IllegalArgumentException("maxLatencyMs / latencyBucketMs must not exceed " + MAX_LATENCY_BUCKETS
+                    + ", use wider latency buckets");
+        }
+        int columns = (int) latencyBuckets;
+        int maxRows = Math.max(1, heatmapMaxCells / (columns + 1));
+        Duration resolved = TimeSeriesIntervals.resolve(interval, start, end,
+                Math.min(timeSeriesTargetBuckets, maxRows), maxRows);
+
+        return analyticsResultCache.get(
+                "latency-heatmap-" + fingerprint(targetIds) + "-" + start.getEpochSecond() + "-" + end.getEpochSecond()
+                        + "-" + resolved.toSeconds() + "-" + latencyBucketMs + "-" + columns,
+                () -> {
+                    log.info("Calculating latency heatmap", kv("targets", targetIds.size()), kv("start", start),
+                            kv("end", end), kv("interval", resolved), kv("latencyBuckets", columns));
+                    AnalyticsQueryPlan plan = queryPlanner.plan(targetIds, start, end, true);
+                    try {
+                        return analyticsRepository.calculateLatencyHeatmap(targetIds, start, end, resolved, latencyBucketMs, columns, plan);
+                    } catch (IOException e) {
+                        log.error("Failed to calculate latency heatmap", kv("targets", targetIds.size()), kv("error", e.getMessage()), e);
+                        throw new AnalyticsException("Failed to calculate latency heatmap for " + targetIds.size() + " targets", e);
+                    }
+                });
+    }
+
+    private Map<String, AnalyticsBucket> fleetBuckets(List<String> targetIds, Instant start, Instant end) {
+        return analyticsResultCache.get(
+                "fleet-buckets-" + fingerprint(targetIds) + "-" + start.getEpochSecond() + "-" + end.getEpochSecond(),
+                () -> {
+                    log.info("Calculating fleet analytics", kv("targets", targetIds.size()), kv("start", start), kv("end", end));
+                    queryPlanner.plan(targetIds, start, end, false);
+                    try {
+                        return analyticsRepository.calculateFleetBuckets(targetIds, start, end);
+                    } catch (IOException e) {
+                        log.error("Failed to calculate fleet analytics", kv("targets", targetIds.size()), kv("error", e.getMessage()), e);
+                        throw new AnalyticsException("Failed to calculate analytics for " + targetIds.size() + " targets", e);
+                    }
+                });
+    }
+
+    /**
+     * Short, stable cache key component for a sorted target list.
+     */
+    private static String fingerprint(List<String> targetIds) {
+        return UUID.nameUUIDFromBytes(String.join(",", targetIds).getBytes(StandardCharsets.UTF_8)).toString();
+    }
+}
@@ -0,0 +1,124 @@
+package me.paulbaur.ict.analytics.service;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One row per round of the probe rotation, with one bit per target for "probed" and "down".
+ *
+ * <p>The scheduler probes one target per tick, so a round is closed as soon as a target that is
+ * already in the open round reports again. Closed rows keep their bits as trimmed {@code long[]}
+ * words, a handful of longs for a few hundred targets, in a fixed-size ring; the oldest row is
+ * overwritten when it is full. Targets are numbered densely in the order they are first seen.
+ * Not thread-safe.</p>
+ */
+final class FleetStatusMatrix {
+
+    private final Map<String, Integer> ordinals = new HashMap<>();
+    private final List<String> targetIds = new ArrayList<>();
+
+    private final String[] cycleIds;
+    private final long[] startMillis;
+    private final long[] endMillis;
+    private final long[][] probedWords;
+    private final long[][] downWords;
+    private int next;
+    private int size;
+
+    private final BitSet openProbed = new BitSet();
+    private final BitSet openDown = new BitSet();
+    private String openCycleId;
+    private long openStartMillis;
+    private long openEndMillis = Long.MIN_VALUE;
+
+    FleetStatusMatrix(int capacity) {
+        this.cycleIds = new String[capacity];
+        this.startMillis = new long[capacity];
+        this.endMillis = new long[capacity];
+        this.probedWords = new long[capacity][];
+        this.downWords = new long[capacity][];
+    }
+
+    void record(String targetId, boolean down, String probeCycleId, long timestampMillis) {
+        int ordinal = ordinal(targetId);
+        if (openProbed.get(ordinal)) {
+            closeRound();
+        }
+        if (openProbed.isEmpty()) {
+            openCycleId = probeCycleId;
+            openStartMillis = timestampMillis;
+        }
+        openProbed.set(ordinal);
+        openDown.set(ordinal, down);
+        openEndMillis = Math.max(openEndMillis, timestampMillis);
+    }
+
+    /**
+     * Closed rounds that started within {@code [fromMillis, toMillis]}, oldest first.
+     */
+    List<Round> rounds(long fromMillis, long toMillis) {
+        List<Round> rounds = new ArrayList<>();
+        int capacity = cycleIds.length;
+        for (int i = 0; i < size; i++) {
+            int index = (next - size + i + capacity) % capacity;
+            if (startMillis[index] >= fromMillis && startMillis[index] <= toMillis) {
+                rounds.add(round(index));
+            }
+        }
+        return rounds;
+    }
+
+    /**
+     * The most recently closed round, or null if none has closed yet.
+     */
+    Round latest() {
+        return size == 0 ? null : round((next - 1 + cycleIds.length) % cycleIds.length);
+    }
+
+    String targetId(int ordinal) {
+        return targetIds.get(ordinal);
+    }
+
+    List<String> targetIds(BitSet ordinalSet) {
+        List<String> ids = new ArrayList<>(ordinalSet.cardinality());
+        for (int ordinal = ordinalSet.nextSetBit(0); ordinal >= 0; ordinal = ordinalSet.nextSetBit(ordinal + 1)) {
+            ids.add(targetIds.get(ordinal));
+        }
+        return ids;
+    }
+
+    private void closeRound() {
+        cycleIds[next] = openCycleId;
+        startMillis[next] = openStartMillis;
+        endMillis[next] = openEndMillis;
+        probedWords[next] = openProbed.toLongArray();
+        downWords[next] = openDown.toLongArray();
+        next = (next + 1) % cycleIds.length;
+        size = Math.min(size + 1, cycleIds.length);
+
+        openProbed.clear();
+        openDown.clear();
+        openEndMillis = Long.MIN_VALUE;
+    }
+
+    private Round round(int index) {
+        return new Round(cycleIds[index], startMillis[index], endMillis[index],
+                BitSet.valueOf(probedWords[index]), BitSet.valueOf(downWords[index]));
+    }
+
+    private int ordinal(String targetId) {
+        Integer ordinal = ordinals.get(targetId);
+        if (ordinal == null) {
+            ordinal = targetIds.size();
+            ordinals.put(targetId, ordinal);
+            targetIds.add(targetId);
+        }
+        return ordinal;
+    }
+
+    record Round(String probeCycleId, long startMillis, long endMillis, BitSet probed, BitSet down) {
+    }
+}
@@ -0,0 +1,204 @@
+package me.paulbaur.ict.analytics.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import me.paulbaur.ict.analytics.domain.LatencyAnomaly;
+import me.paulbaur.ict.analytics.domain.LatencyBaseline;
+import me.paulbaur.ict.analytics.event.LatencyAnomalyEvent;
+import me.paulbaur.ict.common.metrics.ProbeMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static net.logstash.logback.argument.StructuredArguments.kv;
+
+/**
+ * Streaming latency baseline per target: an exponentially weighted moving mean and variance,
+ * updated in O(1) per probe result without reading history.
+ *
+ * <p>A sample more than {@code k-sigma} standard deviations above the mean, once the baseline
+ * has seen {@code warmup-samples}, is anomalous. The first anomalous sample of a run publishes
+ * a {@link LatencyAnomalyEvent}, counts in {@code probe.latency.anomalies} and is kept in a short
+ * in-memory history; the run ends with the first normal sample. Anomalous samples still update
+ * the baseline, so a lasting shift becomes the new normal.</p>
+ *
+ * <p>State is per node and starts empty; only the node that runs the probes sees samples.</p>
+ */
+@Service
+@Slf4j
+public class LatencyBaselineService {
+
+    private static final int MAX_RECENT_ANOMALIES = 500;
+
+    private final ApplicationEventPublisher eventPublisher;
+    private final ProbeMetrics probeMetrics;
+    private final Clock clock;
+
+    private final Map<String, Baseline> baselines = new ConcurrentHashMap<>();
+    private final Deque<LatencyAnomaly> recentAnomalies = new ArrayDeque<>();
+
+    // Weight of each new sample; 0.05 gives a memory of roughly the last 20-40 samples
+    @Value("${ict.analytics.latency-baseline.alpha:0.05}")
+    private double alpha = 0.05;
+
+    @Value("${ict.analytics.latency-baseline.k-sigma:4.0}")
+    private double kSigma = 4.0;
+
+    @Value("${ict.analytics.latency-baseline.warmup-samples:30}")
+    private int warmupSamples = 30;
+
+    // Floor for the standard deviation so jitter on very stable targets is not flagged
+    @Value("${ict.analytics.latency-baseline.min-std-dev-ms:1.0}")
+    private double minStdDevMs = 1.0;
+
+    @Value("${ict.analytics.latency-baseline.idle-timeout:24h}")
+    private Duration idleTimeout = Duration.ofHours(24);
+
+    public LatencyBaselineService(ApplicationEventPublisher eventPublisher, ProbeMetrics probeMetrics,
+                                  MeterRegistry meterRegistry) {
+        this(eventPublisher, probeMetrics, meterRegistry, Clock.systemUTC());
+    }
+
+    LatencyBaselineService(ApplicationEventPublisher eventPublisher, ProbeMetrics probeMetrics,
+                           MeterRegistry meterRegistry, Clock clock) {
+        this.eventPublisher = eventPublisher;
+        this.probeMetrics = probeMetrics;
+        this.clock = clock;
+        Gauge.builder("probe.latency.anomalous.targets", baselines,
+                        all -> all.values().stream().filter(Baseline::isAnomalous).count())
+                .description("Targets whose latest latency sample is anomalous")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Update a target's baseline with one latency sample and flag it if anomalous.
+     */
+    public void record(String targetId, double latencyMs, Instant timestamp) {
+        if (targetId == null || !(latencyMs >= 0)) {
+            return;
+        }
+        Instant sampleTime = timestamp != null ? timestamp : clock.instant();
+        LatencyAnomaly anomaly = baselines.computeIfAbsent(targetId, id -> new Baseline())
+                .update(targetId, latencyMs, sampleTime, alpha, kSigma, warmupSamples, minStdDevMs);
+        if (anomaly == null) {
+            return;
+        }
+
+        synchronized (recentAnomalies) {
+            recentAnomalies.addFirst(anomaly);
+            if (recentAnomalies.size() > MAX_RECENT_ANOMALIES) {
+                recentAnomalies.removeLast();
+            }
+        }
+        probeMetrics.recordLatencyAnomaly(targetId);
+        log.warn("Latency anomaly detected",
+                kv("targetId", targetId),
+                kv("latencyMs", latencyMs),
+                kv("baselineMeanMs", anomaly.baselineMeanMs()),
+                kv("baselineStdDevMs", anomaly.baselineStdDevMs()),
+                kv("zScore", anomaly.zScore()));
+        eventPublisher.publishEvent(new LatencyAnomalyEvent(this, anomaly));
+    }
+
+    /**
+     * Current baseline of a target; counts are zero for unknown targets.
+     */
+    public LatencyBaseline getBaseline(String targetId) {
+        Baseline baseline = baselines.get(targetId);
+        return baseline != null ? baseline.snapshot(targetId) : new LatencyBaseline(targetId, 0, null, null, null, false, null);
+    }
+
+    /**
+     * Most recent anomalies of a target, newest first.
+     */
+    public List<LatencyAnomaly> getRecentAnomalies(String targetId, int limit) {
+        List<LatencyAnomaly> anomalies = new ArrayList<>();
+        synchronized (recentAnomalies) {
+            Iterator<LatencyAnomaly> iterator = recentAnomalies.iterator();
+            while (iterator.hasNext() && anomalies.size() < limit) {
+                LatencyAnomaly anomaly = iterator.next();
+                if (anomaly.targetId().equals(targetId)) {
+                    anomalies.add(anomaly);
+                }
+            }
+        }
+        return anomalies;
+    }
+
+    /**
+     * Drop baselines of targets without samples for {@code idle-timeout}, e.g. deleted targets.
+     */
+    @Scheduled(fixedDelayString = "${ict.analytics.latency-baseline.prune-interval-ms:3600000}")
+    public void pruneIdleTargets() {
+        Instant cutoff = clock.instant().minus(idleTimeout);
+        int before = baselines.size();
+        baselines.values().removeIf(baseline -> baseline.isIdleSince(cutoff));
+        int removed = before - baselines.size();
+        if (removed > 0) {
+            log.debug("Pruned idle latency baselines", kv("targets", removed));
+        }
+    }
+
+    private static final class Baseline {
+        private long count;
+        private double mean;
+        private double variance;
+        private double last;
+        private boolean anomalous;
+        private Instant lastSampleAt;
+
+        /**
+         * @return the anomaly if this sample starts one, otherwise null
+         */
+        synchronized LatencyAnomaly update(String targetId, double latencyMs, Instant timestamp, double alpha,
+                                           double kSigma, int warmupSamples, double minStdDevMs) {
+            LatencyAnomaly started = null;
+            if (count == 0) {
+                mean = latencyMs;
+            } else {
+                double stdDev = Math.max(Math.sqrt(variance), minStdDevMs);
+                double zScore = (latencyMs - mean) / stdDev;
+                boolean isAnomaly = count >= warmupSamples && zScore > kSigma;
+                if (isAnomaly && !anomalous) {
+                    started = new LatencyAnomaly(targetId, timestamp, latencyMs, mean, Math.sqrt(variance), zScore);
+                }
+                anomalous = isAnomaly;
+
+                // West/Finch incremental update of the exponentially weighted mean and variance
+                double diff = latencyMs - mean;
+                double increment = alpha * diff;
+                mean += increment;
+                variance = (1 - alpha) * (variance + diff * increment);
+            }
+            count++;
+            last = latencyMs;
+            lastSampleAt = timestamp;
+            return started;
+        }
+
+        synchronized LatencyBaseline snapshot(String targetId) {
+            return new LatencyBaseline(targetId, count, mean, Math.sqrt(variance), last, anomalous, lastSampleAt);
+        }
+
+        synchronized boolean isAnomalous() {
+            return anomalous;
+        }
+
+        synchronized boolean isIdleSince(Instant cutoff) {
+            return lastSampleAt != null && lastSampleAt.isBefore(cutoff);
+        }
+    }
+}
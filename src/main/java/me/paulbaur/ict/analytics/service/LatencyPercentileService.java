@@ -0,0 +1,191 @@
+package me.paulbaur.ict.analytics.service;
+
+import lombok.extern.slf4j.Slf4j;
+import me.paulbaur.ict.analytics.domain.LatencyPercentiles;
+import me.paulbaur.ict.analytics.domain.LatencyWindow;
+import org.HdrHistogram.IntCountsHistogram;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.ByteBuffer;
+import java.time.Clock;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.DataFormatException;
+
+import static net.logstash.logback.argument.StructuredArguments.kv;
+
+/**
+ * Streaming latency percentiles per target, kept in memory and updated on every probe result.
+ *
+ * <p>Each target has an HdrHistogram ring per {@link LatencyWindow}, in microseconds with two
+ * significant digits (1% relative error). Percentiles are read from the merged live slots
+ * without querying Elasticsearch. Snapshots are exported as compressed, base64-encoded
+ * histograms that can be merged with {@link #merge}, so results from several nodes or windows
+ * combine without losing the tail. Slots are sparse packed histograms; only the merge target
+ * is a flat {@link IntCountsHistogram}.</p>
+ *
+ * <p>State is per node and starts empty; only the node that runs the probes sees samples.</p>
+ */
+@Service
+@Slf4j
+public class LatencyPercentileService {
+
+    static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.SECONDS.toMicros(60);
+    static final int SIGNIFICANT_DIGITS = 2;
+
+    private final Map<String, TargetHistograms> targets = new ConcurrentHashMap<>();
+    private final Clock clock;
+
+    @Autowired
+    public LatencyPercentileService() {
+        this(Clock.systemUTC());
+    }
+
+    LatencyPercentileService(Clock clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Record one latency sample for a target in every window.
+     */
+    public void record(String targetId, double latencyMs) {
+        if (targetId == null || !(latencyMs >= 0)) {
+            return;
+        }
+        // Values beyond the range are clamped rather than rejected so a timeout still lands in the tail
+        long micros = Math.min(Math.round(latencyMs * 1000), HIGHEST_TRACKABLE_MICROS);
+        targets.computeIfAbsent(targetId, id -> new TargetHistograms()).record(micros, clock.millis());
+    }
+
+    /**
+     * Percentiles of a target's samples within {@code window}; counts are zero for unknown targets.
+     */
+    public LatencyPercentiles getPercentiles(String targetId, LatencyWindow window) {
+        return summarize(targetId, window, snapshot(targetId, window));
+    }
+
+    /**
+     * Copy of the merged histogram of a target's samples within {@code window}.
+     */
+    public IntCountsHistogram snapshot(String targetId, LatencyWindow window) {
+        IntCountsHistogram merged = newMergeTarget();
+        TargetHistograms histograms = targets.get(targetId);
+        if (histograms != null) {
+            histograms.addTo(merged, window, clock.millis());
+        }
+        return merged;
+    }
+
+    /**
+     * Merge encoded histograms, e.g. the same window exported by several nodes.
+     *
+     * @throws IllegalArgumentException if a histogram cannot be decoded
+     */
+    public static LatencyPercentiles merge(String targetId, LatencyWindow window, Collection<String> encodedHistograms) {
+        IntCountsHistogram merged = newMergeTarget();
+        for (String encoded : encodedHistograms) {
+            merged.add(decode(encoded));
+        }
+        return summarize(targetId, window, merged);
+    }
+
+    static LatencyPercentiles summarize(String targetId, LatencyWindow window, IntCountsHistogram histogram) {
+        long count = histogram.getTotalCount();
+        if (count == 0) {
+            return new LatencyPercentiles(targetId, window.label(), 0, null, null, null, null, null, null, encode(histogram));
+        }
+        return new LatencyPercentiles(
+                targetId,
+                window.label(),
+                count,
+                toMillis(histogram.getMinValue()),
+                toMillis(histogram.getValueAtPercentile(50.0)),
+                toMillis(histogram.getValueAtPercentile(95.0)),
+                toMillis(histogram.getValueAtPercentile(99.0)),
+                toMillis(histogram.getValueAtPercentile(99.9)),
+                toMillis(histogram.getMaxValue()),
+                encode(histogram)
+        );
+    }
+
+    static String encode(IntCountsHistogram histogram) {
+        ByteBuffer buffer = ByteBuffer.allocate(histogram.getNeededByteBufferCapacity());
+        int length = histogram.encodeIntoCompressedByteBuffer(buffer);
+        return Base64.getEncoder().encodeToString(Arrays.copyOf(buffer.array(), length));
+    }
+
+    static IntCountsHistogram decode(String encoded) {
+        if (encoded == null) {
+            throw new IllegalArgumentException("histogram must not be null");
+        }
+        try {
+            byte[] bytes = Base64.getDecoder().decode(encoded);
+            return IntCountsHistogram.decodeFromCompressedByteBuffer(ByteBuffer.wrap(bytes), 0);
+        } catch (IllegalArgumentException | DataFormatException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("histogram is not a valid encoded HdrHistogram", e);
+        }
+    }
+
+    /**
+     * Drop targets without samples in any window, e.g. deleted targets.
+     */
+    @Scheduled(fixedDelayString = "${ict.analytics.latency-percentiles.prune-interval-ms:3600000}")
+    public void pruneIdleTargets() {
+        long now = clock.millis();
+        int before = targets.size();
+        targets.values().removeIf(histograms -> histograms.isEmpty(now));
+        int removed = before - targets.size();
+        if (removed > 0) {
+            log.debug("Pruned idle latency histograms", kv("targets", removed));
+        }
+    }
+
+    int trackedTargets() {
+        return targets.size();
+    }
+
+    private static IntCountsHistogram newMergeTarget() {
+        return new IntCountsHistogram(HIGHEST_TRACKABLE_MICROS, SIGNIFICANT_DIGITS);
+    }
+
+    private static double toMillis(long micros) {
+        return micros / 1000.0;
+    }
+
+    private static final class TargetHistograms {
+        private final SlidingLatencyHistogram[] windows;
+
+        private TargetHistograms() {
+            LatencyWindow[] all = LatencyWindow.values();
+            windows = new SlidingLatencyHistogram[all.length];
+            for (LatencyWindow window : all) {
+                windows[window.ordinal()] = new SlidingLatencyHistogram(window);
+            }
+        }
+
+        synchronized void record(long micros, long nowMillis) {
+            for (SlidingLatencyHistogram window : windows) {
+                window.record(micros, nowMillis);
+            }
+        }
+
+        synchronized void addTo(IntCountsHistogram target, LatencyWindow window, long nowMillis) {
+            windows[window.ordinal()].addTo(target, nowMillis);
+        }
+
+        synchronized boolean isEmpty(long nowMillis) {
+            for (SlidingLatencyHistogram window : windows) {
+                if (!window.isEmpty(nowMillis)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
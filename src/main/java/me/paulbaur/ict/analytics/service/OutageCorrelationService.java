@@ -0,0 +1,154 @@
+package me.paulbaur.ict.analytics.service;
+
+import me.paulbaur.ict.analytics.domain.CorrelatedOutage;
+import me.paulbaur.ict.analytics.domain.FleetCycleStatus;
+import me.paulbaur.ict.analytics.domain.OutageCorrelation;
+import me.paulbaur.ict.analytics.domain.OutageScope;
+import me.paulbaur.ict.common.exception.ServiceUnavailableException;
+import me.paulbaur.ict.common.model.ProbeStatus;
+import me.paulbaur.ict.coordination.service.LeaderElectionService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Tells local outages (this monitor's own uplink, every target down at once) from remote ones
+ * (individual targets down) using a {@link FleetStatusMatrix} of recent probe rounds.
+ *
+ * <p>The matrix is kept in memory on the node that probes, so it is only available on the leader
+ * and starts empty after a restart.</p>
+ */
+@Service
+public class OutageCorrelationService {
+
+    private final LeaderElectionService leaderElectionService;
+    private final FleetStatusMatrix matrix;
+
+    // Share of probed targets that must be down for a round to count as a local outage
+    @Value("${ict.analytics.correlation.local-threshold:1.0}")
+    private double localThreshold = 1.0;
+
+    // A single target being down says nothing about the uplink
+    @Value("${ict.analytics.correlation.min-targets:2}")
+    private int minTargets = 2;
+
+    @Autowired
+    public OutageCorrelationService(@Autowired(required = false) LeaderElectionService leaderElectionService,
+                                    @Value("${ict.analytics.correlation.max-cycles:10000}") int maxCycles) {
+        this.leaderElectionService = leaderElectionService;
+        this.matrix = new FleetStatusMatrix(maxCycles);
+    }
+
+    public synchronized void record(String targetId, ProbeStatus status, String probeCycleId, Instant timestamp) {
+        matrix.record(targetId, status == ProbeStatus.DOWN, probeCycleId, timestamp.toEpochMilli());
+    }
+
+    /**
+     * Status of the most recently completed probe round.
+     */
+    public Optional<FleetCycleStatus> getLatestCycle() {
+        requireProbingNode();
+        synchronized (this) {
+            FleetStatusMatrix.Round round = matrix.latest();
+            if (round == null) {
+                return Optional.empty();
+            }
+            return Optional.of(new FleetCycleStatus(
+                    round.probeCycleId(),
+                    Instant.ofEpochMilli(round.startMillis()),
+                    Instant.ofEpochMilli(round.endMillis()),
+                    round.probed().cardinality(),
+                    round.down().cardinality(),
+                    matrix.targetIds(round.down()),
+                    scope(round)));
+        }
+    }
+
+    /**
+     * Local and remote outages among the probe rounds that started within {@code [start, end]}.
+     */
+    public OutageCorrelation getCorrelation(Instant start, Instant end) {
+        requireProbingNode();
+        List<FleetStatusMatrix.Round> rounds;
+        synchronized (this) {
+            rounds = matrix.rounds(start.toEpochMilli(), end.toEpochMilli());
+        }
+
+        int localCycles = 0;
+        int remoteCycles = 0;
+        List<CorrelatedOutage> localOutages = new ArrayList<>();
+        int[] remoteDownCounts = new int[0];
+        FleetStatusMatrix.Round runStart = null;
+        FleetStatusMatrix.Round runEnd = null;
+        int runLength = 0;
+
+        for (FleetStatusMatrix.Round round : rounds) {
+            OutageScope scope = scope(round);
+            if (scope == OutageScope.LOCAL) {
+                localCycles++;
+                if (runStart == null) {
+                    runStart = round;
+                }
+                runEnd = round;
+                runLength++;
+                continue;
+            }
+            if (runStart != null) {
+                localOutages.add(outage(runStart, runEnd, runLength));
+                runStart = null;
+                runLength = 0;
+            }
+            if (scope == OutageScope.REMOTE) {
+                remoteCycles++;
+                BitSet down = round.down();
+                if (down.length() > remoteDownCounts.length) {
+                    remoteDownCounts = Arrays.copyOf(remoteDownCounts, down.length());
+                }
+                for (int ordinal = down.nextSetBit(0); ordinal >= 0; ordinal = down.nextSetBit(ordinal + 1)) {
+                    remoteDownCounts[ordinal]++;
+                }
+            }
+        }
+        if (runStart != null) {
+            localOutages.add(outage(runStart, runEnd, runLength));
+        }
+
+        Map<String, Integer> remoteDownCycles = new LinkedHashMap<>();
+        synchronized (this) {
+            for (int ordinal = 0; ordinal < remoteDownCounts.length; ordinal++) {
+                if (remoteDownCounts[ordinal] > 0) {
+                    remoteDownCycles.put(matrix.targetId(ordinal), remoteDownCounts[ordinal]);
+                }
+            }
+        }
+        return new OutageCorrelation(start, end, rounds.size(), localCycles, remoteCycles, localOutages, remoteDownCycles);
+    }
+
+    OutageScope scope(FleetStatusMatrix.Round round) {
+        int down = round.down().cardinality();
+        if (down == 0) {
+            return OutageScope.NONE;
+        }
+        int probed = round.probed().cardinality();
+        return probed >= minTargets && down >= Math.ceil(localThreshold * probed) ? OutageScope.LOCAL : OutageScope.REMOTE;
+    }
+
+    private static CorrelatedOutage outage(FleetStatusMatrix.Round first, FleetStatusMatrix.Round last, int cycles) {
+        return new CorrelatedOutage(Instant.ofEpochMilli(first.startMillis()), Instant.ofEpochMilli(last.endMillis()), cycles);
+    }
+
+    private void requireProbingNode() {
+        if (leaderElectionService != null && !leaderElectionService.isLeader()) {
+            throw new ServiceUnavailableException("Outage correlation is only available on the node that runs the probes");
+        }
+    }
+}
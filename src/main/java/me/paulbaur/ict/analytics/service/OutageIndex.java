@@ -0,0 +1,237 @@
+package me.paulbaur.ict.analytics.service;
+
+import me.paulbaur.ict.common.model.ProbeStatus;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * DOWN periods of every target as sorted primitive arrays, with one bitmap per time slot of the
+ * targets that were down at any point in it.
+ *
+ * <p>Targets are numbered densely in the order they are first seen, so query results are
+ * {@link BitSet}s over target ordinals. Each target's outages never overlap, which keeps both
+ * their start and end arrays sorted; point and range lookups are one binary search per target.
+ * Slot bitmaps answer the fully covered part of long ranges without touching the arrays.
+ * An ongoing outage has end {@link #OPEN}. Not thread-safe.</p>
+ */
+final class OutageIndex {
+
+    static final long OPEN = Long.MAX_VALUE;
+
+    private final long slotMillis;
+    private final Map<String, Integer> ordinals = new HashMap<>();
+    private final List<String> targetIds = new ArrayList<>();
+    private final List<TargetOutages> outages = new ArrayList<>();
+    private final Map<Long, BitSet> slotSummaries = new HashMap<>();
+
+    OutageIndex(long slotMillis) {
+        this.slotMillis = slotMillis;
+    }
+
+    /**
+     * Apply a transition of {@code targetId} to {@code status} at {@code timestampMillis}.
+     * Transitions at or before the target's latest applied one are ignored, so replaying
+     * already indexed transitions is harmless.
+     *
+     * @param previousStateSinceMillis when the previous status began, used as the outage start when
+     *                                 a DOWN period ends without its start having been seen;
+     *                                 {@code Long.MIN_VALUE} if unknown
+     */
+    void apply(String targetId, ProbeStatus status, long timestampMillis, long previousStateSinceMillis) {
+        int ordinal = ordinal(targetId);
+        TargetOutages target = outages.get(ordinal);
+        if (timestampMillis <= target.lastTransitionMillis) {
+            return;
+        }
+        target.lastTransitionMillis = timestampMillis;
+
+        if (status == ProbeStatus.DOWN) {
+            if (!target.isOpen()) {
+                target.append(timestampMillis, OPEN);
+            }
+        } else if (target.isOpen()) {
+            target.ends[target.size - 1] = timestampMillis;
+            markSlots(ordinal, target.starts[target.size - 1], timestampMillis);
+        } else if (previousStateSinceMillis != Long.MIN_VALUE && previousStateSinceMillis < timestampMillis) {
+            // Recovered from an outage that began before the indexed history
+            long start = Math.max(previousStateSinceMillis, target.size > 0 ? target.ends[target.size - 1] : Long.MIN_VALUE);
+            target.append(start, timestampMillis);
+            markSlots(ordinal, start, timestampMillis);
+        }
+    }
+
+    /**
+     * Targets that were down at {@code atMillis}.
+     */
+    BitSet downAt(long atMillis) {
+        return downDuring(atMillis, atMillis);
+    }
+
+    /**
+     * Targets that were down at any point in {@code [startMillis, endMillis]}.
+     */
+    BitSet downDuring(long startMillis, long endMillis) {
+        BitSet result = new BitSet(targetIds.size());
+        long firstFullSlot = Math.floorDiv(startMillis + slotMillis - 1, slotMillis);
+        long lastFullSlot = Math.floorDiv(endMillis + 1, slotMillis) - 1;
+        for (long slot = firstFullSlot; slot <= lastFullSlot; slot++) {
+            BitSet summary = slotSummaries.get(slot);
+            if (summary != null) {
+                result.or(summary);
+            }
+        }
+        for (int ordinal = result.nextClearBit(0); ordinal < targetIds.size(); ordinal = result.nextClearBit(ordinal + 1)) {
+            if (outages.get(ordinal).overlaps(startMillis, endMillis)) {
+                result.set(ordinal);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Largest number of targets down at the same moment within {@code [startMillis, endMillis]},
+     * and the first moment it was reached.
+     *
+     * @return {@code {peak, peakAtMillis}}; the peak is 0 and its time {@code startMillis} if nothing was down
+     */
+    long[] peakConcurrent(long startMillis, long endMillis) {
+        List<long[]> events = new ArrayList<>();
+        for (TargetOutages target : outages) {
+            for (int i = target.firstEndingAfter(startMillis); i < target.size && target.starts[i] <= endMillis; i++) {
+                events.add(new long[]{Math.max(target.starts[i], startMillis), 1});
+                if (target.ends[i] <= endMillis) {
+                    events.add(new long[]{target.ends[i], -1});
+                }
+            }
+        }
+        // Ends sort before starts at the same instant: an outage ending at T is not down at T
+        events.sort((a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(a[1], b[1]));
+
+        long current = 0;
+        long peak = 0;
+        long peakAt = startMillis;
+        for (long[] event : events) {
+            current += event[1];
+            if (current > peak) {
+                peak = current;
+                peakAt = event[0];
+            }
+        }
+        return new long[]{peak, peakAt};
+    }
+
+    /**
+     * Drop outages that ended before {@code cutoffMillis} along with their slot bitmaps.
+     */
+    void prune(long cutoffMillis) {
+        for (TargetOutages target : outages) {
+            target.dropEndedBefore(cutoffMillis);
+        }
+        long cutoffSlot = Math.floorDiv(cutoffMillis, slotMillis);
+        Iterator<Long> slots = slotSummaries.keySet().iterator();
+        while (slots.hasNext()) {
+            if (slots.next() < cutoffSlot) {
+                slots.remove();
+            }
+        }
+    }
+
+    List<String> targetIds(BitSet ordinalSet) {
+        List<String> ids = new ArrayList<>(ordinalSet.cardinality());
+        for (int ordinal = ordinalSet.nextSetBit(0); ordinal >= 0; ordinal = ordinalSet.nextSetBit(ordinal + 1)) {
+            ids.add(targetIds.get(ordinal));
+        }
+        return ids;
+    }
+
+    int targetCount() {
+        return targetIds.size();
+    }
+
+    int outageCount() {
+        int count = 0;
+        for (TargetOutages target : outages) {
+            count += target.size;
+        }
+        return count;
+    }
+
+    private int ordinal(String targetId) {
+        Integer ordinal = ordinals.get(targetId);
+        if (ordinal == null) {
+            ordinal = targetIds.size();
+            ordinals.put(targetId, ordinal);
+            targetIds.add(targetId);
+            outages.add(new TargetOutages());
+        }
+        return ordinal;
+    }
+
+    private void markSlots(int ordinal, long startMillis, long endMillis) {
+        long lastSlot = Math.floorDiv(endMillis - 1, slotMillis);
+        for (long slot = Math.floorDiv(startMillis, slotMillis); slot <= lastSlot; slot++) {
+            slotSummaries.computeIfAbsent(slot, s -> new BitSet()).set(ordinal);
+        }
+    }
+
+    /**
+     * Outages of one target as half-open {@code [start, end)} intervals in ascending order.
+     */
+    private static final class TargetOutages {
+        private long[] starts = new long[4];
+        private long[] ends = new long[4];
+        private int size;
+        private long lastTransitionMillis = Long.MIN_VALUE;
+
+        boolean isOpen() {
+            return size > 0 && ends[size - 1] == OPEN;
+        }
+
+        void append(long start, long end) {
+            if (size == starts.length) {
+                starts = Arrays.copyOf(starts, size * 2);
+                ends = Arrays.copyOf(ends, size * 2);
+            }
+            starts[size] = start;
+            ends[size] = end;
+            size++;
+        }
+
+        boolean overlaps(long startMillis, long endMillis) {
+            int i = firstEndingAfter(startMillis);
+            return i < size && starts[i] <= endMillis;
+        }
+
+        /**
+         * Index of the first outage with {@code end > millis}, or {@code size} if none.
+         */
+        int firstEndingAfter(long millis) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (ends[mid] > millis) {
+                    high = mid;
+                } else {
+                    low = mid + 1;
+                }
+            }
+            return low;
+        }
+
+        void dropEndedBefore(long cutoffMillis) {
+            int keepFrom = firstEndingAfter(cutoffMillis - 1);
+            if (keepFrom > 0) {
+                System.arraycopy(starts, keepFrom, starts, 0, size - keepFrom);
+                System.arraycopy(ends, keepFrom, ends, 0, size - keepFrom);
+                size -= keepFrom;
+            }
+        }
+    }
+}
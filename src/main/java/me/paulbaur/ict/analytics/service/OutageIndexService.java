@@ -0,0 +1,223 @@
+package me.paulbaur.ict.analytics.service;
+
+import lombok.extern.slf4j.Slf4j;
+import me.paulbaur.ict.analytics.domain.DownTargets;
+import me.paulbaur.ict.analytics.domain.OutageOverlap;
+import me.paulbaur.ict.analytics.domain.StateChange;
+import me.paulbaur.ict.analytics.repository.ElasticsearchAnalyticsRepository;
+import me.paulbaur.ict.common.exception.ServiceUnavailableException;
+import me.paulbaur.ict.common.model.ProbeStatus;
+import me.paulbaur.ict.coordination.service.LeaderElectionService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static net.logstash.logback.argument.StructuredArguments.kv;
+
+/**
+ * Point-in-time and range questions about outages across all targets, answered from an
+ * in-memory {@link OutageIndex} of DOWN periods instead of scanning probe results.
+ *
+ * <p>The index is loaded from the state transitions index at startup. On the leader, which
+ * records the transitions, it is then kept current as they happen; other nodes reload it
+ * periodically. Transitions recorded during a reload are replayed on top of it. Targets whose
+ * latest transition before the retention window is to DOWN are loaded as still down.</p>
+ */
+@Service
+@Slf4j
+public class OutageIndexService {
+
+    private static final Duration SUMMARY_SLOT = Duration.ofHours(1);
+
+    private final ElasticsearchAnalyticsRepository analyticsRepository;
+    private final LeaderElectionService leaderElectionService;
+    private final Clock clock;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final List<StateChange> pendingChanges = new ArrayList<>();
+    private OutageIndex index = new OutageIndex(SUMMARY_SLOT.toMillis());
+    private boolean rebuilding;
+    private volatile boolean ready;
+    private volatile boolean builtAsLeader;
+
+    // Outages that ended longer ago are dropped; queries must start within this window
+    @Value("${ict.analytics.outages.retention:30d}")
+    private Duration retention = Duration.ofDays(30);
+
+    @Autowired
+    public OutageIndexService(ElasticsearchAnalyticsRepository analyticsRepository,
+                              @Autowired(required = false) LeaderElectionService leaderElectionService) {
+        this(analyticsRepository, leaderElectionService, Clock.systemUTC());
+    }
+
+    OutageIndexService(ElasticsearchAnalyticsRepository analyticsRepository,
+                       LeaderElectionService leaderElectionService, Clock clock) {
+        this.analyticsRepository = analyticsRepository;
+        this.leaderElectionService = leaderElectionService;
+        this.clock = clock;
+    }
+
+    /**
+     * Apply a state change recorded on this node.
+     */
+    public void apply(StateChange change) {
+        lock.writeLock().lock();
+        try {
+            if (rebuilding) {
+                pendingChanges.add(change);
+            }
+            applyTo(index, change);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Targets that were down at {@code at}.
+     */
+    public DownTargets getDownAt(Instant at) {
+        validateWithinRetention(at);
+        lock.readLock().lock();
+        try {
+            List<String> targetIds = index.targetIds(index.downAt(at.toEpochMilli()));
+            return new DownTargets(at, at, targetIds.size(), targetIds);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Targets that were down at any point within {@code [start, end]}.
+     */
+    public DownTargets getDownDuring(Instant start, Instant end) {
+        validateWithinRetention(start);
+        lock.readLock().lock();
+        try {
+            List<String> targetIds = index.targetIds(index.downDuring(start.toEpochMilli(), end.toEpochMilli()));
+            return new DownTargets(start, end, targetIds.size(), targetIds);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * How many targets were down within {@code [start, end]}, and how many at most at once.
+     */
+    public OutageOverlap getOverlap(Instant start, Instant end) {
+        validateWithinRetention(start);
+        lock.readLock().lock();
+        try {
+            BitSet affected = index.downDuring(start.toEpochMilli(), end.toEpochMilli());
+            long[] peak = index.peakConcurrent(start.toEpochMilli(), end.toEpochMilli());
+            return new OutageOverlap(start, end, affected.cardinality(), (int) peak[0],
+                    peak[0] > 0 ? Instant.ofEpochMilli(peak[1]) : null);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Load the index until it succeeds, reload it periodically on nodes that do not record
+     * transitions themselves, and drop outages past the retention window.
+     */
+    @Scheduled(initialDelay = 5000, fixedDelayString = "${ict.analytics.outages.refresh-ms:60000}")
+    @Async("probeTaskExecutor")
+    public void refresh() {
+        boolean leader = leaderElectionService == null || leaderElectionService.isLeader();
+        if (!ready || !leader || !builtAsLeader) {
+            rebuild(leader);
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            index.prune(clock.millis() - retention.toMillis());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void rebuild(boolean leader) {
+        lock.writeLock().lock();
+        try {
+            if (rebuilding) {
+                return;
+            }
+            rebuilding = true;
+            pendingChanges.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        Instant now = clock.instant();
+        Instant windowStart = now.minus(retention);
+        OutageIndex rebuilt = new OutageIndex(SUMMARY_SLOT.toMillis());
+        try {
+            // Outages that began before the window and have not ended yet have no transition inside it
+            analyticsRepository.forEachLatestStateChangeBefore(windowStart, change -> {
+                if (change.toStatus() == ProbeStatus.DOWN) {
+                    applyTo(rebuilt, change);
+                }
+            });
+            analyticsRepository.forEachStateChange(windowStart, now, change -> applyTo(rebuilt, change));
+        } catch (IOException | RuntimeException e) {
+            finishRebuild(null, leader);
+            log.warn("Failed to load outage index, will retry", kv("error", e.getMessage()));
+            return;
+        }
+
+        finishRebuild(rebuilt, leader);
+        log.info("Loaded outage index from Elasticsearch",
+                kv("targets", rebuilt.targetCount()),
+                kv("outages", rebuilt.outageCount()));
+    }
+
+    private void finishRebuild(OutageIndex rebuilt, boolean leader) {
+        lock.writeLock().lock();
+        try {
+            if (rebuilt != null) {
+                // Transitions are idempotent per target, so ones already loaded from ES are skipped
+                for (StateChange change : pendingChanges) {
+                    applyTo(rebuilt, change);
+                }
+                index = rebuilt;
+                ready = true;
+                builtAsLeader = leader;
+            }
+            pendingChanges.clear();
+            rebuilding = false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void validateWithinRetention(Instant start) {
+        if (!ready) {
+            throw new ServiceUnavailableException("Outage index is still loading");
+        }
+        if (start.isBefore(clock.instant().minus(retention))) {
+            throw new IllegalArgumentException("start must be within the last " + retention.toDays() + " days");
+        }
+    }
+
+    private static void applyTo(OutageIndex index, StateChange change) {
+        long timestampMillis = change.timestamp().toEpochMilli();
+        long previousSince = change.durationMs() != null ? timestampMillis - change.durationMs() : Long.MIN_VALUE;
+        index.apply(change.targetId(), change.toStatus(), timestampMillis, previousSince);
+    }
+
+    boolean isReady() {
+        return ready;
+    }
+}
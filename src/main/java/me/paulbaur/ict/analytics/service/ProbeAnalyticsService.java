@@ -1,41 +1,108 @@
 package me.paulbaur.ict.analytics.service;
 
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import me.paulbaur.ict.analytics.domain.AnalyticsBucket;
+import me.paulbaur.ict.analytics.domain.AnalyticsQueryPlan;
+import me.paulbaur.ict.analytics.domain.DashboardAnalytics;
 import me.paulbaur.ict.analytics.domain.LatencyMetrics;
+import me.paulbaur.ict.analytics.domain.StandardWindow;
 import me.paulbaur.ict.analytics.domain.StateChange;
 import me.paulbaur.ict.analytics.domain.TimeSeriesDataPoint;
 import me.paulbaur.ict.analytics.domain.UptimeMetrics;
 import me.paulbaur.ict.analytics.repository.ElasticsearchAnalyticsRepository;
-import org.springframework.cache.annotation.Cacheable;
+import me.paulbaur.ict.common.cache.SingleFlightCache;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
 import java.time.Instant;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
 
 import static net.logstash.logback.argument.StructuredArguments.kv;
 
 /**
  * Service for probe analytics and metrics aggregation.
+ *
+ * <p>Results are cached in the {@code analytics} region through a {@link SingleFlightCache}:
+ * concurrent identical requests share one computation, across nodes, and hot entries are
+ * refreshed in the background before they expire.</p>
+ *
+ * <p>Ranges that match a trailing {@link StandardWindow} share one cache key per window rather
+ * than one per exact range, so {@link StandardWindowPrecomputeService} can keep them warm.</p>
  */
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class ProbeAnalyticsService {
 
+    // How far a range may be from a trailing standard window and still share its cached results
+    private static final Duration WINDOW_KEY_TOLERANCE = Duration.ofMinutes(1);
+    // Windows made up mostly of closed hourly/daily buckets, whose uptime and latency are cheaper to merge than to scan
+    private static final Set<StandardWindow> BUCKET_WINDOWS = EnumSet.of(StandardWindow.SEVEN_DAYS, StandardWindow.THIRTY_DAYS);
+
     private final ElasticsearchAnalyticsRepository analyticsRepository;
+    private final AnalyticsBucketService bucketService;
+    private final SingleFlightCache analyticsResultCache;
+    private final UptimeCounterService uptimeCounters;
+    private final AnalyticsQueryPlanner queryPlanner;
+    private final Clock clock;
+
+    // Bucket count automatic interval selection aims for
+    @Value("${ict.analytics.time-series.target-buckets:200}")
+    private int timeSeriesTargetBuckets = 200;
+
+    // Requests whose explicit interval would produce more buckets are rejected
+    @Value("${ict.analytics.time-series.max-buckets:2000}")
+    private int timeSeriesMaxBuckets = 2000;
+
+    @Autowired
+    public ProbeAnalyticsService(ElasticsearchAnalyticsRepository analyticsRepository,
+                                 AnalyticsBucketService bucketService,
+                                 SingleFlightCache analyticsResultCache,
+                                 UptimeCounterService uptimeCounters,
+                                 AnalyticsQueryPlanner queryPlanner) {
+        this(analyticsRepository, bucketService, analyticsResultCache, uptimeCounters, queryPlanner, Clock.systemUTC());
+    }
+
+    ProbeAnalyticsService(ElasticsearchAnalyticsRepository analyticsRepository,
+                          AnalyticsBucketService bucketService,
+                          SingleFlightCache analyticsResultCache,
+                          UptimeCounterService uptimeCounters,
+                          AnalyticsQueryPlanner queryPlanner,
+                          Clock clock) {
+        this.analyticsRepository = analyticsRepository;
+        this.bucketService = bucketService;
+        this.analyticsResultCache = analyticsResultCache;
+        this.uptimeCounters = uptimeCounters;
+        this.queryPlanner = queryPlanner;
+        this.clock = clock;
+    }
 
     /**
      * Get uptime metrics for a target within a time range.
-     * Results are cached for 5 minutes.
+     * Trailing standard windows (1h, 24h, 7d, 30d) are answered from in-memory counters; other
+     * ranges are computed from cached hourly/daily buckets plus the uncached edges of the range.
      */
-    @Cacheable(value = "analytics", key = "'uptime-' + #targetId + '-' + #start.epochSecond + '-' + #end.epochSecond")
     public UptimeMetrics getUptimeMetrics(String targetId, Instant start, Instant end) {
+        Optional<UptimeMetrics> fromCounters = uptimeCounters.getUptimeMetrics(targetId, start, end);
+        if (fromCounters.isPresent()) {
+            return fromCounters.get();
+        }
+        return analyticsResultCache.get(
+                "uptime-" + targetId + "-" + rangeKey(start, end),
+                () -> calculateUptimeMetrics(targetId, start, end));
+    }
+
+    private UptimeMetrics calculateUptimeMetrics(String targetId, Instant start, Instant end) {
         log.info("Calculating uptime metrics", kv("targetId", targetId), kv("start", start), kv("end", end));
 
         try {
-            return analyticsRepository.calculateUptime(targetId, start, end);
+            return toUptimeMetrics(targetId, start, end, bucketService.aggregate(targetId, start, end));
         } catch (IOException e) {
             log.error("Failed to calculate uptime metrics",
                     kv("targetId", targetId),
@@ -47,14 +114,19 @@ public class ProbeAnalyticsService {
 
     /**
      * Get latency metrics for a target within a time range.
-     * Results are cached for 5 minutes.
+     * Computed from cached hourly/daily buckets plus the uncached edges of the range.
      */
-    @Cacheable(value = "analytics", key = "'latency-' + #targetId + '-' + #start.epochSecond + '-' + #end.epochSecond")
     public LatencyMetrics getLatencyMetrics(String targetId, Instant start, Instant end) {
+        return analyticsResultCache.get(
+                "latency-" + targetId + "-" + rangeKey(start, end),
+                () -> calculateLatencyMetrics(targetId, start, end));
+    }
+
+    private LatencyMetrics calculateLatencyMetrics(String targetId, Instant start, Instant end) {
         log.info("Calculating latency metrics", kv("targetId", targetId), kv("start", start), kv("end", end));
 
         try {
-            return analyticsRepository.calculateLatency(targetId, start, end);
+            return toLatencyMetrics(targetId, start, end, bucketService.aggregate(targetId, start, end));
         } catch (IOException e) {
             log.error("Failed to calculate latency metrics",
                     kv("targetId", targetId),
@@ -64,12 +136,51 @@ public class ProbeAnalyticsService {
         }
     }
 
+    private AnalyticsBucket aggregateBuckets(String targetId, Instant start, Instant end) {
+        try {
+            return bucketService.aggregate(targetId, start, end);
+        } catch (IOException e) {
+            log.error("Failed to aggregate analytics buckets",
+                    kv("targetId", targetId),
+                    kv("error", e.getMessage()),
+                    e);
+            throw new AnalyticsException("Failed to aggregate analytics buckets for target: " + targetId, e);
+        }
+    }
+
+    private static UptimeMetrics toUptimeMetrics(String targetId, Instant start, Instant end, AnalyticsBucket bucket) {
+        return UptimeMetrics.calculate(
+                targetId,
+                start,
+                end,
+                bucket.totalProbes(),
+                bucket.successfulProbes(),
+                bucket.failedProbes()
+        );
+    }
+
+    private static LatencyMetrics toLatencyMetrics(String targetId, Instant start, Instant end, AnalyticsBucket bucket) {
+        return new LatencyMetrics(
+                targetId,
+                start,
+                end,
+                bucket.averageLatencyMs(),
+                bucket.minLatencyMs(),
+                bucket.maxLatencyMs(),
+                bucket.latencyCount()
+        );
+    }
+
     /**
      * Get state changes for a target within a time range.
-     * Results are cached for 5 minutes.
      */
-    @Cacheable(value = "analytics", key = "'state-changes-' + #targetId + '-' + #start.epochSecond + '-' + #end.epochSecond + '-' + #limit")
     public List<StateChange> getStateChanges(String targetId, Instant start, Instant end, int limit) {
+        return analyticsResultCache.get(
+                "state-changes-" + targetId + "-" + start.getEpochSecond() + "-" + end.getEpochSecond() + "-" + limit,
+                () -> findStateChanges(targetId, start, end, limit));
+    }
+
+    private List<StateChange> findStateChanges(String targetId, Instant start, Instant end, int limit) {
         log.info("Finding state changes",
                 kv("targetId", targetId),
                 kv("start", start),
@@ -89,16 +200,26 @@ public class ProbeAnalyticsService {
 
     /**
      * Get time series data for a target within a time range.
-     * Results are cached for 5 minutes.
+     *
+     * @param interval explicit bucket interval such as {@code 15m}, or {@code auto} to pick one
+     *                 that keeps the series near {@code ict.analytics.time-series.target-buckets}
+     * @throws IllegalArgumentException if the interval would produce too many buckets
      */
-    @Cacheable(value = "analytics", key = "'time-series-' + #targetId + '-' + #start.epochSecond + '-' + #end.epochSecond + '-' + #interval")
     public List<TimeSeriesDataPoint> getTimeSeries(String targetId, Instant start, Instant end, String interval) {
+        Duration resolved = TimeSeriesIntervals.resolve(interval, start, end, timeSeriesTargetBuckets, timeSeriesMaxBuckets);
+        return analyticsResultCache.get(
+                "time-series-" + targetId + "-" + rangeKey(start, end) + "-" + resolved.toSeconds(),
+                () -> calculateTimeSeries(targetId, start, end, resolved));
+    }
+
+    private List<TimeSeriesDataPoint> calculateTimeSeries(String targetId, Instant start, Instant end, Duration interval) {
         log.info("Calculating time series",
                 kv("targetId", targetId),
                 kv("start", start),
                 kv("end", end),
                 kv("interval", interval));
 
+        queryPlanner.plan(List.of(targetId), start, end, false);
         try {
             return analyticsRepository.calculateTimeSeries(targetId, start, end, interval);
         } catch (IOException e) {
@@ -110,6 +231,107 @@ public class ProbeAnalyticsService {
         }
     }
 
+    /**
+     * Get uptime, latency and time series of a target in one computation, for views that show all
+     * three. Uses the same cache region and TTL as the individual metrics; the uptime of trailing
+     * standard windows still comes from the in-memory counters. Very large ranges are computed from
+     * a random sample, reported in {@link DashboardAnalytics#sampling()}.
+     *
+     * @throws IllegalArgumentException if the interval would produce too many buckets
+     */
+    public DashboardAnalytics getDashboard(String targetId, Instant start, Instant end, String interval) {
+        Duration resolved = TimeSeriesIntervals.resolve(interval, start, end, timeSeriesTargetBuckets, timeSeriesMaxBuckets);
+        DashboardAnalytics dashboard = analyticsResultCache.get(
+                "dashboard-" + targetId + "-" + rangeKey(start, end) + "-" + resolved.toSeconds(),
+                () -> calculateDashboard(targetId, start, end, resolved));
+
+        Optional<UptimeMetrics> fromCounters = uptimeCounters.getUptimeMetrics(targetId, start, end);
+        if (fromCounters.isPresent()) {
+            return new DashboardAnalytics(dashboard.targetId(), dashboard.startTime(), dashboard.endTime(),
+                    dashboard.intervalSeconds(), fromCounters.get(), dashboard.latency(), dashboard.timeSeries(),
+                    dashboard.sampling());
+        }
+        return dashboard;
+    }
+
+    private DashboardAnalytics calculateDashboard(String targetId, Instant start, Instant end, Duration interval) {
+        log.info("Calculating dashboard analytics",
+                kv("targetId", targetId),
+                kv("start", start),
+                kv("end", end),
+                kv("interval", interval));
+
+        AnalyticsQueryPlan plan = queryPlanner.plan(List.of(targetId), start, end, true);
+        try {
+            return analyticsRepository.calculateDashboard(targetId, start, end, interval, plan);
+        } catch (IOException e) {
+            log.error("Failed to calculate dashboard analytics",
+                    kv("targetId", targetId),
+                    kv("error", e.getMessage()),
+                    e);
+            throw new AnalyticsException("Failed to calculate dashboard analytics for target: " + targetId, e);
+        }
+    }
+
+    /**
+     * Refresh the cached results of a target's trailing {@code window} that expire within
+     * {@code refreshMargin}; fresher entries are left alone. The dashboard is computed in one search
+     * and also supplies the uptime, latency and default time series of the short windows. For the
+     * long windows uptime and latency come from the hourly/daily buckets instead, which are mostly
+     * cached already. Sampled dashboards are stored on their own; the individual metrics stay exact.
+     *
+     * @return whether anything was recomputed
+     */
+    public boolean precomputeStandardWindow(String targetId, StandardWindow window, Duration refreshMargin) {
+        Instant end = clock.instant();
+        Instant start = end.minus(window.duration());
+        Duration interval = TimeSeriesIntervals.resolve(
+                TimeSeriesIntervals.AUTO, start, end, timeSeriesTargetBuckets, timeSeriesMaxBuckets);
+        String suffix = targetId + "-" + window.label();
+        boolean fromBuckets = BUCKET_WINDOWS.contains(window);
+
+        boolean refreshed = false;
+        if (fromBuckets && (analyticsResultCache.expiresWithin("uptime-" + suffix, refreshMargin)
+                || analyticsResultCache.expiresWithin("latency-" + suffix, refreshMargin))) {
+            long startNanos = System.nanoTime();
+            AnalyticsBucket bucket = aggregateBuckets(targetId, start, end);
+            long computeMillis = Duration.ofNanos(System.nanoTime() - startNanos).toMillis();
+            analyticsResultCache.put("uptime-" + suffix, toUptimeMetrics(targetId, start, end, bucket), computeMillis);
+            analyticsResultCache.put("latency-" + suffix, toLatencyMetrics(targetId, start, end, bucket), computeMillis);
+            refreshed = true;
+        }
+
+        String dashboardKey = "dashboard-" + suffix + "-" + interval.toSeconds();
+        if (analyticsResultCache.expiresWithin(dashboardKey, refreshMargin)) {
+            long startNanos = System.nanoTime();
+            DashboardAnalytics dashboard = calculateDashboard(targetId, start, end, interval);
+            long computeMillis = Duration.ofNanos(System.nanoTime() - startNanos).toMillis();
+
+            analyticsResultCache.put(dashboardKey, dashboard, computeMillis);
+            if (dashboard.sampling() == null) {
+                if (!fromBuckets) {
+                    analyticsResultCache.put("uptime-" + suffix, dashboard.uptime(), computeMillis);
+                    analyticsResultCache.put("latency-" + suffix, dashboard.latency(), computeMillis);
+                }
+                analyticsResultCache.put("time-series-" + suffix + "-" + interval.toSeconds(), dashboard.timeSeries(), computeMillis);
+            }
+            refreshed = true;
+        }
+        return refreshed;
+    }
+
+    /**
+     * Cache key part for a range: the window label for trailing standard windows, else the exact bounds.
+     * Ranges keyed by a label may differ by up to {@link #WINDOW_KEY_TOLERANCE} at either end, about
+     * as stale as a precomputed entry already is; the counters' one-slot tolerance would let
+     * explicit ranges hours apart share a result.
+     */
+    private String rangeKey(Instant start, Instant end) {
+        return StandardWindow.matching(start, end, clock.instant(), WINDOW_KEY_TOLERANCE)
+                .map(StandardWindow::label)
+                .orElseGet(() -> start.getEpochSecond() + "-" + end.getEpochSecond());
+    }
+
     /**
      * Exception thrown when analytics operations fail.
      */
@@ -0,0 +1,68 @@
+package me.paulbaur.ict.analytics.service;
+
+import me.paulbaur.ict.analytics.domain.LatencyWindow;
+import org.HdrHistogram.AbstractHistogram;
+import org.HdrHistogram.PackedHistogram;
+
+import java.util.Arrays;
+
+/**
+ * Ring of per-slot histograms covering one {@link LatencyWindow}.
+ *
+ * <p>Recording touches only the current slot; a slot is reset and reused when the ring wraps
+ * around to it. Slots are allocated on first use and packed, so a slot holding a few minutes of
+ * samples costs hundreds of bytes rather than the full counts array. Not thread-safe.</p>
+ */
+final class SlidingLatencyHistogram {
+
+    private final long slotMillis;
+    private final PackedHistogram[] slots;
+    private final long[] slotNumbers;
+
+    SlidingLatencyHistogram(LatencyWindow window) {
+        this.slotMillis = window.slotDuration().toMillis();
+        this.slots = new PackedHistogram[window.slotCount()];
+        this.slotNumbers = new long[window.slotCount()];
+        Arrays.fill(slotNumbers, Long.MIN_VALUE);
+    }
+
+    void record(long valueMicros, long nowMillis) {
+        long slotNumber = nowMillis / slotMillis;
+        int index = (int) (slotNumber % slots.length);
+        if (slotNumbers[index] != slotNumber) {
+            if (slots[index] == null) {
+                slots[index] = new PackedHistogram(LatencyPercentileService.HIGHEST_TRACKABLE_MICROS,
+                        LatencyPercentileService.SIGNIFICANT_DIGITS);
+            } else {
+                slots[index].reset();
+            }
+            slotNumbers[index] = slotNumber;
+        }
+        slots[index].recordValue(valueMicros);
+    }
+
+    /**
+     * Add every slot still inside the window to {@code target}.
+     */
+    void addTo(AbstractHistogram target, long nowMillis) {
+        long oldestLive = nowMillis / slotMillis - slots.length;
+        for (int i = 0; i < slots.length; i++) {
+            if (slots[i] != null && slotNumbers[i] > oldestLive) {
+                target.add(slots[i]);
+            }
+        }
+    }
+
+    /**
+     * True when every slot has rotated out of the window.
+     */
+    boolean isEmpty(long nowMillis) {
+        long oldestLive = nowMillis / slotMillis - slots.length;
+        for (long slotNumber : slotNumbers) {
+            if (slotNumber > oldestLive) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,121 @@
+package me.paulbaur.ict.analytics.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import me.paulbaur.ict.analytics.domain.StandardWindow;
+import me.paulbaur.ict.coordination.service.LeaderElectionService;
+import me.paulbaur.ict.target.domain.Target;
+import me.paulbaur.ict.target.store.TargetRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static net.logstash.logback.argument.StructuredArguments.kv;
+
+/**
+ * Keeps the analytics cache warm for the trailing standard windows (1h, 24h, 7d, 30d) of every
+ * enabled target, so dashboards opened on those windows never wait for a cold aggregation.
+ *
+ * <p>Runs on the leader only; other nodes read the results from the shared cache. Each run
+ * recomputes only the entries that would expire before the run after next, so a window is
+ * computed about once per {@code ict.analytics.result-ttl} rather than on every run. The interval
+ * must stay well below that TTL. Runs on a dedicated single-thread executor, so a slow run never
+ * holds probe threads.</p>
+ */
+@Service
+@Slf4j
+public class StandardWindowPrecomputeService {
+
+    private final TargetRepository targetRepository;
+    private final ProbeAnalyticsService analyticsService;
+    private final LeaderElectionService leaderElectionService;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final Counter computed;
+    private final Counter skipped;
+    private final Counter failed;
+
+    @Value("${ict.analytics.precompute.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${ict.analytics.precompute.interval-ms:60000}")
+    private long intervalMs = 60_000;
+
+    public StandardWindowPrecomputeService(TargetRepository targetRepository,
+                                           ProbeAnalyticsService analyticsService,
+                                           MeterRegistry meterRegistry,
+                                           @Autowired(required = false) LeaderElectionService leaderElectionService) {
+        this.targetRepository = targetRepository;
+        this.analyticsService = analyticsService;
+        this.leaderElectionService = leaderElectionService;
+        this.computed = windowsCounter(meterRegistry, "success");
+        this.skipped = windowsCounter(meterRegistry, "skipped");
+        this.failed = windowsCounter(meterRegistry, "failure");
+    }
+
+    /**
+     * Recompute the standard windows of every enabled target that are close to expiry. A failing
+     * target is logged and skipped; its windows fall back to on-demand computation until the next run.
+     */
+    @Scheduled(initialDelay = 15000, fixedDelayString = "${ict.analytics.precompute.interval-ms:60000}")
+    @Async("analyticsPrecomputeExecutor")
+    public void precompute() {
+        if (!enabled || (leaderElectionService != null && !leaderElectionService.isLeader())) {
+            return;
+        }
+        // Runs are asynchronous, so a slow run must not overlap the next one
+        if (!running.compareAndSet(false, true)) {
+            log.debug("Skipped standard window precomputation, previous run still active");
+            return;
+        }
+        try {
+            long startNanos = System.nanoTime();
+            int targets = 0;
+            for (Target target : targetRepository.findAll()) {
+                if (target.isEnabled()) {
+                    precomputeTarget(target.getId().toString());
+                    targets++;
+                }
+            }
+            log.info("Precomputed standard analytics windows",
+                    kv("targets", targets),
+                    kv("durationMs", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos)));
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private void precomputeTarget(String targetId) {
+        // Two intervals, so an entry is still replaced in time when the next run starts late
+        Duration refreshMargin = Duration.ofMillis(2 * intervalMs);
+        for (StandardWindow window : StandardWindow.values()) {
+            try {
+                if (analyticsService.precomputeStandardWindow(targetId, window, refreshMargin)) {
+                    computed.increment();
+                } else {
+                    skipped.increment();
+                }
+            } catch (RuntimeException e) {
+                failed.increment();
+                log.warn("Failed to precompute standard analytics window",
+                        kv("targetId", targetId),
+                        kv("window", window.label()),
+                        kv("error", e.getMessage()));
+            }
+        }
+    }
+
+    private static Counter windowsCounter(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("analytics.precompute.windows")
+                .tag("outcome", outcome)
+                .description("Standard analytics windows precomputed into the cache")
+                .register(meterRegistry);
+    }
+}
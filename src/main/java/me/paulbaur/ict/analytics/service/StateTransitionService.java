@@ -0,0 +1,100 @@
+package me.paulbaur.ict.analytics.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import me.paulbaur.ict.analytics.domain.StateChange;
+import me.paulbaur.ict.analytics.repository.ElasticsearchAnalyticsRepository;
+import me.paulbaur.ict.common.model.ProbeStatus;
+import me.paulbaur.ict.coordination.event.LeadershipChangedEvent;
+import me.paulbaur.ict.probe.domain.ProbeResult;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static net.logstash.logback.argument.StructuredArguments.kv;
+
+/**
+ * Writes a compact transition document for every state change, so state-change history is an
+ * indexed range query instead of a scan over raw probe results.
+ *
+ * <p>The time each target entered its current status is kept in memory to compute how long the
+ * previous status lasted. It is dropped whenever this node gains or loses leadership, since
+ * another node may have recorded transitions meanwhile; after that, or a restart, it is read
+ * back from the most recent transition document. Transitions must be recorded in the order
+ * they happen, so callers record them on the probing thread. Every transition is also applied
+ * to the in-memory {@link OutageIndexService}.</p>
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class StateTransitionService {
+
+    private final ElasticsearchAnalyticsRepository analyticsRepository;
+    private final OutageIndexService outageIndexService;
+
+    private final Map<String, Instant> statusSince = new ConcurrentHashMap<>();
+
+    /**
+     * Record the transition from {@code previousStatus} to the status of {@code result}.
+     */
+    public void recordTransition(ProbeResult result, ProbeStatus previousStatus) {
+        String targetId = result.targetId();
+        Instant previousSince = statusSince.put(targetId, result.timestamp());
+        if (previousSince == null) {
+            previousSince = lastTransitionTime(targetId);
+        }
+        Long durationMs = previousSince != null && previousSince.isBefore(result.timestamp())
+                ? Duration.between(previousSince, result.timestamp()).toMillis()
+                : null;
+
+        StateChange stateChange = new StateChange(
+                targetId,
+                result.timestamp(),
+                previousStatus,
+                result.status(),
+                result.errorMessage(),
+                durationMs
+        );
+        outageIndexService.apply(stateChange);
+        try {
+            analyticsRepository.saveStateChange(stateChange);
+            log.debug("Recorded state transition",
+                    kv("targetId", targetId),
+                    kv("fromStatus", previousStatus),
+                    kv("toStatus", result.status()),
+                    kv("durationMs", durationMs));
+        } catch (IOException | RuntimeException e) {
+            log.error("Failed to record state transition",
+                    kv("targetId", targetId),
+                    kv("fromStatus", previousStatus),
+                    kv("toStatus", result.status()),
+                    kv("error", e.getMessage()),
+                    e);
+        }
+    }
+
+    @EventListener
+    public void handleLeadershipChanged(LeadershipChangedEvent event) {
+        statusSince.clear();
+        log.debug("Dropped cached status start times after leadership change",
+                kv("leader", event.isLeader()));
+    }
+
+    private Instant lastTransitionTime(String targetId) {
+        try {
+            return analyticsRepository.findLatestStateChange(targetId)
+                    .map(StateChange::timestamp)
+                    .orElse(null);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to read last state transition, duration will be unknown",
+                    kv("targetId", targetId),
+                    kv("error", e.getMessage()));
+            return null;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package me.paulbaur.ict.analytics.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Chooses the fixed bucket interval of a time series so the number of buckets stays bounded
+ * regardless of the requested range.
+ */
+final class TimeSeriesIntervals {
+
+    static final String AUTO = "auto";
+
+    private static final Pattern INTERVAL = Pattern.compile("(\\d+)([smhd])");
+
+    // Coarser intervals are never useful and keep every later millisecond computation in range
+    private static final Duration MAX_INTERVAL = Duration.ofDays(3650);
+
+    // Candidates for automatic selection, finest first
+    private static final List<Duration> AUTO_INTERVALS = List.of(
+            Duration.ofSeconds(10),
+            Duration.ofSeconds(30),
+            Duration.ofMinutes(1),
+            Duration.ofMinutes(5),
+            Duration.ofMinutes(10),
+            Duration.ofMinutes(15),
+            Duration.ofMinutes(30),
+            Duration.ofHours(1),
+            Duration.ofHours(3),
+            Duration.ofHours(6),
+            Duration.ofHours(12),
+            Duration.ofDays(1),
+            Duration.ofDays(7)
+    );
+
+    private TimeSeriesIntervals() {
+    }
+
+    /**
+     * Resolve {@code interval} for {@code [start, end]}.
+     *
+     * @param interval      an explicit interval such as {@code 30m}, or {@code auto}/blank to pick the
+     *                      finest interval producing at most {@code targetBuckets} buckets
+     * @param maxBuckets    upper bound for explicit intervals; automatic intervals stay within it too
+     * @throws IllegalArgumentException if the interval is malformed or would produce more than
+     *                                  {@code maxBuckets} buckets
+     */
+    static Duration resolve(String interval, Instant start, Instant end, int targetBuckets, int maxBuckets) {
+        Duration range = Duration.between(start, end);
+        try {
+            range.toMillis();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("time range is too large");
+        }
+        if (interval == null || interval.isBlank() || AUTO.equalsIgnoreCase(interval.trim())) {
+            for (Duration candidate : AUTO_INTERVALS) {
+                if (bucketCount(range, candidate) <= targetBuckets) {
+                    return candidate;
+                }
+            }
+            // Past the target even at the coarsest candidate: the smallest multiple of it within the cap
+            Duration coarsest = AUTO_INTERVALS.get(AUTO_INTERVALS.size() - 1);
+            if (bucketCount(range, coarsest) <= maxBuckets) {
+                return coarsest;
+            }
+            long perBucket = Math.max(1, maxBuckets - 1) * coarsest.toMillis();
+            long multiple = (range.toMillis() + perBucket - 1) / perBucket;
+            return coarsest.multipliedBy(Math.max(1, multiple));
+        }
+
+        Duration explicit = parse(interval);
+        long buckets = bucketCount(range, explicit);
+        if (buckets > maxBuckets) {
+            throw new IllegalArgumentException("interval " + interval.trim() + " would produce " + buckets
+                    + " buckets for this range; the maximum is " + maxBuckets + ", use a coarser interval or 'auto'");
+        }
+        return explicit;
+    }
+
+    static Duration parse(String interval) {
+        Matcher matcher = INTERVAL.matcher(interval.trim());
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("interval must be 'auto' or in format like '1h', '30m', '1d'");
+        }
+        Duration unit = switch (matcher.group(2)) {
+            case "s" -> Duration.ofSeconds(1);
+            case "m" -> Duration.ofMinutes(1);
+            case "h" -> Duration.ofHours(1);
+            default -> Duration.ofDays(1);
+        };
+        // Digits only, so anything that does not fit a long is far above the maximum
+        String digits = matcher.group(1);
+        long amount = digits.length() > 18 ? Long.MAX_VALUE : Long.parseLong(digits);
+        if (amount <= 0) {
+            throw new IllegalArgumentException("interval must be positive");
+        }
+        if (amount > MAX_INTERVAL.dividedBy(unit)) {
+            throw new IllegalArgumentException("interval must be at most " + MAX_INTERVAL.toDays() + "d");
+        }
+        return unit.multipliedBy(amount);
+    }
+
+    /**
+     * Buckets are aligned to the epoch, so a range can straddle one more bucket than it spans.
+     */
+    static long bucketCount(Duration range, Duration interval) {
+        return range.toMillis() / interval.toMillis() + 1;
+    }
+}
@@ -0,0 +1,59 @@
+package me.paulbaur.ict.analytics.service;
+
+import me.paulbaur.ict.analytics.domain.StandardWindow;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-size ring of probe counters covering one {@link StandardWindow}.
+ *
+ * <p>A slot is reset and reused when the ring wraps around to it; counts for a slot older
+ * than the one currently occupying its position are dropped. Not thread-safe.</p>
+ */
+final class UptimeCounterRing {
+
+    private final long slotMillis;
+    private final long[] slotNumbers;
+    private final int[] total;
+    private final int[] up;
+
+    UptimeCounterRing(StandardWindow window) {
+        this.slotMillis = window.slotDuration().toMillis();
+        this.slotNumbers = new long[window.slotCount()];
+        this.total = new int[window.slotCount()];
+        this.up = new int[window.slotCount()];
+        Arrays.fill(slotNumbers, Long.MIN_VALUE);
+    }
+
+    void add(long timestampMillis, boolean successful, long count) {
+        long slotNumber = Math.floorDiv(timestampMillis, slotMillis);
+        int index = (int) Math.floorMod(slotNumber, (long) slotNumbers.length);
+        if (slotNumbers[index] != slotNumber) {
+            if (slotNumbers[index] > slotNumber) {
+                return;
+            }
+            slotNumbers[index] = slotNumber;
+            total[index] = 0;
+            up[index] = 0;
+        }
+        int delta = (int) Math.min(count, Integer.MAX_VALUE);
+        total[index] += delta;
+        if (successful) {
+            up[index] += delta;
+        }
+    }
+
+    /**
+     * Sum the slots still inside the window into {@code counts}: total probes, then successful ones.
+     */
+    void sumInto(long[] counts, long nowMillis) {
+        long current = Math.floorDiv(nowMillis, slotMillis);
+        long oldestLive = current - slotNumbers.length;
+        for (int i = 0; i < slotNumbers.length; i++) {
+            if (slotNumbers[i] > oldestLive && slotNumbers[i] <= current) {
+                counts[0] += total[i];
+                counts[1] += up[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package me.paulbaur.ict.analytics.service;
+
+import lombok.extern.slf4j.Slf4j;
+import me.paulbaur.ict.analytics.domain.StandardWindow;
+import me.paulbaur.ict.analytics.domain.UptimeMetrics;
+import me.paulbaur.ict.analytics.repository.ElasticsearchAnalyticsRepository;
+import me.paulbaur.ict.common.model.ProbeStatus;
+import me.paulbaur.ict.coordination.service.LeaderElectionService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static net.logstash.logback.argument.StructuredArguments.kv;
+
+/**
+ * Per-target probe counters for the trailing {@link StandardWindow}s, updated in O(1) on every
+ * probe result so uptime for those windows is answered without querying Elasticsearch.
+ *
+ * <p>Counters are rebuilt from Elasticsearch at startup, and whenever this node regains
+ * leadership, since only the probing node sees results. Until a rebuild completes, and on
+ * nodes that are not the leader, {@link #getUptimeMetrics} returns empty and callers fall back
+ * to Elasticsearch. Results arriving during a rebuild are buffered and replayed on top of it;
+ * results stamped before the rebuild started are taken from Elasticsearch.</p>
+ */
+@Service
+@Slf4j
+public class UptimeCounterService {
+
+    // Bounds the buffer if a rebuild stalls; dropped samples only cost the affected slots a few probes
+    private static final int MAX_PENDING_SAMPLES = 100_000;
+
+    private final ElasticsearchAnalyticsRepository analyticsRepository;
+    private final LeaderElectionService leaderElectionService;
+    private final Clock clock;
+
+    private final Object rebuildLock = new Object();
+    private final List<Sample> pendingSamples = new ArrayList<>();
+    private volatile Map<String, TargetCounters> targets = new ConcurrentHashMap<>();
+    private volatile boolean rebuilding;
+    private volatile boolean ready;
+
+    @Autowired
+    public UptimeCounterService(ElasticsearchAnalyticsRepository analyticsRepository,
+                                @Autowired(required = false) LeaderElectionService leaderElectionService) {
+        this(analyticsRepository, leaderElectionService, Clock.systemUTC());
+    }
+
+    UptimeCounterService(ElasticsearchAnalyticsRepository analyticsRepository,
+                         LeaderElectionService leaderElectionService, Clock clock) {
+        this.analyticsRepository = analyticsRepository;
+        this.leaderElectionService = leaderElectionService;
+        this.clock = clock;
+    }
+
+    /**
+     * Count one probe result in every window.
+     */
+    public void record(String targetId, ProbeStatus status, Instant timestamp) {
+        long timestampMillis = timestamp != null ? timestamp.toEpochMilli() : clock.millis();
+        boolean successful = status == ProbeStatus.UP;
+        if (rebuilding) {
+            synchronized (rebuildLock) {
+                if (rebuilding) {
+                    if (pendingSamples.size() < MAX_PENDING_SAMPLES) {
+                        pendingSamples.add(new Sample(targetId, successful, timestampMillis));
+                    }
+                    return;
+                }
+            }
+        }
+        targets.computeIfAbsent(targetId, id -> new TargetCounters()).add(timestampMillis, successful, 1);
+    }
+
+    /**
+     * Uptime for {@code [start, end]} if it is a standard trailing window and the counters are
+     * complete on this node; empty otherwise.
+     */
+    public Optional<UptimeMetrics> getUptimeMetrics(String targetId, Instant start, Instant end) {
+        if (!ready || !countsAllResults()) {
+            return Optional.empty();
+        }
+        Instant now = clock.instant();
+        Optional<StandardWindow> window = StandardWindow.matching(start, end, now);
+        if (window.isEmpty()) {
+            return Optional.empty();
+        }
+
+        long[] counts = new long[2];
+        TargetCounters counters = targets.get(targetId);
+        if (counters != null) {
+            counters.sumInto(window.get(), counts, now.toEpochMilli());
+        }
+        return Optional.of(UptimeMetrics.calculate(targetId, start, end, counts[0], counts[1], counts[0] - counts[1]));
+    }
+
+    /**
+     * Rebuild the counters from Elasticsearch when they are not complete yet. Retried until it
+     * succeeds; runs on the probe executor so the scans never delay the scheduler thread.
+     */
+    @Scheduled(initialDelay = 5000, fixedDelayString = "${ict.analytics.uptime-counters.rebuild-check-ms:30000}")
+    @Async("probeTaskExecutor")
+    public void rebuildIfNeeded() {
+        if (countsAllResults() && !ready) {
+            rebuild();
+        }
+    }
+
+    void rebuild() {
+        synchronized (rebuildLock) {
+            if (rebuilding) {
+                return;
+            }
+            rebuilding = true;
+            pendingSamples.clear();
+        }
+
+        long cutoffMillis = clock.millis();
+        Map<String, TargetCounters> rebuilt = new ConcurrentHashMap<>();
+        try {
+            for (StandardWindow window : StandardWindow.values()) {
+                long slotMillis = window.slotDuration().toMillis();
+                long firstSlotStart = (Math.floorDiv(cutoffMillis, slotMillis) - window.slotCount() + 1) * slotMillis;
+                analyticsRepository.forEachStatusCount(
+                        Instant.ofEpochMilli(firstSlotStart),
+                        Instant.ofEpochMilli(cutoffMillis),
+                        window.slotDuration(),
+                        count -> rebuilt.computeIfAbsent(count.targetId(), id -> new TargetCounters())
+                                .add(window, count.bucketStart().toEpochMilli(), count.status() == ProbeStatus.UP, count.count())
+                );
+            }
+        } catch (IOException | RuntimeException e) {
+            finishRebuild(targets, Long.MIN_VALUE, false);
+            log.warn("Failed to rebuild uptime counters, will retry", kv("error", e.getMessage()));
+            return;
+        }
+
+        finishRebuild(rebuilt, cutoffMillis, true);
+        log.info("Rebuilt uptime counters from Elasticsearch", kv("targets", rebuilt.size()));
+    }
+
+    private void finishRebuild(Map<String, TargetCounters> counters, long replayFromMillis, boolean complete) {
+        synchronized (rebuildLock) {
+            for (Sample sample : pendingSamples) {
+                if (sample.timestampMillis() >= replayFromMillis) {
+                    counters.computeIfAbsent(sample.targetId(), id -> new TargetCounters())
+                            .add(sample.timestampMillis(), sample.successful(), 1);
+                }
+            }
+            pendingSamples.clear();
+            targets = counters;
+            ready = complete;
+            rebuilding = false;
+        }
+    }
+
+    /**
+     * Only the leader probes, so only its counters see every result. Losing leadership
+     * invalidates them; they are rebuilt once the node is leader again.
+     */
+    private boolean countsAllResults() {
+        if (leaderElectionService == null || leaderElectionService.isLeader()) {
+            return true;
+        }
+        ready = false;
+        return false;
+    }
+
+    boolean isReady() {
+        return ready;
+    }
+
+    private record Sample(String targetId, boolean successful, long timestampMillis) {
+    }
+
+    private static final class TargetCounters {
+        private final UptimeCounterRing[] windows;
+
+        private TargetCounters() {
+            StandardWindow[] all = StandardWindow.values();
+            windows = new UptimeCounterRing[all.length];
+            for (StandardWindow window : all) {
+                windows[window.ordinal()] = new UptimeCounterRing(window);
+            }
+        }
+
+        synchronized void add(long timestampMillis, boolean successful, long count) {
+            for (UptimeCounterRing ring : windows) {
+                ring.add(timestampMillis, successful, count);
+            }
+        }
+
+        synchronized void add(StandardWindow window, long timestampMillis, boolean successful, long count) {
+            windows[window.ordinal()].add(timestampMillis, successful, count);
+        }
+
+        synchronized void sumInto(StandardWindow window, long[] counts, long nowMillis) {
+            windows[window.ordinal()].sumInto(counts, nowMillis);
+        }
+    }
+}
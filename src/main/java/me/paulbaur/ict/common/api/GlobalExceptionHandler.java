@@ -4,8 +4,11 @@ import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.ConstraintViolation;
 import jakarta.validation.ConstraintViolationException;
 import me.paulbaur.ict.common.exception.CircuitBreakerOpenException;
+import me.paulbaur.ict.common.exception.DeadlineExceededException;
 import me.paulbaur.ict.common.exception.NotFoundException;
+import me.paulbaur.ict.common.exception.QueryTooExpensiveException;
 import me.paulbaur.ict.common.exception.RateLimitExceededException;
+import me.paulbaur.ict.common.exception.ServiceUnavailableException;
 import me.paulbaur.ict.common.model.ErrorResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -67,6 +70,45 @@ public class GlobalExceptionHandler {
         return buildError(message, "SERVICE_UNAVAILABLE", HttpStatus.SERVICE_UNAVAILABLE);
     }
 
+    @ExceptionHandler(ServiceUnavailableException.class)
+    public ResponseEntity<ErrorResponse> handleServiceUnavailable(ServiceUnavailableException ex, HttpServletRequest request) {
+        String message = ex.getMessage();
+        log.warn(
+                "Service unavailable",
+                kv("errorCode", "SERVICE_UNAVAILABLE"),
+                kv("status", HttpStatus.SERVICE_UNAVAILABLE.value()),
+                kv("message", message),
+                kv("path", request.getRequestURI())
+        );
+        return buildError(message, "SERVICE_UNAVAILABLE", HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    @ExceptionHandler(QueryTooExpensiveException.class)
+    public ResponseEntity<ErrorResponse> handleQueryTooExpensive(QueryTooExpensiveException ex, HttpServletRequest request) {
+        String message = ex.getMessage();
+        log.warn(
+                "Query rejected by cost guard",
+                kv("errorCode", "QUERY_TOO_EXPENSIVE"),
+                kv("status", HttpStatus.UNPROCESSABLE_ENTITY.value()),
+                kv("message", message),
+                kv("path", request.getRequestURI())
+        );
+        return buildError(message, "QUERY_TOO_EXPENSIVE", HttpStatus.UNPROCESSABLE_ENTITY);
+    }
+
+    @ExceptionHandler(DeadlineExceededException.class)
+    public ResponseEntity<ErrorResponse> handleDeadlineExceeded(DeadlineExceededException ex, HttpServletRequest request) {
+        String message = ex.getMessage();
+        log.warn(
+                "Request deadline exceeded",
+                kv("errorCode", "DEADLINE_EXCEEDED"),
+                kv("status", HttpStatus.GATEWAY_TIMEOUT.value()),
+                kv("message", message),
+                kv("path", request.getRequestURI())
+        );
+        return buildError(message, "DEADLINE_EXCEEDED", HttpStatus.GATEWAY_TIMEOUT);
+    }
+
     @ExceptionHandler(IllegalArgumentException.class)
     public ResponseEntity<ErrorResponse> handleIllegalArgument(IllegalArgumentException ex, HttpServletRequest request) {
         return buildValidationError(ex.getMessage(), request);
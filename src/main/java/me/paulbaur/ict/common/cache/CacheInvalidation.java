@@ -0,0 +1,29 @@
+package me.paulbaur.ict.common.cache;
+
+/**
+ * One cache invalidation: a single key, every key starting with a prefix, or a whole cache.
+ *
+ * @param cacheName cache region
+ * @param scope     what {@code key} selects
+ * @param key       the key or key prefix; null for {@link Scope#ALL}
+ */
+public record CacheInvalidation(String cacheName, Scope scope, String key) {
+
+    public enum Scope {
+        KEY,
+        PREFIX,
+        ALL
+    }
+
+    public static CacheInvalidation key(String cacheName, String key) {
+        return new CacheInvalidation(cacheName, Scope.KEY, key);
+    }
+
+    public static CacheInvalidation prefix(String cacheName, String prefix) {
+        return new CacheInvalidation(cacheName, Scope.PREFIX, prefix);
+    }
+
+    public static CacheInvalidation all(String cacheName) {
+        return new CacheInvalidation(cacheName, Scope.ALL, null);
+    }
+}
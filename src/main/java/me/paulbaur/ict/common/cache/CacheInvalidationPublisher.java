@@ -0,0 +1,19 @@
+package me.paulbaur.ict.common.cache;
+
+/**
+ * Broadcasts L1 invalidations of a {@link TwoTierCache} to the other nodes.
+ */
+@FunctionalInterface
+public interface CacheInvalidationPublisher {
+
+    /**
+     * Publisher for single-node deployments and tests; other nodes never hear about changes.
+     */
+    CacheInvalidationPublisher NOOP = invalidation -> {
+    };
+
+    /**
+     * Tell other nodes to drop the selected keys from their local copy of the cache.
+     */
+    void publish(CacheInvalidation invalidation);
+}
@@ -0,0 +1,160 @@
+package me.paulbaur.ict.common.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import me.paulbaur.ict.common.logging.LogRateLimiter;
+import org.springframework.data.redis.cache.CacheStatistics;
+import org.springframework.data.redis.cache.CacheStatisticsCollector;
+import org.springframework.data.redis.cache.RedisCacheWriter;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import static net.logstash.logback.argument.StructuredArguments.kv;
+
+/**
+ * Cache writer that records the keys of each key family in a Redis set, so a whole family can
+ * be evicted without scanning the keyspace.
+ *
+ * <p>For the configured caches, a key's family is its part up to and including the first
+ * {@value #FAMILY_DELIMITER} (for {@code probe-results}, the target ID). Every write first adds the
+ * Redis key to the family's index set, which expires just after the newest entry listed in it;
+ * a member whose entry has expired is harmless, since unlinking a missing key is a no-op.</p>
+ */
+@Slf4j
+public class FamilyIndexingRedisCacheWriter implements RedisCacheWriter {
+
+    static final String FAMILY_DELIMITER = ":";
+    private static final String INDEX_KEY_PREFIX = "ict:cache-family:";
+    private static final LogRateLimiter indexFailureLimiter = new LogRateLimiter(Duration.ofSeconds(30));
+
+    private final RedisCacheWriter delegate;
+    private final StringRedisTemplate redisTemplate;
+    private final Set<String> indexedCaches;
+
+    public FamilyIndexingRedisCacheWriter(RedisCacheWriter delegate, StringRedisTemplate redisTemplate,
+                                          Set<String> indexedCaches) {
+        this.delegate = delegate;
+        this.redisTemplate = redisTemplate;
+        this.indexedCaches = Set.copyOf(indexedCaches);
+    }
+
+    /**
+     * Family of a cache key (without the cache prefix), or null if it has none.
+     */
+    static String familyOf(String key) {
+        int delimiter = key.indexOf(FAMILY_DELIMITER);
+        return delimiter < 0 ? null : key.substring(0, delimiter + FAMILY_DELIMITER.length());
+    }
+
+    /**
+     * Redis key of the set indexing the keys of {@code family} in {@code cacheName}.
+     */
+    static String indexKey(String cacheName, String family) {
+        return INDEX_KEY_PREFIX + RedisCacheFamilyEvictor.redisKey(cacheName, family);
+    }
+
+    @Override
+    public byte[] get(String name, byte[] key) {
+        return delegate.get(name, key);
+    }
+
+    @Override
+    public byte[] get(String name, byte[] key, Duration ttl) {
+        return delegate.get(name, key, ttl);
+    }
+
+    @Override
+    public boolean supportsAsyncRetrieve() {
+        return delegate.supportsAsyncRetrieve();
+    }
+
+    @Override
+    public CompletableFuture<byte[]> retrieve(String name, byte[] key, Duration ttl) {
+        return delegate.retrieve(name, key, ttl);
+    }
+
+    @Override
+    public void put(String name, byte[] key, byte[] value, Duration ttl) {
+        index(name, key, ttl);
+        delegate.put(name, key, value, ttl);
+    }
+
+    @Override
+    public CompletableFuture<Void> store(String name, byte[] key, byte[] value, Duration ttl) {
+        index(name, key, ttl);
+        return delegate.store(name, key, value, ttl);
+    }
+
+    @Override
+    public byte[] putIfAbsent(String name, byte[] key, byte[] value, Duration ttl) {
+        index(name, key, ttl);
+        return delegate.putIfAbsent(name, key, value, ttl);
+    }
+
+    @Override
+    public void remove(String name, byte[] key) {
+        delegate.remove(name, key);
+    }
+
+    @Override
+    public void clean(String name, byte[] pattern) {
+        delegate.clean(name, pattern);
+    }
+
+    @Override
+    public void clearStatistics(String name) {
+        delegate.clearStatistics(name);
+    }
+
+    @Override
+    public RedisCacheWriter withStatisticsCollector(CacheStatisticsCollector cacheStatisticsCollector) {
+        return new FamilyIndexingRedisCacheWriter(delegate.withStatisticsCollector(cacheStatisticsCollector),
+                redisTemplate, indexedCaches);
+    }
+
+    @Override
+    public CacheStatistics getCacheStatistics(String cacheName) {
+        return delegate.getCacheStatistics(cacheName);
+    }
+
+    // Indexed before the entry is written, so an entry is never unreachable by family eviction
+    private void index(String name, byte[] key, Duration ttl) {
+        if (!indexedCaches.contains(name)) {
+            return;
+        }
+        String redisKey = new String(key, StandardCharsets.UTF_8);
+        String cachePrefix = RedisCacheFamilyEvictor.redisKey(name, "");
+        if (!redisKey.startsWith(cachePrefix)) {
+            return;
+        }
+        String family = familyOf(redisKey.substring(cachePrefix.length()));
+        if (family == null) {
+            return;
+        }
+        String indexKey = indexKey(name, family);
+        try {
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection stringConnection = (StringRedisConnection) connection;
+                stringConnection.sAdd(indexKey, redisKey);
+                if (ttl != null && !ttl.isZero() && !ttl.isNegative()) {
+                    // Region TTLs are fixed, so the index outlives every entry it lists
+                    stringConnection.expire(indexKey, ttl.toSeconds() + 1);
+                }
+                return null;
+            });
+        } catch (RuntimeException e) {
+            // The entry is still written; it then only expires by TTL instead of being evicted with its family
+            if (indexFailureLimiter.shouldLog(name)) {
+                log.warn("Failed to index cache key family",
+                        kv("cache", name),
+                        kv("family", family),
+                        kv("error", e.getMessage()));
+            }
+        }
+    }
+}
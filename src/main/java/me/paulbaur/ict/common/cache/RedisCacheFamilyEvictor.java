@@ -0,0 +1,198 @@
+package me.paulbaur.ict.common.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.transaction.TransactionAwareCacheDecorator;
+import org.springframework.data.redis.cache.CacheKeyPrefix;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static net.logstash.logback.argument.StructuredArguments.kv;
+
+/**
+ * Evicts whole key families from Redis-backed caches in bulk.
+ *
+ * <p>In caches written through {@link FamilyIndexingRedisCacheWriter}, a prefix naming a whole
+ * family is resolved by reading the family's index set, all families in one pipeline. Other
+ * prefixes, and clears of a whole cache, fall back to one {@code SCAN} per affected cache. Every
+ * matched key is then removed with a single {@code UNLINK}, the removed keys are dropped from
+ * their index sets and the invalidations are broadcast to the other nodes' L1 caches in the same
+ * pipeline. This node's L1 is updated directly.</p>
+ */
+@Slf4j
+public class RedisCacheFamilyEvictor {
+
+    private static final int SCAN_COUNT = 1000;
+
+    private final StringRedisTemplate redisTemplate;
+    private final CacheManager cacheManager;
+    private final RedisCacheInvalidationBus invalidationBus;
+    private final Set<String> familyIndexedCaches;
+
+    public RedisCacheFamilyEvictor(RedisConnectionFactory connectionFactory, CacheManager cacheManager,
+                                   RedisCacheInvalidationBus invalidationBus, Set<String> familyIndexedCaches) {
+        this(new StringRedisTemplate(connectionFactory), cacheManager, invalidationBus, familyIndexedCaches);
+    }
+
+    RedisCacheFamilyEvictor(StringRedisTemplate redisTemplate, CacheManager cacheManager,
+                            RedisCacheInvalidationBus invalidationBus, Set<String> familyIndexedCaches) {
+        this.redisTemplate = redisTemplate;
+        this.cacheManager = cacheManager;
+        this.invalidationBus = invalidationBus;
+        this.familyIndexedCaches = Set.copyOf(familyIndexedCaches);
+    }
+
+    /**
+     * Evict everything selected by {@code invalidations} from Redis and from the L1 of every node.
+     *
+     * @return the number of Redis keys removed
+     */
+    public long evict(Collection<CacheInvalidation> invalidations) {
+        if (invalidations.isEmpty()) {
+            return 0;
+        }
+
+        Map<String, Set<String>> indexedKeys = new HashMap<>();
+        Set<String> keys = redisKeys(invalidations, indexedKeys);
+        List<String> messages = new ArrayList<>(invalidations.size());
+        for (CacheInvalidation invalidation : invalidations) {
+            messages.add(invalidationBus.encode(invalidation));
+        }
+        String channel = invalidationBus.getChannel();
+
+        List<Object> replies = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection stringConnection = (StringRedisConnection) connection;
+            if (!keys.isEmpty()) {
+                stringConnection.unlink(keys.toArray(String[]::new));
+            }
+            // Only the members read above: keys indexed meanwhile stay reachable for the next eviction
+            indexedKeys.forEach((indexKey, members) -> stringConnection.sRem(indexKey, members.toArray(String[]::new)));
+            for (String message : messages) {
+                stringConnection.publish(channel, message);
+            }
+            return null;
+        });
+
+        for (CacheInvalidation invalidation : invalidations) {
+            applyLocal(invalidation);
+        }
+
+        long removed = !keys.isEmpty() && !replies.isEmpty() && replies.get(0) instanceof Long count ? count : 0;
+        log.debug(
+                "Evicted cache key families",
+                kv("invalidations", invalidations.size()),
+                kv("keysMatched", keys.size()),
+                kv("keysRemoved", removed)
+        );
+        return removed;
+    }
+
+    private Set<String> redisKeys(Collection<CacheInvalidation> invalidations, Map<String, Set<String>> indexedKeys) {
+        Set<String> keys = new LinkedHashSet<>();
+        Map<String, Set<String>> prefixesByCache = new HashMap<>();
+        List<String> indexKeys = new ArrayList<>();
+        for (CacheInvalidation invalidation : invalidations) {
+            switch (invalidation.scope()) {
+                case KEY -> keys.add(redisKey(invalidation.cacheName(), invalidation.key()));
+                case PREFIX -> {
+                    if (isIndexedFamily(invalidation)) {
+                        indexKeys.add(FamilyIndexingRedisCacheWriter.indexKey(invalidation.cacheName(), invalidation.key()));
+                    } else {
+                        prefixesByCache.computeIfAbsent(invalidation.cacheName(), name -> new HashSet<>())
+                                .add(invalidation.key());
+                    }
+                }
+                // The empty prefix matches every key of the cache
+                case ALL -> prefixesByCache.computeIfAbsent(invalidation.cacheName(), name -> new HashSet<>())
+                        .add("");
+            }
+        }
+
+        if (!indexKeys.isEmpty()) {
+            List<Object> members = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection stringConnection = (StringRedisConnection) connection;
+                for (String indexKey : indexKeys) {
+                    stringConnection.sMembers(indexKey);
+                }
+                return null;
+            });
+            for (int i = 0; i < indexKeys.size() && i < members.size(); i++) {
+                if (members.get(i) instanceof Set<?> family && !family.isEmpty()) {
+                    Set<String> familyKeys = new LinkedHashSet<>();
+                    family.forEach(member -> familyKeys.add(member.toString()));
+                    keys.addAll(familyKeys);
+                    indexedKeys.put(indexKeys.get(i), familyKeys);
+                }
+            }
+        }
+
+        prefixesByCache.forEach((cacheName, prefixes) -> {
+            String keyPrefix = redisKey(cacheName, "");
+            PrefixMatcher matcher = new PrefixMatcher(prefixes);
+            ScanOptions options = ScanOptions.scanOptions().match(keyPrefix + "*").count(SCAN_COUNT).build();
+            try (Cursor<String> cursor = redisTemplate.scan(options)) {
+                cursor.forEachRemaining(redisKey -> {
+                    if (matcher.matches(redisKey.substring(keyPrefix.length()))) {
+                        keys.add(redisKey);
+                    }
+                });
+            }
+        });
+        return keys;
+    }
+
+    private boolean isIndexedFamily(CacheInvalidation invalidation) {
+        return familyIndexedCaches.contains(invalidation.cacheName())
+                && invalidation.key().equals(FamilyIndexingRedisCacheWriter.familyOf(invalidation.key()));
+    }
+
+    static String redisKey(String cacheName, String key) {
+        return CacheKeyPrefix.simple().compute(cacheName) + key;
+    }
+
+    private void applyLocal(CacheInvalidation invalidation) {
+        Cache cache = cacheManager.getCache(invalidation.cacheName());
+        if (cache instanceof TransactionAwareCacheDecorator decorator) {
+            cache = decorator.getTargetCache();
+        }
+        if (cache instanceof TwoTierCache twoTierCache) {
+            twoTierCache.applyLocal(invalidation);
+        }
+    }
+
+    /**
+     * Matches keys against a set of prefixes with one set lookup per distinct prefix length.
+     */
+    static final class PrefixMatcher {
+        private final Set<String> prefixes;
+        private final int[] lengths;
+
+        PrefixMatcher(Set<String> prefixes) {
+            this.prefixes = prefixes;
+            this.lengths = prefixes.stream().mapToInt(String::length).distinct().toArray();
+        }
+
+        boolean matches(String key) {
+            for (int length : lengths) {
+                if (length <= key.length() && prefixes.contains(key.substring(0, length))) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package me.paulbaur.ict.common.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import me.paulbaur.ict.common.logging.LogRateLimiter;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.UUID;
+
+import static net.logstash.logback.argument.StructuredArguments.kv;
+
+/**
+ * Carries L1 invalidations between nodes over a Redis pub/sub channel.
+ *
+ * <p>Messages are {@code nodeId|scope|cacheName|key} with scope {@code K} (one key), {@code P}
+ * (key prefix) or {@code A} (whole cache). The key comes last so it may itself contain the
+ * separator. Each node ignores its own messages, since it already applied the change locally.
+ * Pub/sub is fire-and-forget; a node that misses a message catches up when its L1 entry expires.</p>
+ */
+@Slf4j
+public class RedisCacheInvalidationBus implements CacheInvalidationPublisher, MessageListener {
+
+    private static final char SEPARATOR = '|';
+    private static final String KEY = "K";
+    private static final String PREFIX = "P";
+    private static final String ALL = "A";
+    private static final LogRateLimiter publishFailureLimiter = new LogRateLimiter(Duration.ofSeconds(30));
+
+    private final StringRedisTemplate redisTemplate;
+    private final String channel;
+    private final String nodeId;
+
+    private volatile TwoTierCacheManager cacheManager;
+
+    public RedisCacheInvalidationBus(StringRedisTemplate redisTemplate, String channel) {
+        this(redisTemplate, channel, UUID.randomUUID().toString());
+    }
+
+    RedisCacheInvalidationBus(StringRedisTemplate redisTemplate, String channel, String nodeId) {
+        this.redisTemplate = redisTemplate;
+        this.channel = channel;
+        this.nodeId = nodeId;
+    }
+
+    /**
+     * Set the cache manager whose L1 caches received invalidations apply to.
+     */
+    public void bind(TwoTierCacheManager cacheManager) {
+        this.cacheManager = cacheManager;
+    }
+
+    public String getChannel() {
+        return channel;
+    }
+
+    @Override
+    public void publish(CacheInvalidation invalidation) {
+        try {
+            redisTemplate.convertAndSend(channel, encode(invalidation));
+        } catch (RuntimeException e) {
+            // Other nodes fall back to their L1 TTL; the local change has already been applied
+            if (publishFailureLimiter.shouldLog(invalidation.cacheName())) {
+                log.warn(
+                        "Failed to publish cache invalidation",
+                        kv("cache", invalidation.cacheName()),
+                        kv("channel", channel),
+                        kv("error", e.getMessage())
+                );
+            }
+        }
+    }
+
+    /**
+     * Encode an invalidation as a message for {@link #getChannel()}, e.g. to publish it in a pipeline.
+     */
+    public String encode(CacheInvalidation invalidation) {
+        String scope = switch (invalidation.scope()) {
+            case KEY -> KEY;
+            case PREFIX -> PREFIX;
+            case ALL -> ALL;
+        };
+        String key = invalidation.key() != null ? invalidation.key() : "";
+        return nodeId + SEPARATOR + scope + SEPARATOR + invalidation.cacheName() + SEPARATOR + key;
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        handle(new String(message.getBody(), StandardCharsets.UTF_8));
+    }
+
+    void handle(String payload) {
+        String[] parts = payload.split("\\|", 4);
+        if (parts.length != 4) {
+            log.warn("Ignoring malformed cache invalidation message", kv("payload", payload));
+            return;
+        }
+        TwoTierCacheManager target = cacheManager;
+        if (target == null || nodeId.equals(parts[0])) {
+            return;
+        }
+        CacheInvalidation invalidation = switch (parts[1]) {
+            case KEY -> CacheInvalidation.key(parts[2], parts[3]);
+            case PREFIX -> CacheInvalidation.prefix(parts[2], parts[3]);
+            case ALL -> CacheInvalidation.all(parts[2]);
+            default -> null;
+        };
+        if (invalidation == null) {
+            log.warn("Ignoring unknown cache invalidation scope", kv("payload", payload));
+            return;
+        }
+        target.applyRemoteInvalidation(invalidation);
+    }
+}
@@ -0,0 +1,340 @@
+package me.paulbaur.ict.common.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import me.paulbaur.ict.common.exception.DeadlineExceededException;
+import me.paulbaur.ict.common.logging.LoggingContext;
+import me.paulbaur.ict.common.web.RequestDeadline;
+import me.paulbaur.ict.coordination.service.DistributedLockService;
+import org.slf4j.MDC;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.DoubleSupplier;
+import java.util.function.Supplier;
+
+import static net.logstash.logback.argument.StructuredArguments.kv;
+
+/**
+ * Read-through cache for expensive computations with request coalescing and refresh-ahead.
+ *
+ * <ul>
+ *     <li>Concurrent misses for the same key on one node share a single in-flight computation.</li>
+ *     <li>Across nodes, the computing node holds a distributed lock on the key; other nodes wait
+ *     for it and then read its result from the shared cache instead of computing again. If the
+ *     lock service is unavailable the node computes anyway.</li>
+ *     <li>Entries are refreshed in the background before they expire, with a probability that
+ *     grows as expiry approaches and with the cost of the computation (XFetch). Hot entries are
+ *     therefore recomputed once, at a random moment, rather than all expiring together.</li>
+ * </ul>
+ *
+ * <p>Cache read and write failures are treated as misses, so a cache outage degrades to
+ * coalesced direct computation.</p>
+ *
+ * <p>A shared computation runs on the load executor under a fixed server-side budget, not under
+ * the deadline of whichever request happened to start it: a request with a short
+ * {@link RequestDeadline} must not fail the computation for a job that shares it. Each caller's
+ * deadline bounds only its own wait; a caller that gives up leaves the computation running to
+ * fill the cache for the others.</p>
+ */
+@Slf4j
+public class SingleFlightCache {
+
+    private static final String LOCK_PREFIX = "ict:lock:cache:";
+    // Upper bound for one computation; a slower one lets another node start computing in parallel
+    private static final Duration LOCK_LEASE = Duration.ofSeconds(30);
+
+    private final CacheManager cacheManager;
+    private final String cacheName;
+    private final Duration ttl;
+    private final double beta;
+    private final DistributedLockService lockService;
+    private final Duration lockWait;
+    private final Executor refreshExecutor;
+    private final Executor loadExecutor;
+    private final Duration loadBudget;
+    private final Clock clock;
+    private final DoubleSupplier random;
+
+    private final Map<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+    private final Counter loads;
+    private final Counter refreshes;
+    private final Counter coalesced;
+
+    /**
+     * @param ttl             logical lifetime of an entry; the cache region's own TTL should not be shorter
+     * @param beta            XFetch aggressiveness; 1.0 is the usual choice, larger values refresh earlier
+     * @param lockService     cluster-wide lock, or null to coalesce per node only
+     * @param lockWait        how long a node waits for another node's computation before computing itself
+     * @param refreshExecutor runs background refreshes; rejected refreshes are skipped
+     * @param loadExecutor    runs computations requests wait for; a rejected one runs on the requesting thread
+     * @param loadBudget      deadline of one computation, whatever the deadlines of the requests waiting for it
+     */
+    public SingleFlightCache(CacheManager cacheManager, String cacheName, Duration ttl, double beta,
+                             DistributedLockService lockService, Duration lockWait, Executor refreshExecutor,
+                             Executor loadExecutor, Duration loadBudget, MeterRegistry meterRegistry) {
+        this(cacheManager, cacheName, ttl, beta, lockService, lockWait, refreshExecutor, loadExecutor, loadBudget,
+                meterRegistry, Clock.systemUTC(), () -> 1.0 - ThreadLocalRandom.current().nextDouble());
+    }
+
+    SingleFlightCache(CacheManager cacheManager, String cacheName, Duration ttl, double beta,
+                      DistributedLockService lockService, Duration lockWait, Executor refreshExecutor,
+                      Executor loadExecutor, Duration loadBudget, MeterRegistry meterRegistry,
+                      Clock clock, DoubleSupplier random) {
+        this.cacheManager = cacheManager;
+        this.cacheName = cacheName;
+        this.ttl = ttl;
+        this.beta = beta;
+        this.lockService = lockService;
+        this.lockWait = lockWait;
+        this.refreshExecutor = refreshExecutor;
+        this.loadExecutor = loadExecutor;
+        this.loadBudget = loadBudget;
+        this.clock = clock;
+        this.random = random;
+
+        this.loads = loadsCounter(meterRegistry, "miss");
+        this.refreshes = loadsCounter(meterRegistry, "refresh");
+        this.coalesced = Counter.builder("cache.singleflight.coalesced")
+                .tag("cache", cacheName)
+                .description("Requests that joined a computation already in flight")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Return the cached value for {@code key}, computing it with {@code loader} on a miss.
+     * Exceptions thrown by the loader propagate to every request that shared the computation.
+     *
+     * @throws DeadlineExceededException if the caller's deadline passed before the value was computed
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(String key, Supplier<T> loader) {
+        Entry entry = read(key);
+        long now = clock.millis();
+        if (entry != null && now < entry.expiresAtMillis()) {
+            if (shouldRefreshEarly(entry, now)) {
+                refreshAsync(key, loader, entry.computedAtMillis());
+            }
+            return (T) entry.value();
+        }
+        return (T) load(key, loader, entry != null ? entry.computedAtMillis() : -1, true);
+    }
+
+    /**
+     * Store a value computed outside {@link #get}, replacing any cached entry, for callers that
+     * keep entries warm ahead of requests.
+     *
+     * @param computeMillis how long the computation took; drives refresh-ahead like a loaded entry
+     */
+    public void put(String key, Object value, long computeMillis) {
+        write(key, value, computeMillis);
+    }
+
+    /**
+     * Whether {@code key} has no live entry or its entry expires within {@code margin}, for callers
+     * that keep entries warm and should recompute them only once per TTL.
+     */
+    public boolean expiresWithin(String key, Duration margin) {
+        Entry entry = read(key);
+        return entry == null || clock.millis() + margin.toMillis() >= entry.expiresAtMillis();
+    }
+
+    /**
+     * XFetch: refresh when {@code now - computeTime * beta * ln(rand)} reaches the expiry time.
+     */
+    boolean shouldRefreshEarly(Entry entry, long now) {
+        double head = -Math.max(1, entry.computeMillis()) * beta * Math.log(random.getAsDouble());
+        return now + head >= entry.expiresAtMillis();
+    }
+
+    private void refreshAsync(String key, Supplier<?> loader, long observedComputedAt) {
+        if (inFlight.containsKey(key)) {
+            return;
+        }
+        try {
+            refreshExecutor.execute(() -> {
+                try {
+                    load(key, loader, observedComputedAt, false);
+                } catch (RuntimeException e) {
+                    // The current entry stays valid until it expires; the next read will retry
+                    log.warn("Background cache refresh failed",
+                            kv("cache", cacheName),
+                            kv("key", key),
+                            kv("error", e.getMessage()));
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.debug("Skipped background cache refresh, executor saturated", kv("cache", cacheName), kv("key", key));
+        }
+    }
+
+    private Object load(String key, Supplier<?> loader, long observedComputedAt, boolean waitForOtherNodes) {
+        CompletableFuture<Object> mine = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(key, mine);
+        if (existing != null) {
+            coalesced.increment();
+            return await(existing);
+        }
+        Map<String, String> loggingContext = MDC.getCopyOfContextMap();
+        Runnable computation = () -> {
+            try (LoggingContext ignored = LoggingContext.withValues(loggingContext != null ? loggingContext : Map.of());
+                 RequestDeadline ignoredDeadline = RequestDeadline.at(clock.instant().plus(loadBudget))) {
+                mine.complete(computeClusterWide(key, loader, observedComputedAt, waitForOtherNodes));
+            } catch (RuntimeException | Error e) {
+                mine.completeExceptionally(e);
+            } finally {
+                inFlight.remove(key, mine);
+            }
+        };
+        if (!waitForOtherNodes) {
+            // Background refreshes already run on their own executor and no request waits for them
+            computation.run();
+            return await(mine);
+        }
+        try {
+            loadExecutor.execute(computation);
+        } catch (RejectedExecutionException e) {
+            // Bounded by the caller's deadline as well as the budget, since it runs on the caller's thread
+            computation.run();
+        }
+        return await(mine);
+    }
+
+    private Object computeClusterWide(String key, Supplier<?> loader, long observedComputedAt, boolean waitForOtherNodes) {
+        String lockKey = LOCK_PREFIX + cacheName + ":" + key;
+        boolean locked = tryLock(lockKey, waitForOtherNodes ? lockWait.toMillis() : 0);
+        try {
+            Entry current = read(key);
+            if (current != null && clock.millis() < current.expiresAtMillis()) {
+                // Another node stored a newer value while this one waited for the lock
+                if (current.computedAtMillis() > observedComputedAt) {
+                    return current.value();
+                }
+                // Another node is refreshing this entry right now; keep serving the current value
+                if (!locked && !waitForOtherNodes && lockService != null) {
+                    return current.value();
+                }
+            }
+
+            (waitForOtherNodes ? loads : refreshes).increment();
+            long startNanos = System.nanoTime();
+            Object value = loader.get();
+            long computeMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+            write(key, value, computeMillis);
+            return value;
+        } finally {
+            if (locked) {
+                unlock(lockKey);
+            }
+        }
+    }
+
+    private boolean tryLock(String lockKey, long waitMillis) {
+        if (lockService == null) {
+            return false;
+        }
+        try {
+            return lockService.tryLock(lockKey, waitMillis, LOCK_LEASE.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (RuntimeException e) {
+            log.debug("Cache lock unavailable, computing without it", kv("cache", cacheName), kv("error", e.getMessage()));
+            return false;
+        }
+    }
+
+    private void unlock(String lockKey) {
+        try {
+            lockService.unlock(lockKey);
+        } catch (RuntimeException e) {
+            // The lease expires on its own
+            log.debug("Failed to release cache lock", kv("cache", cacheName), kv("error", e.getMessage()));
+        }
+    }
+
+    private Entry read(String key) {
+        try {
+            Cache cache = cacheManager.getCache(cacheName);
+            return cache != null ? cache.get(key, Entry.class) : null;
+        } catch (RuntimeException e) {
+            log.debug("Failed to read from cache", kv("cache", cacheName), kv("key", key), kv("error", e.getMessage()));
+            return null;
+        }
+    }
+
+    private void write(String key, Object value, long computeMillis) {
+        if (value == null) {
+            return;
+        }
+        long now = clock.millis();
+        try {
+            Cache cache = cacheManager.getCache(cacheName);
+            if (cache != null) {
+                cache.put(key, new Entry(value, now, computeMillis, now + ttl.toMillis()));
+            }
+        } catch (RuntimeException e) {
+            log.debug("Failed to write to cache", kv("cache", cacheName), kv("key", key), kv("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Wait for a shared computation until the caller's own deadline, leaving it running if that passes.
+     */
+    private Object await(CompletableFuture<Object> future) {
+        Optional<Instant> deadline = RequestDeadline.current();
+        try {
+            if (deadline.isEmpty()) {
+                return future.get();
+            }
+            long remainingMillis = Duration.between(clock.instant(), deadline.get()).toMillis();
+            return future.get(Math.max(0, remainingMillis), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new DeadlineExceededException("The request did not complete within its deadline");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while waiting for a shared computation");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw new CompletionException(e.getCause());
+        }
+    }
+
+    private Counter loadsCounter(MeterRegistry meterRegistry, String reason) {
+        return Counter.builder("cache.singleflight.loads")
+                .tag("cache", cacheName)
+                .tag("reason", reason)
+                .description("Computations run to fill the cache")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Cached value with the metadata refresh-ahead needs.
+     *
+     * @param value            the computed value
+     * @param computedAtMillis when the value was stored
+     * @param computeMillis    how long the computation took
+     * @param expiresAtMillis  when the value must no longer be served
+     */
+    public record Entry(Object value, long computedAtMillis, long computeMillis, long expiresAtMillis) {
+    }
+}
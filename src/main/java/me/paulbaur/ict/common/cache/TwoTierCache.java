@@ -0,0 +1,263 @@
+package me.paulbaur.ict.common.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.Ticker;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.SimpleValueWrapper;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * {@link Cache} that keeps a bounded in-process L1 (Caffeine, W-TinyLFU) in front of a shared L2
+ * such as Redis.
+ *
+ * <p>Reads are served from L1 when possible and fall back to L2, copying hits into L1. Writes and
+ * evictions go to both tiers and are broadcast through a {@link CacheInvalidationPublisher} so
+ * other nodes drop their now stale L1 entries; the L1 TTL bounds staleness if a broadcast is lost.
+ * L1 keys are the string form of the cache key, which is also what Redis stores.</p>
+ *
+ * <p>Per-tier hits and misses are counted in {@code cache.tier.gets} and L1 evictions in
+ * {@code cache.tier.evictions}. L2 expiry happens inside Redis and is not counted here.</p>
+ */
+public class TwoTierCache implements Cache {
+
+    static final String L1 = "l1";
+    static final String L2 = "l2";
+
+    private final String name;
+    private final Cache l2;
+    private final com.github.benmanes.caffeine.cache.Cache<String, Object> l1;
+    private final CacheInvalidationPublisher publisher;
+
+    private final Counter l1Hits;
+    private final Counter l1Misses;
+    private final Counter l2Hits;
+    private final Counter l2Misses;
+    private final Counter sizeEvictions;
+    private final Counter expiredEvictions;
+    private final Counter remoteInvalidations;
+
+    public TwoTierCache(Cache l2, long maximumSize, Duration ttl, MeterRegistry meterRegistry,
+                        CacheInvalidationPublisher publisher) {
+        this(l2, maximumSize, ttl, meterRegistry, publisher, Ticker.systemTicker(), ForkJoinPool.commonPool());
+    }
+
+    TwoTierCache(Cache l2, long maximumSize, Duration ttl, MeterRegistry meterRegistry,
+                 CacheInvalidationPublisher publisher, Ticker ticker, Executor executor) {
+        this.name = l2.getName();
+        this.l2 = l2;
+        this.publisher = publisher;
+
+        this.l1Hits = getsCounter(meterRegistry, L1, "hit");
+        this.l1Misses = getsCounter(meterRegistry, L1, "miss");
+        this.l2Hits = getsCounter(meterRegistry, L2, "hit");
+        this.l2Misses = getsCounter(meterRegistry, L2, "miss");
+        this.sizeEvictions = evictionsCounter(meterRegistry, "size");
+        this.expiredEvictions = evictionsCounter(meterRegistry, "expired");
+        this.remoteInvalidations = Counter.builder("cache.tier.invalidations.received")
+                .tag("cache", name)
+                .description("L1 invalidations received from other nodes")
+                .register(meterRegistry);
+
+        this.l1 = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .ticker(ticker)
+                .executor(executor)
+                .evictionListener((String key, Object value, RemovalCause cause) -> recordEviction(cause))
+                .build();
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return l2.getNativeCache();
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        String l1Key = l1Key(key);
+        Object value = l1.getIfPresent(l1Key);
+        if (value != null) {
+            l1Hits.increment();
+            return new SimpleValueWrapper(value);
+        }
+        l1Misses.increment();
+
+        ValueWrapper wrapper = l2.get(key);
+        if (wrapper == null) {
+            l2Misses.increment();
+            return null;
+        }
+        l2Hits.increment();
+        if (wrapper.get() != null) {
+            l1.put(l1Key, wrapper.get());
+        }
+        return wrapper;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Class<T> type) {
+        ValueWrapper wrapper = get(key);
+        Object value = wrapper != null ? wrapper.get() : null;
+        if (value != null && type != null && !type.isInstance(value)) {
+            throw new IllegalStateException(
+                    "Cached value is not of required type [" + type.getName() + "]: " + value);
+        }
+        return (T) value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        String l1Key = l1Key(key);
+        Object cached = l1.getIfPresent(l1Key);
+        if (cached != null) {
+            l1Hits.increment();
+            return (T) cached;
+        }
+        l1Misses.increment();
+
+        boolean[] loaded = new boolean[1];
+        T value = l2.get(key, () -> {
+            loaded[0] = true;
+            return valueLoader.call();
+        });
+        if (loaded[0]) {
+            l2Misses.increment();
+            // A freshly loaded value replaces whatever other nodes may hold locally
+            publisher.publish(CacheInvalidation.key(name, l1Key));
+        } else {
+            l2Hits.increment();
+        }
+        if (value != null) {
+            l1.put(l1Key, value);
+        }
+        return value;
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        String l1Key = l1Key(key);
+        l2.put(key, value);
+        if (value != null) {
+            l1.put(l1Key, value);
+        } else {
+            l1.invalidate(l1Key);
+        }
+        publisher.publish(CacheInvalidation.key(name, l1Key));
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        String l1Key = l1Key(key);
+        ValueWrapper existing = l2.putIfAbsent(key, value);
+        Object current = existing != null ? existing.get() : value;
+        if (current != null) {
+            l1.put(l1Key, current);
+        }
+        if (existing == null) {
+            publisher.publish(CacheInvalidation.key(name, l1Key));
+        }
+        return existing;
+    }
+
+    @Override
+    public void evict(Object key) {
+        String l1Key = l1Key(key);
+        l2.evict(key);
+        l1.invalidate(l1Key);
+        publisher.publish(CacheInvalidation.key(name, l1Key));
+    }
+
+    @Override
+    public boolean evictIfPresent(Object key) {
+        String l1Key = l1Key(key);
+        boolean present = l2.evictIfPresent(key);
+        l1.invalidate(l1Key);
+        publisher.publish(CacheInvalidation.key(name, l1Key));
+        return present;
+    }
+
+    @Override
+    public void clear() {
+        l2.clear();
+        l1.invalidateAll();
+        publisher.publish(CacheInvalidation.all(name));
+    }
+
+    @Override
+    public boolean invalidate() {
+        boolean hadEntries = l2.invalidate();
+        l1.invalidateAll();
+        publisher.publish(CacheInvalidation.all(name));
+        return hadEntries;
+    }
+
+    /**
+     * Apply an invalidation to this node's L1 only; the shared tier and other nodes are untouched.
+     */
+    void applyLocal(CacheInvalidation invalidation) {
+        switch (invalidation.scope()) {
+            case KEY -> l1.invalidate(invalidation.key());
+            case PREFIX -> l1.asMap().keySet().removeIf(key -> key.startsWith(invalidation.key()));
+            case ALL -> l1.invalidateAll();
+        }
+    }
+
+    void recordRemoteInvalidation() {
+        remoteInvalidations.increment();
+    }
+
+    /**
+     * Number of entries currently held in L1; approximate until pending maintenance has run.
+     */
+    long localSize() {
+        return l1.estimatedSize();
+    }
+
+    void cleanUpLocal() {
+        l1.cleanUp();
+    }
+
+    private void recordEviction(RemovalCause cause) {
+        if (cause == RemovalCause.SIZE) {
+            sizeEvictions.increment();
+        } else if (cause == RemovalCause.EXPIRED) {
+            expiredEvictions.increment();
+        }
+    }
+
+    private Counter getsCounter(MeterRegistry meterRegistry, String tier, String result) {
+        return Counter.builder("cache.tier.gets")
+                .tag("cache", name)
+                .tag("tier", tier)
+                .tag("result", result)
+                .description("Cache lookups per tier")
+                .register(meterRegistry);
+    }
+
+    private Counter evictionsCounter(MeterRegistry meterRegistry, String cause) {
+        return Counter.builder("cache.tier.evictions")
+                .tag("cache", name)
+                .tag("tier", L1)
+                .tag("cause", cause)
+                .description("Entries evicted from the in-process cache tier")
+                .register(meterRegistry);
+    }
+
+    private static String l1Key(Object key) {
+        return String.valueOf(key);
+    }
+}
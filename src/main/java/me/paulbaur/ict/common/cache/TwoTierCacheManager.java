@@ -0,0 +1,79 @@
+package me.paulbaur.ict.common.cache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@link CacheManager} that wraps every cache of an L2 manager in a {@link TwoTierCache}.
+ *
+ * <p>Each region's L1 TTL is the configured L1 TTL, capped at the region's own TTL so the
+ * local copy never outlives the shared one.</p>
+ */
+public class TwoTierCacheManager implements CacheManager {
+
+    private final CacheManager l2CacheManager;
+    private final long maximumSize;
+    private final Duration l1Ttl;
+    private final Map<String, Duration> regionTtls;
+    private final MeterRegistry meterRegistry;
+    private final CacheInvalidationPublisher publisher;
+
+    private final Map<String, TwoTierCache> caches = new ConcurrentHashMap<>();
+
+    public TwoTierCacheManager(CacheManager l2CacheManager, long maximumSize, Duration l1Ttl,
+                               Map<String, Duration> regionTtls, MeterRegistry meterRegistry,
+                               CacheInvalidationPublisher publisher) {
+        this.l2CacheManager = l2CacheManager;
+        this.maximumSize = maximumSize;
+        this.l1Ttl = l1Ttl;
+        this.regionTtls = Map.copyOf(regionTtls);
+        this.meterRegistry = meterRegistry;
+        this.publisher = publisher;
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        TwoTierCache cache = caches.get(name);
+        if (cache != null) {
+            return cache;
+        }
+        Cache l2 = l2CacheManager.getCache(name);
+        if (l2 == null) {
+            return null;
+        }
+        return caches.computeIfAbsent(name,
+                n -> new TwoTierCache(l2, maximumSize, l1TtlFor(n), meterRegistry, publisher));
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return l2CacheManager.getCacheNames();
+    }
+
+    /**
+     * Apply an invalidation received from another node to this node's L1.
+     */
+    public void applyRemoteInvalidation(CacheInvalidation invalidation) {
+        // A cache this node has never used holds nothing locally
+        TwoTierCache cache = caches.get(invalidation.cacheName());
+        if (cache == null) {
+            return;
+        }
+        cache.recordRemoteInvalidation();
+        cache.applyLocal(invalidation);
+    }
+
+    Duration l1TtlFor(String name) {
+        Duration regionTtl = regionTtls.get(name);
+        if (regionTtl == null || regionTtl.isZero() || regionTtl.isNegative() || regionTtl.compareTo(l1Ttl) >= 0) {
+            return l1Ttl;
+        }
+        return regionTtl;
+    }
+}
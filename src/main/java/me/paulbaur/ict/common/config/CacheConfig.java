@@ -1,13 +1,30 @@
 package me.paulbaur.ict.common.config;
 
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
+import me.paulbaur.ict.analytics.service.AnalyticsBucketService;
+import me.paulbaur.ict.common.cache.FamilyIndexingRedisCacheWriter;
+import me.paulbaur.ict.common.cache.RedisCacheFamilyEvictor;
+import me.paulbaur.ict.common.cache.RedisCacheInvalidationBus;
+import me.paulbaur.ict.common.cache.SingleFlightCache;
+import me.paulbaur.ict.coordination.service.DistributedLockService;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import me.paulbaur.ict.common.cache.TwoTierCacheManager;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.transaction.TransactionAwareCacheManagerProxy;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.cache.RedisCacheConfiguration;
 import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.cache.RedisCacheWriter;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
@@ -15,25 +32,51 @@ import org.springframework.data.redis.serializer.StringRedisSerializer;
 import java.time.Duration;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
 
 /**
  * Cache configuration using Redis as the cache provider.
  * Defines cache names and TTL settings for different cache regions.
+ *
+ * <p>Unless {@code ict.cache.l1.enabled} is false, each region gets a bounded in-process L1 in
+ * front of Redis, kept coherent across nodes by invalidations over Redis pub/sub.</p>
  */
 @Configuration
 @EnableCaching
 @Slf4j
 public class CacheConfig {
 
+    // Caches evicted by key family (a target's entries), which keep a per-family index of their keys
+    static final Set<String> FAMILY_INDEXED_CACHES = Set.of("probe-results");
+
+    @Value("${ict.cache.l1.enabled:true}")
+    private boolean l1Enabled = true;
+
+    @Value("${ict.cache.l1.maximum-size:10000}")
+    private long l1MaximumSize = 10_000;
+
+    @Value("${ict.cache.l1.ttl:30s}")
+    private Duration l1Ttl = Duration.ofSeconds(30);
+
+    @Value("${ict.analytics.result-ttl:5m}")
+    private Duration analyticsTtl = Duration.ofMinutes(5);
+
     /**
      * Configure cache manager with Redis backend.
      * Sets up different TTLs for different cache regions.
      *
      * @param connectionFactory the Redis connection factory
+     * @param bucketTtl         TTL for immutable closed analytics buckets
+     * @param meterRegistry     registry for per-tier cache metrics
+     * @param invalidationBus   pub/sub channel for L1 invalidations between nodes
      * @return configured cache manager
      */
     @Bean
-    public CacheManager cacheManager(RedisConnectionFactory connectionFactory) {
+    public CacheManager cacheManager(RedisConnectionFactory connectionFactory,
+                                     @Value("${ict.analytics.bucket-cache-ttl:30d}") Duration bucketTtl,
+                                     MeterRegistry meterRegistry,
+                                     RedisCacheInvalidationBus invalidationBus) {
         // Default cache configuration with 60 second TTL
         RedisCacheConfiguration defaultConfig = RedisCacheConfiguration.defaultCacheConfig()
                 .entryTtl(Duration.ofSeconds(60))
@@ -41,7 +84,7 @@ public class CacheConfig {
                         RedisSerializationContext.SerializationPair.fromSerializer(new StringRedisSerializer())
                 )
                 .serializeValuesWith(
-                        RedisSerializationContext.SerializationPair.fromSerializer(new GenericJackson2JsonRedisSerializer())
+                        RedisSerializationContext.SerializationPair.fromSerializer(valueSerializer())
                 )
                 .disableCachingNullValues();
 
@@ -51,20 +94,118 @@ public class CacheConfig {
         // probe-results: Cache recent probe results for 60 seconds
         cacheConfigurations.put("probe-results", defaultConfig.entryTtl(Duration.ofSeconds(60)));
 
-        // target-status: Cache target status for 30 seconds
-        cacheConfigurations.put("target-status", defaultConfig.entryTtl(Duration.ofSeconds(30)));
+        // analytics: Cache analytics results for 5 minutes; hot entries are refreshed ahead of expiry
+        cacheConfigurations.put("analytics", defaultConfig.entryTtl(analyticsTtl));
 
-        // analytics: Cache analytics data for 5 minutes (if analytics is implemented later)
-        cacheConfigurations.put("analytics", defaultConfig.entryTtl(Duration.ofMinutes(5)));
+        // analytics-buckets: Closed hourly/daily analytics buckets never change, keep them long-lived
+        cacheConfigurations.put(AnalyticsBucketService.BUCKET_CACHE, defaultConfig.entryTtl(bucketTtl));
 
-        RedisCacheManager cacheManager = RedisCacheManager.builder(connectionFactory)
+        RedisCacheWriter cacheWriter = new FamilyIndexingRedisCacheWriter(
+                RedisCacheWriter.nonLockingRedisCacheWriter(connectionFactory),
+                new StringRedisTemplate(connectionFactory),
+                FAMILY_INDEXED_CACHES);
+        RedisCacheManager redisCacheManager = RedisCacheManager.builder(cacheWriter)
                 .cacheDefaults(defaultConfig)
                 .withInitialCacheConfigurations(cacheConfigurations)
-                .transactionAware()
                 .build();
+        redisCacheManager.afterPropertiesSet();
 
         log.info("Configured Redis cache manager with {} cache regions", cacheConfigurations.size());
 
-        return cacheManager;
+        if (!l1Enabled) {
+            return new TransactionAwareCacheManagerProxy(redisCacheManager);
+        }
+
+        // Region TTLs are fixed, so the key handed to the TTL function is irrelevant
+        Map<String, Duration> regionTtls = new HashMap<>();
+        cacheConfigurations.forEach((name, config) -> regionTtls.put(name, config.getTtlFunction().getTimeToLive(name, null)));
+
+        TwoTierCacheManager cacheManager = new TwoTierCacheManager(
+                redisCacheManager, l1MaximumSize, l1Ttl, regionTtls, meterRegistry, invalidationBus);
+        invalidationBus.bind(cacheManager);
+
+        log.info("Enabled in-process L1 cache: maximumSize={}, ttl={}, invalidationChannel={}",
+                l1MaximumSize, l1Ttl, invalidationBus.getChannel());
+
+        return new TransactionAwareCacheManagerProxy(cacheManager);
+    }
+
+    /**
+     * Publisher and receiver of L1 invalidations between nodes.
+     *
+     * @param connectionFactory the Redis connection factory
+     * @param channel           pub/sub channel shared by all nodes
+     * @return invalidation bus
+     */
+    @Bean
+    public RedisCacheInvalidationBus cacheInvalidationBus(RedisConnectionFactory connectionFactory,
+                                                          @Value("${ict.cache.l1.invalidation-channel:ict:cache:invalidation}") String channel) {
+        return new RedisCacheInvalidationBus(new StringRedisTemplate(connectionFactory), channel);
+    }
+
+    /**
+     * Coalescing, refresh-ahead cache for analytics results.
+     *
+     * @param cacheManager     the cache manager holding the analytics region
+     * @param lockService      cluster-wide lock used to compute each entry on one node only
+     * @param refreshExecutor  executor for background refreshes
+     * @param loadExecutor     executor for computations requests wait for
+     * @param meterRegistry    registry for load and coalescing metrics
+     * @param refreshBeta      XFetch aggressiveness
+     * @param lockWait         how long to wait for another node's computation
+     * @param loadBudget       deadline of one shared computation
+     * @return analytics result cache
+     */
+    @Bean
+    public SingleFlightCache analyticsResultCache(CacheManager cacheManager,
+                                                  ObjectProvider<DistributedLockService> lockService,
+                                                  @Qualifier("analyticsRefreshExecutor") Executor refreshExecutor,
+                                                  @Qualifier("analyticsLoadExecutor") Executor loadExecutor,
+                                                  MeterRegistry meterRegistry,
+                                                  @Value("${ict.analytics.refresh-beta:1.0}") double refreshBeta,
+                                                  @Value("${ict.analytics.single-flight-lock-wait:5s}") Duration lockWait,
+                                                  @Value("${ict.analytics.single-flight-load-budget:5m}") Duration loadBudget) {
+        return new SingleFlightCache(cacheManager, "analytics", analyticsTtl, refreshBeta,
+                lockService.getIfAvailable(), lockWait, refreshExecutor, loadExecutor, loadBudget, meterRegistry);
+    }
+
+    /**
+     * Bulk eviction of key families (e.g. every cached entry of a target) across both tiers.
+     *
+     * @param connectionFactory the Redis connection factory
+     * @param cacheManager      the cache manager whose L1 caches are updated locally
+     * @param invalidationBus   invalidation bus used to notify other nodes
+     * @return family evictor
+     */
+    @Bean
+    public RedisCacheFamilyEvictor cacheFamilyEvictor(RedisConnectionFactory connectionFactory,
+                                                      CacheManager cacheManager,
+                                                      RedisCacheInvalidationBus invalidationBus) {
+        return new RedisCacheFamilyEvictor(connectionFactory, cacheManager, invalidationBus, FAMILY_INDEXED_CACHES);
+    }
+
+    /**
+     * Subscribe the invalidation bus to its channel.
+     *
+     * @param connectionFactory the Redis connection factory
+     * @param invalidationBus   invalidation bus
+     * @return listener container
+     */
+    @Bean
+    public RedisMessageListenerContainer cacheInvalidationListenerContainer(RedisConnectionFactory connectionFactory,
+                                                                            RedisCacheInvalidationBus invalidationBus) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(invalidationBus, new ChannelTopic(invalidationBus.getChannel()));
+        return container;
+    }
+
+    /**
+     * JSON serializer for cached values; registers java.time support for records such as probe results.
+     */
+    static GenericJackson2JsonRedisSerializer valueSerializer() {
+        GenericJackson2JsonRedisSerializer serializer = new GenericJackson2JsonRedisSerializer();
+        serializer.configure(mapper -> mapper.registerModule(new JavaTimeModule()));
+        return serializer;
     }
 }
@@ -1,5 +1,6 @@
 package me.paulbaur.ict.common.config;
 
+import co.elastic.clients.elasticsearch.ElasticsearchAsyncClient;
 import co.elastic.clients.elasticsearch.ElasticsearchClient;
 import co.elastic.clients.transport.ElasticsearchTransport;
 import co.elastic.clients.transport.rest_client.RestClientTransport;
@@ -43,4 +44,13 @@ public class ElasticsearchConfig {
     public ElasticsearchClient elasticsearchClient(ElasticsearchTransport transport) {
         return new ElasticsearchClient(transport);
     }
+
+    /**
+     * Shares the transport of {@link #elasticsearchClient}; used where a request must be
+     * abortable while it runs.
+     */
+    @Bean
+    public ElasticsearchAsyncClient elasticsearchAsyncClient(ElasticsearchTransport transport) {
+        return new ElasticsearchAsyncClient(transport);
+    }
 }
@@ -1,6 +1,7 @@
 package me.paulbaur.ict.common.config;
 
 import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.ElasticsearchException;
 import co.elastic.clients.elasticsearch._types.Time;
 import co.elastic.clients.elasticsearch._types.mapping.Property;
 import co.elastic.clients.elasticsearch._types.mapping.TypeMapping;
@@ -16,6 +17,7 @@ import org.springframework.stereotype.Component;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Objects;
 
 /**
  * Configures Elasticsearch Index Lifecycle Management (ILM) policies and index templates.
@@ -25,11 +27,32 @@ import java.util.Map;
 @Slf4j
 public class ElasticsearchIndexConfig {
 
+    /**
+     * Version stamped on the probe results template. Bump whenever the mappings change so
+     * that existing deployments pick up the new template on the next start.
+     * <ul>
+     *     <li>1 - initial mappings (unversioned templates are treated as version 1)</li>
+     *     <li>2 - latencyMs carries fractional milliseconds; burst statistics</li>
+     * </ul>
+     */
+    static final long TEMPLATE_VERSION = 2L;
+
+    /**
+     * Version stamped on the state transitions template.
+     * <ul>
+     *     <li>1 - initial mappings</li>
+     * </ul>
+     */
+    static final long TRANSITIONS_TEMPLATE_VERSION = 1L;
+
     private final ElasticsearchClient elasticsearchClient;
 
     @Value("${ict.elasticsearch.index}")
     private String indexPattern;
 
+    @Value("${ict.elasticsearch.transitions-index:probe-transitions}")
+    private String transitionsIndex;
+
     @Value("${ict.elasticsearch.ilm.policy-name:probe-results-policy}")
     private String policyName;
 
@@ -50,6 +73,7 @@ public class ElasticsearchIndexConfig {
     public void initializeIndexLifecycle() {
         try {
             createIndexTemplate();
+            createTransitionsIndexTemplate();
             log.info("Elasticsearch index template initialized successfully");
             log.info("ILM policy '{}' should be configured manually with hot-phase-days={}, warm-phase-days={}, delete-phase-days={}",
                     policyName, hotPhaseDays, warmPhaseDays, deletePhaseDays);
@@ -66,15 +90,10 @@ public class ElasticsearchIndexConfig {
         String templateName = indexPattern + "-template";
         log.info("Creating index template: {}", templateName);
 
-        // Check if template already exists
-        try {
-            ExistsIndexTemplateRequest existsRequest = ExistsIndexTemplateRequest.of(e -> e.name(templateName));
-            if (elasticsearchClient.indices().existsIndexTemplate(existsRequest).value()) {
-                log.info("Index template '{}' already exists, skipping creation", templateName);
-                return;
-            }
-        } catch (Exception e) {
-            log.debug("Error checking for existing template, will attempt creation", e);
+        // Existing indices keep their mapping; documents written with whole-millisecond
+        // latencies remain valid against the double mapping used by new indices.
+        if (isTemplateCurrent(templateName, TEMPLATE_VERSION)) {
+            return;
         }
 
         // Define index settings (basic settings without ILM for now)
@@ -93,11 +112,21 @@ public class ElasticsearchIndexConfig {
         properties.put("method", Property.of(pr -> pr.keyword(k -> k)));
         properties.put("probeCycleId", Property.of(pr -> pr.keyword(k -> k)));
         properties.put("errorMessage", Property.of(pr -> pr.text(t -> t)));
+        properties.put("burst", Property.of(pr -> pr.object(o -> o
+                .properties("samples", Property.of(bp -> bp.integer(i -> i)))
+                .properties("received", Property.of(bp -> bp.integer(i -> i)))
+                .properties("minLatencyMs", Property.of(bp -> bp.double_(db -> db)))
+                .properties("medianLatencyMs", Property.of(bp -> bp.double_(db -> db)))
+                .properties("maxLatencyMs", Property.of(bp -> bp.double_(db -> db)))
+                .properties("jitterMs", Property.of(bp -> bp.double_(db -> db)))
+                .properties("packetLoss", Property.of(bp -> bp.double_(db -> db)))
+        )));
 
         TypeMapping mappings = TypeMapping.of(m -> m.properties(properties));
 
         PutIndexTemplateRequest request = PutIndexTemplateRequest.of(r -> r
                 .name(templateName)
+                .version(TEMPLATE_VERSION)
                 .indexPatterns(indexPattern + "*")
                 .template(t -> t
                         .settings(settings)
@@ -106,6 +135,66 @@ public class ElasticsearchIndexConfig {
         );
 
         elasticsearchClient.indices().putIndexTemplate(request);
-        log.info("Index template '{}' created successfully", templateName);
+        log.info("Index template '{}' created successfully at version {}", templateName, TEMPLATE_VERSION);
+    }
+
+    /**
+     * Create index template for the state transitions written at ingest. Fields are plain
+     * keywords, so transitions are looked up by exact target ID and status.
+     */
+    private void createTransitionsIndexTemplate() throws IOException {
+        String templateName = transitionsIndex + "-template";
+        if (isTemplateCurrent(templateName, TRANSITIONS_TEMPLATE_VERSION)) {
+            return;
+        }
+
+        Map<String, Property> properties = new HashMap<>();
+        properties.put("targetId", Property.of(pr -> pr.keyword(k -> k)));
+        properties.put("timestamp", Property.of(pr -> pr.date(d -> d)));
+        properties.put("fromStatus", Property.of(pr -> pr.keyword(k -> k)));
+        properties.put("toStatus", Property.of(pr -> pr.keyword(k -> k)));
+        properties.put("durationMs", Property.of(pr -> pr.long_(l -> l)));
+        properties.put("errorMessage", Property.of(pr -> pr.text(t -> t)));
+
+        PutIndexTemplateRequest request = PutIndexTemplateRequest.of(r -> r
+                .name(templateName)
+                .version(TRANSITIONS_TEMPLATE_VERSION)
+                .indexPatterns(transitionsIndex + "*")
+                .template(t -> t
+                        .settings(IndexSettings.of(st -> st.numberOfShards("1").numberOfReplicas("1")))
+                        .mappings(TypeMapping.of(m -> m.properties(properties)))
+                )
+        );
+
+        elasticsearchClient.indices().putIndexTemplate(request);
+        log.info("Index template '{}' created successfully at version {}", templateName, TRANSITIONS_TEMPLATE_VERSION);
+    }
+
+    /**
+     * Whether {@code templateName} already exists at {@code version} or later. Unversioned
+     * templates count as version 1.
+     */
+    private boolean isTemplateCurrent(String templateName, long version) {
+        try {
+            GetIndexTemplateResponse existing = elasticsearchClient.indices()
+                    .getIndexTemplate(GetIndexTemplateRequest.of(g -> g.name(templateName)));
+            long existingVersion = existing.indexTemplates().stream()
+                    .map(item -> item.indexTemplate().version())
+                    .filter(Objects::nonNull)
+                    .findFirst()
+                    .orElse(1L);
+            if (existingVersion >= version) {
+                log.info("Index template '{}' already exists at version {}, skipping creation", templateName, existingVersion);
+                return true;
+            }
+            log.info("Upgrading index template '{}' from version {} to {}", templateName, existingVersion, version);
+        } catch (ElasticsearchException e) {
+            if (e.status() != 404) {
+                log.debug("Error checking for existing template, will attempt creation", e);
+            }
+        } catch (Exception e) {
+            log.debug("Error checking for existing template, will attempt creation", e);
+        }
+        return false;
     }
 }
@@ -7,9 +7,15 @@ import io.github.resilience4j.retry.Retry;
 import io.github.resilience4j.retry.RetryConfig;
 import io.github.resilience4j.retry.RetryRegistry;
 import lombok.extern.slf4j.Slf4j;
+import me.paulbaur.ict.common.exception.DeadlineExceededException;
+import me.paulbaur.ict.probe.service.strategy.ConnectAttempt;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.net.SocketTimeoutException;
 import java.time.Duration;
 
 /**
@@ -29,9 +35,21 @@ public class ResilienceConfig {
         return CircuitBreakerRegistry.ofDefaults();
     }
 
+    /**
+     * Retry for Elasticsearch operations, configured from {@code resilience4j.retry.instances.elasticsearch}.
+     * A request abandoned at its caller's deadline, or by an interrupt, is not retried: the caller
+     * has already given up on it.
+     */
     @Bean
-    public Retry elasticsearchRetry(RetryRegistry retryRegistry) {
-        Retry retry = retryRegistry.retry("elasticsearch");
+    public Retry elasticsearchRetry(RetryRegistry retryRegistry,
+                                    @Value("${resilience4j.retry.instances.elasticsearch.maxAttempts:3}") int maxAttempts,
+                                    @Value("${resilience4j.retry.instances.elasticsearch.waitDuration:500ms}") Duration waitDuration) {
+        RetryConfig config = RetryConfig.custom()
+            .maxAttempts(maxAttempts)
+            .waitDuration(waitDuration)
+            .retryOnException(e -> !abandonedByCaller(e))
+            .build();
+        Retry retry = retryRegistry.retry("elasticsearch", config);
 
         retry.getEventPublisher()
             .onRetry(event -> log.warn("Elasticsearch operation retry attempt {} due to: {}",
@@ -47,9 +65,27 @@ public class ResilienceConfig {
         return retry;
     }
 
+    /**
+     * Circuit breaker for Elasticsearch, configured from {@code resilience4j.circuitbreaker.instances.elasticsearch}.
+     * Requests abandoned by their caller say nothing about Elasticsearch's health, so they are
+     * ignored; otherwise clients sending short deadlines could open the breaker that guards probe writes.
+     */
     @Bean
-    public CircuitBreaker elasticsearchCircuitBreaker(CircuitBreakerRegistry circuitBreakerRegistry) {
-        CircuitBreaker circuitBreaker = circuitBreakerRegistry.circuitBreaker("elasticsearch");
+    public CircuitBreaker elasticsearchCircuitBreaker(CircuitBreakerRegistry circuitBreakerRegistry,
+                                                      @Value("${resilience4j.circuitbreaker.instances.elasticsearch.slidingWindowSize:10}") int slidingWindowSize,
+                                                      @Value("${resilience4j.circuitbreaker.instances.elasticsearch.minimumNumberOfCalls:5}") int minimumNumberOfCalls,
+                                                      @Value("${resilience4j.circuitbreaker.instances.elasticsearch.failureRateThreshold:50}") float failureRateThreshold,
+                                                      @Value("${resilience4j.circuitbreaker.instances.elasticsearch.waitDurationInOpenState:10s}") Duration waitDurationInOpenState,
+                                                      @Value("${resilience4j.circuitbreaker.instances.elasticsearch.permittedNumberOfCallsInHalfOpenState:3}") int permittedNumberOfCallsInHalfOpenState) {
+        CircuitBreakerConfig config = CircuitBreakerConfig.custom()
+            .slidingWindowSize(slidingWindowSize)
+            .minimumNumberOfCalls(minimumNumberOfCalls)
+            .failureRateThreshold(failureRateThreshold)
+            .waitDurationInOpenState(waitDurationInOpenState)
+            .permittedNumberOfCallsInHalfOpenState(permittedNumberOfCallsInHalfOpenState)
+            .ignoreException(ResilienceConfig::abandonedByCaller)
+            .build();
+        CircuitBreaker circuitBreaker = circuitBreakerRegistry.circuitBreaker("elasticsearch", config);
 
         circuitBreaker.getEventPublisher()
             .onStateTransition(event -> log.warn("Elasticsearch circuit breaker state transition: {} -> {}",
@@ -62,15 +98,39 @@ public class ResilienceConfig {
         return circuitBreaker;
     }
 
+    /**
+     * Retry for TCP probes. Connect failures are returned as {@link ConnectAttempt} values
+     * rather than thrown, so retries are driven by the result: only timed-out attempts are
+     * retried, matching {@code resilience4j.retry.instances.tcpProbe} in application.yml.
+     */
     @Bean
-    public Retry tcpProbeRetry(RetryRegistry retryRegistry) {
-        Retry retry = retryRegistry.retry("tcpProbe");
+    public Retry tcpProbeRetry(RetryRegistry retryRegistry,
+                               @Value("${resilience4j.retry.instances.tcpProbe.maxAttempts:2}") int maxAttempts,
+                               @Value("${resilience4j.retry.instances.tcpProbe.waitDuration:100ms}") Duration waitDuration) {
+        RetryConfig config = RetryConfig.custom()
+            .maxAttempts(maxAttempts)
+            .waitDuration(waitDuration)
+            .retryOnResult(ConnectAttempt::isRetryable)
+            .retryOnException(e -> false)
+            .build();
+        Retry retry = retryRegistry.retry("tcpProbe", config);
 
         retry.getEventPublisher()
-            .onRetry(event -> log.debug("TCP probe retry attempt {} for: {}",
-                event.getNumberOfRetryAttempts(),
-                event.getLastThrowable().getMessage()));
+            .onRetry(event -> log.debug("TCP probe retry attempt {} after timeout",
+                event.getNumberOfRetryAttempts()));
 
         return retry;
     }
+
+    /**
+     * Whether a failure means the caller stopped waiting, rather than that Elasticsearch failed.
+     * A socket timeout is also an {@link InterruptedIOException} but is a real failure.
+     */
+    static boolean abandonedByCaller(Throwable e) {
+        if (e instanceof UncheckedIOException unchecked) {
+            e = unchecked.getCause();
+        }
+        return e instanceof DeadlineExceededException
+                || (e instanceof InterruptedIOException && !(e instanceof SocketTimeoutException));
+    }
 }
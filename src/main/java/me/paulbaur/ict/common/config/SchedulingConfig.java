@@ -7,6 +7,7 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
 
 /**
  * Configuration for async probe execution thread pool.
@@ -25,6 +26,20 @@ public class SchedulingConfig {
     @Value("${ict.probe.async.queue-capacity:100}")
     private int queueCapacity;
 
+    // Analytics jobs running at once; each holds Elasticsearch search capacity for its whole duration
+    @Value("${ict.analytics.jobs.concurrency:2}")
+    private int analyticsJobConcurrency;
+
+    @Value("${ict.analytics.jobs.queue-capacity:20}")
+    private int analyticsJobQueueCapacity;
+
+    // Distinct analytics results computed at once for waiting requests
+    @Value("${ict.analytics.load.concurrency:8}")
+    private int analyticsLoadConcurrency;
+
+    @Value("${ict.analytics.load.queue-capacity:100}")
+    private int analyticsLoadQueueCapacity;
+
     /**
      * Thread pool executor for async probe execution.
      * This executor is used by @Async annotated methods in ProbeScheduler.
@@ -47,4 +62,92 @@ public class SchedulingConfig {
 
         return executor;
     }
+
+    /**
+     * Small bounded executor for refreshing cached analytics ahead of expiry.
+     * Refreshes are best effort, so work that does not fit in the queue is dropped.
+     *
+     * @return configured thread pool task executor
+     */
+    @Bean(name = "analyticsRefreshExecutor")
+    public Executor analyticsRefreshExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(2);
+        executor.setQueueCapacity(50);
+        executor.setThreadNamePrefix("analytics-refresh-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.initialize();
+
+        log.info("Initialized analytics refresh executor");
+
+        return executor;
+    }
+
+    /**
+     * Bounded executor for analytics computations that requests wait for, so a computation does
+     * not inherit the deadline of the request that started it. A computation that does not fit
+     * in the queue runs on the requesting thread instead.
+     *
+     * @return configured thread pool task executor
+     */
+    @Bean(name = "analyticsLoadExecutor")
+    public Executor analyticsLoadExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(analyticsLoadConcurrency);
+        executor.setMaxPoolSize(analyticsLoadConcurrency);
+        executor.setQueueCapacity(analyticsLoadQueueCapacity);
+        executor.setThreadNamePrefix("analytics-load-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.initialize();
+
+        log.info("Initialized analytics load executor: concurrency={}, queueCapacity={}",
+                analyticsLoadConcurrency, analyticsLoadQueueCapacity);
+
+        return executor;
+    }
+
+    /**
+     * Single-thread executor for precomputing the standard analytics windows, kept apart from
+     * the probe executor so a long run never delays probes. Runs never overlap, so a run that
+     * cannot be queued is dropped.
+     *
+     * @return configured thread pool task executor
+     */
+    @Bean(name = "analyticsPrecomputeExecutor")
+    public Executor analyticsPrecomputeExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(1);
+        executor.setThreadNamePrefix("analytics-precompute-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.DiscardPolicy());
+        executor.initialize();
+
+        log.info("Initialized analytics precompute executor");
+
+        return executor;
+    }
+
+    /**
+     * Bounded executor for asynchronous analytics jobs. Submissions that do not fit in the queue
+     * are rejected so clients can retry later instead of piling up work.
+     *
+     * @return configured thread pool task executor
+     */
+    @Bean(name = "analyticsJobExecutor")
+    public Executor analyticsJobExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(analyticsJobConcurrency);
+        executor.setMaxPoolSize(analyticsJobConcurrency);
+        executor.setQueueCapacity(analyticsJobQueueCapacity);
+        executor.setThreadNamePrefix("analytics-job-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.initialize();
+
+        log.info("Initialized analytics job executor: concurrency={}, queueCapacity={}",
+                analyticsJobConcurrency, analyticsJobQueueCapacity);
+
+        return executor;
+    }
 }
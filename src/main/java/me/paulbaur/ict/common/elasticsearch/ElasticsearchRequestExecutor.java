@@ -0,0 +1,126 @@
+package me.paulbaur.ict.common.elasticsearch;
+
+import co.elastic.clients.elasticsearch.ElasticsearchAsyncClient;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import me.paulbaur.ict.common.exception.DeadlineExceededException;
+import me.paulbaur.ict.common.web.RequestCorrelationFilter;
+import me.paulbaur.ict.common.web.RequestDeadline;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+import static net.logstash.logback.argument.StructuredArguments.kv;
+
+/**
+ * Runs Elasticsearch requests on behalf of a caller that may stop waiting for them.
+ *
+ * <p>Requests are sent with the asynchronous client and awaited until the {@link RequestDeadline}
+ * of the calling thread. If the deadline passes or the thread is interrupted, the HTTP request is
+ * aborted; Elasticsearch then cancels the search task it was running for it. Requests carry the
+ * caller's request ID as {@code X-Opaque-Id}, so their tasks and slow log entries can be traced
+ * back to the API request.</p>
+ */
+@Component
+@Slf4j
+public class ElasticsearchRequestExecutor {
+
+    public static final String OPAQUE_ID_HEADER = "X-Opaque-Id";
+
+    private final ElasticsearchAsyncClient client;
+    private final MeterRegistry meterRegistry;
+    private final Clock clock;
+
+    @Autowired
+    public ElasticsearchRequestExecutor(ElasticsearchAsyncClient client, MeterRegistry meterRegistry) {
+        this(client, meterRegistry, Clock.systemUTC());
+    }
+
+    ElasticsearchRequestExecutor(ElasticsearchAsyncClient client, MeterRegistry meterRegistry, Clock clock) {
+        this.client = client;
+        this.meterRegistry = meterRegistry;
+        this.clock = clock;
+    }
+
+    /**
+     * Send a request and wait for its response until the current deadline, if any.
+     *
+     * @throws DeadlineExceededException if the deadline passed; the request has been cancelled
+     * @throws InterruptedIOException    if the calling thread was interrupted; the request has been cancelled
+     */
+    public <T> T execute(Function<ElasticsearchAsyncClient, CompletableFuture<T>> request) throws IOException {
+        Optional<Instant> deadline = RequestDeadline.current();
+        long remainingMillis = deadline
+                .map(at -> Duration.between(clock.instant(), at).toMillis())
+                .orElse(Long.MAX_VALUE);
+        if (remainingMillis <= 0) {
+            throw deadlineExceeded("not started");
+        }
+
+        CompletableFuture<T> future = request.apply(withOpaqueId(client));
+        try {
+            return deadline.isPresent() ? future.get(remainingMillis, TimeUnit.MILLISECONDS) : future.get();
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw deadlineExceeded("cancelled");
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            count("interrupted");
+            throw new InterruptedIOException("Interrupted while waiting for Elasticsearch; request cancelled");
+        } catch (ExecutionException e) {
+            throw unwrap(e.getCause());
+        }
+    }
+
+    private ElasticsearchAsyncClient withOpaqueId(ElasticsearchAsyncClient client) {
+        String requestId = MDC.get(RequestCorrelationFilter.MDC_KEY);
+        if (requestId == null) {
+            return client;
+        }
+        return client.withTransportOptions(client._transportOptions().toBuilder()
+                .addHeader(OPAQUE_ID_HEADER, requestId)
+                .build());
+    }
+
+    private DeadlineExceededException deadlineExceeded(String outcome) {
+        count("deadline");
+        log.warn("Elasticsearch request abandoned at request deadline",
+                kv("outcome", outcome),
+                kv("reqId", MDC.get(RequestCorrelationFilter.MDC_KEY)));
+        return new DeadlineExceededException("The request did not complete within its deadline and was cancelled");
+    }
+
+    private static IOException unwrap(Throwable cause) {
+        while (cause instanceof CompletionException && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        if (cause instanceof IOException io) {
+            return io;
+        }
+        if (cause instanceof RuntimeException runtime) {
+            throw runtime;
+        }
+        if (cause instanceof Error error) {
+            throw error;
+        }
+        return new IOException(cause);
+    }
+
+    private void count(String reason) {
+        meterRegistry.counter("elasticsearch.requests.cancelled", "reason", reason).increment();
+    }
+}
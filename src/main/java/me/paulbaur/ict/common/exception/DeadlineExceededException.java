@@ -0,0 +1,11 @@
+package me.paulbaur.ict.common.exception;
+
+/**
+ * Exception thrown when a request runs past its deadline; the work still in flight has been cancelled.
+ */
+public class DeadlineExceededException extends RuntimeException {
+
+    public DeadlineExceededException(String message) {
+        super(message);
+    }
+}
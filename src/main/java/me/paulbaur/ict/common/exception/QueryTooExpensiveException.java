@@ -0,0 +1,11 @@
+package me.paulbaur.ict.common.exception;
+
+/**
+ * Exception thrown when a query would read more data, or run longer, than its budget allows.
+ */
+public class QueryTooExpensiveException extends RuntimeException {
+
+    public QueryTooExpensiveException(String message) {
+        super(message);
+    }
+}
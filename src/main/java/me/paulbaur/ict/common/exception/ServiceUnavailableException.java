@@ -0,0 +1,15 @@
+package me.paulbaur.ict.common.exception;
+
+/**
+ * Exception thrown when a feature cannot answer yet, for example while its data is still loading.
+ */
+public class ServiceUnavailableException extends RuntimeException {
+
+    public ServiceUnavailableException(String message) {
+        super(message);
+    }
+
+    public ServiceUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -2,9 +2,8 @@ package me.paulbaur.ict.common.logging;
 
 import java.time.Clock;
 import java.time.Duration;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * Minimal, dependency-free rate limiter for log events.
@@ -12,18 +11,39 @@ import java.util.concurrent.atomic.AtomicBoolean;
  * <p>Tracks the last-log timestamp per key and permits a new log only if the
  * configured interval has elapsed. Intended to dampen noisy warnings without
  * hiding the first occurrence.</p>
+ *
+ * <p>Keys live in a fixed-size, open-addressed slot table updated with CAS only, so the
+ * limiter neither locks nor grows during a mass outage. Keys are a string plus an int
+ * discriminator (e.g. host and port) so callers do not have to concatenate a key per event.
+ * When all candidate slots for a key are taken, the least recently logged one is evicted, but
+ * only once its interval has elapsed; until then the new key's events are suppressed, so keys
+ * colliding during a mass outage cannot evict each other to log on every event. An evicted
+ * key's pending suppressed count, and events suppressed for keys without a slot, are reported
+ * by {@link #drainSuppressed(SuppressionSink)} with a null key.</p>
  */
 public class LogRateLimiter {
 
-    private final Map<String, Long> lastLoggedByKey = new ConcurrentHashMap<>();
+    static final int DEFAULT_CAPACITY = 1024;
+    private static final int MAX_PROBES = 4;
+
+    private final AtomicReferenceArray<Entry> slots;
+    private final int mask;
+    private final AtomicLong evictedSuppressed = new AtomicLong();
     private final long intervalMillis;
     private final Clock clock;
 
     public LogRateLimiter(Duration interval) {
-        this(interval, Clock.systemUTC());
+        this(interval, DEFAULT_CAPACITY, Clock.systemUTC());
     }
 
     LogRateLimiter(Duration interval, Clock clock) {
+        this(interval, DEFAULT_CAPACITY, clock);
+    }
+
+    LogRateLimiter(Duration interval, int capacity, Clock clock) {
+        int size = Integer.highestOneBit(Math.max(MAX_PROBES, capacity - 1)) << 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
         this.intervalMillis = interval.toMillis();
         this.clock = clock;
     }
@@ -32,17 +52,131 @@ public class LogRateLimiter {
      * Returns true if the caller should emit a log for the given key right now.
      */
     public boolean shouldLog(String key) {
+        return shouldLog(key, 0);
+    }
+
+    /**
+     * Returns true if the caller should emit a log for the key formed by {@code key} and
+     * {@code discriminator} right now; otherwise the event is counted as suppressed.
+     */
+    public boolean shouldLog(String key, int discriminator) {
         long now = clock.millis();
-        AtomicBoolean allow = new AtomicBoolean(false);
+        int start = spread(key.hashCode() * 31 + discriminator);
 
-        lastLoggedByKey.compute(key, (k, lastLogged) -> {
-            if (lastLogged == null || now - lastLogged >= intervalMillis) {
-                allow.set(true);
-                return now;
+        for (int i = 0; i < MAX_PROBES; i++) {
+            int index = (start + i) & mask;
+            Entry entry = slots.get(index);
+            if (entry == null) {
+                if (slots.compareAndSet(index, null, new Entry(key, discriminator, now))) {
+                    return true;
+                }
+                entry = slots.get(index);
             }
-            return lastLogged;
-        });
+            if (entry.matches(key, discriminator)) {
+                return entry.tryAcquire(now, intervalMillis);
+            }
+        }
+
+        return evictAndInsert(start, key, discriminator, now);
+    }
 
-        return allow.get();
+    /**
+     * Report and reset the suppressed count of every key that had suppressed events since the
+     * previous drain, then the count carried over from evicted keys (with a null key).
+     *
+     * @return the total number of suppressed events reported
+     */
+    public long drainSuppressed(SuppressionSink sink) {
+        long total = 0;
+        for (int i = 0; i < slots.length(); i++) {
+            Entry entry = slots.get(i);
+            if (entry != null) {
+                long count = entry.suppressed.getAndSet(0);
+                if (count > 0) {
+                    total += count;
+                    sink.suppressed(entry.key, entry.discriminator, count);
+                }
+            }
+        }
+        long evicted = evictedSuppressed.getAndSet(0);
+        if (evicted > 0) {
+            total += evicted;
+            sink.suppressed(null, 0, evicted);
+        }
+        return total;
+    }
+
+    private boolean evictAndInsert(int start, String key, int discriminator, long now) {
+        int victimIndex = start & mask;
+        Entry victim = slots.get(victimIndex);
+        for (int i = 1; i < MAX_PROBES; i++) {
+            int index = (start + i) & mask;
+            Entry candidate = slots.get(index);
+            if (candidate == null || victim != null && candidate.lastLogged.get() < victim.lastLogged.get()) {
+                victimIndex = index;
+                victim = candidate;
+            }
+        }
+        // Evicting a key inside its interval would let it log again on its next event
+        if (victim != null && now - victim.lastLogged.get() < intervalMillis) {
+            evictedSuppressed.incrementAndGet();
+            return false;
+        }
+        if (!slots.compareAndSet(victimIndex, victim, new Entry(key, discriminator, now))) {
+            // Another thread took the slot first; this event is suppressed rather than logged unthrottled
+            evictedSuppressed.incrementAndGet();
+            return false;
+        }
+        if (victim != null) {
+            evictedSuppressed.addAndGet(victim.suppressed.getAndSet(0));
+        }
+        return true;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Receives suppressed counts from {@link #drainSuppressed(SuppressionSink)}.
+     */
+    @FunctionalInterface
+    public interface SuppressionSink {
+        /**
+         * @param key           the key, or null for the total of keys evicted since the last drain
+         * @param discriminator the key's discriminator
+         * @param count         events suppressed since the last drain
+         */
+        void suppressed(String key, int discriminator, long count);
+    }
+
+    private static final class Entry {
+        private final String key;
+        private final int discriminator;
+        private final AtomicLong lastLogged;
+        private final AtomicLong suppressed = new AtomicLong();
+
+        private Entry(String key, int discriminator, long now) {
+            this.key = key;
+            this.discriminator = discriminator;
+            this.lastLogged = new AtomicLong(now);
+        }
+
+        private boolean matches(String otherKey, int otherDiscriminator) {
+            return discriminator == otherDiscriminator && key.equals(otherKey);
+        }
+
+        private boolean tryAcquire(long now, long intervalMillis) {
+            while (true) {
+                long last = lastLogged.get();
+                if (now - last < intervalMillis) {
+                    suppressed.incrementAndGet();
+                    return false;
+                }
+                if (lastLogged.compareAndSet(last, now)) {
+                    return true;
+                }
+            }
+        }
     }
 }
@@ -14,13 +14,34 @@ import java.util.Map;
  *     // logging here will include reqId
  * }
  * </pre>
+ *
+ * <p>The single- and two-key factories only remember the previous values of the keys they
+ * set, so they avoid copying the MDC map; use them on hot paths such as probing.</p>
  */
 public final class LoggingContext implements AutoCloseable {
 
+    // Full snapshot restored on close; null for key-scoped contexts
     private final Map<String, String> previousContext;
 
+    private final String key1;
+    private final String previous1;
+    private final String key2;
+    private final String previous2;
+
     private LoggingContext(Map<String, String> previousContext) {
         this.previousContext = previousContext;
+        this.key1 = null;
+        this.previous1 = null;
+        this.key2 = null;
+        this.previous2 = null;
+    }
+
+    private LoggingContext(String key1, String previous1, String key2, String previous2) {
+        this.previousContext = null;
+        this.key1 = key1;
+        this.previous1 = previous1;
+        this.key2 = key2;
+        this.previous2 = previous2;
     }
 
     /**
@@ -33,31 +54,56 @@ public final class LoggingContext implements AutoCloseable {
             previous = Collections.emptyMap();
         }
 
-        entries.forEach((key, value) -> {
-            if (value == null) {
-                MDC.remove(key);
-            } else {
-                MDC.put(key, value);
-            }
-        });
+        entries.forEach(LoggingContext::put);
 
         return new LoggingContext(previous);
     }
 
     /**
      * Replace or add a single MDC key for the lifetime of the returned scope.
-     * Previous MDC contents are restored when the scope closes.
+     * The key's previous value is restored when the scope closes.
      */
     public static LoggingContext withValue(String key, String value) {
-        return withValues(Map.of(key, value));
+        String previous = MDC.get(key);
+        put(key, value);
+        return new LoggingContext(key, previous, null, null);
+    }
+
+    /**
+     * Replace or add two MDC keys for the lifetime of the returned scope.
+     * The keys' previous values are restored when the scope closes.
+     */
+    public static LoggingContext withValues(String key1, String value1, String key2, String value2) {
+        String previous1 = MDC.get(key1);
+        String previous2 = MDC.get(key2);
+        put(key1, value1);
+        put(key2, value2);
+        return new LoggingContext(key1, previous1, key2, previous2);
     }
 
     @Override
     public void close() {
-        if (previousContext.isEmpty()) {
-            MDC.clear();
+        if (previousContext != null) {
+            if (previousContext.isEmpty()) {
+                MDC.clear();
+            } else {
+                MDC.setContextMap(previousContext);
+            }
+            return;
+        }
+
+        // Restore in reverse order so a key set twice ends up with its original value
+        if (key2 != null) {
+            put(key2, previous2);
+        }
+        put(key1, previous1);
+    }
+
+    private static void put(String key, String value) {
+        if (value == null) {
+            MDC.remove(key);
         } else {
-            MDC.setContextMap(previousContext);
+            MDC.put(key, value);
         }
     }
 }
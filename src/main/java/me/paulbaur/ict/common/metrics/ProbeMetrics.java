@@ -8,35 +8,78 @@ import me.paulbaur.ict.common.model.ProbeMethod;
 import me.paulbaur.ict.common.model.ProbeStatus;
 import org.springframework.stereotype.Component;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
 @Slf4j
 @Component
 public class ProbeMetrics {
 
+    private static final int METHODS = ProbeMethod.values().length;
+    private static final int STATUSES = ProbeStatus.values().length;
+
     private final MeterRegistry meterRegistry;
 
+    // Per-target meters, indexed by enum ordinals, so a probe does not rebuild and look up meter IDs
+    private final Map<String, Counter[]> executionCounters = new ConcurrentHashMap<>();
+    private final Map<String, Timer[]> latencyTimers = new ConcurrentHashMap<>();
+    private final Map<String, Counter> anomalyCounters = new ConcurrentHashMap<>();
+
     public ProbeMetrics(MeterRegistry meterRegistry) {
         this.meterRegistry = meterRegistry;
     }
 
     public void recordProbeExecution(String targetId, ProbeStatus status, ProbeMethod method) {
-        Counter.builder("probe.executions.total")
-                .tag("targetId", targetId)
-                .tag("status", status.name())
-                .tag("method", method.name())
-                .description("Total number of probe executions")
-                .register(meterRegistry)
-                .increment();
+        Counter[] counters = executionCounters.get(targetId);
+        if (counters == null) {
+            counters = executionCounters.computeIfAbsent(targetId, id -> new Counter[STATUSES * METHODS]);
+        }
+        int index = status.ordinal() * METHODS + method.ordinal();
+        Counter counter = counters[index];
+        if (counter == null) {
+            // Benign race: the registry returns the same meter for identical IDs
+            counter = Counter.builder("probe.executions.total")
+                    .tag("targetId", targetId)
+                    .tag("status", status.name())
+                    .tag("method", method.name())
+                    .description("Total number of probe executions")
+                    .register(meterRegistry);
+            counters[index] = counter;
+        }
+        counter.increment();
+    }
+
+    /**
+     * Record a probe latency. The value is recorded in nanoseconds so sub-millisecond
+     * latencies of LAN targets are not truncated.
+     */
+    public void recordProbeLatency(String targetId, ProbeMethod method, double latencyMs) {
+        Timer[] timers = latencyTimers.get(targetId);
+        if (timers == null) {
+            timers = latencyTimers.computeIfAbsent(targetId, id -> new Timer[METHODS]);
+        }
+        Timer timer = timers[method.ordinal()];
+        if (timer == null) {
+            timer = Timer.builder("probe.latency")
+                    .tag("targetId", targetId)
+                    .tag("method", method.name())
+                    .description("Probe latency distribution")
+                    .register(meterRegistry);
+            timers[method.ordinal()] = timer;
+        }
+        timer.record(Math.round(latencyMs * 1_000_000), TimeUnit.NANOSECONDS);
     }
 
-    public void recordProbeLatency(String targetId, ProbeMethod method, long latencyMs) {
-        Timer.builder("probe.latency")
-                .tag("targetId", targetId)
-                .tag("method", method.name())
-                .description("Probe latency distribution")
+    /**
+     * Count the start of a latency anomaly, a run of samples far above the target's baseline.
+     */
+    public void recordLatencyAnomaly(String targetId) {
+        anomalyCounters.computeIfAbsent(targetId, id -> Counter.builder("probe.latency.anomalies")
+                .tag("targetId", id)
+                .description("Latency anomalies detected against the moving baseline")
                 .register(meterRegistry)
-                .record(latencyMs, TimeUnit.MILLISECONDS);
+        ).increment();
     }
 
     public void recordElasticsearchOperation(String operation, String status) {
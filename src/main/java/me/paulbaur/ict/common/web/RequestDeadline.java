@@ -0,0 +1,47 @@
+package me.paulbaur.ict.common.web;
+
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * Deadline of the work running on the current thread, set by {@link RequestDeadlineFilter} for
+ * HTTP requests and by background jobs for their own work. Blocking calls to other systems wait
+ * at most until the deadline and cancel what they started when it passes.
+ *
+ * <p>Scopes nest; an inner scope can shorten the deadline but never extend it.</p>
+ */
+public final class RequestDeadline implements AutoCloseable {
+
+    private static final ThreadLocal<Instant> CURRENT = new ThreadLocal<>();
+
+    private final Instant previous;
+
+    private RequestDeadline(Instant previous) {
+        this.previous = previous;
+    }
+
+    /**
+     * Apply {@code deadline} to the current thread until the returned scope closes.
+     */
+    public static RequestDeadline at(Instant deadline) {
+        Instant previous = CURRENT.get();
+        CURRENT.set(previous != null && previous.isBefore(deadline) ? previous : deadline);
+        return new RequestDeadline(previous);
+    }
+
+    /**
+     * The deadline of the current thread, or empty if its work is not bounded.
+     */
+    public static Optional<Instant> current() {
+        return Optional.ofNullable(CURRENT.get());
+    }
+
+    @Override
+    public void close() {
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+}
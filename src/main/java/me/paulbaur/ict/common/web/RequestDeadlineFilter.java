@@ -0,0 +1,72 @@
+package me.paulbaur.ict.common.web;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+
+/**
+ * Gives every API request a {@link RequestDeadline}: the configured maximum, or less if the
+ * client asks for it with {@value #TIMEOUT_HEADER} (milliseconds). Elasticsearch requests still
+ * running at the deadline are aborted, which also cancels their search tasks in the cluster.
+ *
+ * <p>A blocking servlet request cannot observe a client disconnect until it writes the response,
+ * so the deadline is also what bounds the work done for clients that have gone away.</p>
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 1)
+public class RequestDeadlineFilter extends OncePerRequestFilter {
+
+    public static final String TIMEOUT_HEADER = "X-Request-Timeout-Ms";
+
+    private final Duration maxDeadline;
+    private final Clock clock;
+
+    public RequestDeadlineFilter(@Value("${ict.http.request-deadline:30s}") Duration maxDeadline) {
+        this(maxDeadline, Clock.systemUTC());
+    }
+
+    RequestDeadlineFilter(Duration maxDeadline, Clock clock) {
+        this.maxDeadline = maxDeadline;
+        this.clock = clock;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !request.getRequestURI().startsWith("/api/");
+    }
+
+    @Override
+    protected void doFilterInternal(
+            HttpServletRequest request,
+            HttpServletResponse response,
+            FilterChain filterChain
+    ) throws ServletException, IOException {
+        try (RequestDeadline ignored = RequestDeadline.at(clock.instant().plus(timeout(request)))) {
+            filterChain.doFilter(request, response);
+        }
+    }
+
+    private Duration timeout(HttpServletRequest request) {
+        String requested = request.getHeader(TIMEOUT_HEADER);
+        if (!StringUtils.hasText(requested)) {
+            return maxDeadline;
+        }
+        try {
+            long millis = Long.parseLong(requested.trim());
+            return millis > 0 && millis < maxDeadline.toMillis() ? Duration.ofMillis(millis) : maxDeadline;
+        } catch (NumberFormatException e) {
+            return maxDeadline;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package me.paulbaur.ict.coordination.event;
+
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * Event published when this node gains or loses leadership.
+ * State kept only while this node is the leader is stale after either change.
+ */
+public class LeadershipChangedEvent extends ApplicationEvent {
+
+    private final String nodeId;
+    private final boolean leader;
+
+    public LeadershipChangedEvent(Object source, String nodeId, boolean leader) {
+        super(source);
+        this.nodeId = nodeId;
+        this.leader = leader;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public boolean isLeader() {
+        return leader;
+    }
+
+    @Override
+    public String toString() {
+        return "LeadershipChangedEvent{" +
+                "nodeId='" + nodeId + '\'' +
+                ", leader=" + leader +
+                ", timestamp=" + getTimestamp() +
+                '}';
+    }
+}
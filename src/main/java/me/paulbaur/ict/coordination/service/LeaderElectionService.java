@@ -4,8 +4,10 @@ import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import me.paulbaur.ict.coordination.event.LeadershipChangedEvent;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
@@ -18,6 +20,7 @@ import static net.logstash.logback.argument.StructuredArguments.kv;
  * Service for leader election in a multi-node deployment.
  * Uses distributed locks to ensure only one instance acts as the leader.
  * The leader is responsible for scheduling probes.
+ * Every change of leadership is published as a {@link LeadershipChangedEvent}.
  */
 @Service
 @RequiredArgsConstructor
@@ -28,6 +31,7 @@ public class LeaderElectionService {
     private static final String LEADER_LOCK_KEY = "ict:leader-election:lock";
 
     private final DistributedLockService lockService;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Value("${ict.coordination.leader-election.lease-time-seconds:30}")
     private int leaseTimeSeconds;
@@ -64,9 +68,11 @@ public class LeaderElectionService {
         if (acquired && !isLeader) {
             isLeader = true;
             log.info("Node elected as leader", kv("nodeId", nodeId));
+            eventPublisher.publishEvent(new LeadershipChangedEvent(this, nodeId, true));
         } else if (!acquired && isLeader) {
             isLeader = false;
             log.info("Node lost leadership", kv("nodeId", nodeId));
+            eventPublisher.publishEvent(new LeadershipChangedEvent(this, nodeId, false));
         }
     }
 
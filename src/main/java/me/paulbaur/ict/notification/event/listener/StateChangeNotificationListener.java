@@ -54,8 +54,10 @@ public class StateChangeNotificationListener {
 
         ProbeResult currentResult = event.getResult();
 
-        // Get previous status
-        ProbeStatus previousStatus = getPreviousStatus(currentResult.targetId());
+        // Prefer the status the publisher compared against; querying afterwards races with the save
+        ProbeStatus previousStatus = event.getPreviousStatus() != null
+                ? event.getPreviousStatus()
+                : getPreviousStatus(currentResult.targetId());
         ProbeStatus currentStatus = currentResult.status();
 
         log.info("Processing state change notification",
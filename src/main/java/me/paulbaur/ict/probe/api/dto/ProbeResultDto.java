@@ -3,6 +3,7 @@ package me.paulbaur.ict.probe.api.dto;
 import io.swagger.v3.oas.annotations.media.Schema;
 import me.paulbaur.ict.common.model.ProbeMethod;
 import me.paulbaur.ict.common.model.ProbeStatus;
+import me.paulbaur.ict.probe.domain.BurstStatistics;
 import me.paulbaur.ict.probe.domain.ProbeResult;
 
 import java.time.Instant;
@@ -20,8 +21,8 @@ public record ProbeResultDto(
         @Schema(description = "Host (name or IP) of the probed target", example = "example.org")
         String targetHost,
 
-        @Schema(description = "Measured round-trip latency in milliseconds; null if probe failed", example = "23")
-        Long latencyMs,
+        @Schema(description = "Measured round-trip latency in milliseconds with microsecond resolution; null if probe failed", example = "23.417")
+        Double latencyMs,
 
         @Schema(description = "Identifier for the scheduler cycle that produced this result", example = "e8f0d94e-1c67-4a39-9d34-1c0fbf5b0e4c")
         String probeCycleId,
@@ -33,7 +34,10 @@ public record ProbeResultDto(
         ProbeMethod method,
 
         @Schema(description = "Optional error message when the probe failed", example = "connection timed out")
-        String errorMessage
+        String errorMessage,
+
+        @Schema(description = "Per-sample statistics when the probe ran in burst mode; null for single-sample probes")
+        BurstStatistics burst
 ) {
 
     public static ProbeResultDto fromDomain(ProbeResult result) {
@@ -46,7 +50,8 @@ public record ProbeResultDto(
                 result.probeCycleId(),
                 result.status(),
                 result.method(),
-                result.errorMessage()
+                result.errorMessage(),
+                result.burst()
         );
     }
 
@@ -36,6 +36,8 @@ import java.util.List;
 public class ProbeControllerV1 {
 
     private static final int MAX_LIMIT = 5000;
+    // LTTB always keeps the first and last point, so fewer than three cannot represent a series
+    private static final int MIN_POINTS = 3;
 
     private final ProbeService probeService;
 
@@ -51,7 +53,7 @@ public class ProbeControllerV1 {
             @ApiResponse(responseCode = "200", description = "Latest probe result",
                     content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
                             schema = @Schema(implementation = ProbeResultDto.class),
-                            examples = {@ExampleObject(name = "latest", value = "{\"timestamp\":\"2025-11-19T12:34:56Z\",\"targetId\":\"00000000-0000-0000-0000-000000000000\",\"targetHost\":\"example.org\",\"latencyMs\":23,\"probeCycleId\":\"e8f0d94e-1c67-4a39-9d34-1c0fbf5b0e4c\",\"status\":\"UP\",\"method\":\"TCP\",\"errorMessage\":null}")})
+                            examples = {@ExampleObject(name = "latest", value = "{\"timestamp\":\"2025-11-19T12:34:56Z\",\"targetId\":\"00000000-0000-0000-0000-000000000000\",\"targetHost\":\"example.org\",\"latencyMs\":23.417,\"probeCycleId\":\"e8f0d94e-1c67-4a39-9d34-1c0fbf5b0e4c\",\"status\":\"UP\",\"method\":\"TCP\",\"errorMessage\":null}")})
             ),
             @ApiResponse(responseCode = "404", description = "No probe result available",
                     content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE, schema = @Schema(implementation = ErrorResponse.class))
@@ -72,7 +74,7 @@ public class ProbeControllerV1 {
             @ApiResponse(responseCode = "200", description = "A list of recent probe results",
                     content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
                             array = @ArraySchema(schema = @Schema(implementation = ProbeResultDto.class)),
-                            examples = {@ExampleObject(name = "recent", value = "[{\"timestamp\":\"2025-11-19T12:34:56Z\",\"targetId\":\"00000000-0000-0000-0000-000000000000\",\"targetHost\":\"example.org\",\"latencyMs\":23,\"probeCycleId\":\"e8f0d94e-1c67-4a39-9d34-1c0fbf5b0e4c\",\"status\":\"UP\",\"method\":\"TCP\",\"errorMessage\":null}]")}
+                            examples = {@ExampleObject(name = "recent", value = "[{\"timestamp\":\"2025-11-19T12:34:56Z\",\"targetId\":\"00000000-0000-0000-0000-000000000000\",\"targetHost\":\"example.org\",\"latencyMs\":23.417,\"probeCycleId\":\"e8f0d94e-1c67-4a39-9d34-1c0fbf5b0e4c\",\"status\":\"UP\",\"method\":\"TCP\",\"errorMessage\":null}]")}
                     )
             ),
             @ApiResponse(responseCode = "400", description = "Bad request - invalid parameters",
@@ -80,7 +82,7 @@ public class ProbeControllerV1 {
             )
     })
     @GetMapping("/targets/{targetId}/recent")
-    @Cacheable(value = "probe-results", key = "#targetId + '-' + #limit")
+    @Cacheable(value = "probe-results", key = "#targetId + ':' + #limit")
     public ResponseEntity<List<ProbeResultDto>> recent(
             @Parameter(description = "Target ID (UUID)") @PathVariable String targetId,
             @Parameter(description = "Maximum number of results to return", example = "20")
@@ -99,17 +101,22 @@ public class ProbeControllerV1 {
 
     @Operation(
             summary = "Get probe history within an optional time range",
-            description = "Returns probe results for the target, optionally bounded by `start` and `end` ISO-8601 timestamps. Results are sorted newest first."
+            description = "Returns probe results for the target, optionally bounded by `start` and `end` ISO-8601 timestamps. Results are sorted newest first. "
+                    + "With `points`, the whole range is scanned and reduced server-side (Largest-Triangle-Three-Buckets) to at most `points` representative UP results; each outage is kept as its first and last DOWN result and `limit` is ignored. "
+                    + "A range holding more results than the server scans per request is rejected with 422."
     )
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Historical probe results",
                     content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
                             array = @ArraySchema(schema = @Schema(implementation = ProbeResultDto.class)),
-                            examples = {@ExampleObject(name = "history", value = "[{\"timestamp\":\"2025-11-19T12:34:56Z\",\"targetId\":\"00000000-0000-0000-0000-000000000000\",\"targetHost\":\"example.org\",\"latencyMs\":45,\"probeCycleId\":\"e8f0d94e-1c67-4a39-9d34-1c0fbf5b0e4c\",\"status\":\"UP\",\"method\":\"TCP\",\"errorMessage\":null}]")}
+                            examples = {@ExampleObject(name = "history", value = "[{\"timestamp\":\"2025-11-19T12:34:56Z\",\"targetId\":\"00000000-0000-0000-0000-000000000000\",\"targetHost\":\"example.org\",\"latencyMs\":45.082,\"probeCycleId\":\"e8f0d94e-1c67-4a39-9d34-1c0fbf5b0e4c\",\"status\":\"UP\",\"method\":\"TCP\",\"errorMessage\":null}]")}
                     )
             ),
             @ApiResponse(responseCode = "400", description = "Invalid request parameters",
                     content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE, schema = @Schema(implementation = ErrorResponse.class))
+            ),
+            @ApiResponse(responseCode = "422", description = "Downsampled range holds too many results to scan",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE, schema = @Schema(implementation = ErrorResponse.class))
             )
     })
     @GetMapping("/history")
@@ -121,7 +128,9 @@ public class ProbeControllerV1 {
             @Parameter(description = "Inclusive start of the time range (ISO-8601)", example = "2025-11-19T10:00:00Z")
             @RequestParam(name = "start", required = false) String start,
             @Parameter(description = "Inclusive end of the time range (ISO-8601)", example = "2025-11-19T12:00:00Z")
-            @RequestParam(name = "end", required = false) String end
+            @RequestParam(name = "end", required = false) String end,
+            @Parameter(description = "Downsample the range to at most this many UP points for charting; requires start and end", example = "500")
+            @RequestParam(name = "points", required = false) Integer points
     ) {
         if (!hasText(targetId)) {
             throw new IllegalArgumentException("targetId is required");
@@ -141,6 +150,17 @@ public class ProbeControllerV1 {
             throw new IllegalArgumentException("start must be before end");
         }
 
+        if (points != null) {
+            if (startInstant == null) {
+                throw new IllegalArgumentException("start and end are required when points is given");
+            }
+            if (points < MIN_POINTS || points > MAX_LIMIT) {
+                throw new IllegalArgumentException("points must be between " + MIN_POINTS + " and " + MAX_LIMIT);
+            }
+            return ResponseEntity.ok(ProbeResultDto.fromDomainList(
+                    probeService.getDownsampledHistoryForTarget(targetId, startInstant, endInstant, points)));
+        }
+
         List<ProbeResultDto> results = ProbeResultDto.fromDomainList(probeService.getHistoryForTarget(targetId, limit, startInstant, endInstant));
         return ResponseEntity.ok(results);
     }
@@ -0,0 +1,28 @@
+package me.paulbaur.ict.probe.domain;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+@Schema(description = "Latency distribution, jitter and loss observed across the samples of a burst probe")
+public record BurstStatistics(
+        @Schema(description = "Number of samples sent in the burst", example = "5")
+        int samples,
+
+        @Schema(description = "Number of samples that received a reply", example = "4")
+        int received,
+
+        @Schema(description = "Fastest sample round-trip latency in milliseconds; null if no sample succeeded", example = "11.8")
+        Double minLatencyMs,
+
+        @Schema(description = "Median sample round-trip latency in milliseconds; null if no sample succeeded", example = "12.4")
+        Double medianLatencyMs,
+
+        @Schema(description = "Slowest sample round-trip latency in milliseconds; null if no sample succeeded", example = "19.2")
+        Double maxLatencyMs,
+
+        @Schema(description = "Mean absolute difference between consecutive successful samples in milliseconds (IPDV jitter); null if fewer than two samples succeeded", example = "2.1")
+        Double jitterMs,
+
+        @Schema(description = "Fraction of samples that were lost (0.0 - 1.0)", example = "0.2")
+        double packetLoss
+) {
+}
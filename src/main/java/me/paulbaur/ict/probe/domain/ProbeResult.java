@@ -17,8 +17,8 @@ public record ProbeResult (
     @Schema(description = "Host (name or IP) of the probed target", example = "example.org")
     String targetHost,
 
-    @Schema(description = "Measured round-trip latency in milliseconds; null if probe failed", example = "23")
-    Long latencyMs,
+    @Schema(description = "Measured round-trip latency in milliseconds with microsecond resolution; null if probe failed", example = "23.417")
+    Double latencyMs,
 
     @Schema(description = "Identifier for the scheduler cycle that produced this result", example = "e8f0d94e-1c67-4a39-9d34-1c0fbf5b0e4c")
     String probeCycleId,
@@ -30,7 +30,22 @@ public record ProbeResult (
     ProbeMethod method,
 
     @Schema(description = "Optional error message when the probe failed", example = "connection timed out")
-    String errorMessage
+    String errorMessage,
+
+    @Schema(description = "Per-sample statistics when the probe ran in burst mode; null for single-sample probes")
+    BurstStatistics burst
 ) {
 
+    public ProbeResult(
+            Instant timestamp,
+            String targetId,
+            String targetHost,
+            Double latencyMs,
+            String probeCycleId,
+            ProbeStatus status,
+            ProbeMethod method,
+            String errorMessage
+    ) {
+        this(timestamp, targetId, targetHost, latencyMs, probeCycleId, status, method, errorMessage, null);
+    }
 }
@@ -1,5 +1,6 @@
 package me.paulbaur.ict.probe.event;
 
+import me.paulbaur.ict.common.model.ProbeStatus;
 import me.paulbaur.ict.probe.domain.ProbeResult;
 import org.springframework.context.ApplicationEvent;
 
@@ -14,6 +15,7 @@ public class ProbeResultEvent extends ApplicationEvent {
 
     private final ProbeResult result;
     private final boolean isStateChange;
+    private final ProbeStatus previousStatus;
 
     /**
      * Create a new ProbeResultEvent.
@@ -23,9 +25,22 @@ public class ProbeResultEvent extends ApplicationEvent {
      * @param isStateChange whether this result represents a state change (UP->DOWN or DOWN->UP)
      */
     public ProbeResultEvent(Object source, ProbeResult result, boolean isStateChange) {
+        this(source, result, isStateChange, null);
+    }
+
+    /**
+     * Create a new ProbeResultEvent.
+     *
+     * @param source the object that published the event
+     * @param result the probe result
+     * @param isStateChange whether this result represents a state change (UP->DOWN or DOWN->UP)
+     * @param previousStatus status of the target's previous result, or null if unknown
+     */
+    public ProbeResultEvent(Object source, ProbeResult result, boolean isStateChange, ProbeStatus previousStatus) {
         super(source);
         this.result = result;
         this.isStateChange = isStateChange;
+        this.previousStatus = previousStatus;
     }
 
     public ProbeResult getResult() {
@@ -36,11 +51,19 @@ public class ProbeResultEvent extends ApplicationEvent {
         return isStateChange;
     }
 
+    /**
+     * Status of the target's previous result, or null if there was none or it could not be read.
+     */
+    public ProbeStatus getPreviousStatus() {
+        return previousStatus;
+    }
+
     @Override
     public String toString() {
         return "ProbeResultEvent{" +
                 "result=" + result +
                 ", isStateChange=" + isStateChange +
+                ", previousStatus=" + previousStatus +
                 ", timestamp=" + getTimestamp() +
                 '}';
     }
@@ -14,7 +14,8 @@ import static net.logstash.logback.argument.StructuredArguments.kv;
 
 /**
  * Publisher for probe result events.
- * Determines if a probe result represents a state change by comparing with the previous result.
+ * Determines if a probe result represents a state change by comparing with the previous result,
+ * and passes the previous status along with the event.
  */
 @Component
 @RequiredArgsConstructor
@@ -31,18 +32,20 @@ public class ProbeResultEventPublisher {
      * @param result the probe result to publish
      */
     public void publishProbeResult(ProbeResult result) {
-        boolean isStateChange = detectStateChange(result);
+        ProbeStatus previousStatus = findPreviousStatus(result).orElse(null);
+        boolean isStateChange = previousStatus != null && previousStatus != result.status();
 
-        ProbeResultEvent event = new ProbeResultEvent(this, result, isStateChange);
+        ProbeResultEvent event = new ProbeResultEvent(this, result, isStateChange, previousStatus);
 
         if (isStateChange) {
             log.info(
                     "Publishing probe result event with state change",
                     kv("targetId", result.targetId()),
+                    kv("previousStatus", previousStatus),
                     kv("status", result.status()),
                     kv("isStateChange", true)
             );
-        } else {
+        } else if (log.isDebugEnabled()) {
             log.debug(
                     "Publishing probe result event",
                     kv("targetId", result.targetId()),
@@ -55,13 +58,12 @@ public class ProbeResultEventPublisher {
     }
 
     /**
-     * Detect if this result represents a state change.
-     * Compares the current status with the most recent stored result.
+     * Find the status of the target's most recent stored result, which precedes this one.
      *
      * @param currentResult the current probe result
-     * @return true if the status changed from the previous result
+     * @return the previous status, or empty for a target's first result or if it could not be read
      */
-    private boolean detectStateChange(ProbeResult currentResult) {
+    private Optional<ProbeStatus> findPreviousStatus(ProbeResult currentResult) {
         try {
             // Get the most recent result for this target (before this one is saved)
             Optional<ProbeResult> previousResultOpt = probeRepository
@@ -75,16 +77,13 @@ public class ProbeResultEventPublisher {
                         "No previous result found for target - not a state change",
                         kv("targetId", currentResult.targetId())
                 );
-                return false;
+                return Optional.empty();
             }
 
-            ProbeResult previousResult = previousResultOpt.get();
-            ProbeStatus previousStatus = previousResult.status();
+            ProbeStatus previousStatus = previousResultOpt.get().status();
             ProbeStatus currentStatus = currentResult.status();
 
-            boolean isChange = previousStatus != currentStatus;
-
-            if (isChange) {
+            if (previousStatus != currentStatus) {
                 log.debug(
                         "State change detected",
                         kv("targetId", currentResult.targetId()),
@@ -93,14 +92,14 @@ public class ProbeResultEventPublisher {
                 );
             }
 
-            return isChange;
+            return Optional.ofNullable(previousStatus);
         } catch (Exception e) {
             log.warn(
                     "Failed to detect state change, assuming no change",
                     kv("targetId", currentResult.targetId()),
                     e
             );
-            return false;
+            return Optional.empty();
         }
     }
 }
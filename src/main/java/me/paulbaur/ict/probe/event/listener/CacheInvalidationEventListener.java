@@ -1,73 +1,123 @@
 package me.paulbaur.ict.probe.event.listener;
 
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
+import me.paulbaur.ict.common.cache.CacheInvalidation;
+import me.paulbaur.ict.common.cache.RedisCacheFamilyEvictor;
 import me.paulbaur.ict.probe.event.ProbeResultEvent;
-import org.springframework.cache.Cache;
-import org.springframework.cache.CacheManager;
 import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 import static net.logstash.logback.argument.StructuredArguments.kv;
 
 /**
  * Event listener that invalidates cache entries when new probe results arrive.
  * This ensures that cached data remains fresh and reflects the latest probe results.
+ *
+ * <p>The probe thread only marks the target as dirty. A scheduled flush evicts every cached
+ * entry of all dirty targets in one bulk operation, so a target probed many times within a
+ * flush interval is invalidated once.</p>
  */
 @Component
-@RequiredArgsConstructor
 @Slf4j
 public class CacheInvalidationEventListener {
 
-    private final CacheManager cacheManager;
+    static final String PROBE_RESULTS_CACHE = "probe-results";
+
+    private final RedisCacheFamilyEvictor cacheFamilyEvictor;
+    private final Set<String> pendingTargets = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean flushing = new AtomicBoolean();
+
+    private final Counter targetsInvalidated;
+    private final Counter keysEvicted;
+    private final Counter flushFailures;
+
+    public CacheInvalidationEventListener(RedisCacheFamilyEvictor cacheFamilyEvictor, MeterRegistry meterRegistry) {
+        this.cacheFamilyEvictor = cacheFamilyEvictor;
+        this.targetsInvalidated = Counter.builder("cache.invalidation.targets")
+                .description("Targets whose cached entries were invalidated after new probe results")
+                .register(meterRegistry);
+        this.keysEvicted = Counter.builder("cache.invalidation.keys")
+                .description("Redis cache keys evicted by probe result invalidation")
+                .register(meterRegistry);
+        this.flushFailures = Counter.builder("cache.invalidation.failures")
+                .description("Failed cache invalidation flushes")
+                .register(meterRegistry);
+    }
 
     /**
-     * Handle probe result events by invalidating relevant cache entries.
+     * Mark the event's target for invalidation on the next flush.
      *
      * @param event the probe result event
      */
     @EventListener
     public void handleProbeResultEvent(ProbeResultEvent event) {
-        String targetId = event.getResult().targetId();
+        pendingTargets.add(event.getResult().targetId());
+    }
 
+    /**
+     * Evict the cached entries of every target that received results since the previous flush.
+     * Runs on the probe executor so a slow Redis never delays the scheduler thread; a flush that
+     * is still running causes the next one to be skipped.
+     */
+    @Scheduled(fixedDelayString = "${ict.cache.invalidation.flush-interval-ms:500}")
+    @Async("probeTaskExecutor")
+    public void flush() {
+        if (pendingTargets.isEmpty() || !flushing.compareAndSet(false, true)) {
+            return;
+        }
+        List<String> targets = new ArrayList<>();
         try {
-            // Evict cache entries for this target
-            evictCacheForTarget(targetId);
+            Iterator<String> iterator = pendingTargets.iterator();
+            while (iterator.hasNext()) {
+                targets.add(iterator.next());
+                iterator.remove();
+            }
 
+            List<CacheInvalidation> invalidations = new ArrayList<>(targets.size() * 2);
+            for (String targetId : targets) {
+                invalidations.addAll(invalidationsFor(targetId));
+            }
+            long evicted = cacheFamilyEvictor.evict(invalidations);
+
+            targetsInvalidated.increment(targets.size());
+            keysEvicted.increment(evicted);
             log.debug(
-                    "Invalidated cache for target after new probe result",
-                    kv("targetId", targetId),
-                    kv("status", event.getResult().status())
+                    "Invalidated cache for targets after new probe results",
+                    kv("targets", targets.size()),
+                    kv("keysEvicted", evicted)
             );
         } catch (Exception e) {
+            // Retry on the next flush; cache invalidation failure shouldn't break event processing
+            pendingTargets.addAll(targets);
+            flushFailures.increment();
             log.warn(
-                    "Failed to invalidate cache for target",
-                    kv("targetId", targetId),
+                    "Failed to invalidate cache for targets",
+                    kv("targets", targets.size()),
                     kv("error", e.getMessage()),
                     e
             );
-            // Don't rethrow - cache invalidation failure shouldn't break event processing
+        } finally {
+            flushing.set(false);
         }
     }
 
     /**
-     * Evict cache entries for a specific target.
-     *
-     * @param targetId the target ID
+     * Cache entries derived from a target's results: every {@code recent} page of the target.
      */
-    private void evictCacheForTarget(String targetId) {
-        // Evict from probe-results cache
-        Cache probeResultsCache = cacheManager.getCache("probe-results");
-        if (probeResultsCache != null) {
-            probeResultsCache.evict(targetId);
-            log.debug("Evicted probe-results cache entry", kv("targetId", targetId));
-        }
-
-        // Evict from target-status cache
-        Cache targetStatusCache = cacheManager.getCache("target-status");
-        if (targetStatusCache != null) {
-            targetStatusCache.evict(targetId);
-            log.debug("Evicted target-status cache entry", kv("targetId", targetId));
-        }
+    static List<CacheInvalidation> invalidationsFor(String targetId) {
+        return List.of(
+                CacheInvalidation.prefix(PROBE_RESULTS_CACHE, targetId + ":")
+        );
     }
 }
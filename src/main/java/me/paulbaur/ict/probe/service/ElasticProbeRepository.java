@@ -1,30 +1,48 @@
 package me.paulbaur.ict.probe.service;
 
 import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.FieldValue;
 import co.elastic.clients.elasticsearch._types.SortOrder;
 import co.elastic.clients.elasticsearch._types.query_dsl.Query;
 import co.elastic.clients.elasticsearch.core.IndexRequest;
 import co.elastic.clients.elasticsearch.core.SearchRequest;
 import co.elastic.clients.elasticsearch.core.SearchResponse;
+import co.elastic.clients.elasticsearch.core.search.Hit;
 import co.elastic.clients.json.JsonData;
 
 import io.github.resilience4j.circuitbreaker.CircuitBreaker;
 import io.github.resilience4j.retry.Retry;
+import lombok.extern.slf4j.Slf4j;
+import me.paulbaur.ict.common.elasticsearch.ElasticsearchRequestExecutor;
 import me.paulbaur.ict.common.exception.CircuitBreakerOpenException;
+import me.paulbaur.ict.common.exception.DeadlineExceededException;
 import me.paulbaur.ict.common.metrics.ProbeMetrics;
 import me.paulbaur.ict.probe.domain.ProbeResult;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Repository;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.Instant;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 import java.util.function.Supplier;
 
+import static net.logstash.logback.argument.StructuredArguments.kv;
+
 @Repository
+@Slf4j
 public class ElasticProbeRepository implements ProbeRepository {
 
+    private static final int STREAM_PAGE_SIZE = 5000;
+    private static final String STREAM_KEEP_ALIVE = "1m";
+
     private final ElasticsearchClient client;
+    private final ElasticsearchRequestExecutor requestExecutor;
     private final String index;
     private final ProbeMetrics probeMetrics;
     private final Retry elasticsearchRetry;
@@ -32,11 +50,13 @@ public class ElasticProbeRepository implements ProbeRepository {
 
     public ElasticProbeRepository(
             ElasticsearchClient client,
+            ElasticsearchRequestExecutor requestExecutor,
             @Value("${ict.elasticsearch.index:probe-results}") String index,
             ProbeMetrics probeMetrics,
             Retry elasticsearchRetry,
             CircuitBreaker elasticsearchCircuitBreaker) {
         this.client = client;
+        this.requestExecutor = requestExecutor;
         this.index = index;
         this.probeMetrics = probeMetrics;
         this.elasticsearchRetry = elasticsearchRetry;
@@ -57,6 +77,17 @@ public class ElasticProbeRepository implements ProbeRepository {
         }
     }
 
+    /**
+     * Run a search through the request executor, so one made for an API request is cancelled at its deadline.
+     */
+    private SearchResponse<ProbeResult> search(SearchRequest request) {
+        try {
+            return requestExecutor.execute(c -> c.search(request, ProbeResult.class));
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
     @Override
     public void save(ProbeResult result) {
         long startTime = System.currentTimeMillis();
@@ -103,29 +134,25 @@ public class ElasticProbeRepository implements ProbeRepository {
         long startTime = System.currentTimeMillis();
         try {
             SearchResponse<ProbeResult> response = executeWithResilience(() -> {
-                try {
-                    // Use a match query against the keyword sub-field so exact target id matches work
-                    SearchRequest request = new SearchRequest.Builder()
-                            .index(index)
-                            .query(q -> q
-                                    .match(m -> m
-                                            .field("targetId.keyword")
-                                            .query(targetId)
-                                    )
-                            )
-                            .sort(s -> s
-                                    .field(f -> f
-                                            .field("timestamp")
-                                            .order(SortOrder.Desc)
-                                    )
-                            )
-                            .size(limit)
-                            .build();
-
-                    return client.search(request, ProbeResult.class);
-                } catch (Exception ex) {
-                    throw new RuntimeException(ex);
-                }
+                // Use a match query against the keyword sub-field so exact target id matches work
+                SearchRequest request = new SearchRequest.Builder()
+                        .index(index)
+                        .query(q -> q
+                                .match(m -> m
+                                        .field("targetId.keyword")
+                                        .query(targetId)
+                                )
+                        )
+                        .sort(s -> s
+                                .field(f -> f
+                                        .field("timestamp")
+                                        .order(SortOrder.Desc)
+                                )
+                        )
+                        .size(limit)
+                        .build();
+
+                return search(request);
             });
 
             List<ProbeResult> results = extractHits(response);
@@ -140,6 +167,9 @@ public class ElasticProbeRepository implements ProbeRepository {
             long duration = System.currentTimeMillis() - startTime;
             probeMetrics.recordElasticsearchOperation("findRecent", "failure");
             probeMetrics.recordElasticsearchOperationDuration("findRecent", duration);
+            if (ex instanceof DeadlineExceededException deadlineExceeded) {
+                throw deadlineExceeded;
+            }
             throw new ProbeRepositoryException("Failed to fetch recent probe results for target " + targetId, ex);
         }
     }
@@ -165,33 +195,29 @@ public class ElasticProbeRepository implements ProbeRepository {
         long startTime = System.currentTimeMillis();
         try {
             SearchResponse<ProbeResult> response = executeWithResilience(() -> {
-                try {
-                    // Build a date range query using ISO-8601 strings for the start/end instants
-                    Query rangeQuery = Query.of(q -> q
-                            .range(r -> r
-                                    .field("timestamp")
-                                    .gte(JsonData.of(start.toString()))
-                                    .lte(JsonData.of(end.toString()))
-                            )
-                    );
-
-                    SearchRequest request = new SearchRequest.Builder()
-                            .index(index)
-                            .query(q -> q
-                                    .bool(b -> b
-                                            .must(m -> m.match(mt -> mt.field("targetId.keyword").query(targetId)))
-                                            .must(rangeQuery)
-                                    )
-                            )
-                            .sort(s -> s.field(f -> f.field("timestamp").order(SortOrder.Desc)))
-                            // allow a reasonably large window; callers should page if they expect more
-                            .size(5000)
-                            .build();
-
-                    return client.search(request, ProbeResult.class);
-                } catch (Exception ex) {
-                    throw new RuntimeException(ex);
-                }
+                // Build a date range query using ISO-8601 strings for the start/end instants
+                Query rangeQuery = Query.of(q -> q
+                        .range(r -> r
+                                .field("timestamp")
+                                .gte(JsonData.of(start.toString()))
+                                .lte(JsonData.of(end.toString()))
+                        )
+                );
+
+                SearchRequest request = new SearchRequest.Builder()
+                        .index(index)
+                        .query(q -> q
+                                .bool(b -> b
+                                        .must(m -> m.match(mt -> mt.field("targetId.keyword").query(targetId)))
+                                        .must(rangeQuery)
+                                )
+                        )
+                        .sort(s -> s.field(f -> f.field("timestamp").order(SortOrder.Desc)))
+                        // allow a reasonably large window; callers should page if they expect more
+                        .size(5000)
+                        .build();
+
+                return search(request);
             });
 
             List<ProbeResult> results = extractHits(response);
@@ -206,28 +232,125 @@ public class ElasticProbeRepository implements ProbeRepository {
             long duration = System.currentTimeMillis() - startTime;
             probeMetrics.recordElasticsearchOperation("findBetween", "failure");
             probeMetrics.recordElasticsearchOperationDuration("findBetween", duration);
+            if (ex instanceof DeadlineExceededException deadlineExceeded) {
+                throw deadlineExceeded;
+            }
             throw new ProbeRepositoryException("Failed to fetch history for target " + targetId + " between " + start + " - " + end, ex);
         }
     }
 
+    /**
+     * Stream probe results for a target within a time range, oldest first.
+     *
+     * <p>Pages with {@code search_after} over a point in time, so the range is not limited to
+     * one search window and only one page is held in memory. Results can share a timestamp (a
+     * burst, or a manual probe during a scheduled one), so the sort ends with {@code _shard_doc},
+     * which is unique within the point in time and keeps paging from skipping or repeating
+     * results.</p>
+     */
+    @Override
+    public void streamBetween(String targetId, Instant start, Instant end, int maxResults, Consumer<ProbeResult> consumer) {
+        long startTime = System.currentTimeMillis();
+        int streamed = 0;
+        String pitId = null;
+        try {
+            pitId = executeWithResilience(this::openPointInTime);
+            List<FieldValue> searchAfter = null;
+            while (streamed < maxResults) {
+                List<FieldValue> after = searchAfter;
+                String pit = pitId;
+                int pageSize = Math.min(STREAM_PAGE_SIZE, maxResults - streamed);
+                SearchResponse<ProbeResult> response = executeWithResilience(() -> {
+                    SearchRequest.Builder request = new SearchRequest.Builder()
+                            .pit(p -> p.id(pit).keepAlive(k -> k.time(STREAM_KEEP_ALIVE)))
+                            .query(q -> q
+                                    .bool(b -> b
+                                            .filter(f -> f.term(t -> t.field("targetId.keyword").value(targetId)))
+                                            .filter(f -> f.range(r -> r
+                                                    .field("timestamp")
+                                                    .gte(JsonData.of(start.toString()))
+                                                    .lte(JsonData.of(end.toString()))
+                                            ))
+                                    )
+                            )
+                            .sort(s -> s.field(f -> f.field("timestamp").order(SortOrder.Asc)))
+                            .sort(s -> s.field(f -> f.field("_shard_doc").order(SortOrder.Asc)))
+                            .size(pageSize);
+                    if (after != null) {
+                        request.searchAfter(after);
+                    }
+                    return search(request.build());
+                });
+                if (response.pitId() != null) {
+                    pitId = response.pitId();
+                }
+
+                List<Hit<ProbeResult>> hits = response.hits().hits();
+                for (Hit<ProbeResult> hit : hits) {
+                    if (hit.source() != null) {
+                        consumer.accept(hit.source());
+                    }
+                }
+                streamed += hits.size();
+                if (hits.size() < pageSize) {
+                    break;
+                }
+                searchAfter = hits.get(hits.size() - 1).sort();
+            }
+
+            long duration = System.currentTimeMillis() - startTime;
+            probeMetrics.recordElasticsearchOperation("streamBetween", "success");
+            probeMetrics.recordElasticsearchOperationDuration("streamBetween", duration);
+
+        } catch (Exception ex) {
+            long duration = System.currentTimeMillis() - startTime;
+            probeMetrics.recordElasticsearchOperation("streamBetween", "failure");
+            probeMetrics.recordElasticsearchOperationDuration("streamBetween", duration);
+            if (ex instanceof DeadlineExceededException deadlineExceeded) {
+                throw deadlineExceeded;
+            }
+            throw new ProbeRepositoryException("Failed to stream history for target " + targetId + " between " + start + " - " + end, ex);
+        } finally {
+            if (pitId != null) {
+                closePointInTime(pitId);
+            }
+        }
+    }
+
+    private String openPointInTime() {
+        try {
+            return requestExecutor.execute(c -> c.openPointInTime(o -> o
+                    .index(index)
+                    .keepAlive(k -> k.time(STREAM_KEEP_ALIVE)))).id();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    // Not bound to the request deadline: a stream cut short by it must still release its point in time
+    private void closePointInTime(String pitId) {
+        try {
+            client.closePointInTime(c -> c.id(pitId));
+        } catch (IOException | RuntimeException ex) {
+            // The point in time then expires after its keep-alive
+            log.warn("Failed to close point in time", kv("index", index), kv("error", ex.getMessage()));
+        }
+    }
+
     @Override
     public Optional<ProbeResult> findLatest() {
         long startTime = System.currentTimeMillis();
         try {
             SearchResponse<ProbeResult> response = executeWithResilience(() -> {
-                try {
-                    return client.search(s -> s
-                            .index(this.index)
-                            .size(1)
-                            .sort(sort -> sort
-                                    .field(f -> f
-                                            .field("timestamp")
-                                            .order(SortOrder.Desc)
-                                    ))
-                            , ProbeResult.class);
-                } catch (Exception ex) {
-                    throw new RuntimeException(ex);
-                }
+                return search(SearchRequest.of(s -> s
+                        .index(this.index)
+                        .size(1)
+                        .sort(sort -> sort
+                                .field(f -> f
+                                        .field("timestamp")
+                                        .order(SortOrder.Desc)
+                                ))
+                ));
             });
 
             Optional<ProbeResult> result = extractFirst(response);
@@ -242,10 +365,67 @@ public class ElasticProbeRepository implements ProbeRepository {
             long duration = System.currentTimeMillis() - startTime;
             probeMetrics.recordElasticsearchOperation("findLatest", "failure");
             probeMetrics.recordElasticsearchOperationDuration("findLatest", duration);
+            if (ex instanceof DeadlineExceededException deadlineExceeded) {
+                throw deadlineExceeded;
+            }
             throw new ProbeRepositoryException("Failed to fetch latest probe result", ex);
         }
     }
 
+    /**
+     * Most recent result of each target in one search, collapsing hits on {@code targetId.keyword}
+     * so each target contributes only its newest document.
+     */
+    @Override
+    public Map<String, ProbeResult> findLatestPerTarget(Collection<String> targetIds) {
+        if (targetIds.isEmpty()) {
+            return Map.of();
+        }
+        long startTime = System.currentTimeMillis();
+        try {
+            List<FieldValue> values = targetIds.stream().map(FieldValue::of).toList();
+            SearchResponse<ProbeResult> response = executeWithResilience(() -> search(SearchRequest.of(s -> s
+                    .index(this.index)
+                    // Before the first result is stored there is no index; every target is then unknown
+                    .ignoreUnavailable(true)
+                    .size(targetIds.size())
+                    .query(q -> q
+                            .terms(t -> t
+                                    .field("targetId.keyword")
+                                    .terms(tf -> tf.value(values))
+                            ))
+                    .collapse(c -> c.field("targetId.keyword"))
+                    .sort(sort -> sort
+                            .field(f -> f
+                                    .field("timestamp")
+                                    .order(SortOrder.Desc)
+                            ))
+            )));
+
+            Map<String, ProbeResult> latest = new HashMap<>();
+            for (ProbeResult result : extractHits(response)) {
+                if (result != null && result.targetId() != null) {
+                    latest.put(result.targetId(), result);
+                }
+            }
+
+            long duration = System.currentTimeMillis() - startTime;
+            probeMetrics.recordElasticsearchOperation("findLatestPerTarget", "success");
+            probeMetrics.recordElasticsearchOperationDuration("findLatestPerTarget", duration);
+
+            return latest;
+
+        } catch (Exception ex) {
+            long duration = System.currentTimeMillis() - startTime;
+            probeMetrics.recordElasticsearchOperation("findLatestPerTarget", "failure");
+            probeMetrics.recordElasticsearchOperationDuration("findLatestPerTarget", duration);
+            if (ex instanceof DeadlineExceededException deadlineExceeded) {
+                throw deadlineExceeded;
+            }
+            throw new ProbeRepositoryException("Failed to fetch latest probe results of " + targetIds.size() + " targets", ex);
+        }
+    }
+
     // Helper to parse SearchResponse into List<ProbeResult>
     private List<ProbeResult> extractHits(SearchResponse<ProbeResult> response) {
         if (response == null || response.hits() == null || response.hits().hits().isEmpty()) {
@@ -0,0 +1,183 @@
+package me.paulbaur.ict.probe.service;
+
+import me.paulbaur.ict.common.model.ProbeStatus;
+import me.paulbaur.ict.probe.domain.ProbeResult;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Streaming Largest-Triangle-Three-Buckets downsampling of a target's latency series.
+ *
+ * <p>Results must be fed in ascending timestamp order. The range is split into equal time
+ * buckets; from each bucket the UP result forming the largest triangle with the previously
+ * selected point and the average of the next non-empty bucket is kept, together with the first
+ * and last UP results. Only two buckets are buffered at a time, so memory does not grow with
+ * the number of results scanned.</p>
+ *
+ * <p>Results without a latency (DOWN) do not compete with UP results: each outage is kept as its
+ * first and last result, so it stays visible at any zoom level. Outages separated by less than a
+ * bucket are merged into one, so at most one outage starts per bucket and the output holds at
+ * most {@code maxPoints} UP results plus {@code 2 * (maxPoints - 2)} DOWN results, however long
+ * or frequent the outages.</p>
+ */
+final class LttbDownsampler {
+
+    private final long startMillis;
+    private final long spanMillis;
+    private final int bucketCount;
+
+    private final List<ProbeResult> selected = new ArrayList<>();
+    private final List<ProbeResult> unavailable = new ArrayList<>();
+
+    private ProbeResult first;
+    private ProbeResult previousSelected;
+    private ProbeResult last;
+    private ProbeResult outageFirst;
+    private ProbeResult outageLast;
+    private boolean outageOpen;
+    private Bucket pending;
+    private Bucket collecting;
+
+    /**
+     * @param maxPoints maximum number of UP results to keep, at least 3
+     */
+    LttbDownsampler(Instant start, Instant end, int maxPoints) {
+        if (maxPoints < 3) {
+            throw new IllegalArgumentException("maxPoints must be at least 3");
+        }
+        this.startMillis = start.toEpochMilli();
+        this.spanMillis = Math.max(1, end.toEpochMilli() - startMillis);
+        this.bucketCount = maxPoints - 2;
+    }
+
+    void accept(ProbeResult result) {
+        if (result.status() != ProbeStatus.UP || result.latencyMs() == null) {
+            acceptUnavailable(result);
+            return;
+        }
+        outageOpen = false;
+        if (first == null) {
+            first = result;
+            previousSelected = result;
+            return;
+        }
+        if (last != null) {
+            add(last);
+        }
+        // The newest point is held back: it is always kept, so it must not compete in its bucket
+        last = result;
+    }
+
+    /**
+     * Finish the stream and return the kept results in ascending timestamp order.
+     */
+    List<ProbeResult> finish() {
+        if (pending != null) {
+            selectFrom(pending, collecting != null ? collecting.average() : point(last));
+        }
+        if (collecting != null) {
+            selectFrom(collecting, point(last));
+        }
+        closeOutage();
+
+        List<ProbeResult> output = new ArrayList<>(selected.size() + unavailable.size() + 2);
+        if (first != null) {
+            output.add(first);
+        }
+        output.addAll(selected);
+        if (last != null) {
+            output.add(last);
+        }
+        output.addAll(unavailable);
+        output.sort(Comparator.comparing(ProbeResult::timestamp));
+        return output;
+    }
+
+    private void acceptUnavailable(ProbeResult result) {
+        boolean extendsOutage = outageFirst != null
+                && (outageOpen || bucketIndex(result) == bucketIndex(outageLast));
+        if (!extendsOutage) {
+            closeOutage();
+            outageFirst = result;
+        }
+        outageLast = result;
+        outageOpen = true;
+    }
+
+    private void closeOutage() {
+        if (outageFirst == null) {
+            return;
+        }
+        unavailable.add(outageFirst);
+        if (outageLast != outageFirst) {
+            unavailable.add(outageLast);
+        }
+        outageFirst = null;
+        outageLast = null;
+    }
+
+    private void add(ProbeResult result) {
+        int index = bucketIndex(result);
+        if (collecting == null) {
+            collecting = new Bucket(index);
+        } else if (index > collecting.index) {
+            // The collecting bucket is complete, so the pending one now knows its successor
+            if (pending != null) {
+                selectFrom(pending, collecting.average());
+            }
+            pending = collecting;
+            collecting = new Bucket(index);
+        }
+        collecting.add(result);
+    }
+
+    private void selectFrom(Bucket bucket, double[] next) {
+        double[] a = point(previousSelected);
+        ProbeResult best = null;
+        double bestArea = -1;
+        for (ProbeResult candidate : bucket.results) {
+            double[] b = point(candidate);
+            double area = Math.abs((a[0] - next[0]) * (b[1] - a[1]) - (a[0] - b[0]) * (next[1] - a[1]));
+            if (area > bestArea) {
+                bestArea = area;
+                best = candidate;
+            }
+        }
+        selected.add(best);
+        previousSelected = best;
+    }
+
+    private int bucketIndex(ProbeResult result) {
+        long offset = result.timestamp().toEpochMilli() - startMillis;
+        long index = offset * bucketCount / spanMillis;
+        return (int) Math.max(0, Math.min(bucketCount - 1, index));
+    }
+
+    private double[] point(ProbeResult result) {
+        return new double[]{result.timestamp().toEpochMilli() - startMillis, result.latencyMs()};
+    }
+
+    private final class Bucket {
+        private final int index;
+        private final List<ProbeResult> results = new ArrayList<>();
+        private double sumX;
+        private double sumY;
+
+        private Bucket(int index) {
+            this.index = index;
+        }
+
+        void add(ProbeResult result) {
+            results.add(result);
+            sumX += result.timestamp().toEpochMilli() - startMillis;
+            sumY += result.latencyMs();
+        }
+
+        double[] average() {
+            return new double[]{sumX / results.size(), sumY / results.size()};
+        }
+    }
+}
@@ -4,8 +4,14 @@ import me.paulbaur.ict.probe.domain.ProbeResult;
 import org.springframework.stereotype.Repository;
 
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 @Repository
 public interface ProbeRepository {
@@ -21,4 +27,27 @@ public interface ProbeRepository {
     );
 
     Optional<ProbeResult> findLatest();
+
+    /**
+     * Most recent result of each of {@code targetIds}, keyed by target ID; targets without results
+     * are absent. Implementations should answer in a single query; this default queries each target.
+     */
+    default Map<String, ProbeResult> findLatestPerTarget(Collection<String> targetIds) {
+        Map<String, ProbeResult> latest = new HashMap<>();
+        for (String targetId : targetIds) {
+            findRecent(targetId, 1).stream().findFirst().ifPresent(result -> latest.put(targetId, result));
+        }
+        return latest;
+    }
+
+    /**
+     * Feed a target's results with {@code start <= timestamp <= end} to {@code consumer} in
+     * ascending timestamp order, stopping after {@code maxResults}. Implementations should page
+     * through the store rather than load the whole range; this default does not.
+     */
+    default void streamBetween(String targetId, Instant start, Instant end, int maxResults, Consumer<ProbeResult> consumer) {
+        List<ProbeResult> results = new ArrayList<>(findBetween(targetId, start, end));
+        results.sort(Comparator.comparing(ProbeResult::timestamp));
+        results.stream().limit(maxResults).forEach(consumer);
+    }
 }
@@ -17,4 +17,13 @@ public interface ProbeService {
     List<ProbeResult> getRecentResultsForTarget(String targetId, int limit);
 
     List<ProbeResult> getHistoryForTarget(String targetId, int limit, Instant start, Instant end);
+
+    /**
+     * History for {@code [start, end]} reduced to at most {@code maxPoints} visually representative
+     * UP results (LTTB) plus the first and last result of each outage, newest first.
+     *
+     * @throws me.paulbaur.ict.common.exception.QueryTooExpensiveException if the range holds more
+     *         results than may be scanned for one request
+     */
+    List<ProbeResult> getDownsampledHistoryForTarget(String targetId, Instant start, Instant end, int maxPoints);
 }
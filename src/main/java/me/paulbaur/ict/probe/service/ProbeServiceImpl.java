@@ -2,6 +2,8 @@ package me.paulbaur.ict.probe.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import me.paulbaur.ict.common.exception.DeadlineExceededException;
+import me.paulbaur.ict.common.exception.QueryTooExpensiveException;
 import me.paulbaur.ict.common.metrics.ProbeMetrics;
 import me.paulbaur.ict.common.model.ProbeMethod;
 import me.paulbaur.ict.common.model.ProbeStatus;
@@ -15,6 +17,7 @@ import me.paulbaur.ict.target.domain.Target;
 import me.paulbaur.ict.target.store.TargetRepository;
 
 import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import static net.logstash.logback.argument.StructuredArguments.kv;
@@ -22,9 +25,9 @@ import static net.logstash.logback.argument.StructuredArguments.kv;
 import java.time.Instant;
 import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
 
 @Service
 @RequiredArgsConstructor
@@ -38,6 +41,10 @@ public class ProbeServiceImpl implements ProbeService {
     private final ProbeMetrics probeMetrics;
     private final ProbeResultEventPublisher eventPublisher;
 
+    // Upper bound on raw results scanned for one downsampled history request
+    @Value("${ict.probe.history.downsample-max-scan:500000}")
+    private int downsampleMaxScan = 500_000;
+
     public ProbeResult probe(Target target) {
         String probeCycleId = resolveProbeCycleId();
         return probe(target, probeCycleId);
@@ -47,7 +54,9 @@ public class ProbeServiceImpl implements ProbeService {
     public void runScheduledProbes() {
         String probeCycleId = resolveProbeCycleId();
         try (LoggingContext ignored = LoggingContext.withValue("probeCycleId", probeCycleId)) {
-            log.debug("Running scheduled probes", kv("probeCycleId", probeCycleId));
+            if (log.isDebugEnabled()) {
+                log.debug("Running scheduled probes", kv("probeCycleId", probeCycleId));
+            }
             Target target = targetSelector.nextTarget();
 
             if (target != null) {
@@ -62,19 +71,23 @@ public class ProbeServiceImpl implements ProbeService {
     }
 
     private ProbeResult probe(Target target, String probeCycleId) {
-        try (LoggingContext ignored = LoggingContext.withValues(Map.of(
+        // Computed once: UUID.toString() allocates on every call
+        String targetId = target.getId().toString();
+        try (LoggingContext ignored = LoggingContext.withValues(
                 "probeCycleId", probeCycleId,
-                "targetId", target.getId().toString()
-        ))) {
-            log.debug(
-                    "Initiating probe for target",
-                    kv("targetId", target.getId()),
-                    kv("host", target.getHost()),
-                    kv("port", target.getPort()),
-                    kv("probeCycleId", probeCycleId)
-            );
+                "targetId", targetId
+        )) {
+            if (log.isDebugEnabled()) {
+                log.debug(
+                        "Initiating probe for target",
+                        kv("targetId", targetId),
+                        kv("host", target.getHost()),
+                        kv("port", target.getPort()),
+                        kv("probeCycleId", probeCycleId)
+                );
+            }
             ProbeRequest request = new ProbeRequest(
-                    target.getId().toString(),
+                    targetId,
                     target.getHost(),
                     target.getPort(),
                     probeCycleId
@@ -91,35 +104,37 @@ public class ProbeServiceImpl implements ProbeService {
 
                 // Record metrics
                 probeMetrics.recordProbeExecution(
-                        alignedResult.targetId(),
+                        targetId,
                         alignedResult.status(),
                         alignedResult.method()
                 );
                 if (alignedResult.latencyMs() != null && alignedResult.status() == ProbeStatus.UP) {
                     probeMetrics.recordProbeLatency(
-                            alignedResult.targetId(),
+                            targetId,
                             alignedResult.method(),
                             alignedResult.latencyMs()
                     );
                 }
 
-                log.info(
-                    "Probe completed for target",
-                    kv("targetId", target.getId()),
-                    kv("host", target.getHost()),
-                    kv("port", target.getPort()),
-                    kv("status", alignedResult.status()),
-                    kv("latencyMs", alignedResult.latencyMs()),
-                    kv("method", alignedResult.method()),
-                    kv("probeCycleId", probeCycleId)
-                );
+                if (log.isInfoEnabled()) {
+                    log.info(
+                        "Probe completed for target",
+                        kv("targetId", targetId),
+                        kv("host", target.getHost()),
+                        kv("port", target.getPort()),
+                        kv("status", alignedResult.status()),
+                        kv("latencyMs", alignedResult.latencyMs()),
+                        kv("method", alignedResult.method()),
+                        kv("probeCycleId", probeCycleId)
+                    );
+                }
 
                 return alignedResult;
             } catch (Exception ex) {
                 // Catch unexpected exceptions from the strategy or repository
                 log.error(
                         "Unexpected error during probe",
-                        kv("targetId", target.getId()),
+                        kv("targetId", targetId),
                         kv("host", target.getHost()),
                         kv("port", target.getPort()),
                         kv("status", ProbeStatus.DOWN),
@@ -132,7 +147,7 @@ public class ProbeServiceImpl implements ProbeService {
                 // Create a failure result to ensure the system remains stable
                 ProbeResult failureResult = new ProbeResult(
                         Instant.now(),
-                        target.getId().toString(),
+                        targetId,
                         target.getHost(),
                         null,
                         probeCycleId,
@@ -146,7 +161,7 @@ public class ProbeServiceImpl implements ProbeService {
 
                 // Record failure metrics
                 probeMetrics.recordProbeExecution(
-                        failureResult.targetId(),
+                        targetId,
                         failureResult.status(),
                         failureResult.method()
                 );
@@ -160,6 +175,9 @@ public class ProbeServiceImpl implements ProbeService {
     public List<ProbeResult> getRecentResultsForTarget(String targetId, int limit) {
         try {
             return probeRepository.findRecent(targetId, limit);
+        } catch (DeadlineExceededException ex) {
+            // Report the timeout rather than an empty history
+            throw ex;
         } catch (Exception ex) {
             log.error(
                     "Failed to retrieve recent results",
@@ -182,6 +200,9 @@ public class ProbeServiceImpl implements ProbeService {
             }
 
             return probeRepository.findRecent(targetId, limit);
+        } catch (DeadlineExceededException ex) {
+            // Report the timeout rather than an empty history
+            throw ex;
         } catch (Exception ex) {
             log.error(
                     "Failed to retrieve history for target",
@@ -195,6 +216,39 @@ public class ProbeServiceImpl implements ProbeService {
         }
     }
 
+    @Override
+    public List<ProbeResult> getDownsampledHistoryForTarget(String targetId, Instant start, Instant end, int maxPoints) {
+        LttbDownsampler downsampler = new LttbDownsampler(start, end, maxPoints);
+        long[] scanned = {0};
+        try {
+            // One result past the limit tells a range that fits from one that would be cut short
+            probeRepository.streamBetween(targetId, start, end, downsampleMaxScan + 1, result -> {
+                if (++scanned[0] <= downsampleMaxScan) {
+                    downsampler.accept(result);
+                }
+            });
+        } catch (DeadlineExceededException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            log.error(
+                    "Failed to retrieve downsampled history for target",
+                    kv("targetId", targetId),
+                    kv("rangeStart", start),
+                    kv("rangeEnd", end),
+                    kv("maxPoints", maxPoints),
+                    ex
+            );
+            return Collections.emptyList();
+        }
+        if (scanned[0] > downsampleMaxScan) {
+            // A chart of only the oldest part of the range would look complete, so refuse instead
+            throw new QueryTooExpensiveException("The range holds more than " + downsampleMaxScan
+                    + " probe results; narrow the time range");
+        }
+        // Newest first, like the raw history
+        return downsampler.finish().reversed();
+    }
+
     @Override
     public void probe(String targetId) {
         String probeCycleId = resolveProbeCycleId();
@@ -215,7 +269,8 @@ public class ProbeServiceImpl implements ProbeService {
         if (result == null) {
             return null;
         }
-        if (probeCycleId.equals(result.probeCycleId())) {
+        // Strategies echo the request's cycle ID, so this is normally an identity check without a copy
+        if (probeCycleId == result.probeCycleId() || probeCycleId.equals(result.probeCycleId())) {
             return result;
         }
         return new ProbeResult(
@@ -226,12 +281,25 @@ public class ProbeServiceImpl implements ProbeService {
                 probeCycleId,
                 result.status(),
                 result.method(),
-                result.errorMessage()
+                result.errorMessage(),
+                result.burst()
         );
     }
 
     private String resolveProbeCycleId() {
         String existingCycle = MDC.get("probeCycleId");
-        return existingCycle != null ? existingCycle : UUID.randomUUID().toString();
+        return existingCycle != null ? existingCycle : newProbeCycleId();
+    }
+
+    /**
+     * Random (version 4 layout) UUID string from {@link ThreadLocalRandom}. Cycle IDs only need
+     * to be unique for log correlation, so the contended SecureRandom behind
+     * {@link UUID#randomUUID()} is unnecessary.
+     */
+    static String newProbeCycleId() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long mostSigBits = (random.nextLong() & ~0xF000L) | 0x4000L;
+        long leastSigBits = (random.nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+        return new UUID(mostSigBits, leastSigBits).toString();
     }
 }
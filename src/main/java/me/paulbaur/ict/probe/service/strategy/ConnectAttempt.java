@@ -0,0 +1,63 @@
+package me.paulbaur.ict.probe.service.strategy;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+
+/**
+ * Outcome of a single TCP connect attempt, returned as a value instead of being thrown.
+ *
+ * <p>Failures without a detail message are shared constants, so a failing probe does not
+ * allocate beyond what the JDK itself creates while connecting.</p>
+ *
+ * @param outcome      classified outcome
+ * @param latencyNanos connect time for {@link ConnectOutcome#SUCCESS}, otherwise 0
+ * @param detail       underlying error message for {@link ConnectOutcome#IO_ERROR}, otherwise null
+ */
+public record ConnectAttempt(ConnectOutcome outcome, long latencyNanos, String detail) {
+
+    public static final ConnectAttempt TIMEOUT = new ConnectAttempt(ConnectOutcome.TIMEOUT, 0, null);
+    public static final ConnectAttempt REFUSED = new ConnectAttempt(ConnectOutcome.REFUSED, 0, null);
+    public static final ConnectAttempt UNKNOWN_HOST = new ConnectAttempt(ConnectOutcome.UNKNOWN_HOST, 0, null);
+
+    public static ConnectAttempt success(long latencyNanos) {
+        return new ConnectAttempt(ConnectOutcome.SUCCESS, latencyNanos, null);
+    }
+
+    /**
+     * Classify an exception raised by {@code Socket.connect}. The exception is inspected
+     * once here and never rethrown or wrapped.
+     */
+    public static ConnectAttempt failure(IOException e) {
+        if (e instanceof SocketTimeoutException) {
+            return TIMEOUT;
+        } else if (e instanceof ConnectException) {
+            return REFUSED;
+        } else if (e instanceof UnknownHostException) {
+            return UNKNOWN_HOST;
+        }
+        return new ConnectAttempt(ConnectOutcome.IO_ERROR, 0, e.getMessage());
+    }
+
+    public boolean succeeded() {
+        return outcome == ConnectOutcome.SUCCESS;
+    }
+
+    /**
+     * Only timeouts are worth retrying; a refused connection or unresolvable host will not
+     * change within the retry window. Used as the result predicate of the {@code tcpProbe} retry.
+     */
+    public static boolean isRetryable(Object result) {
+        return result instanceof ConnectAttempt attempt && attempt.outcome == ConnectOutcome.TIMEOUT;
+    }
+
+    /**
+     * Error message stored on DOWN probe results.
+     */
+    public String errorMessage() {
+        return outcome == ConnectOutcome.IO_ERROR
+                ? outcome.description() + ": " + detail
+                : outcome.description();
+    }
+}
@@ -0,0 +1,25 @@
+package me.paulbaur.ict.probe.service.strategy;
+
+/**
+ * Classified result of a single TCP connect attempt.
+ */
+public enum ConnectOutcome {
+    SUCCESS("connected"),
+    TIMEOUT("connection timed out"),
+    REFUSED("connection refused"),
+    UNKNOWN_HOST("unknown host"),
+    IO_ERROR("I/O error");
+
+    private final String description;
+
+    ConnectOutcome(String description) {
+        this.description = description;
+    }
+
+    /**
+     * Error message stored on DOWN probe results.
+     */
+    public String description() {
+        return description;
+    }
+}
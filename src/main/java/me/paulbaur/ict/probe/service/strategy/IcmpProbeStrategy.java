@@ -3,6 +3,7 @@ package me.paulbaur.ict.probe.service.strategy;
 import lombok.extern.slf4j.Slf4j;
 import me.paulbaur.ict.common.model.ProbeMethod;
 import me.paulbaur.ict.common.model.ProbeStatus;
+import me.paulbaur.ict.probe.domain.BurstStatistics;
 import me.paulbaur.ict.probe.domain.ProbeRequest;
 import me.paulbaur.ict.probe.domain.ProbeResult;
 import org.springframework.beans.factory.annotation.Value;
@@ -37,21 +38,35 @@ public class IcmpProbeStrategy implements ProbeStrategy {
     private static final Pattern LATENCY_PATTERN_UNIX = Pattern.compile("time[=<](\\d+\\.?\\d*)\\s*ms", Pattern.CASE_INSENSITIVE);
     private static final Pattern LATENCY_PATTERN_WINDOWS = Pattern.compile("time[=<](\\d+)ms", Pattern.CASE_INSENSITIVE);
 
+    private static final String NO_REPLY_MESSAGE = "ping reported success but no reply could be parsed";
+
     @Value("${ict.probe.icmp.timeout-ms:2000}")
     private int defaultTimeoutMs;
 
     @Value("${ict.probe.icmp.packet-size:32}")
     private int packetSize;
 
+    // Number of echo requests per probe; values above 1 enable burst mode
+    @Value("${ict.probe.burst.samples:1}")
+    private int burstSamples = 1;
+
+    // Spacing between echo requests in burst mode (200ms is the minimum for unprivileged ping on Linux)
+    @Value("${ict.probe.burst.icmp-interval-ms:200}")
+    private int burstIntervalMs = 200;
+
+    private final ThreadLocal<LatencyAccumulator> burstAccumulators =
+            ThreadLocal.withInitial(() -> new LatencyAccumulator(burstSamples));
+
     @Override
     public ProbeResult probe(ProbeRequest request) {
         Instant start = Instant.now();
         String host = request.host();
         String probeCycleId = request.probeCycleId();
+        int samples = Math.max(1, burstSamples);
 
         try {
             // Build ping command based on OS
-            ProcessBuilder processBuilder = buildPingCommand(host);
+            ProcessBuilder processBuilder = buildPingCommand(host, samples);
             processBuilder.redirectErrorStream(true);
 
             Process process = processBuilder.start();
@@ -66,7 +81,7 @@ public class IcmpProbeStrategy implements ProbeStrategy {
             }
 
             // Wait for process to complete with timeout
-            boolean completed = process.waitFor(defaultTimeoutMs, TimeUnit.MILLISECONDS);
+            boolean completed = process.waitFor(processTimeoutMs(samples), TimeUnit.MILLISECONDS);
 
             if (!completed) {
                 process.destroyForcibly();
@@ -77,75 +92,12 @@ public class IcmpProbeStrategy implements ProbeStrategy {
                         kv("status", ProbeStatus.DOWN),
                         kv("method", ProbeMethod.ICMP),
                         kv("probeCycleId", probeCycleId),
-                        kv("timeoutMs", defaultTimeoutMs)
+                        kv("timeoutMs", processTimeoutMs(samples))
                 );
-                return createFailureResult(start, request, "ping timed out");
+                return createFailureResult(start, request, "ping timed out", lostBurst(samples));
             }
 
-            int exitCode = process.exitValue();
-
-            if (exitCode == 0) {
-                // Parse latency from output
-                Long latencyMs = parseLatency(output.toString());
-
-                if (latencyMs != null) {
-                    log.debug(
-                            "ICMP probe succeeded",
-                            kv("targetId", request.targetId()),
-                            kv("host", host),
-                            kv("latencyMs", latencyMs),
-                            kv("status", ProbeStatus.UP),
-                            kv("method", ProbeMethod.ICMP),
-                            kv("probeCycleId", probeCycleId)
-                    );
-
-                    return new ProbeResult(
-                            start,
-                            request.targetId(),
-                            host,
-                            latencyMs,
-                            probeCycleId,
-                            ProbeStatus.UP,
-                            ProbeMethod.ICMP,
-                            null
-                    );
-                } else {
-                    // Ping succeeded but couldn't parse latency
-                    log.warn(
-                            "ICMP probe succeeded but failed to parse latency",
-                            kv("targetId", request.targetId()),
-                            kv("host", host),
-                            kv("status", ProbeStatus.UP),
-                            kv("method", ProbeMethod.ICMP),
-                            kv("probeCycleId", probeCycleId),
-                            kv("output", output.toString())
-                    );
-                    // Return success with null latency
-                    return new ProbeResult(
-                            start,
-                            request.targetId(),
-                            host,
-                            null,
-                            probeCycleId,
-                            ProbeStatus.UP,
-                            ProbeMethod.ICMP,
-                            null
-                    );
-                }
-            } else {
-                // Ping failed (host unreachable, etc.)
-                log.warn(
-                        "ICMP probe failed",
-                        kv("targetId", request.targetId()),
-                        kv("host", host),
-                        kv("status", ProbeStatus.DOWN),
-                        kv("method", ProbeMethod.ICMP),
-                        kv("probeCycleId", probeCycleId),
-                        kv("exitCode", exitCode),
-                        kv("output", output.toString())
-                );
-                return createFailureResult(start, request, "ping failed (exit code: " + exitCode + ")");
-            }
+            return interpretExit(start, request, process.exitValue(), output, samples);
 
         } catch (IOException e) {
             log.error(
@@ -187,22 +139,172 @@ public class IcmpProbeStrategy implements ProbeStrategy {
         }
     }
 
+    /**
+     * Turn the exit code and output of a finished ping process into a result. A target is UP only
+     * if ping succeeded and at least one reply was parsed from its output.
+     */
+    ProbeResult interpretExit(Instant start, ProbeRequest request, int exitCode, CharSequence output, int samples) {
+        String host = request.host();
+        String probeCycleId = request.probeCycleId();
+        if (exitCode == 0 && samples > 1) {
+            return burstResult(start, request, output, samples);
+        } else if (exitCode == 0) {
+            // Parse latency from output
+            Double latencyMs = parseLatency(output);
+
+            if (latencyMs != null) {
+                log.debug(
+                        "ICMP probe succeeded",
+                        kv("targetId", request.targetId()),
+                        kv("host", host),
+                        kv("latencyMs", latencyMs),
+                        kv("status", ProbeStatus.UP),
+                        kv("method", ProbeMethod.ICMP),
+                        kv("probeCycleId", probeCycleId)
+                );
+
+                return new ProbeResult(
+                        start,
+                        request.targetId(),
+                        host,
+                        latencyMs,
+                        probeCycleId,
+                        ProbeStatus.UP,
+                        ProbeMethod.ICMP,
+                        null
+                );
+            } else {
+                // Some ping implementations exit 0 without a reply line; without a reply the target is not known to be up
+                log.warn(
+                        "ICMP probe exited successfully but no reply was parsed",
+                        kv("targetId", request.targetId()),
+                        kv("host", host),
+                        kv("status", ProbeStatus.DOWN),
+                        kv("method", ProbeMethod.ICMP),
+                        kv("probeCycleId", probeCycleId),
+                        kv("output", output.toString())
+                );
+                return createFailureResult(start, request, NO_REPLY_MESSAGE);
+            }
+        } else {
+            // Ping failed (host unreachable, etc.)
+            log.warn(
+                    "ICMP probe failed",
+                    kv("targetId", request.targetId()),
+                    kv("host", host),
+                    kv("status", ProbeStatus.DOWN),
+                    kv("method", ProbeMethod.ICMP),
+                    kv("probeCycleId", probeCycleId),
+                    kv("exitCode", exitCode),
+                    kv("output", output.toString())
+            );
+            return createFailureResult(start, request, "ping failed (exit code: " + exitCode + ")", lostBurst(samples));
+        }
+    }
+
+    /**
+     * Summarize the replies of a burst ping into a single result.
+     * The reported latency is the median reply time.
+     */
+    private ProbeResult burstResult(Instant start, ProbeRequest request, CharSequence output, int samples) {
+        LatencyAccumulator accumulator = burstAccumulators.get();
+        accumulator.reset(samples);
+
+        Matcher matcher = (IS_WINDOWS ? LATENCY_PATTERN_WINDOWS : LATENCY_PATTERN_UNIX).matcher(output);
+        while (matcher.find()) {
+            try {
+                accumulator.recordSample((long) (Double.parseDouble(matcher.group(1)) * 1_000_000));
+            } catch (NumberFormatException e) {
+                log.debug("Failed to parse latency value", kv("latencyStr", matcher.group(1)), e);
+            }
+        }
+
+        BurstStatistics burst = accumulator.toStatistics();
+        if (accumulator.received() == 0) {
+            log.warn(
+                    "ICMP burst probe exited successfully but no reply was parsed",
+                    kv("targetId", request.targetId()),
+                    kv("host", request.host()),
+                    kv("status", ProbeStatus.DOWN),
+                    kv("method", ProbeMethod.ICMP),
+                    kv("probeCycleId", request.probeCycleId()),
+                    kv("output", output.toString())
+            );
+            return createFailureResult(start, request, NO_REPLY_MESSAGE, burst);
+        }
+        Double latencyMs = burst.medianLatencyMs();
+
+        log.debug(
+                "ICMP burst probe succeeded",
+                kv("targetId", request.targetId()),
+                kv("host", request.host()),
+                kv("latencyMs", latencyMs),
+                kv("jitterMs", burst.jitterMs()),
+                kv("packetLoss", burst.packetLoss()),
+                kv("samples", samples),
+                kv("status", ProbeStatus.UP),
+                kv("method", ProbeMethod.ICMP),
+                kv("probeCycleId", request.probeCycleId())
+        );
+
+        return new ProbeResult(
+                start,
+                request.targetId(),
+                request.host(),
+                latencyMs,
+                request.probeCycleId(),
+                ProbeStatus.UP,
+                ProbeMethod.ICMP,
+                null,
+                burst
+        );
+    }
+
+    /**
+     * Statistics for a burst in which no reply arrived; null outside burst mode.
+     */
+    private BurstStatistics lostBurst(int samples) {
+        if (samples <= 1) {
+            return null;
+        }
+        return new BurstStatistics(samples, 0, null, null, null, null, 1.0);
+    }
+
+    /**
+     * How long to wait for the ping process: the per-reply timeout plus the spacing of the burst.
+     */
+    private long processTimeoutMs(int samples) {
+        return defaultTimeoutMs + (long) (samples - 1) * (IS_WINDOWS ? 1000 : burstIntervalMs);
+    }
+
     /**
      * Build the ping command based on the operating system.
      *
      * @param host the host to ping
+     * @param count number of echo requests to send
      * @return ProcessBuilder configured with the appropriate ping command
      */
-    private ProcessBuilder buildPingCommand(String host) {
+    private ProcessBuilder buildPingCommand(String host, int count) {
         if (IS_WINDOWS) {
-            // Windows: ping -n 1 -w timeout_ms -l packet_size host
+            // Windows: ping -n count -w timeout_ms -l packet_size host (replies are spaced 1s apart)
             return new ProcessBuilder(
                     "ping",
-                    "-n", "1",  // Send 1 packet
+                    "-n", String.valueOf(count),  // Number of packets
                     "-w", String.valueOf(defaultTimeoutMs),  // Timeout in milliseconds
                     "-l", String.valueOf(packetSize),  // Packet size
                     host
             );
+        } else if (count > 1) {
+            // Linux/macOS burst: ping -c count -i interval_sec -W timeout_sec -s packet_size host
+            int timeoutSec = Math.max(1, defaultTimeoutMs / 1000);
+            return new ProcessBuilder(
+                    "ping",
+                    "-c", String.valueOf(count),  // Number of packets
+                    "-i", String.valueOf(burstIntervalMs / 1000.0),  // Spacing in seconds
+                    "-W", String.valueOf(timeoutSec),  // Timeout in seconds
+                    "-s", String.valueOf(packetSize),  // Packet size
+                    host
+            );
         } else {
             // Linux/macOS: ping -c 1 -W timeout_sec -s packet_size host
             int timeoutSec = Math.max(1, defaultTimeoutMs / 1000);  // Convert to seconds, minimum 1
@@ -221,17 +323,16 @@ public class IcmpProbeStrategy implements ProbeStrategy {
      * Handles both Unix (time=1.23 ms) and Windows (time=1ms or time<1ms) formats.
      *
      * @param output the ping command output
-     * @return latency in milliseconds, or null if not found
+     * @return latency in milliseconds as reported by ping (fractional on Unix), or null if not found
      */
-    private Long parseLatency(String output) {
+    private Double parseLatency(CharSequence output) {
         Pattern pattern = IS_WINDOWS ? LATENCY_PATTERN_WINDOWS : LATENCY_PATTERN_UNIX;
         Matcher matcher = pattern.matcher(output);
 
         if (matcher.find()) {
             try {
                 String latencyStr = matcher.group(1);
-                double latency = Double.parseDouble(latencyStr);
-                return Math.round(latency);
+                return Double.parseDouble(latencyStr);
             } catch (NumberFormatException e) {
                 log.debug("Failed to parse latency value", kv("latencyStr", matcher.group(1)), e);
                 return null;
@@ -242,6 +343,10 @@ public class IcmpProbeStrategy implements ProbeStrategy {
     }
 
     private ProbeResult createFailureResult(Instant timestamp, ProbeRequest request, String errorMessage) {
+        return createFailureResult(timestamp, request, errorMessage, null);
+    }
+
+    private ProbeResult createFailureResult(Instant timestamp, ProbeRequest request, String errorMessage, BurstStatistics burst) {
         return new ProbeResult(
                 timestamp,
                 request.targetId(),
@@ -250,7 +355,8 @@ public class IcmpProbeStrategy implements ProbeStrategy {
                 request.probeCycleId(),
                 ProbeStatus.DOWN,
                 ProbeMethod.ICMP,
-                errorMessage
+                errorMessage,
+                burst
         );
     }
 }
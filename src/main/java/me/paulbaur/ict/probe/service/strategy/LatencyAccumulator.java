@@ -0,0 +1,108 @@
+package me.paulbaur.ict.probe.service.strategy;
+
+import me.paulbaur.ict.probe.domain.BurstStatistics;
+
+import java.util.Arrays;
+
+/**
+ * Reusable accumulator for the samples of a burst probe.
+ *
+ * <p>Samples are stored in a primitive array that is only grown when a larger burst
+ * is requested, so recording a sample never allocates. Jitter is accumulated in
+ * arrival order (mean absolute difference between consecutive replies, as in RFC 3550
+ * IPDV) before the samples are sorted for the median. Instances are not thread-safe;
+ * strategies keep one per thread.</p>
+ */
+public final class LatencyAccumulator {
+
+    private long[] samplesNanos;
+    private int expected;
+    private int received;
+    private long lastSampleNanos;
+    private long jitterSumNanos;
+
+    public LatencyAccumulator(int capacity) {
+        this.samplesNanos = new long[Math.max(1, capacity)];
+    }
+
+    /**
+     * Prepare for a new burst of {@code expectedSamples} samples, discarding previous state.
+     */
+    public void reset(int expectedSamples) {
+        if (samplesNanos.length < expectedSamples) {
+            samplesNanos = new long[expectedSamples];
+        }
+        expected = expectedSamples;
+        received = 0;
+        lastSampleNanos = 0;
+        jitterSumNanos = 0;
+    }
+
+    /**
+     * Record a successful sample with the given round-trip time.
+     */
+    public void recordSample(long latencyNanos) {
+        if (received >= expected) {
+            return;
+        }
+        if (received > 0) {
+            jitterSumNanos += Math.abs(latencyNanos - lastSampleNanos);
+        }
+        lastSampleNanos = latencyNanos;
+        samplesNanos[received++] = latencyNanos;
+    }
+
+    public int received() {
+        return received;
+    }
+
+    public int expected() {
+        return expected;
+    }
+
+    /**
+     * Median of the recorded samples in nanoseconds, or -1 if nothing was received.
+     * Sorts the recorded samples in place, so call after the burst has finished.
+     */
+    public long medianNanos() {
+        if (received == 0) {
+            return -1;
+        }
+        Arrays.sort(samplesNanos, 0, received);
+        int mid = received / 2;
+        if (received % 2 == 1) {
+            return samplesNanos[mid];
+        }
+        return (samplesNanos[mid - 1] + samplesNanos[mid]) / 2;
+    }
+
+    /**
+     * Build the statistics for the finished burst.
+     */
+    public BurstStatistics toStatistics() {
+        double packetLoss = expected > 0 ? (expected - received) / (double) expected : 0.0;
+        if (received == 0) {
+            return new BurstStatistics(expected, 0, null, null, null, null, packetLoss);
+        }
+
+        long median = medianNanos();
+        // samples are sorted by medianNanos()
+        long min = samplesNanos[0];
+        long max = samplesNanos[received - 1];
+        Double jitter = received > 1 ? toMillis(jitterSumNanos / (double) (received - 1)) : null;
+
+        return new BurstStatistics(
+                expected,
+                received,
+                toMillis(min),
+                toMillis(median),
+                toMillis(max),
+                jitter,
+                packetLoss
+        );
+    }
+
+    private static double toMillis(double nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
@@ -5,19 +5,19 @@ import lombok.extern.slf4j.Slf4j;
 import me.paulbaur.ict.common.model.ProbeMethod;
 import me.paulbaur.ict.common.model.ProbeStatus;
 import me.paulbaur.ict.common.logging.LogRateLimiter;
+import me.paulbaur.ict.probe.domain.BurstStatistics;
 import me.paulbaur.ict.probe.domain.ProbeRequest;
 import me.paulbaur.ict.probe.domain.ProbeResult;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
 import static net.logstash.logback.argument.StructuredArguments.kv;
 
 import java.io.IOException;
-import java.net.ConnectException;
 import java.net.InetSocketAddress;
 import java.net.Socket;
-import java.net.SocketTimeoutException;
-import java.net.UnknownHostException;
 import java.time.Instant;
 import java.time.Duration;
 import java.util.Objects;
@@ -36,6 +36,13 @@ public class TcpProbeStrategy implements ProbeStrategy {
     private final Supplier<Socket> socketSupplier;
     private final Retry tcpProbeRetry;
 
+    // Number of connects per probe; values above 1 enable burst mode
+    @Value("${ict.probe.burst.samples:1}")
+    private int burstSamples = 1;
+
+    private final ThreadLocal<LatencyAccumulator> burstAccumulators =
+            ThreadLocal.withInitial(() -> new LatencyAccumulator(burstSamples));
+
     public TcpProbeStrategy() {
         this(Socket::new, null);
     }
@@ -57,60 +64,58 @@ public class TcpProbeStrategy implements ProbeStrategy {
         int port = request.port();
         String probeCycleId = request.probeCycleId();
 
-        try {
-            // Wrap the connection attempt with retry if tcpProbeRetry is available
-            long latencyMs = executeWithRetry(() -> {
-                try (Socket socket = socketSupplier.get()) {
-                    long beforeConnect = System.nanoTime();
-                    socket.connect(new InetSocketAddress(host, port), DEFAULT_TIMEOUT_MS);
-                    long afterConnect = System.nanoTime();
-
-                    return (afterConnect - beforeConnect) / 1_000_000;
-                } catch (IOException e) {
-                    throw new RuntimeException(e);
-                }
-            });
+        if (burstSamples > 1) {
+            return probeBurst(request, start);
+        }
 
-            log.debug(
-                    "TCP probe succeeded",
+        ConnectAttempt attempt;
+        try {
+            // Timeouts are retried via the tcpProbeRetry result predicate; other failures return immediately
+            attempt = executeWithRetry(() -> connectOnce(host, port));
+        } catch (RuntimeException e) {
+            // Unexpected exception
+            log.error(
+                    "TCP probe unexpected error",
                     kv("targetId", request.targetId()),
                     kv("host", host),
                     kv("port", port),
-                    kv("latencyMs", latencyMs),
-                    kv("status", ProbeStatus.UP),
+                    kv("status", ProbeStatus.DOWN),
                     kv("method", ProbeMethod.TCP),
-                    kv("probeCycleId", probeCycleId)
+                    kv("probeCycleId", probeCycleId),
+                    e
             );
+            return createFailureResult(start, request, "unexpected error: " + e.getMessage());
+        }
 
-            return new ProbeResult(
-                    start,
-                    request.targetId(),
-                    host,
-                    latencyMs,
-                    probeCycleId,
-                    ProbeStatus.UP,
-                    ProbeMethod.TCP,
-                    null
-            );
-        } catch (RuntimeException e) {
-            Throwable cause = e.getCause();
+        switch (attempt.outcome()) {
+            case SUCCESS -> {
+                double latencyMs = toMillis(attempt.latencyNanos());
+                if (log.isDebugEnabled()) {
+                    log.debug(
+                            "TCP probe succeeded",
+                            kv("targetId", request.targetId()),
+                            kv("host", host),
+                            kv("port", port),
+                            kv("latencyMs", latencyMs),
+                            kv("status", ProbeStatus.UP),
+                            kv("method", ProbeMethod.TCP),
+                            kv("probeCycleId", probeCycleId)
+                    );
+                }
 
-            if (cause instanceof SocketTimeoutException) {
-                log.warn(
-                        "TCP probe timed out",
-                        kv("targetId", request.targetId()),
-                        kv("host", host),
-                        kv("port", port),
-                        kv("status", ProbeStatus.DOWN),
-                        kv("method", ProbeMethod.TCP),
-                        kv("probeCycleId", probeCycleId),
-                        kv("error", cause.getMessage())
+                return new ProbeResult(
+                        start,
+                        request.targetId(),
+                        host,
+                        latencyMs,
+                        probeCycleId,
+                        ProbeStatus.UP,
+                        ProbeMethod.TCP,
+                        null
                 );
-                return createFailureResult(start, request, "connection timed out");
-            } else if (cause instanceof ConnectException) {
-                ConnectException connectEx = (ConnectException) cause;
-                String limiterKey = host + ":" + port;
-                boolean shouldLog = connectionRefusedLimiter.shouldLog(limiterKey);
+            }
+            case REFUSED -> {
+                boolean shouldLog = connectionRefusedLimiter.shouldLog(host, port);
 
                 if (shouldLog) {
                     log.warn(
@@ -121,11 +126,11 @@ public class TcpProbeStrategy implements ProbeStrategy {
                             kv("status", ProbeStatus.DOWN),
                             kv("method", ProbeMethod.TCP),
                             kv("probeCycleId", probeCycleId),
-                            kv("error", connectEx.getMessage()),
+                            kv("error", attempt.errorMessage()),
                             kv("rateLimited", false),
                             kv("rateLimitWindowSec", CONNECTION_REFUSED_LOG_INTERVAL.toSeconds())
                     );
-                } else {
+                } else if (log.isDebugEnabled()) {
                     log.debug(
                             "TCP probe connection refused (suppressed by rate limit)",
                             kv("targetId", request.targetId()),
@@ -134,51 +139,159 @@ public class TcpProbeStrategy implements ProbeStrategy {
                             kv("status", ProbeStatus.DOWN),
                             kv("method", ProbeMethod.TCP),
                             kv("probeCycleId", probeCycleId),
-                            kv("error", connectEx.getMessage()),
+                            kv("error", attempt.errorMessage()),
                             kv("rateLimited", true)
                     );
                 }
+            }
+            case TIMEOUT -> log.warn(
+                    "TCP probe timed out",
+                    kv("targetId", request.targetId()),
+                    kv("host", host),
+                    kv("port", port),
+                    kv("status", ProbeStatus.DOWN),
+                    kv("method", ProbeMethod.TCP),
+                    kv("probeCycleId", probeCycleId),
+                    kv("error", attempt.errorMessage())
+            );
+            case UNKNOWN_HOST -> log.warn(
+                    "TCP probe failed: unknown host",
+                    kv("targetId", request.targetId()),
+                    kv("host", host),
+                    kv("port", port),
+                    kv("status", ProbeStatus.DOWN),
+                    kv("method", ProbeMethod.TCP),
+                    kv("probeCycleId", probeCycleId),
+                    kv("error", attempt.errorMessage())
+            );
+            case IO_ERROR -> log.warn(
+                    "TCP probe I/O error",
+                    kv("targetId", request.targetId()),
+                    kv("host", host),
+                    kv("port", port),
+                    kv("status", ProbeStatus.DOWN),
+                    kv("method", ProbeMethod.TCP),
+                    kv("probeCycleId", probeCycleId),
+                    kv("error", attempt.detail())
+            );
+        }
+        return createFailureResult(start, request, attempt.errorMessage());
+    }
 
-                return createFailureResult(start, request, "connection refused");
-            } else if (cause instanceof UnknownHostException) {
-                log.warn(
-                        "TCP probe failed: unknown host",
-                        kv("targetId", request.targetId()),
-                        kv("host", host),
-                        kv("port", port),
-                        kv("status", ProbeStatus.DOWN),
-                        kv("method", ProbeMethod.TCP),
-                        kv("probeCycleId", probeCycleId),
-                        kv("error", "unknown host")
-                );
-                return createFailureResult(start, request, "unknown host");
-            } else if (cause instanceof IOException) {
-                log.warn(
-                        "TCP probe I/O error",
-                        kv("targetId", request.targetId()),
+    /**
+     * Periodically report how many connection-refused warnings the rate limiter swallowed,
+     * so a mass outage still shows up in the logs with its scale.
+     */
+    @Scheduled(fixedDelayString = "${ict.probe.tcp.suppressed-log-summary-interval-ms:60000}")
+    public void logSuppressedSummary() {
+        long total = connectionRefusedLimiter.drainSuppressed((host, port, count) -> {
+            if (host != null && log.isDebugEnabled()) {
+                log.debug(
+                        "TCP probe connection refused messages suppressed",
                         kv("host", host),
                         kv("port", port),
-                        kv("status", ProbeStatus.DOWN),
-                        kv("method", ProbeMethod.TCP),
-                        kv("probeCycleId", probeCycleId),
-                        kv("error", cause.getMessage())
+                        kv("suppressed", count)
                 );
-                return createFailureResult(start, request, "I/O error: " + cause.getMessage());
+            }
+        });
+        if (total > 0) {
+            log.warn(
+                    "TCP probe connection refused: {} similar messages suppressed",
+                    total,
+                    kv("suppressed", total),
+                    kv("rateLimitWindowSec", CONNECTION_REFUSED_LOG_INTERVAL.toSeconds())
+            );
+        }
+    }
+
+    /**
+     * Perform one connect attempt and classify its outcome. Unresolvable hosts are detected
+     * from the address itself, so they never reach {@code Socket.connect}.
+     */
+    private ConnectAttempt connectOnce(String host, int port) {
+        InetSocketAddress address = new InetSocketAddress(host, port);
+        if (address.isUnresolved()) {
+            return ConnectAttempt.UNKNOWN_HOST;
+        }
+        return connectOnce(address);
+    }
+
+    private ConnectAttempt connectOnce(InetSocketAddress address) {
+        try (Socket socket = socketSupplier.get()) {
+            long beforeConnect = System.nanoTime();
+            socket.connect(address, DEFAULT_TIMEOUT_MS);
+            return ConnectAttempt.success(System.nanoTime() - beforeConnect);
+        } catch (IOException e) {
+            return ConnectAttempt.failure(e);
+        }
+    }
+
+    /**
+     * Run {@code burstSamples} back-to-back connects and summarize them into a single result.
+     * Failed samples count as loss and are not retried; the target is DOWN only if every sample failed.
+     */
+    private ProbeResult probeBurst(ProbeRequest request, Instant start) {
+        String host = request.host();
+        int port = request.port();
+        LatencyAccumulator accumulator = burstAccumulators.get();
+        accumulator.reset(burstSamples);
+
+        InetSocketAddress address = new InetSocketAddress(host, port);
+        ConnectAttempt lastFailure = ConnectAttempt.UNKNOWN_HOST;
+        for (int i = 0; i < burstSamples && !address.isUnresolved(); i++) {
+            ConnectAttempt attempt = connectOnce(address);
+            if (attempt.succeeded()) {
+                accumulator.recordSample(attempt.latencyNanos());
             } else {
-                // Unexpected exception
-                log.error(
-                        "TCP probe unexpected error",
-                        kv("targetId", request.targetId()),
-                        kv("host", host),
-                        kv("port", port),
-                        kv("status", ProbeStatus.DOWN),
-                        kv("method", ProbeMethod.TCP),
-                        kv("probeCycleId", probeCycleId),
-                        e
-                );
-                return createFailureResult(start, request, "unexpected error: " + e.getMessage());
+                lastFailure = attempt;
             }
         }
+
+        BurstStatistics burst = accumulator.toStatistics();
+
+        if (accumulator.received() == 0) {
+            String errorMessage = lastFailure.errorMessage();
+            log.warn(
+                    "TCP burst probe failed",
+                    kv("targetId", request.targetId()),
+                    kv("host", host),
+                    kv("port", port),
+                    kv("status", ProbeStatus.DOWN),
+                    kv("method", ProbeMethod.TCP),
+                    kv("probeCycleId", request.probeCycleId()),
+                    kv("samples", burst.samples()),
+                    kv("error", errorMessage)
+            );
+            return createFailureResult(start, request, errorMessage, burst);
+        }
+
+        double latencyMs = burst.medianLatencyMs();
+
+        log.debug(
+                "TCP burst probe succeeded",
+                kv("targetId", request.targetId()),
+                kv("host", host),
+                kv("port", port),
+                kv("latencyMs", latencyMs),
+                kv("jitterMs", burst.jitterMs()),
+                kv("packetLoss", burst.packetLoss()),
+                kv("samples", burst.samples()),
+                kv("status", ProbeStatus.UP),
+                kv("method", ProbeMethod.TCP),
+                kv("probeCycleId", request.probeCycleId())
+        );
+
+        return new ProbeResult(
+                start,
+                request.targetId(),
+                host,
+                latencyMs,
+                request.probeCycleId(),
+                ProbeStatus.UP,
+                ProbeMethod.TCP,
+                null,
+                burst
+        );
     }
 
     /**
@@ -192,7 +305,18 @@ public class TcpProbeStrategy implements ProbeStrategy {
         }
     }
 
+    /**
+     * Convert a nanosecond duration to fractional milliseconds, keeping microsecond resolution.
+     */
+    private static double toMillis(long nanos) {
+        return Math.round(nanos / 1_000.0) / 1_000.0;
+    }
+
     private ProbeResult createFailureResult(Instant timestamp, ProbeRequest request, String errorMessage) {
+        return createFailureResult(timestamp, request, errorMessage, null);
+    }
+
+    private ProbeResult createFailureResult(Instant timestamp, ProbeRequest request, String errorMessage, BurstStatistics burst) {
         return new ProbeResult(
                 timestamp,
                 request.targetId(),
@@ -201,7 +325,8 @@ public class TcpProbeStrategy implements ProbeStrategy {
                 request.probeCycleId(),
                 ProbeStatus.DOWN,
                 ProbeMethod.TCP,
-                errorMessage
+                errorMessage,
+                burst
         );
     }
 }
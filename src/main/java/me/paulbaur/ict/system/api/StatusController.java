@@ -1,12 +1,9 @@
 package me.paulbaur.ict.system.api;
 
 import lombok.RequiredArgsConstructor;
-import me.paulbaur.ict.common.model.ProbeStatus;
-import me.paulbaur.ict.probe.domain.ProbeResult;
-import me.paulbaur.ict.probe.service.ProbeService;
+import me.paulbaur.ict.common.model.ErrorResponse;
 import me.paulbaur.ict.system.domain.StatusSnapshot;
-import me.paulbaur.ict.target.domain.Target;
-import me.paulbaur.ict.target.service.TargetService;
+import me.paulbaur.ict.system.service.StatusSnapshotService;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.http.MediaType;
@@ -20,60 +17,25 @@ import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.media.ExampleObject;
 
-import java.time.Instant;
-import java.util.List;
-
 // GET /api/status - high-level status view
 @RestController
 @RequiredArgsConstructor
 @Tag(name = "Status", description = "High-level service status endpoints")
 public class StatusController {
 
-    private final ProbeService probeService;
-    private final TargetService targetService;
+    private final StatusSnapshotService statusSnapshotService;
 
     @GetMapping("/api/status")
-    @Operation(summary = "Get service status snapshot", description = "Returns a high-level StatusSnapshot computed from recent probe results.")
+    @Operation(summary = "Get service status snapshot", description = "Returns a high-level StatusSnapshot kept in memory from the latest probe result of every monitored target.")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Status snapshot",
-                    content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE, schema = @Schema(implementation = StatusSnapshot.class), examples = {@ExampleObject(value = "{\"timestamp\":\"2025-11-19T12:00:00Z\",\"anyDown\":false,\"totalTargets\":3,\"targetsDown\":1,\"unknownTargets\":1}" )})
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE, schema = @Schema(implementation = StatusSnapshot.class), examples = {@ExampleObject(value = "{\"timestamp\":\"2025-11-19T12:00:00Z\",\"anyDown\":false,\"totalTargets\":3,\"targetsDown\":1,\"unknownTargets\":1,\"version\":42}" )})
+            ),
+            @ApiResponse(responseCode = "503", description = "Status snapshot is still loading after startup",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE, schema = @Schema(implementation = ErrorResponse.class))
             )
     })
     public ResponseEntity<StatusSnapshot> getStatus() {
-        return ResponseEntity.ok(computeSnapshot());
-    }
-
-    private StatusSnapshot computeSnapshot() {
-        List<Target> monitoredTargets = targetService.findAll().stream()
-                .filter(Target::isEnabled)
-                .toList();
-
-        int targetsDown = 0;
-        int unknownTargets = 0;
-        for (Target target : monitoredTargets) {
-            ProbeResult latestResult = latestResultForTarget(target);
-            if (latestResult == null) {
-                unknownTargets++;
-            } else if (latestResult.status() == ProbeStatus.DOWN) {
-                targetsDown++;
-            }
-        }
-
-        boolean anyDown = targetsDown > 0;
-        return new StatusSnapshot(
-                Instant.now(),
-                anyDown,
-                monitoredTargets.size(),
-                targetsDown,
-                unknownTargets
-        );
-    }
-
-    private ProbeResult latestResultForTarget(Target target) {
-        List<ProbeResult> results = probeService.getRecentResultsForTarget(target.getId().toString(), 1);
-        if (results == null || results.isEmpty()) {
-            return null;
-        }
-        return results.get(0);
+        return ResponseEntity.ok(statusSnapshotService.getSnapshot());
     }
 }
@@ -5,7 +5,7 @@ import io.swagger.v3.oas.annotations.media.Schema;
 
 @Schema(description = "Snapshot of the overall system status, used for health and status endpoints")
 public record StatusSnapshot(
-        @Schema(description = "When the snapshot was taken (ISO-8601)", example = "2025-11-19T12:34:56Z", implementation = String.class)
+        @Schema(description = "When the status last changed (ISO-8601)", example = "2025-11-19T12:34:56Z", implementation = String.class)
         Instant timestamp,
 
         @Schema(description = "True if any monitored target is currently down", example = "false")
@@ -18,6 +18,9 @@ public record StatusSnapshot(
         int targetsDown,
 
         @Schema(description = "Number of targets without any probe history (no data yet)", example = "1")
-        int unknownTargets
+        int unknownTargets,
+
+        @Schema(description = "Increases with every change of the snapshot on the serving node; restarts at 1 when the node restarts", example = "42")
+        long version
 ) {
 }
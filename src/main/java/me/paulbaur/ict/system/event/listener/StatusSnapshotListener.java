@@ -0,0 +1,23 @@
+package me.paulbaur.ict.system.event.listener;
+
+import lombok.RequiredArgsConstructor;
+import me.paulbaur.ict.probe.event.ProbeResultEvent;
+import me.paulbaur.ict.system.service.StatusSnapshotService;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Applies every probe result to the in-memory status snapshot.
+ * Applying is a map update and a few counters, so it runs synchronously on the publishing thread.
+ */
+@Component
+@RequiredArgsConstructor
+public class StatusSnapshotListener {
+
+    private final StatusSnapshotService statusSnapshotService;
+
+    @EventListener
+    public void handleProbeResultEvent(ProbeResultEvent event) {
+        statusSnapshotService.apply(event.getResult());
+    }
+}
@@ -0,0 +1,224 @@
+package me.paulbaur.ict.system.service;
+
+import lombok.extern.slf4j.Slf4j;
+import me.paulbaur.ict.common.exception.ServiceUnavailableException;
+import me.paulbaur.ict.common.model.ProbeStatus;
+import me.paulbaur.ict.coordination.service.LeaderElectionService;
+import me.paulbaur.ict.probe.domain.ProbeResult;
+import me.paulbaur.ict.probe.service.ProbeRepository;
+import me.paulbaur.ict.system.domain.StatusSnapshot;
+import me.paulbaur.ict.target.domain.Target;
+import me.paulbaur.ict.target.service.TargetService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static net.logstash.logback.argument.StructuredArguments.kv;
+
+/**
+ * Keeps the {@link StatusSnapshot} served by {@code /api/status} in memory, so serving it is a
+ * single volatile read without I/O.
+ *
+ * <p>The snapshot is loaded at startup with one search for the latest result of every enabled
+ * target, then updated from each probe result. Only the leader probes, so other nodes reload the
+ * results at {@code ict.status.refresh-ms}; every node re-reads the target list at that interval.
+ * Results older than the one already known for a target are ignored, so a reload never undoes a
+ * newer result. A snapshot, with the next version, is published only when its counts change.</p>
+ *
+ * <p>Only the target list is needed to serve a snapshot: if the results cannot be read, targets
+ * without a known result are counted as unknown and the results are read again on the next
+ * refresh. {@code /api/status} is unavailable only until the target list has been read once.</p>
+ */
+@Service
+@Slf4j
+public class StatusSnapshotService {
+
+    private static final TargetStatus UNKNOWN = new TargetStatus(null, null);
+
+    private final TargetService targetService;
+    private final ProbeRepository probeRepository;
+    private final LeaderElectionService leaderElectionService;
+    private final Clock clock;
+
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+
+    // Guarded by this; snapshot is only read outside it
+    private final Map<String, TargetStatus> targets = new HashMap<>();
+    private int targetsDown;
+    private int unknownTargets;
+    private long version;
+    private boolean loaded;
+    private boolean resultsLoaded;
+    private volatile StatusSnapshot snapshot;
+
+    @Autowired
+    public StatusSnapshotService(TargetService targetService,
+                                 ProbeRepository probeRepository,
+                                 @Autowired(required = false) LeaderElectionService leaderElectionService) {
+        this(targetService, probeRepository, leaderElectionService, Clock.systemUTC());
+    }
+
+    StatusSnapshotService(TargetService targetService,
+                          ProbeRepository probeRepository,
+                          LeaderElectionService leaderElectionService,
+                          Clock clock) {
+        this.targetService = targetService;
+        this.probeRepository = probeRepository;
+        this.leaderElectionService = leaderElectionService;
+        this.clock = clock;
+    }
+
+    /**
+     * The current snapshot.
+     *
+     * @throws ServiceUnavailableException until the target list has been loaded
+     */
+    public StatusSnapshot getSnapshot() {
+        StatusSnapshot current = snapshot;
+        if (current == null) {
+            throw new ServiceUnavailableException("Status snapshot is still loading");
+        }
+        return current;
+    }
+
+    /**
+     * Apply a probe result, unless a newer one is already known for its target. A target not yet
+     * in the snapshot is added, since only monitored targets are probed.
+     */
+    public synchronized void apply(ProbeResult result) {
+        TargetStatus previous = targets.get(result.targetId());
+        TargetStatus updated = new TargetStatus(result.status(), result.timestamp());
+        if (previous != null && newest(previous, updated) == previous) {
+            return;
+        }
+        targets.put(result.targetId(), updated);
+        if (previous != null) {
+            count(previous, -1);
+        }
+        count(updated, 1);
+        publishIfChanged();
+    }
+
+    /**
+     * Load the snapshot until it succeeds, then keep the target list current and, on nodes that
+     * do not probe, the results too.
+     */
+    @Scheduled(fixedDelayString = "${ict.status.refresh-ms:5000}")
+    @Async("probeTaskExecutor")
+    public void refresh() {
+        if (!refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            boolean leader = leaderElectionService == null || leaderElectionService.isLeader();
+            reload(!isResultsLoaded() || !leader);
+        } finally {
+            refreshing.set(false);
+        }
+    }
+
+    void reload(boolean includeResults) {
+        List<String> targetIds;
+        try {
+            targetIds = targetService.findAll().stream()
+                    .filter(Target::isEnabled)
+                    .map(target -> target.getId().toString())
+                    .toList();
+        } catch (RuntimeException e) {
+            log.warn("Failed to load status snapshot targets, will retry", kv("error", e.getMessage()));
+            return;
+        }
+        Map<String, ProbeResult> latest = Map.of();
+        boolean resultsRead = false;
+        if (includeResults) {
+            try {
+                latest = probeRepository.findLatestPerTarget(targetIds);
+                resultsRead = true;
+            } catch (RuntimeException e) {
+                // Still published: targets without a known result count as unknown until the next refresh
+                log.warn("Failed to load latest probe results for status snapshot, will retry",
+                        kv("error", e.getMessage()));
+            }
+        }
+        merge(targetIds, latest, resultsRead);
+    }
+
+    private synchronized void merge(List<String> targetIds, Map<String, ProbeResult> latest, boolean resultsRead) {
+        Map<String, TargetStatus> merged = new HashMap<>();
+        for (String targetId : targetIds) {
+            ProbeResult stored = latest.get(targetId);
+            TargetStatus fromStore = stored != null ? new TargetStatus(stored.status(), stored.timestamp()) : null;
+            merged.put(targetId, newest(targets.get(targetId), fromStore));
+        }
+        targets.clear();
+        targets.putAll(merged);
+        targetsDown = 0;
+        unknownTargets = 0;
+        targets.values().forEach(status -> count(status, 1));
+
+        boolean firstLoad = !loaded;
+        loaded = true;
+        resultsLoaded |= resultsRead;
+        publishIfChanged();
+        if (firstLoad) {
+            log.info("Loaded status snapshot",
+                    kv("targets", targets.size()),
+                    kv("targetsDown", targetsDown),
+                    kv("unknownTargets", unknownTargets),
+                    kv("resultsLoaded", resultsLoaded));
+        }
+    }
+
+    private void publishIfChanged() {
+        if (!loaded) {
+            // Results applied before the first load are kept, but the target list is not known yet
+            return;
+        }
+        StatusSnapshot current = snapshot;
+        if (current != null
+                && current.totalTargets() == targets.size()
+                && current.targetsDown() == targetsDown
+                && current.unknownTargets() == unknownTargets) {
+            return;
+        }
+        snapshot = new StatusSnapshot(clock.instant(), targetsDown > 0, targets.size(), targetsDown, unknownTargets, ++version);
+    }
+
+    private void count(TargetStatus status, int delta) {
+        if (status.status() == null) {
+            unknownTargets += delta;
+        } else if (status.status() == ProbeStatus.DOWN) {
+            targetsDown += delta;
+        }
+    }
+
+    private static TargetStatus newest(TargetStatus known, TargetStatus stored) {
+        if (known == null || known.timestamp() == null) {
+            return stored != null ? stored : UNKNOWN;
+        }
+        if (stored == null || stored.timestamp() == null) {
+            return known;
+        }
+        return stored.timestamp().isAfter(known.timestamp()) ? stored : known;
+    }
+
+    synchronized boolean isLoaded() {
+        return loaded;
+    }
+
+    synchronized boolean isResultsLoaded() {
+        return resultsLoaded;
+    }
+
+    // status is null while the target has no results
+    private record TargetStatus(ProbeStatus status, Instant timestamp) {
+    }
+}
@@ -0,0 +1,92 @@
+package me.paulbaur.ict.analytics.repository;
+
+import co.elastic.clients.elasticsearch.ElasticsearchAsyncClient;
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch.core.SearchRequest;
+import co.elastic.clients.elasticsearch.core.SearchResponse;
+import co.elastic.clients.json.JsonpDeserializer;
+import co.elastic.clients.json.jackson.JacksonJsonpMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import me.paulbaur.ict.analytics.domain.AnalyticsQueryPlan;
+import me.paulbaur.ict.analytics.domain.DashboardAnalytics;
+import me.paulbaur.ict.common.elasticsearch.ElasticsearchRequestExecutor;
+import me.paulbaur.ict.common.exception.QueryTooExpensiveException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ElasticsearchAnalyticsRepositoryTest {
+
+    private static final Instant START = Instant.parse("2025-01-01T00:00:00Z");
+    private static final Instant END = Instant.parse("2026-01-01T00:00:00Z");
+    private static final String SHARDS = "\"_shards\":{\"total\":1,\"successful\":1,\"skipped\":0,\"failed\":0}";
+
+    private final JacksonJsonpMapper mapper = new JacksonJsonpMapper();
+    private ElasticsearchClient client;
+    private ElasticsearchAsyncClient asyncClient;
+    private ElasticsearchAnalyticsRepository repository;
+
+    @BeforeEach
+    void setUp() {
+        client = mock(ElasticsearchClient.class);
+        when(client._jsonpMapper()).thenReturn(mapper);
+        asyncClient = mock(ElasticsearchAsyncClient.class);
+        repository = new ElasticsearchAnalyticsRepository(client,
+                new ElasticsearchRequestExecutor(asyncClient, new SimpleMeterRegistry()));
+    }
+
+    @Test
+    void calculateDashboard_sampled_readsTheSamplerAndScalesCounts() throws IOException {
+        stubSearch("{\"took\":5,\"timed_out\":false," + SHARDS + ","
+                + "\"hits\":{\"total\":{\"value\":0,\"relation\":\"gte\"},\"hits\":[]},"
+                + "\"aggregations\":{\"random_sampler#sampled\":{\"seed\":7,\"probability\":0.01,\"doc_count\":1000,"
+                + "\"sterms#by_status\":{\"doc_count_error_upper_bound\":0,\"sum_other_doc_count\":0,"
+                + "\"buckets\":[{\"key\":\"UP\",\"doc_count\":990},{\"key\":\"DOWN\",\"doc_count\":10}]},"
+                + "\"stats#latency_stats\":{\"count\":990,\"min\":5.0,\"max\":90.0,\"avg\":20.0,\"sum\":19800.0},"
+                + "\"date_histogram#time_buckets\":{\"buckets\":[{\"key\":1735689600000,\"doc_count\":1000,"
+                + "\"avg#avg_latency\":{\"value\":20.0},"
+                + "\"sterms#by_status\":{\"doc_count_error_upper_bound\":0,\"sum_other_doc_count\":0,"
+                + "\"buckets\":[{\"key\":\"UP\",\"doc_count\":990}]}}]}}}}");
+
+        DashboardAnalytics dashboard = repository.calculateDashboard("t1", START, END, Duration.ofDays(365),
+                new AnalyticsQueryPlan(100_000, 0.01));
+
+        assertThat(dashboard.uptime().totalProbes()).isEqualTo(100_000L);
+        assertThat(dashboard.uptime().successfulProbes()).isEqualTo(99_000L);
+        assertThat(dashboard.uptime().uptimePercentage()).isCloseTo(99.0, within(1e-9));
+        assertThat(dashboard.latency().averageLatencyMs()).isCloseTo(20.0, within(1e-9));
+        assertThat(dashboard.timeSeries().get(0).probeCount()).isEqualTo(100_000L);
+        assertThat(dashboard.sampling().sampledDocs()).isEqualTo(1000L);
+        // 1.96 * sqrt(0.25 / 1000) ~ 3.1 percentage points
+        assertThat(dashboard.sampling().percentageMarginPct()).isCloseTo(3.1, within(0.01));
+    }
+
+    @Test
+    void calculateTimeSeries_terminatedEarly_isRejectedInsteadOfReturningPartialResults() throws IOException {
+        stubSearch("{\"took\":10000,\"timed_out\":false,\"terminated_early\":true," + SHARDS + ","
+                + "\"hits\":{\"total\":{\"value\":0,\"relation\":\"gte\"},\"hits\":[]},"
+                + "\"aggregations\":{\"date_histogram#time_buckets\":{\"buckets\":[]}}}");
+
+        assertThatThrownBy(() -> repository.calculateTimeSeries("t1", START, END, Duration.ofDays(1)))
+                .isInstanceOf(QueryTooExpensiveException.class);
+    }
+
+    private void stubSearch(String json) {
+        SearchResponse<Void> response = SearchResponse.<Void>createSearchResponseDeserializer(JsonpDeserializer.of(Void.class))
+                .deserialize(mapper.jsonProvider().createParser(new StringReader(json)), mapper);
+        when(asyncClient.search(any(SearchRequest.class), eq(Void.class))).thenReturn(CompletableFuture.completedFuture(response));
+    }
+}
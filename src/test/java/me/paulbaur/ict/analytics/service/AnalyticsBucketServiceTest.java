@@ -0,0 +1,130 @@
+package me.paulbaur.ict.analytics.service;
+
+import me.paulbaur.ict.analytics.domain.AnalyticsBucket;
+import me.paulbaur.ict.analytics.domain.TimeRange;
+import me.paulbaur.ict.analytics.repository.ElasticsearchAnalyticsRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class AnalyticsBucketServiceTest {
+
+    private static final String TARGET_ID = "00000000-0000-0000-0000-000000000000";
+    private static final Instant NOW = Instant.parse("2025-12-15T12:34:56Z");
+
+    @Mock
+    private ElasticsearchAnalyticsRepository analyticsRepository;
+
+    private AnalyticsBucketService bucketService;
+
+    @BeforeEach
+    void setUp() {
+        bucketService = new AnalyticsBucketService(
+                analyticsRepository,
+                new ConcurrentMapCacheManager(AnalyticsBucketService.BUCKET_CACHE),
+                Clock.fixed(NOW, ZoneOffset.UTC)
+        );
+    }
+
+    @Test
+    void aggregate_rollingWindow_queriesOnlyEdgesOnceClosedBucketsAreCached() throws IOException {
+        when(analyticsRepository.calculateBuckets(eq(TARGET_ID), anyList()))
+                .thenAnswer(invocation -> onePerRange(invocation.getArgument(1)));
+        Instant start = NOW.minusSeconds(24 * 3600);
+
+        AnalyticsBucket first = bucketService.aggregate(TARGET_ID, start, NOW);
+        AnalyticsBucket second = bucketService.aggregate(TARGET_ID, start.plusSeconds(5), NOW.plusSeconds(5));
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<TimeRange>> ranges = ArgumentCaptor.forClass(List.class);
+        verify(analyticsRepository, times(2)).calculateBuckets(eq(TARGET_ID), ranges.capture());
+
+        // 2025-12-14T13:00 .. 2025-12-15T12:00 is 23 closed hours plus the head and tail edges
+        assertThat(ranges.getAllValues().get(0)).hasSize(25);
+        assertThat(ranges.getAllValues().get(1)).containsExactly(
+                new TimeRange(start.plusSeconds(5), Instant.parse("2025-12-14T13:00:00Z")),
+                new TimeRange(Instant.parse("2025-12-15T12:00:00Z"), NOW.plusSeconds(5).plusMillis(1))
+        );
+        assertThat(first.totalProbes()).isEqualTo(25);
+        assertThat(second.totalProbes()).isEqualTo(25);
+    }
+
+    @Test
+    void aggregate_mergesCountsAndLatency() throws IOException {
+        Instant start = Instant.parse("2025-12-15T10:00:00Z");
+        Instant end = Instant.parse("2025-12-15T11:59:59Z");
+        when(analyticsRepository.calculateBuckets(eq(TARGET_ID), anyList())).thenReturn(List.of(
+                new AnalyticsBucket(start, start.plusSeconds(3600), 10, 9, 1, 10, 100.0, 5.0, 20.0),
+                new AnalyticsBucket(start.plusSeconds(3600), end, 10, 10, 0, 10, 110.0, 2.0, 15.0)
+        ));
+
+        AnalyticsBucket bucket = bucketService.aggregate(TARGET_ID, start, end);
+
+        assertThat(bucket.totalProbes()).isEqualTo(20);
+        assertThat(bucket.successfulProbes()).isEqualTo(19);
+        assertThat(bucket.failedProbes()).isEqualTo(1);
+        assertThat(bucket.averageLatencyMs()).isEqualTo(10.5);
+        assertThat(bucket.minLatencyMs()).isEqualTo(2.0);
+        assertThat(bucket.maxLatencyMs()).isEqualTo(20.0);
+    }
+
+    @Test
+    void aggregate_doesNotCacheEmptyClosedBuckets() throws IOException {
+        Instant start = Instant.parse("2025-12-15T09:00:00Z");
+        Instant end = Instant.parse("2025-12-15T11:00:00Z");
+        when(analyticsRepository.calculateBuckets(eq(TARGET_ID), anyList()))
+                .thenAnswer(invocation -> {
+                    List<TimeRange> ranges = invocation.getArgument(1);
+                    return ranges.stream().map(range -> AnalyticsBucket.empty(range.start(), range.end())).toList();
+                });
+
+        bucketService.aggregate(TARGET_ID, start, end);
+        bucketService.aggregate(TARGET_ID, start, end);
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<TimeRange>> ranges = ArgumentCaptor.forClass(List.class);
+        verify(analyticsRepository, times(2)).calculateBuckets(eq(TARGET_ID), ranges.capture());
+        // Both closed hours are queried again, since empty ones may still receive late results
+        assertThat(ranges.getAllValues().get(1)).hasSize(3);
+    }
+
+    @Test
+    void closedRanges_usesWholeDaysWhereAligned() {
+        List<TimeRange> ranges = AnalyticsBucketService.closedRanges(
+                Instant.parse("2025-12-13T22:00:00Z"),
+                Instant.parse("2025-12-15T02:00:00Z")
+        );
+
+        assertThat(ranges).containsExactly(
+                new TimeRange(Instant.parse("2025-12-13T22:00:00Z"), Instant.parse("2025-12-13T23:00:00Z")),
+                new TimeRange(Instant.parse("2025-12-13T23:00:00Z"), Instant.parse("2025-12-14T00:00:00Z")),
+                new TimeRange(Instant.parse("2025-12-14T00:00:00Z"), Instant.parse("2025-12-15T00:00:00Z")),
+                new TimeRange(Instant.parse("2025-12-15T00:00:00Z"), Instant.parse("2025-12-15T01:00:00Z")),
+                new TimeRange(Instant.parse("2025-12-15T01:00:00Z"), Instant.parse("2025-12-15T02:00:00Z"))
+        );
+    }
+
+    private static List<AnalyticsBucket> onePerRange(List<TimeRange> ranges) {
+        return ranges.stream()
+                .map(range -> new AnalyticsBucket(range.start(), range.end(), 1, 1, 0, 1, 10.0, 10.0, 10.0))
+                .toList();
+    }
+}
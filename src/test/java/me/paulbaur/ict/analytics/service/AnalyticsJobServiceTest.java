@@ -0,0 +1,158 @@
+package me.paulbaur.ict.analytics.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import me.paulbaur.ict.analytics.domain.AnalyticsJob;
+import me.paulbaur.ict.analytics.domain.AnalyticsJobRequest;
+import me.paulbaur.ict.analytics.domain.AnalyticsJobStatus;
+import me.paulbaur.ict.analytics.domain.AnalyticsJobType;
+import me.paulbaur.ict.analytics.domain.UptimeMetrics;
+import me.paulbaur.ict.common.exception.QueryTooExpensiveException;
+import me.paulbaur.ict.common.exception.ServiceUnavailableException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class AnalyticsJobServiceTest {
+
+    private static final Instant START = Instant.parse("2025-12-01T00:00:00Z");
+    private static final Instant END = Instant.parse("2025-12-31T00:00:00Z");
+    private static final AnalyticsJobRequest FLEET_UPTIME = new AnalyticsJobRequest(
+            AnalyticsJobType.FLEET_UPTIME, List.of("t1", "t2"), START, END, "auto", null, null);
+
+    private final ProbeAnalyticsService analyticsService = mock(ProbeAnalyticsService.class);
+    private final FleetAnalyticsService fleetAnalyticsService = mock(FleetAnalyticsService.class);
+    private final List<Runnable> queued = new ArrayList<>();
+
+    private MutableClock clock;
+    private AnalyticsJobService service;
+
+    @BeforeEach
+    void setUp() {
+        clock = new MutableClock(Instant.parse("2025-12-31T12:00:00Z"));
+        service = new AnalyticsJobService(analyticsService, fleetAnalyticsService, queued::add,
+                new SimpleMeterRegistry(), clock);
+    }
+
+    @Test
+    void submit_runsOnTheExecutorAndSharesTheJobWithIdenticalSubmissions() {
+        List<UptimeMetrics> uptime = List.of(UptimeMetrics.calculate("t1", START, END, 10L, 9L, 1L));
+        when(fleetAnalyticsService.getUptimeMetrics(List.of("t1", "t2"), START, END)).thenReturn(uptime);
+
+        AnalyticsJob submitted = service.submit(FLEET_UPTIME);
+        assertThat(submitted.status()).isEqualTo(AnalyticsJobStatus.QUEUED);
+        assertThat(service.submit(FLEET_UPTIME).jobId()).isEqualTo(submitted.jobId());
+        CompletableFuture<AnalyticsJob> done = service.whenDone(submitted.jobId());
+        assertThat(done).isNotDone();
+
+        queued.remove(0).run();
+
+        AnalyticsJob finished = service.findJob(submitted.jobId()).orElseThrow();
+        assertThat(finished.status()).isEqualTo(AnalyticsJobStatus.SUCCEEDED);
+        assertThat(finished.result()).isEqualTo(uptime);
+        assertThat(finished.completedAt()).isNotNull();
+        assertThat(done).isCompletedWithValue(finished);
+        // A finished job still answers identical submissions until it expires
+        assertThat(service.submit(FLEET_UPTIME).jobId()).isEqualTo(submitted.jobId());
+        assertThat(queued).isEmpty();
+        verify(fleetAnalyticsService, times(1)).getUptimeMetrics(List.of("t1", "t2"), START, END);
+    }
+
+    @Test
+    void failedJob_reportsTheErrorCodeAndIsNotReused() {
+        when(fleetAnalyticsService.getUptimeMetrics(List.of("t1", "t2"), START, END))
+                .thenThrow(new QueryTooExpensiveException("too many probes"));
+
+        AnalyticsJob submitted = service.submit(FLEET_UPTIME);
+        queued.remove(0).run();
+
+        AnalyticsJob failed = service.findJob(submitted.jobId()).orElseThrow();
+        assertThat(failed.status()).isEqualTo(AnalyticsJobStatus.FAILED);
+        assertThat(failed.errorCode()).isEqualTo("QUERY_TOO_EXPENSIVE");
+        assertThat(failed.errorMessage()).isEqualTo("too many probes");
+        assertThat(service.submit(FLEET_UPTIME).jobId()).isNotEqualTo(submitted.jobId());
+    }
+
+    @Test
+    void jobFailingWithAnError_isStillCompleted() {
+        when(fleetAnalyticsService.getUptimeMetrics(List.of("t1", "t2"), START, END))
+                .thenThrow(new OutOfMemoryError("heap"));
+
+        AnalyticsJob submitted = service.submit(FLEET_UPTIME);
+        Runnable task = queued.remove(0);
+        assertThatThrownBy(task::run).isInstanceOf(OutOfMemoryError.class);
+
+        AnalyticsJob failed = service.findJob(submitted.jobId()).orElseThrow();
+        assertThat(failed.status()).isEqualTo(AnalyticsJobStatus.FAILED);
+        assertThat(failed.errorCode()).isEqualTo("INTERNAL_ERROR");
+        assertThat(service.whenDone(submitted.jobId())).isCompletedWithValue(failed);
+    }
+
+    @Test
+    void submit_whenTheQueueIsFull_isRejectedAndNotRetained() {
+        service = new AnalyticsJobService(analyticsService, fleetAnalyticsService, task -> {
+            throw new RejectedExecutionException("full");
+        }, new SimpleMeterRegistry(), clock);
+
+        assertThatThrownBy(() -> service.submit(FLEET_UPTIME))
+                .isInstanceOf(ServiceUnavailableException.class)
+                .hasMessageContaining("queue is full");
+    }
+
+    @Test
+    void prune_dropsFinishedJobsPastRetention() {
+        AnalyticsJob finished = service.submit(FLEET_UPTIME);
+        queued.remove(0).run();
+        AnalyticsJob running = service.submit(new AnalyticsJobRequest(
+                AnalyticsJobType.FLEET_LATENCY, List.of("t1"), START, END, "auto", null, null));
+
+        clock.advance(Duration.ofMinutes(16));
+        service.prune();
+
+        assertThat(service.findJob(finished.jobId())).isEmpty();
+        assertThat(service.findJob(running.jobId())).isPresent();
+        assertThat(service.submit(FLEET_UPTIME).jobId()).isNotEqualTo(finished.jobId());
+    }
+
+    private static final class MutableClock extends Clock {
+        private Instant now;
+
+        private MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
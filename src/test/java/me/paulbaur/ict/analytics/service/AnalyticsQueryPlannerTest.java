@@ -0,0 +1,79 @@
+package me.paulbaur.ict.analytics.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import me.paulbaur.ict.analytics.domain.AnalyticsQueryPlan;
+import me.paulbaur.ict.analytics.repository.ElasticsearchAnalyticsRepository;
+import me.paulbaur.ict.common.exception.QueryTooExpensiveException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class AnalyticsQueryPlannerTest {
+
+    private static final Instant START = Instant.parse("2025-01-01T00:00:00Z");
+    private static final Instant END = Instant.parse("2026-01-01T00:00:00Z");
+    private static final List<String> TARGETS = List.of("t1", "t2");
+
+    @Mock
+    private ElasticsearchAnalyticsRepository analyticsRepository;
+
+    private SimpleMeterRegistry meterRegistry;
+    private AnalyticsQueryPlanner planner;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        planner = new AnalyticsQueryPlanner(analyticsRepository, meterRegistry);
+    }
+
+    @Test
+    void plan_smallRequest_runsExactly() throws IOException {
+        when(analyticsRepository.countProbes(TARGETS, START, END, 0)).thenReturn(1_000_000L);
+
+        AnalyticsQueryPlan plan = planner.plan(TARGETS, START, END, true);
+
+        assertThat(plan.isSampled()).isFalse();
+        assertThat(plan.estimatedDocs()).isEqualTo(1_000_000L);
+    }
+
+    @Test
+    void plan_largeRequestThatCanReportSampling_readsAboutTheSampleSize() throws IOException {
+        when(analyticsRepository.countProbes(TARGETS, START, END, 0)).thenReturn(100_000_000L);
+
+        AnalyticsQueryPlan plan = planner.plan(TARGETS, START, END, true);
+
+        assertThat(plan.isSampled()).isTrue();
+        assertThat(plan.samplingProbability()).isCloseTo(0.005, within(1e-9));
+        assertThat(meterRegistry.get("analytics.query.plans").tag("outcome", "sampled").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void plan_largeRequestThatCannotBeSampled_isRejectedAfterABoundedCount() throws IOException {
+        // The count stops at the limit; reaching it is enough to reject
+        when(analyticsRepository.countProbes(TARGETS, START, END, 50_000_001L)).thenReturn(50_000_001L);
+
+        assertThatThrownBy(() -> planner.plan(TARGETS, START, END, false))
+                .isInstanceOf(QueryTooExpensiveException.class)
+                .hasMessageContaining("narrow the time range");
+        assertThat(meterRegistry.get("analytics.query.plans").tag("outcome", "rejected").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void plan_requestBetweenThresholdsThatCannotBeSampled_runsExactly() throws IOException {
+        when(analyticsRepository.countProbes(TARGETS, START, END, 50_000_001L)).thenReturn(20_000_000L);
+
+        assertThat(planner.plan(TARGETS, START, END, false)).isEqualTo(AnalyticsQueryPlan.exact(20_000_000L));
+    }
+}
@@ -0,0 +1,175 @@
+package me.paulbaur.ict.analytics.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import me.paulbaur.ict.analytics.domain.AnalyticsBucket;
+import me.paulbaur.ict.analytics.domain.AnalyticsQueryPlan;
+import me.paulbaur.ict.analytics.domain.LatencyHeatmap;
+import me.paulbaur.ict.analytics.domain.LatencyMetrics;
+import me.paulbaur.ict.analytics.domain.TargetTimeSeries;
+import me.paulbaur.ict.analytics.domain.TimeSeriesDataPoint;
+import me.paulbaur.ict.analytics.domain.UptimeMetrics;
+import me.paulbaur.ict.analytics.repository.ElasticsearchAnalyticsRepository;
+import me.paulbaur.ict.common.cache.SingleFlightCache;
+import me.paulbaur.ict.target.domain.Target;
+import me.paulbaur.ict.target.store.TargetRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class FleetAnalyticsServiceTest {
+
+    private static final Instant START = Instant.parse("2025-12-01T00:00:00Z");
+    private static final Instant END = Instant.parse("2025-12-02T00:00:00Z");
+
+    @Mock
+    private ElasticsearchAnalyticsRepository analyticsRepository;
+
+    @Mock
+    private TargetRepository targetRepository;
+
+    @Mock
+    private UptimeCounterService uptimeCounters;
+
+    private FleetAnalyticsService fleetService;
+
+    @BeforeEach
+    void setUp() {
+        SingleFlightCache resultCache = new SingleFlightCache(
+                new ConcurrentMapCacheManager("analytics"), "analytics", Duration.ofMinutes(5), 1.0,
+                null, Duration.ofSeconds(5), Runnable::run, Runnable::run, Duration.ofMinutes(5), new SimpleMeterRegistry());
+        fleetService = new FleetAnalyticsService(analyticsRepository, targetRepository, uptimeCounters, resultCache,
+                new AnalyticsQueryPlanner(analyticsRepository, new SimpleMeterRegistry()));
+    }
+
+    @Test
+    void resolveTargets_all_returnsEveryKnownTargetSorted() {
+        UUID b = UUID.fromString("00000000-0000-0000-0000-00000000000b");
+        UUID a = UUID.fromString("00000000-0000-0000-0000-00000000000a");
+        when(targetRepository.findAll()).thenReturn(List.of(
+                new Target(b, "b", "b.example", 80), new Target(a, "a", "a.example", 80)));
+
+        assertThat(fleetService.resolveTargets(List.of("all"))).containsExactly(a.toString(), b.toString());
+    }
+
+    @Test
+    void resolveTargets_explicitIds_areDeduplicatedAndCapped() {
+        assertThat(fleetService.resolveTargets(List.of("t2", " t1", "t2"))).containsExactly("t1", "t2");
+
+        List<String> tooMany = new ArrayList<>();
+        for (int i = 0; i <= FleetAnalyticsService.MAX_TARGETS; i++) {
+            tooMany.add("t" + i);
+        }
+        assertThatThrownBy(() -> fleetService.resolveTargets(tooMany))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void uptimeAndLatency_shareOneAggregation() throws IOException {
+        Map<String, AnalyticsBucket> buckets = new LinkedHashMap<>();
+        buckets.put("t1", new AnalyticsBucket(START, END, 100L, 90L, 10L, 90L, 900.0, 5.0, 20.0));
+        buckets.put("t2", AnalyticsBucket.empty(START, END));
+        when(uptimeCounters.getUptimeMetrics(anyString(), eq(START), eq(END))).thenReturn(Optional.empty());
+        when(analyticsRepository.calculateFleetBuckets(List.of("t1", "t2"), START, END)).thenReturn(buckets);
+
+        List<UptimeMetrics> uptime = fleetService.getUptimeMetrics(List.of("t1", "t2"), START, END);
+        List<LatencyMetrics> latency = fleetService.getLatencyMetrics(List.of("t1", "t2"), START, END);
+
+        assertThat(uptime).extracting(UptimeMetrics::targetId).containsExactly("t1", "t2");
+        assertThat(uptime.get(0).uptimePercentage()).isEqualTo(90.0);
+        assertThat(uptime.get(1).totalProbes()).isZero();
+        assertThat(latency.get(0).averageLatencyMs()).isEqualTo(10.0);
+        verify(analyticsRepository, times(1)).calculateFleetBuckets(List.of("t1", "t2"), START, END);
+    }
+
+    @Test
+    void getUptimeMetrics_whenCountersCoverEveryTarget_skipsElasticsearch() throws IOException {
+        when(uptimeCounters.getUptimeMetrics(anyString(), eq(START), eq(END))).thenAnswer(invocation ->
+                Optional.of(UptimeMetrics.calculate(invocation.getArgument(0), START, END, 10L, 10L, 0L)));
+
+        List<UptimeMetrics> uptime = fleetService.getUptimeMetrics(List.of("t1", "t2"), START, END);
+
+        assertThat(uptime).extracting(UptimeMetrics::uptimePercentage).containsExactly(100.0, 100.0);
+        verify(analyticsRepository, times(0)).calculateFleetBuckets(any(), any(), any());
+    }
+
+    @Test
+    void getTimeSeries_auto_splitsTheBucketBudgetAcrossTargets() throws IOException {
+        List<String> targetIds = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            targetIds.add("t" + i);
+        }
+        Map<String, List<TimeSeriesDataPoint>> series = new LinkedHashMap<>();
+        targetIds.forEach(id -> series.put(id, List.of()));
+        // 20000 buckets / 100 targets = 200 per target; a day in 200 buckets resolves to 10m
+        when(analyticsRepository.calculateFleetTimeSeries(targetIds, START, END, Duration.ofMinutes(10))).thenReturn(series);
+
+        List<TargetTimeSeries> result = fleetService.getTimeSeries(targetIds, START, END, "auto");
+
+        assertThat(result).hasSize(100);
+        assertThat(result.get(0).targetId()).isEqualTo("t0");
+    }
+
+    @Test
+    void getTimeSeries_explicitIntervalOverFleetBudget_isRejected() {
+        List<String> targetIds = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            targetIds.add("t" + i);
+        }
+
+        // 1441 one-minute buckets per target exceeds the 200 each target may use
+        assertThatThrownBy(() -> fleetService.getTimeSeries(targetIds, START, END, "1m"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void getLatencyHeatmap_roundsColumnsUpAndCachesTheMatrix() throws IOException {
+        LatencyHeatmap heatmap = new LatencyHeatmap(List.of("t1"), START, END, 600, 10.0,
+                new long[0], new double[0], new long[0][], 0, null);
+        // 995ms / 10ms rounds up to 100 columns; a day within the 200 default rows resolves to 10m
+        when(analyticsRepository.calculateLatencyHeatmap(List.of("t1"), START, END, Duration.ofMinutes(10), 10.0, 100,
+                AnalyticsQueryPlan.exact(0)))
+                .thenReturn(heatmap);
+
+        assertThat(fleetService.getLatencyHeatmap(List.of("t1"), START, END, "auto", 10.0, 995.0)).isSameAs(heatmap);
+        assertThat(fleetService.getLatencyHeatmap(List.of("t1"), START, END, "auto", 10.0, 995.0)).isSameAs(heatmap);
+        verify(analyticsRepository, times(1)).calculateLatencyHeatmap(any(), any(), any(), any(), anyDouble(), anyInt(), any());
+    }
+
+    @Test
+    void getLatencyHeatmap_invalidBucketsOrOversizedMatrix_isRejected() {
+        assertThatThrownBy(() -> fleetService.getLatencyHeatmap(List.of("t1"), START, END, "auto", 0, 1000))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> fleetService.getLatencyHeatmap(List.of("t1"), START, END, "auto", 10, 5))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> fleetService.getLatencyHeatmap(List.of("t1"), START, END, "auto", 1, 10_000))
+                .isInstanceOf(IllegalArgumentException.class);
+        // 1441 one-minute rows x 101 columns exceeds the 50000 cell budget
+        assertThatThrownBy(() -> fleetService.getLatencyHeatmap(List.of("t1"), START, END, "1m", 10, 1000))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
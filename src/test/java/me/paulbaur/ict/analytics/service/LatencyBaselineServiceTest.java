@@ -0,0 +1,107 @@
+package me.paulbaur.ict.analytics.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import me.paulbaur.ict.analytics.domain.LatencyAnomaly;
+import me.paulbaur.ict.analytics.domain.LatencyBaseline;
+import me.paulbaur.ict.analytics.event.LatencyAnomalyEvent;
+import me.paulbaur.ict.common.metrics.ProbeMetrics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class LatencyBaselineServiceTest {
+
+    private static final Instant NOW = Instant.parse("2025-12-15T12:00:00Z");
+
+    private ApplicationEventPublisher eventPublisher;
+    private SimpleMeterRegistry meterRegistry;
+    private LatencyBaselineService service;
+
+    @BeforeEach
+    void setUp() {
+        eventPublisher = mock(ApplicationEventPublisher.class);
+        meterRegistry = new SimpleMeterRegistry();
+        service = new LatencyBaselineService(eventPublisher, new ProbeMetrics(meterRegistry), meterRegistry,
+                Clock.fixed(NOW, ZoneOffset.UTC));
+    }
+
+    @Test
+    void record_convergesOnTheTargetsTypicalLatency() {
+        for (int i = 0; i < 200; i++) {
+            service.record("t1", i % 2 == 0 ? 18.0 : 22.0, NOW.plusSeconds(i));
+        }
+
+        LatencyBaseline baseline = service.getBaseline("t1");
+
+        assertThat(baseline.sampleCount()).isEqualTo(200);
+        assertThat(baseline.meanLatencyMs()).isCloseTo(20.0, within(0.5));
+        assertThat(baseline.stdDevLatencyMs()).isCloseTo(2.0, within(0.5));
+        assertThat(baseline.anomalous()).isFalse();
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+
+    @Test
+    void record_spikeAfterWarmup_publishesOneAnomalyPerRun() {
+        for (int i = 0; i < 50; i++) {
+            service.record("t1", i % 2 == 0 ? 18.0 : 22.0, NOW.plusSeconds(i));
+        }
+
+        service.record("t1", 200.0, NOW.plusSeconds(50));
+        service.record("t1", 210.0, NOW.plusSeconds(51));
+        assertThat(service.getBaseline("t1").anomalous()).isTrue();
+
+        service.record("t1", 20.0, NOW.plusSeconds(52));
+        assertThat(service.getBaseline("t1").anomalous()).isFalse();
+
+        ArgumentCaptor<LatencyAnomalyEvent> captor = ArgumentCaptor.forClass(LatencyAnomalyEvent.class);
+        verify(eventPublisher, times(1)).publishEvent(captor.capture());
+        LatencyAnomaly anomaly = captor.getValue().getAnomaly();
+        assertThat(anomaly.latencyMs()).isEqualTo(200.0);
+        assertThat(anomaly.timestamp()).isEqualTo(NOW.plusSeconds(50));
+        assertThat(anomaly.zScore()).isGreaterThan(4.0);
+        assertThat(service.getRecentAnomalies("t1", 10)).containsExactly(anomaly);
+        assertThat(service.getRecentAnomalies("t2", 10)).isEmpty();
+        assertThat(meterRegistry.get("probe.latency.anomalies").tag("targetId", "t1").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void record_duringWarmupOrBelowStdDevFloor_isNotAnomalous() {
+        for (int i = 0; i < 5; i++) {
+            service.record("t1", 20.0, NOW.plusSeconds(i));
+        }
+        service.record("t1", 500.0, NOW.plusSeconds(5));
+
+        for (int i = 0; i < 50; i++) {
+            service.record("t2", 20.0, NOW.plusSeconds(i));
+        }
+        // Zero variance: the 1ms floor keeps a 2ms wobble from being flagged
+        service.record("t2", 22.0, NOW.plusSeconds(50));
+
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+
+    @Test
+    void pruneIdleTargets_dropsTargetsWithoutRecentSamples() {
+        service.record("stale", 20.0, NOW.minus(Duration.ofDays(2)));
+        service.record("fresh", 20.0, NOW.minusSeconds(5));
+
+        service.pruneIdleTargets();
+
+        assertThat(service.getBaseline("stale").sampleCount()).isZero();
+        assertThat(service.getBaseline("fresh").sampleCount()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,135 @@
+package me.paulbaur.ict.analytics.service;
+
+import me.paulbaur.ict.analytics.domain.LatencyPercentiles;
+import me.paulbaur.ict.analytics.domain.LatencyWindow;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+class LatencyPercentileServiceTest {
+
+    private MutableClock clock;
+    private LatencyPercentileService service;
+
+    @BeforeEach
+    void setUp() {
+        clock = new MutableClock(Instant.parse("2025-12-15T12:00:30Z"));
+        service = new LatencyPercentileService(clock);
+    }
+
+    @Test
+    void getPercentiles_exposesTheTailThatAnAverageHides() {
+        for (int i = 0; i < 990; i++) {
+            service.record("t1", 10.0);
+        }
+        for (int i = 0; i < 10; i++) {
+            service.record("t1", 500.0);
+        }
+
+        LatencyPercentiles percentiles = service.getPercentiles("t1", LatencyWindow.FIVE_MINUTES);
+
+        assertThat(percentiles.sampleCount()).isEqualTo(1000);
+        assertThat(percentiles.p50LatencyMs()).isCloseTo(10.0, within(0.1));
+        assertThat(percentiles.p95LatencyMs()).isCloseTo(10.0, within(0.1));
+        assertThat(percentiles.p999LatencyMs()).isCloseTo(500.0, within(5.0));
+        assertThat(percentiles.maxLatencyMs()).isCloseTo(500.0, within(5.0));
+        assertThat(percentiles.minLatencyMs()).isCloseTo(10.0, within(0.1));
+    }
+
+    @Test
+    void windows_dropSamplesOnceTheirSlotsRotateOut() {
+        service.record("t1", 20.0);
+
+        clock.advance(Duration.ofMinutes(6));
+        service.record("t1", 40.0);
+
+        assertThat(service.getPercentiles("t1", LatencyWindow.FIVE_MINUTES).sampleCount()).isEqualTo(1);
+        assertThat(service.getPercentiles("t1", LatencyWindow.FIVE_MINUTES).maxLatencyMs()).isCloseTo(40.0, within(0.5));
+        assertThat(service.getPercentiles("t1", LatencyWindow.ONE_HOUR).sampleCount()).isEqualTo(2);
+
+        clock.advance(Duration.ofHours(25));
+        assertThat(service.getPercentiles("t1", LatencyWindow.ONE_DAY).sampleCount()).isZero();
+        assertThat(service.getPercentiles("t1", LatencyWindow.ONE_DAY).p99LatencyMs()).isNull();
+
+        service.pruneIdleTargets();
+        assertThat(service.trackedTargets()).isZero();
+    }
+
+    @Test
+    void merge_combinesEncodedHistogramsFromSeveralNodes() {
+        LatencyPercentileService otherNode = new LatencyPercentileService(clock);
+        for (int i = 0; i < 99; i++) {
+            service.record("t1", 10.0);
+        }
+        otherNode.record("t1", 1000.0);
+
+        LatencyPercentiles merged = LatencyPercentileService.merge("t1", LatencyWindow.ONE_HOUR, List.of(
+                service.getPercentiles("t1", LatencyWindow.ONE_HOUR).histogram(),
+                otherNode.getPercentiles("t1", LatencyWindow.ONE_HOUR).histogram()
+        ));
+
+        assertThat(merged.sampleCount()).isEqualTo(100);
+        assertThat(merged.p50LatencyMs()).isCloseTo(10.0, within(0.1));
+        assertThat(merged.maxLatencyMs()).isCloseTo(1000.0, within(10.0));
+    }
+
+    @Test
+    void record_clampsOutOfRangeValuesAndIgnoresInvalidOnes() {
+        service.record("t1", 120_000.0);
+        service.record("t1", -1.0);
+        service.record("t1", Double.NaN);
+
+        LatencyPercentiles percentiles = service.getPercentiles("t1", LatencyWindow.FIVE_MINUTES);
+        assertThat(percentiles.sampleCount()).isEqualTo(1);
+        assertThat(percentiles.maxLatencyMs()).isCloseTo(60_000.0, within(600.0));
+        assertThat(service.getPercentiles("unknown", LatencyWindow.FIVE_MINUTES).sampleCount()).isZero();
+    }
+
+    @Test
+    void windowAndHistogramInput_areValidated() {
+        assertThat(LatencyWindow.fromLabel("24H")).isEqualTo(LatencyWindow.ONE_DAY);
+        assertThatThrownBy(() -> LatencyWindow.fromLabel("7d")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> LatencyPercentileService.merge("t1", LatencyWindow.FIVE_MINUTES, List.of("not-a-histogram")))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> LatencyPercentileService.merge("t1", LatencyWindow.FIVE_MINUTES, Collections.singletonList(null)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static final class MutableClock extends Clock {
+        private Instant now;
+
+        private MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package me.paulbaur.ict.analytics.service;
+
+import me.paulbaur.ict.analytics.domain.FleetCycleStatus;
+import me.paulbaur.ict.analytics.domain.OutageCorrelation;
+import me.paulbaur.ict.analytics.domain.OutageScope;
+import me.paulbaur.ict.common.exception.ServiceUnavailableException;
+import me.paulbaur.ict.common.model.ProbeStatus;
+import me.paulbaur.ict.coordination.service.LeaderElectionService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class OutageCorrelationServiceTest {
+
+    private static final Instant T0 = Instant.parse("2025-12-15T10:00:00Z");
+    private static final List<String> TARGETS = List.of("a", "b", "c");
+
+    private OutageCorrelationService service;
+    private int tick;
+
+    @BeforeEach
+    void setUp() {
+        service = new OutageCorrelationService(null, 100);
+        tick = 0;
+    }
+
+    @Test
+    void getCorrelation_separatesLocalFromRemoteRounds() {
+        round(ProbeStatus.UP, ProbeStatus.UP, ProbeStatus.UP);
+        round(ProbeStatus.UP, ProbeStatus.DOWN, ProbeStatus.UP);
+        round(ProbeStatus.DOWN, ProbeStatus.DOWN, ProbeStatus.DOWN);
+        round(ProbeStatus.DOWN, ProbeStatus.DOWN, ProbeStatus.DOWN);
+        round(ProbeStatus.UP, ProbeStatus.DOWN, ProbeStatus.UP);
+        // Closes the previous round
+        service.record("a", ProbeStatus.UP, "next", T0.plusSeconds(tick));
+
+        OutageCorrelation correlation = service.getCorrelation(T0, T0.plusSeconds(3600));
+
+        assertThat(correlation.cycles()).isEqualTo(5);
+        assertThat(correlation.localOutageCycles()).isEqualTo(2);
+        assertThat(correlation.remoteOutageCycles()).isEqualTo(2);
+        assertThat(correlation.localOutages()).hasSize(1);
+        assertThat(correlation.localOutages().get(0).cycles()).isEqualTo(2);
+        assertThat(correlation.localOutages().get(0).startTime()).isEqualTo(T0.plusSeconds(6));
+        assertThat(correlation.localOutages().get(0).endTime()).isEqualTo(T0.plusSeconds(11));
+        assertThat(correlation.remoteDownCycles()).containsExactly(Map.entry("b", 2));
+    }
+
+    @Test
+    void getLatestCycle_reportsTheLastCompletedRound() {
+        round(ProbeStatus.UP, ProbeStatus.DOWN, ProbeStatus.UP);
+        assertThat(service.getLatestCycle()).isEmpty();
+
+        service.record("a", ProbeStatus.UP, "next", T0.plusSeconds(tick));
+        FleetCycleStatus latest = service.getLatestCycle().orElseThrow();
+
+        assertThat(latest.probeCycleId()).isEqualTo("cycle-0");
+        assertThat(latest.targetsProbed()).isEqualTo(3);
+        assertThat(latest.downTargetIds()).containsExactly("b");
+        assertThat(latest.scope()).isEqualTo(OutageScope.REMOTE);
+    }
+
+    @Test
+    void queries_onNonLeader_areUnavailable() {
+        LeaderElectionService leaderElectionService = mock(LeaderElectionService.class);
+        when(leaderElectionService.isLeader()).thenReturn(false);
+        OutageCorrelationService follower = new OutageCorrelationService(leaderElectionService, 100);
+
+        assertThatThrownBy(() -> follower.getCorrelation(T0, T0.plusSeconds(60)))
+                .isInstanceOf(ServiceUnavailableException.class);
+    }
+
+    private void round(ProbeStatus... statuses) {
+        for (int i = 0; i < statuses.length; i++) {
+            service.record(TARGETS.get(i), statuses[i], "cycle-" + tick, T0.plusSeconds(tick));
+            tick++;
+        }
+    }
+}
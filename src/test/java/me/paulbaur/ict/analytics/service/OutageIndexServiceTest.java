@@ -0,0 +1,116 @@
+package me.paulbaur.ict.analytics.service;
+
+import me.paulbaur.ict.analytics.domain.DownTargets;
+import me.paulbaur.ict.analytics.domain.OutageOverlap;
+import me.paulbaur.ict.analytics.domain.StateChange;
+import me.paulbaur.ict.analytics.repository.ElasticsearchAnalyticsRepository;
+import me.paulbaur.ict.common.exception.ServiceUnavailableException;
+import me.paulbaur.ict.common.model.ProbeStatus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+
+@ExtendWith(MockitoExtension.class)
+class OutageIndexServiceTest {
+
+    private static final Instant NOW = Instant.parse("2025-12-15T12:00:00Z");
+
+    @Mock
+    private ElasticsearchAnalyticsRepository analyticsRepository;
+
+    private OutageIndexService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new OutageIndexService(analyticsRepository, null, Clock.fixed(NOW, ZoneOffset.UTC));
+    }
+
+    @Test
+    void queries_beforeTheIndexIsLoaded_areUnavailable() throws IOException {
+        doThrow(new IOException("es down")).when(analyticsRepository).forEachStateChange(any(), any(), any());
+
+        service.refresh();
+
+        assertThat(service.isReady()).isFalse();
+        assertThatThrownBy(() -> service.getDownAt(NOW)).isInstanceOf(ServiceUnavailableException.class);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void rebuild_loadsTransitionsAndLiveChangesExtendIt() throws IOException {
+        doAnswer(invocation -> {
+            Consumer<StateChange> consumer = invocation.getArgument(2);
+            consumer.accept(change("t1", "2025-12-15T09:00:00Z", ProbeStatus.UP, ProbeStatus.DOWN, null));
+            // t2 was already down before the indexed history; its recovery says for how long
+            consumer.accept(change("t2", "2025-12-15T10:00:00Z", ProbeStatus.DOWN, ProbeStatus.UP, 7_200_000L));
+            consumer.accept(change("t1", "2025-12-15T11:00:00Z", ProbeStatus.DOWN, ProbeStatus.UP, 7_200_000L));
+            return null;
+        }).when(analyticsRepository).forEachStateChange(any(), any(), any(Consumer.class));
+
+        service.refresh();
+        service.apply(change("t3", "2025-12-15T11:30:00Z", ProbeStatus.UP, ProbeStatus.DOWN, 60_000L));
+
+        DownTargets downAt = service.getDownAt(Instant.parse("2025-12-15T09:30:00Z"));
+        assertThat(downAt.targetIds()).containsExactly("t1", "t2");
+        assertThat(service.getDownAt(NOW).targetIds()).containsExactly("t3");
+
+        OutageOverlap overlap = service.getOverlap(Instant.parse("2025-12-15T07:00:00Z"), NOW);
+        assertThat(overlap.targetsAffected()).isEqualTo(3);
+        assertThat(overlap.peakConcurrent()).isEqualTo(2);
+        assertThat(overlap.peakAt()).isEqualTo(Instant.parse("2025-12-15T09:00:00Z"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void rebuild_keepsOutagesThatBeganBeforeTheRetentionWindowAndAreStillOpen() throws IOException {
+        doAnswer(invocation -> {
+            Consumer<StateChange> consumer = invocation.getArgument(1);
+            consumer.accept(change("t1", "2025-10-01T00:00:00Z", ProbeStatus.UP, ProbeStatus.DOWN, null));
+            // t2 recovered before the window, t3 recovers inside it
+            consumer.accept(change("t2", "2025-10-02T00:00:00Z", ProbeStatus.DOWN, ProbeStatus.UP, 3_600_000L));
+            consumer.accept(change("t3", "2025-10-03T00:00:00Z", ProbeStatus.UP, ProbeStatus.DOWN, null));
+            return null;
+        }).when(analyticsRepository).forEachLatestStateChangeBefore(any(), any(Consumer.class));
+        doAnswer(invocation -> {
+            Consumer<StateChange> consumer = invocation.getArgument(2);
+            consumer.accept(change("t3", "2025-12-15T10:00:00Z", ProbeStatus.DOWN, ProbeStatus.UP, null));
+            return null;
+        }).when(analyticsRepository).forEachStateChange(any(), any(), any(Consumer.class));
+
+        service.refresh();
+
+        assertThat(service.getDownAt(NOW).targetIds()).containsExactly("t1");
+        assertThat(service.getDownDuring(Instant.parse("2025-12-15T09:00:00Z"), NOW).targetIds())
+                .containsExactly("t1", "t3");
+        OutageOverlap overlap = service.getOverlap(NOW.minus(Duration.ofDays(29)), NOW);
+        assertThat(overlap.targetsAffected()).isEqualTo(2);
+        assertThat(overlap.peakConcurrent()).isEqualTo(2);
+    }
+
+    @Test
+    void queries_beforeTheRetentionWindow_areRejected() throws IOException {
+        service.refresh();
+
+        assertThatThrownBy(() -> service.getDownDuring(NOW.minusSeconds(31L * 24 * 3600), NOW))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static StateChange change(String targetId, String timestamp, ProbeStatus from, ProbeStatus to, Long durationMs) {
+        return new StateChange(targetId, Instant.parse(timestamp), from, to, null, durationMs);
+    }
+}
@@ -0,0 +1,66 @@
+package me.paulbaur.ict.analytics.service;
+
+import me.paulbaur.ict.common.model.ProbeStatus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OutageIndexTest {
+
+    private static final long HOUR = 3_600_000L;
+
+    private OutageIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new OutageIndex(HOUR);
+        // a: down [1h, 3h) and [5h, open); b: down [2h, 2h30m); c: never down
+        index.apply("a", ProbeStatus.DOWN, HOUR, Long.MIN_VALUE);
+        index.apply("b", ProbeStatus.DOWN, 2 * HOUR, Long.MIN_VALUE);
+        index.apply("c", ProbeStatus.UP, 2 * HOUR, Long.MIN_VALUE);
+        index.apply("b", ProbeStatus.UP, 2 * HOUR + HOUR / 2, Long.MIN_VALUE);
+        index.apply("a", ProbeStatus.UP, 3 * HOUR, Long.MIN_VALUE);
+        index.apply("a", ProbeStatus.DOWN, 5 * HOUR, Long.MIN_VALUE);
+    }
+
+    @Test
+    void downAt_treatsOutagesAsHalfOpen() {
+        assertThat(index.targetIds(index.downAt(HOUR - 1))).isEmpty();
+        assertThat(index.targetIds(index.downAt(2 * HOUR + 1))).containsExactly("a", "b");
+        assertThat(index.targetIds(index.downAt(3 * HOUR))).isEmpty();
+        assertThat(index.targetIds(index.downAt(100 * HOUR))).containsExactly("a");
+    }
+
+    @Test
+    void downDuring_combinesSlotSummariesWithExactEdges() {
+        // Covers whole slots 1 and 2 plus partial edges
+        assertThat(index.targetIds(index.downDuring(HOUR / 2, 3 * HOUR + HOUR / 2))).containsExactly("a", "b");
+        assertThat(index.targetIds(index.downDuring(3 * HOUR, 5 * HOUR - 1))).isEmpty();
+        assertThat(index.targetIds(index.downDuring(2 * HOUR + HOUR / 2, 4 * HOUR))).containsExactly("a");
+    }
+
+    @Test
+    void peakConcurrent_countsSimultaneousOutages() {
+        assertThat(index.peakConcurrent(0, 10 * HOUR)).containsExactly(2, 2 * HOUR);
+        assertThat(index.peakConcurrent(3 * HOUR, 4 * HOUR)).containsExactly(0, 3 * HOUR);
+    }
+
+    @Test
+    void apply_ignoresReplayedTransitionsAndBackfillsUnseenStarts() {
+        index.apply("a", ProbeStatus.DOWN, HOUR, Long.MIN_VALUE);
+        assertThat(index.outageCount()).isEqualTo(3);
+
+        // Recovery whose DOWN transition predates the indexed history
+        index.apply("d", ProbeStatus.UP, 8 * HOUR, 6 * HOUR);
+        assertThat(index.targetIds(index.downAt(7 * HOUR))).containsExactly("a", "d");
+    }
+
+    @Test
+    void prune_dropsOutagesThatEndedBeforeTheCutoff() {
+        index.prune(4 * HOUR);
+
+        assertThat(index.outageCount()).isEqualTo(1);
+        assertThat(index.targetIds(index.downDuring(0, 4 * HOUR))).isEmpty();
+    }
+}
@@ -1,23 +1,36 @@
 package me.paulbaur.ict.analytics.service;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import me.paulbaur.ict.analytics.domain.AnalyticsBucket;
+import me.paulbaur.ict.analytics.domain.AnalyticsQueryPlan;
+import me.paulbaur.ict.analytics.domain.DashboardAnalytics;
 import me.paulbaur.ict.analytics.domain.LatencyMetrics;
+import me.paulbaur.ict.analytics.domain.StandardWindow;
 import me.paulbaur.ict.analytics.domain.StateChange;
 import me.paulbaur.ict.analytics.domain.TimeSeriesDataPoint;
 import me.paulbaur.ict.analytics.domain.UptimeMetrics;
 import me.paulbaur.ict.analytics.repository.ElasticsearchAnalyticsRepository;
+import me.paulbaur.ict.common.cache.SingleFlightCache;
 import me.paulbaur.ict.common.model.ProbeStatus;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
 
 import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
 import java.time.Instant;
+import java.time.ZoneOffset;
 import java.util.List;
+import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -26,21 +39,40 @@ class ProbeAnalyticsServiceTest {
     @Mock
     private ElasticsearchAnalyticsRepository analyticsRepository;
 
+    @Mock
+    private AnalyticsBucketService bucketService;
+
+    @Mock
+    private UptimeCounterService uptimeCounters;
+
+    private SingleFlightCache resultCache;
     private ProbeAnalyticsService analyticsService;
 
     private static final String TEST_TARGET_ID = "00000000-0000-0000-0000-000000000000";
     private static final Instant TEST_START = Instant.parse("2025-12-01T00:00:00Z");
     private static final Instant TEST_END = Instant.parse("2025-12-31T23:59:59Z");
+    private static final Duration REFRESH_MARGIN = Duration.ofMinutes(2);
 
     @BeforeEach
     void setUp() {
-        analyticsService = new ProbeAnalyticsService(analyticsRepository);
+        resultCache = new SingleFlightCache(
+                new ConcurrentMapCacheManager("analytics"), "analytics", Duration.ofMinutes(5), 1.0,
+                null, Duration.ofSeconds(5), Runnable::run, Runnable::run, Duration.ofMinutes(5), new SimpleMeterRegistry());
+        analyticsService = new ProbeAnalyticsService(analyticsRepository, bucketService, resultCache, uptimeCounters,
+                new AnalyticsQueryPlanner(analyticsRepository, new SimpleMeterRegistry()));
     }
 
     @Test
-    void getUptimeMetrics_whenRepositorySucceeds_returnsMetrics() throws IOException {
+    void getUptimeMetrics_whenBucketsAvailable_returnsMetrics() throws IOException {
         // Arrange
-        UptimeMetrics expectedMetrics = new UptimeMetrics(
+        AnalyticsBucket bucket = new AnalyticsBucket(TEST_START, TEST_END, 1000L, 950L, 50L, 950L, 40375.0, 10.0, 150.0);
+        when(bucketService.aggregate(TEST_TARGET_ID, TEST_START, TEST_END)).thenReturn(bucket);
+
+        // Act
+        UptimeMetrics actualMetrics = analyticsService.getUptimeMetrics(TEST_TARGET_ID, TEST_START, TEST_END);
+
+        // Assert
+        assertThat(actualMetrics).isEqualTo(new UptimeMetrics(
                 TEST_TARGET_ID,
                 TEST_START,
                 TEST_END,
@@ -48,23 +80,25 @@ class ProbeAnalyticsServiceTest {
                 950L,
                 50L,
                 95.0
-        );
-        when(analyticsRepository.calculateUptime(TEST_TARGET_ID, TEST_START, TEST_END))
-                .thenReturn(expectedMetrics);
+        ));
+        verify(bucketService).aggregate(TEST_TARGET_ID, TEST_START, TEST_END);
+    }
+
+    @Test
+    void getUptimeMetrics_forStandardWindow_isAnsweredFromCountersWithoutElasticsearch() {
+        UptimeMetrics fromCounters = UptimeMetrics.calculate(TEST_TARGET_ID, TEST_START, TEST_END, 60L, 59L, 1L);
+        when(uptimeCounters.getUptimeMetrics(TEST_TARGET_ID, TEST_START, TEST_END)).thenReturn(Optional.of(fromCounters));
 
-        // Act
         UptimeMetrics actualMetrics = analyticsService.getUptimeMetrics(TEST_TARGET_ID, TEST_START, TEST_END);
 
-        // Assert
-        assertThat(actualMetrics).isEqualTo(expectedMetrics);
-        assertThat(actualMetrics.uptimePercentage()).isEqualTo(95.0);
-        verify(analyticsRepository).calculateUptime(TEST_TARGET_ID, TEST_START, TEST_END);
+        assertThat(actualMetrics).isEqualTo(fromCounters);
+        verifyNoInteractions(bucketService, analyticsRepository);
     }
 
     @Test
     void getUptimeMetrics_whenRepositoryThrowsIOException_throwsAnalyticsException() throws IOException {
         // Arrange
-        when(analyticsRepository.calculateUptime(TEST_TARGET_ID, TEST_START, TEST_END))
+        when(bucketService.aggregate(TEST_TARGET_ID, TEST_START, TEST_END))
                 .thenThrow(new IOException("Elasticsearch connection failed"));
 
         // Act & Assert
@@ -73,39 +107,30 @@ class ProbeAnalyticsServiceTest {
                 .hasMessageContaining("Failed to calculate uptime metrics for target: " + TEST_TARGET_ID)
                 .hasCauseInstanceOf(IOException.class);
 
-        verify(analyticsRepository).calculateUptime(TEST_TARGET_ID, TEST_START, TEST_END);
+        verify(bucketService).aggregate(TEST_TARGET_ID, TEST_START, TEST_END);
     }
 
     @Test
-    void getLatencyMetrics_whenRepositorySucceeds_returnsMetrics() throws IOException {
+    void getLatencyMetrics_whenBucketsAvailable_returnsMetrics() throws IOException {
         // Arrange
-        LatencyMetrics expectedMetrics = new LatencyMetrics(
-                TEST_TARGET_ID,
-                TEST_START,
-                TEST_END,
-                42.5,
-                10.0,
-                150.0,
-                950L
-        );
-        when(analyticsRepository.calculateLatency(TEST_TARGET_ID, TEST_START, TEST_END))
-                .thenReturn(expectedMetrics);
+        AnalyticsBucket bucket = new AnalyticsBucket(TEST_START, TEST_END, 1000L, 950L, 50L, 950L, 40375.0, 10.0, 150.0);
+        when(bucketService.aggregate(TEST_TARGET_ID, TEST_START, TEST_END)).thenReturn(bucket);
 
         // Act
         LatencyMetrics actualMetrics = analyticsService.getLatencyMetrics(TEST_TARGET_ID, TEST_START, TEST_END);
 
         // Assert
-        assertThat(actualMetrics).isEqualTo(expectedMetrics);
         assertThat(actualMetrics.averageLatencyMs()).isEqualTo(42.5);
         assertThat(actualMetrics.minLatencyMs()).isEqualTo(10.0);
         assertThat(actualMetrics.maxLatencyMs()).isEqualTo(150.0);
-        verify(analyticsRepository).calculateLatency(TEST_TARGET_ID, TEST_START, TEST_END);
+        assertThat(actualMetrics.probeCount()).isEqualTo(950L);
+        verify(bucketService).aggregate(TEST_TARGET_ID, TEST_START, TEST_END);
     }
 
     @Test
     void getLatencyMetrics_whenRepositoryThrowsIOException_throwsAnalyticsException() throws IOException {
         // Arrange
-        when(analyticsRepository.calculateLatency(TEST_TARGET_ID, TEST_START, TEST_END))
+        when(bucketService.aggregate(TEST_TARGET_ID, TEST_START, TEST_END))
                 .thenThrow(new IOException("Elasticsearch connection failed"));
 
         // Act & Assert
@@ -114,7 +139,7 @@ class ProbeAnalyticsServiceTest {
                 .hasMessageContaining("Failed to calculate latency metrics for target: " + TEST_TARGET_ID)
                 .hasCauseInstanceOf(IOException.class);
 
-        verify(analyticsRepository).calculateLatency(TEST_TARGET_ID, TEST_START, TEST_END);
+        verify(bucketService).aggregate(TEST_TARGET_ID, TEST_START, TEST_END);
     }
 
     @Test
@@ -126,14 +151,16 @@ class ProbeAnalyticsServiceTest {
                         Instant.parse("2025-12-15T10:00:00Z"),
                         ProbeStatus.UP,
                         ProbeStatus.DOWN,
-                        "Connection timeout"
+                        "Connection timeout",
+                        null
                 ),
                 new StateChange(
                         TEST_TARGET_ID,
                         Instant.parse("2025-12-15T10:05:00Z"),
                         ProbeStatus.DOWN,
                         ProbeStatus.UP,
-                        null
+                        null,
+                        300_000L
                 )
         );
         when(analyticsRepository.findStateChanges(TEST_TARGET_ID, TEST_START, TEST_END, 100))
@@ -182,7 +209,7 @@ class ProbeAnalyticsServiceTest {
                         100.0
                 )
         );
-        when(analyticsRepository.calculateTimeSeries(TEST_TARGET_ID, TEST_START, TEST_END, "1h"))
+        when(analyticsRepository.calculateTimeSeries(TEST_TARGET_ID, TEST_START, TEST_END, Duration.ofHours(1)))
                 .thenReturn(expectedDataPoints);
 
         // Act
@@ -193,13 +220,13 @@ class ProbeAnalyticsServiceTest {
         assertThat(actualDataPoints).isEqualTo(expectedDataPoints);
         assertThat(actualDataPoints.get(0).uptimePercentage()).isEqualTo(96.67);
         assertThat(actualDataPoints.get(1).uptimePercentage()).isEqualTo(100.0);
-        verify(analyticsRepository).calculateTimeSeries(TEST_TARGET_ID, TEST_START, TEST_END, "1h");
+        verify(analyticsRepository).calculateTimeSeries(TEST_TARGET_ID, TEST_START, TEST_END, Duration.ofHours(1));
     }
 
     @Test
     void getTimeSeries_whenRepositoryThrowsIOException_throwsAnalyticsException() throws IOException {
         // Arrange
-        when(analyticsRepository.calculateTimeSeries(TEST_TARGET_ID, TEST_START, TEST_END, "1h"))
+        when(analyticsRepository.calculateTimeSeries(TEST_TARGET_ID, TEST_START, TEST_END, Duration.ofHours(1)))
                 .thenThrow(new IOException("Elasticsearch connection failed"));
 
         // Act & Assert
@@ -208,6 +235,131 @@ class ProbeAnalyticsServiceTest {
                 .hasMessageContaining("Failed to calculate time series for target: " + TEST_TARGET_ID)
                 .hasCauseInstanceOf(IOException.class);
 
-        verify(analyticsRepository).calculateTimeSeries(TEST_TARGET_ID, TEST_START, TEST_END, "1h");
+        verify(analyticsRepository).calculateTimeSeries(TEST_TARGET_ID, TEST_START, TEST_END, Duration.ofHours(1));
+    }
+
+    @Test
+    void getTimeSeries_autoInterval_keepsTheSeriesBounded() throws IOException {
+        // 31 days at a 200-bucket target resolves to 6h buckets
+        when(analyticsRepository.calculateTimeSeries(TEST_TARGET_ID, TEST_START, TEST_END, Duration.ofHours(6)))
+                .thenReturn(List.of());
+
+        assertThat(analyticsService.getTimeSeries(TEST_TARGET_ID, TEST_START, TEST_END, "auto")).isEmpty();
+    }
+
+    @Test
+    void getTimeSeries_explicitIntervalWithTooManyBuckets_isRejected() {
+        assertThatThrownBy(() -> analyticsService.getTimeSeries(TEST_TARGET_ID, TEST_START, TEST_END, "1m"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("maximum is 2000");
+
+        verifyNoInteractions(analyticsRepository);
+    }
+
+    @Test
+    void getDashboard_isComputedOnceAndCached() throws IOException {
+        DashboardAnalytics dashboard = new DashboardAnalytics(TEST_TARGET_ID, TEST_START, TEST_END, 21600L,
+                UptimeMetrics.calculate(TEST_TARGET_ID, TEST_START, TEST_END, 100L, 99L, 1L),
+                new LatencyMetrics(TEST_TARGET_ID, TEST_START, TEST_END, 20.0, 5.0, 80.0, 99L),
+                List.of(), null);
+        when(analyticsRepository.calculateDashboard(TEST_TARGET_ID, TEST_START, TEST_END, Duration.ofHours(6), AnalyticsQueryPlan.exact(0)))
+                .thenReturn(dashboard);
+
+        assertThat(analyticsService.getDashboard(TEST_TARGET_ID, TEST_START, TEST_END, "auto")).isEqualTo(dashboard);
+        assertThat(analyticsService.getDashboard(TEST_TARGET_ID, TEST_START, TEST_END, "6h")).isEqualTo(dashboard);
+
+        verify(analyticsRepository, times(1)).calculateDashboard(TEST_TARGET_ID, TEST_START, TEST_END, Duration.ofHours(6), AnalyticsQueryPlan.exact(0));
+        verifyNoInteractions(bucketService);
+    }
+
+    @Test
+    void getDashboard_forStandardWindow_takesUptimeFromCounters() throws IOException {
+        UptimeMetrics fromCounters = UptimeMetrics.calculate(TEST_TARGET_ID, TEST_START, TEST_END, 120L, 120L, 0L);
+        when(uptimeCounters.getUptimeMetrics(TEST_TARGET_ID, TEST_START, TEST_END)).thenReturn(Optional.of(fromCounters));
+        when(analyticsRepository.calculateDashboard(TEST_TARGET_ID, TEST_START, TEST_END, Duration.ofHours(6), AnalyticsQueryPlan.exact(0)))
+                .thenReturn(new DashboardAnalytics(TEST_TARGET_ID, TEST_START, TEST_END, 21600L,
+                        UptimeMetrics.calculate(TEST_TARGET_ID, TEST_START, TEST_END, 100L, 99L, 1L),
+                        new LatencyMetrics(TEST_TARGET_ID, TEST_START, TEST_END, 20.0, 5.0, 80.0, 99L),
+                        List.of(), null));
+
+        DashboardAnalytics dashboard = analyticsService.getDashboard(TEST_TARGET_ID, TEST_START, TEST_END, "auto");
+
+        assertThat(dashboard.uptime()).isEqualTo(fromCounters);
+        assertThat(dashboard.latency().averageLatencyMs()).isEqualTo(20.0);
+    }
+
+    @Test
+    void precomputeStandardWindow_answersLaterReadsOfThatWindowFromCache() throws IOException {
+        Instant now = Instant.parse("2025-12-15T12:00:00Z");
+        ProbeAnalyticsService service = new ProbeAnalyticsService(analyticsRepository, bucketService, resultCache,
+                uptimeCounters, new AnalyticsQueryPlanner(analyticsRepository, new SimpleMeterRegistry()),
+                Clock.fixed(now, ZoneOffset.UTC));
+        Instant windowStart = now.minus(Duration.ofHours(24));
+        DashboardAnalytics dashboard = new DashboardAnalytics(TEST_TARGET_ID, windowStart, now, 600L,
+                UptimeMetrics.calculate(TEST_TARGET_ID, windowStart, now, 100L, 99L, 1L),
+                new LatencyMetrics(TEST_TARGET_ID, windowStart, now, 20.0, 5.0, 80.0, 99L),
+                List.of(new TimeSeriesDataPoint(windowStart, 20.0, 4L, 4L, 100.0)), null);
+        when(analyticsRepository.calculateDashboard(eq(TEST_TARGET_ID), eq(windowStart), eq(now), any(), any()))
+                .thenReturn(dashboard);
+
+        assertThat(service.precomputeStandardWindow(TEST_TARGET_ID, StandardWindow.ONE_DAY, REFRESH_MARGIN)).isTrue();
+
+        // A request issued slightly earlier still describes the trailing 24h window
+        Instant end = now.minusSeconds(30);
+        Instant start = end.minus(Duration.ofHours(24));
+        assertThat(service.getUptimeMetrics(TEST_TARGET_ID, start, end)).isEqualTo(dashboard.uptime());
+        assertThat(service.getLatencyMetrics(TEST_TARGET_ID, start, end)).isEqualTo(dashboard.latency());
+        assertThat(service.getTimeSeries(TEST_TARGET_ID, start, end, "auto")).isEqualTo(dashboard.timeSeries());
+        assertThat(service.getDashboard(TEST_TARGET_ID, start, end, "auto")).isEqualTo(dashboard);
+
+        verify(analyticsRepository, times(1)).calculateDashboard(any(), any(), any(), any(), any());
+        verify(analyticsRepository, never()).calculateTimeSeries(any(), any(), any(), any());
+        verifyNoInteractions(bucketService);
+    }
+
+    @Test
+    void precomputeStandardWindow_recomputesOnlyNearExpiryAndTakesLongWindowMetricsFromBuckets() throws IOException {
+        Instant now = Instant.now();
+        ProbeAnalyticsService service = new ProbeAnalyticsService(analyticsRepository, bucketService, resultCache,
+                uptimeCounters, new AnalyticsQueryPlanner(analyticsRepository, new SimpleMeterRegistry()),
+                Clock.fixed(now, ZoneOffset.UTC));
+        Instant windowStart = now.minus(Duration.ofDays(7));
+        AnalyticsBucket bucket = new AnalyticsBucket(windowStart, now, 1000L, 990L, 10L, 990L, 19800.0, 5.0, 90.0);
+        when(bucketService.aggregate(TEST_TARGET_ID, windowStart, now)).thenReturn(bucket);
+        when(analyticsRepository.calculateDashboard(eq(TEST_TARGET_ID), eq(windowStart), eq(now), any(), any()))
+                .thenReturn(new DashboardAnalytics(TEST_TARGET_ID, windowStart, now, 3600L,
+                        UptimeMetrics.calculate(TEST_TARGET_ID, windowStart, now, 1000L, 900L, 100L),
+                        new LatencyMetrics(TEST_TARGET_ID, windowStart, now, 50.0, 5.0, 500.0, 900L),
+                        List.of(), null));
+
+        assertThat(service.precomputeStandardWindow(TEST_TARGET_ID, StandardWindow.SEVEN_DAYS, REFRESH_MARGIN)).isTrue();
+        // Entries live five minutes, so the next run leaves them alone
+        assertThat(service.precomputeStandardWindow(TEST_TARGET_ID, StandardWindow.SEVEN_DAYS, REFRESH_MARGIN)).isFalse();
+        // A margin beyond the TTL finds them close to expiry
+        assertThat(service.precomputeStandardWindow(TEST_TARGET_ID, StandardWindow.SEVEN_DAYS, Duration.ofMinutes(10))).isTrue();
+
+        verify(analyticsRepository, times(2)).calculateDashboard(any(), any(), any(), any(), any());
+        verify(bucketService, times(2)).aggregate(TEST_TARGET_ID, windowStart, now);
+
+        assertThat(service.getUptimeMetrics(TEST_TARGET_ID, windowStart, now).successfulProbes()).isEqualTo(990L);
+        assertThat(service.getLatencyMetrics(TEST_TARGET_ID, windowStart, now).averageLatencyMs()).isEqualTo(20.0);
+        verify(bucketService, times(2)).aggregate(TEST_TARGET_ID, windowStart, now);
+    }
+
+    @Test
+    void getLatencyMetrics_rangesHoursApartNearAStandardWindow_doNotShareACachedResult() throws IOException {
+        Instant now = Instant.parse("2025-12-15T12:00:00Z");
+        ProbeAnalyticsService service = new ProbeAnalyticsService(analyticsRepository, bucketService, resultCache,
+                uptimeCounters, new AnalyticsQueryPlanner(analyticsRepository, new SimpleMeterRegistry()),
+                Clock.fixed(now, ZoneOffset.UTC));
+        AnalyticsBucket bucket = new AnalyticsBucket(TEST_START, TEST_END, 10L, 10L, 0L, 10L, 200.0, 10.0, 30.0);
+        when(bucketService.aggregate(eq(TEST_TARGET_ID), any(), any())).thenReturn(bucket);
+
+        // Both within one 6h slot of the trailing 30d window, which the uptime counters accept
+        service.getLatencyMetrics(TEST_TARGET_ID, now.minus(Duration.ofDays(30)), now);
+        Instant earlierEnd = now.minus(Duration.ofHours(3));
+        service.getLatencyMetrics(TEST_TARGET_ID, earlierEnd.minus(Duration.ofDays(30)), earlierEnd);
+
+        verify(bucketService, times(2)).aggregate(eq(TEST_TARGET_ID), any(), any());
     }
 }
@@ -0,0 +1,81 @@
+package me.paulbaur.ict.analytics.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import me.paulbaur.ict.analytics.domain.StandardWindow;
+import me.paulbaur.ict.coordination.service.LeaderElectionService;
+import me.paulbaur.ict.target.domain.Target;
+import me.paulbaur.ict.target.store.TargetRepository;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class StandardWindowPrecomputeServiceTest {
+
+    private final TargetRepository targetRepository = mock(TargetRepository.class);
+    private final ProbeAnalyticsService analyticsService = mock(ProbeAnalyticsService.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    // Two runs of the default one-minute interval
+    private static final Duration MARGIN = Duration.ofMinutes(2);
+
+    @Test
+    void precompute_onLeader_computesEveryWindowOfEnabledTargetsAndSurvivesFailures() {
+        Target enabled = new Target(UUID.randomUUID(), "a", "a.example", 443, true);
+        Target failing = new Target(UUID.randomUUID(), "b", "b.example", 443, true);
+        Target disabled = new Target(UUID.randomUUID(), "c", "c.example", 443, false);
+        when(targetRepository.findAll()).thenReturn(List.of(failing, disabled, enabled));
+        when(analyticsService.precomputeStandardWindow(any(), any(), any())).thenReturn(true);
+        when(analyticsService.precomputeStandardWindow(enabled.getId().toString(), StandardWindow.THIRTY_DAYS, MARGIN))
+                .thenReturn(false);
+        doThrow(new ProbeAnalyticsService.AnalyticsException("es down", null))
+                .when(analyticsService).precomputeStandardWindow(failing.getId().toString(), StandardWindow.ONE_HOUR, MARGIN);
+
+        newService(null).precompute();
+
+        for (StandardWindow window : StandardWindow.values()) {
+            verify(analyticsService).precomputeStandardWindow(enabled.getId().toString(), window, MARGIN);
+            verify(analyticsService).precomputeStandardWindow(failing.getId().toString(), window, MARGIN);
+        }
+        verify(analyticsService, never()).precomputeStandardWindow(disabled.getId().toString(), StandardWindow.ONE_HOUR, MARGIN);
+        assertThat(windows("success")).isEqualTo(6);
+        assertThat(windows("skipped")).isEqualTo(1);
+        assertThat(windows("failure")).isEqualTo(1);
+    }
+
+    @Test
+    void precompute_onFollower_doesNothing() {
+        LeaderElectionService leaderElectionService = mock(LeaderElectionService.class);
+        when(leaderElectionService.isLeader()).thenReturn(false);
+
+        newService(leaderElectionService).precompute();
+
+        verifyNoInteractions(targetRepository, analyticsService);
+
+        when(leaderElectionService.isLeader()).thenReturn(true);
+        when(targetRepository.findAll()).thenReturn(List.of());
+        newService(leaderElectionService).precompute();
+
+        verify(targetRepository, times(1)).findAll();
+        verify(analyticsService, never()).precomputeStandardWindow(any(), any(), any());
+    }
+
+    private StandardWindowPrecomputeService newService(LeaderElectionService leaderElectionService) {
+        return new StandardWindowPrecomputeService(targetRepository, analyticsService, meterRegistry, leaderElectionService);
+    }
+
+    private double windows(String outcome) {
+        return meterRegistry.get("analytics.precompute.windows").tag("outcome", outcome).counter().count();
+    }
+}
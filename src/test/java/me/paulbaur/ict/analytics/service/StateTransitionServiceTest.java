@@ -0,0 +1,109 @@
+package me.paulbaur.ict.analytics.service;
+
+import me.paulbaur.ict.analytics.domain.StateChange;
+import me.paulbaur.ict.analytics.repository.ElasticsearchAnalyticsRepository;
+import me.paulbaur.ict.common.model.ProbeMethod;
+import me.paulbaur.ict.common.model.ProbeStatus;
+import me.paulbaur.ict.coordination.event.LeadershipChangedEvent;
+import me.paulbaur.ict.probe.domain.ProbeResult;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class StateTransitionServiceTest {
+
+    private static final String TARGET_ID = "target-1";
+    private static final Instant T0 = Instant.parse("2025-12-15T10:00:00Z");
+
+    @Mock
+    private ElasticsearchAnalyticsRepository analyticsRepository;
+
+    @Mock
+    private OutageIndexService outageIndexService;
+
+    @InjectMocks
+    private StateTransitionService service;
+
+    @Test
+    void recordTransition_firstSinceStartup_takesDurationFromLastStoredTransition() throws IOException {
+        when(analyticsRepository.findLatestStateChange(TARGET_ID)).thenReturn(Optional.of(
+                new StateChange(TARGET_ID, T0.minusSeconds(3600), ProbeStatus.DOWN, ProbeStatus.UP, null, 60_000L)));
+
+        service.recordTransition(result(T0, ProbeStatus.DOWN, "connection refused"), ProbeStatus.UP);
+
+        StateChange saved = captureSaved(1);
+        assertThat(saved.fromStatus()).isEqualTo(ProbeStatus.UP);
+        assertThat(saved.toStatus()).isEqualTo(ProbeStatus.DOWN);
+        assertThat(saved.errorMessage()).isEqualTo("connection refused");
+        assertThat(saved.durationMs()).isEqualTo(3_600_000L);
+        verify(outageIndexService).apply(saved);
+    }
+
+    @Test
+    void recordTransition_afterAnotherTransition_usesTheInMemoryStartTime() throws IOException {
+        when(analyticsRepository.findLatestStateChange(TARGET_ID)).thenReturn(Optional.empty());
+
+        service.recordTransition(result(T0, ProbeStatus.DOWN, "timeout"), ProbeStatus.UP);
+        service.recordTransition(result(T0.plusSeconds(90), ProbeStatus.UP, null), ProbeStatus.DOWN);
+
+        ArgumentCaptor<StateChange> captor = ArgumentCaptor.forClass(StateChange.class);
+        verify(analyticsRepository, times(2)).saveStateChange(captor.capture());
+        assertThat(captor.getAllValues().get(0).durationMs()).isNull();
+        assertThat(captor.getAllValues().get(1).durationMs()).isEqualTo(90_000L);
+        verify(analyticsRepository, times(1)).findLatestStateChange(TARGET_ID);
+    }
+
+    @Test
+    void recordTransition_afterLeadershipChange_readsStartTimeBackFromRepository() throws IOException {
+        when(analyticsRepository.findLatestStateChange(TARGET_ID))
+                .thenReturn(Optional.empty())
+                .thenReturn(Optional.of(new StateChange(TARGET_ID, T0.plusSeconds(30), ProbeStatus.DOWN,
+                        ProbeStatus.UP, null, 30_000L)));
+
+        service.recordTransition(result(T0, ProbeStatus.DOWN, "timeout"), ProbeStatus.UP);
+        // Another node recorded the recovery at T0+30s while this one was not the leader
+        service.handleLeadershipChanged(new LeadershipChangedEvent(this, "node-1", true));
+        service.recordTransition(result(T0.plusSeconds(90), ProbeStatus.DOWN, "timeout"), ProbeStatus.UP);
+
+        ArgumentCaptor<StateChange> captor = ArgumentCaptor.forClass(StateChange.class);
+        verify(analyticsRepository, times(2)).saveStateChange(captor.capture());
+        assertThat(captor.getAllValues().get(1).durationMs()).isEqualTo(60_000L);
+        verify(analyticsRepository, times(2)).findLatestStateChange(TARGET_ID);
+    }
+
+    @Test
+    void recordTransition_whenSaveFails_doesNotThrow() throws IOException {
+        when(analyticsRepository.findLatestStateChange(TARGET_ID)).thenThrow(new IOException("es down"));
+        doThrow(new IOException("es down")).when(analyticsRepository).saveStateChange(any());
+
+        assertThatCode(() -> service.recordTransition(result(T0, ProbeStatus.DOWN, null), ProbeStatus.UP))
+                .doesNotThrowAnyException();
+    }
+
+    private StateChange captureSaved(int times) throws IOException {
+        ArgumentCaptor<StateChange> captor = ArgumentCaptor.forClass(StateChange.class);
+        verify(analyticsRepository, times(times)).saveStateChange(captor.capture());
+        return captor.getValue();
+    }
+
+    private static ProbeResult result(Instant timestamp, ProbeStatus status, String errorMessage) {
+        return new ProbeResult(timestamp, TARGET_ID, "example.com", status == ProbeStatus.UP ? 12.0 : null,
+                "cycle", status, ProbeMethod.TCP, errorMessage);
+    }
+}
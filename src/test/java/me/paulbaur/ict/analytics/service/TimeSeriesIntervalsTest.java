@@ -0,0 +1,64 @@
+package me.paulbaur.ict.analytics.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TimeSeriesIntervalsTest {
+
+    private static final Instant END = Instant.parse("2025-12-31T00:00:00Z");
+
+    @Test
+    void resolve_auto_picksTheFinestIntervalWithinTheTarget() {
+        assertThat(resolve("auto", Duration.ofMinutes(30))).isEqualTo(Duration.ofSeconds(10));
+        assertThat(resolve(null, Duration.ofDays(1))).isEqualTo(Duration.ofMinutes(10));
+        assertThat(resolve("", Duration.ofDays(90))).isEqualTo(Duration.ofHours(12));
+        assertThat(resolve("AUTO", Duration.ofDays(3650))).isEqualTo(Duration.ofDays(7));
+    }
+
+    @Test
+    void resolve_explicit_isHonoredWithinTheCap() {
+        assertThat(resolve("30m", Duration.ofMinutes(30))).isEqualTo(Duration.ofMinutes(30));
+        assertThat(resolve("1h", Duration.ofDays(30))).isEqualTo(Duration.ofHours(1));
+        assertThat(resolve("1d", Duration.ofDays(90))).isEqualTo(Duration.ofDays(1));
+    }
+
+    @Test
+    void resolve_explicitProducingTooManyBuckets_isRejected() {
+        assertThatThrownBy(() -> resolve("1h", Duration.ofDays(90)))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("2161 buckets");
+        assertThatThrownBy(() -> resolve("0m", Duration.ofDays(1))).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> resolve("1w", Duration.ofDays(1))).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void resolve_hugeIntervalsAndRanges_areRejectedAsInvalid() {
+        assertThatThrownBy(() -> resolve("99999999999999999d", Duration.ofDays(1)))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("at most 3650d");
+        assertThatThrownBy(() -> resolve("99999999999999999999999s", Duration.ofDays(1)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> TimeSeriesIntervals.resolve("auto", Instant.MIN, Instant.MAX, 200, 2000))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void resolve_autoBeyondTheCoarsestCandidate_staysWithinTheCap() {
+        Duration range = Duration.ofDays(365 * 100);
+
+        Duration interval = resolve("auto", range);
+
+        assertThat(interval.toDays() % 7).isZero();
+        assertThat(interval).isGreaterThan(Duration.ofDays(7));
+        assertThat(TimeSeriesIntervals.bucketCount(range, interval)).isLessThanOrEqualTo(2000);
+    }
+
+    private static Duration resolve(String interval, Duration range) {
+        return TimeSeriesIntervals.resolve(interval, END.minus(range), END, 200, 2000);
+    }
+}
@@ -0,0 +1,156 @@
+package me.paulbaur.ict.analytics.service;
+
+import me.paulbaur.ict.analytics.domain.StandardWindow;
+import me.paulbaur.ict.analytics.domain.StatusCount;
+import me.paulbaur.ict.analytics.domain.UptimeMetrics;
+import me.paulbaur.ict.analytics.repository.ElasticsearchAnalyticsRepository;
+import me.paulbaur.ict.common.model.ProbeStatus;
+import me.paulbaur.ict.coordination.service.LeaderElectionService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class UptimeCounterServiceTest {
+
+    private static final String TARGET = "t1";
+
+    @Mock
+    private ElasticsearchAnalyticsRepository analyticsRepository;
+
+    private MutableClock clock;
+    private UptimeCounterService service;
+
+    @BeforeEach
+    void setUp() {
+        clock = new MutableClock(Instant.parse("2025-12-15T12:30:00Z"));
+        service = new UptimeCounterService(analyticsRepository, null, clock);
+    }
+
+    @Test
+    void getUptimeMetrics_standardWindowAfterRebuild_combinesHistoryAndLiveResults() throws IOException {
+        Instant now = clock.instant();
+        Instant twoDaysAgo = now.minus(Duration.ofDays(2));
+        doAnswer(invocation -> {
+            Duration interval = invocation.getArgument(2);
+            Consumer<StatusCount> consumer = invocation.getArgument(3);
+            if (interval.equals(StandardWindow.SEVEN_DAYS.slotDuration())) {
+                consumer.accept(new StatusCount(TARGET, twoDaysAgo.minus(Duration.ofMinutes(30)), ProbeStatus.UP, 90));
+                consumer.accept(new StatusCount(TARGET, twoDaysAgo.minus(Duration.ofMinutes(30)), ProbeStatus.DOWN, 10));
+                // Results arriving mid-rebuild are replayed; those stamped before it started are already in ES
+                service.record(TARGET, ProbeStatus.UP, now.plusSeconds(1));
+                service.record(TARGET, ProbeStatus.UP, now.minusSeconds(1));
+            }
+            return null;
+        }).when(analyticsRepository).forEachStatusCount(any(), eq(now), any(), any());
+
+        service.rebuild();
+        service.record(TARGET, ProbeStatus.DOWN, now.plusSeconds(2));
+        clock.advance(Duration.ofSeconds(3));
+
+        UptimeMetrics sevenDays = uptime(Duration.ofDays(7));
+        assertThat(sevenDays.totalProbes()).isEqualTo(102);
+        assertThat(sevenDays.successfulProbes()).isEqualTo(91);
+        assertThat(sevenDays.failedProbes()).isEqualTo(11);
+
+        UptimeMetrics oneHour = uptime(Duration.ofHours(1));
+        assertThat(oneHour.totalProbes()).isEqualTo(2);
+        assertThat(oneHour.uptimePercentage()).isEqualTo(50.0);
+    }
+
+    @Test
+    void getUptimeMetrics_slotsRotateOutOfTheWindow() {
+        service.rebuild();
+        service.record(TARGET, ProbeStatus.UP, clock.instant());
+
+        clock.advance(Duration.ofMinutes(61));
+
+        assertThat(uptime(Duration.ofHours(1)).totalProbes()).isZero();
+        assertThat(uptime(Duration.ofDays(1)).totalProbes()).isEqualTo(1);
+    }
+
+    @Test
+    void getUptimeMetrics_nonStandardRangeOrIncompleteCounters_fallsBack() throws IOException {
+        Instant now = clock.instant();
+        assertThat(service.getUptimeMetrics(TARGET, now.minus(Duration.ofHours(1)), now)).isEmpty();
+
+        doThrow(new IOException("es down")).when(analyticsRepository).forEachStatusCount(any(), any(), any(), any());
+        service.rebuild();
+        assertThat(service.isReady()).isFalse();
+
+        doAnswer(invocation -> null).when(analyticsRepository).forEachStatusCount(any(), any(), any(), any());
+        service.rebuildIfNeeded();
+        assertThat(service.isReady()).isTrue();
+        assertThat(service.getUptimeMetrics(TARGET, now.minus(Duration.ofHours(3)), now)).isEmpty();
+        assertThat(service.getUptimeMetrics(TARGET, now.minus(Duration.ofDays(2)), now.minus(Duration.ofDays(1)))).isEmpty();
+    }
+
+    @Test
+    void getUptimeMetrics_onFollowerNode_fallsBackUntilRebuiltAsLeader() {
+        LeaderElectionService leaderElection = mock(LeaderElectionService.class);
+        UptimeCounterService clustered = new UptimeCounterService(analyticsRepository, leaderElection, clock);
+        Instant now = clock.instant();
+
+        when(leaderElection.isLeader()).thenReturn(true);
+        clustered.rebuildIfNeeded();
+        assertThat(clustered.getUptimeMetrics(TARGET, now.minus(Duration.ofHours(1)), now)).isPresent();
+
+        when(leaderElection.isLeader()).thenReturn(false);
+        assertThat(clustered.getUptimeMetrics(TARGET, now.minus(Duration.ofHours(1)), now)).isEmpty();
+
+        when(leaderElection.isLeader()).thenReturn(true);
+        assertThat(clustered.getUptimeMetrics(TARGET, now.minus(Duration.ofHours(1)), now)).isEmpty();
+        clustered.rebuildIfNeeded();
+        assertThat(clustered.getUptimeMetrics(TARGET, now.minus(Duration.ofHours(1)), now)).isPresent();
+    }
+
+    private UptimeMetrics uptime(Duration window) {
+        Instant now = clock.instant();
+        return service.getUptimeMetrics(TARGET, now.minus(window), now).orElseThrow();
+    }
+
+    private static final class MutableClock extends Clock {
+        private Instant now;
+
+        private MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
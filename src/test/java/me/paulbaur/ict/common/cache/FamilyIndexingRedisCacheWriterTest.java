@@ -0,0 +1,76 @@
+package me.paulbaur.ict.common.cache;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.cache.RedisCacheWriter;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class FamilyIndexingRedisCacheWriterTest {
+
+    private final RedisCacheWriter delegate = mock(RedisCacheWriter.class);
+    private final StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+    private final StringRedisConnection connection = mock(StringRedisConnection.class);
+    private final FamilyIndexingRedisCacheWriter writer =
+            new FamilyIndexingRedisCacheWriter(delegate, redisTemplate, Set.of("probe-results"));
+
+    @Test
+    void put_indexesTheKeyUnderItsFamilyBeforeWriting() {
+        when(redisTemplate.executePipelined(any(RedisCallback.class))).thenAnswer(invocation -> {
+            RedisCallback<?> callback = invocation.getArgument(0);
+            callback.doInRedis(connection);
+            return List.of(1L, true);
+        });
+        byte[] key = bytes("probe-results::t1:20");
+        byte[] value = bytes("[]");
+
+        writer.put("probe-results", key, value, Duration.ofSeconds(60));
+
+        String indexKey = FamilyIndexingRedisCacheWriter.indexKey("probe-results", "t1:");
+        verify(connection).sAdd(indexKey, "probe-results::t1:20");
+        verify(connection).expire(indexKey, 61L);
+        verify(delegate).put("probe-results", key, value, Duration.ofSeconds(60));
+    }
+
+    @Test
+    void put_inOtherCaches_isNotIndexed() {
+        byte[] key = bytes("analytics::uptime-t1-24h");
+
+        writer.put("analytics", key, bytes("{}"), Duration.ofMinutes(5));
+
+        verify(redisTemplate, never()).executePipelined(any(RedisCallback.class));
+        verify(delegate).put("analytics", key, bytes("{}"), Duration.ofMinutes(5));
+    }
+
+    @Test
+    void put_whenIndexingFails_stillWritesTheEntry() {
+        when(redisTemplate.executePipelined(any(RedisCallback.class))).thenThrow(new IllegalStateException("redis down"));
+        byte[] key = bytes("probe-results::t1:20");
+
+        writer.put("probe-results", key, bytes("[]"), Duration.ofSeconds(60));
+
+        verify(delegate).put("probe-results", key, bytes("[]"), Duration.ofSeconds(60));
+    }
+
+    @Test
+    void familyOf_isTheKeyUpToTheFirstDelimiter() {
+        assertThat(FamilyIndexingRedisCacheWriter.familyOf("t1:20")).isEqualTo("t1:");
+        assertThat(FamilyIndexingRedisCacheWriter.familyOf("t1")).isNull();
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
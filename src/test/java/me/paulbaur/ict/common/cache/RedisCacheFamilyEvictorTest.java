@@ -0,0 +1,123 @@
+package me.paulbaur.ict.common.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.cache.transaction.TransactionAwareCacheManagerProxy;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.CALLS_REAL_METHODS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+class RedisCacheFamilyEvictorTest {
+
+    @Test
+    void evict_readsIndexedFamiliesWithoutScanning() {
+        StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+        StringRedisConnection connection = mock(StringRedisConnection.class);
+        String indexKey = FamilyIndexingRedisCacheWriter.indexKey("probe-results", "t1:");
+        when(redisTemplate.executePipelined(any(RedisCallback.class)))
+                .thenAnswer(invocation -> {
+                    RedisCallback<?> callback = invocation.getArgument(0);
+                    callback.doInRedis(connection);
+                    return List.of(new LinkedHashSet<>(List.of("probe-results::t1:20", "probe-results::t1:50")));
+                })
+                .thenAnswer(invocation -> {
+                    RedisCallback<?> callback = invocation.getArgument(0);
+                    callback.doInRedis(connection);
+                    return List.of(2L, 2L, 0L);
+                });
+
+        RedisCacheInvalidationBus bus = new RedisCacheInvalidationBus(null, "ict:cache:invalidation", "node-a");
+        RedisCacheFamilyEvictor evictor = new RedisCacheFamilyEvictor(
+                redisTemplate, new ConcurrentMapCacheManager("probe-results"), bus, Set.of("probe-results"));
+
+        long removed = evictor.evict(List.of(CacheInvalidation.prefix("probe-results", "t1:")));
+
+        assertThat(removed).isEqualTo(2);
+        verify(redisTemplate, never()).scan(any(ScanOptions.class));
+        verify(connection).sMembers(indexKey);
+        verify(connection).unlink("probe-results::t1:20", "probe-results::t1:50");
+        verify(connection).sRem(indexKey, "probe-results::t1:20", "probe-results::t1:50");
+        verify(connection).publish("ict:cache:invalidation", "node-a|P|probe-results|t1:");
+    }
+
+    @Test
+    void evict_unlinksMatchedKeysAndPublishesInOnePipeline() {
+        StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+        StringRedisConnection connection = mock(StringRedisConnection.class);
+        Cursor<String> probeResultKeys = cursor(
+                "probe-results::t1:20",
+                "probe-results::t1:50",
+                "probe-results::t10:20",
+                "probe-results::t2:20"
+        );
+        when(redisTemplate.scan(any(ScanOptions.class))).thenReturn(probeResultKeys);
+        when(redisTemplate.executePipelined(any(RedisCallback.class))).thenAnswer(invocation -> {
+            RedisCallback<?> callback = invocation.getArgument(0);
+            callback.doInRedis(connection);
+            return List.of(3L, 0L, 0L);
+        });
+
+        TwoTierCacheManager twoTierCacheManager = new TwoTierCacheManager(
+                new ConcurrentMapCacheManager("probe-results", "target-status"),
+                100, Duration.ofSeconds(30), Map.of(), new SimpleMeterRegistry(), CacheInvalidationPublisher.NOOP);
+        TwoTierCache probeResults = (TwoTierCache) twoTierCacheManager.getCache("probe-results");
+        probeResults.put("t1:20", "stale");
+        probeResults.put("t10:20", "other target");
+
+        RedisCacheInvalidationBus bus = new RedisCacheInvalidationBus(null, "ict:cache:invalidation", "node-a");
+        RedisCacheFamilyEvictor evictor = new RedisCacheFamilyEvictor(
+                redisTemplate, new TransactionAwareCacheManagerProxy(twoTierCacheManager), bus, Set.of());
+
+        long removed = evictor.evict(List.of(
+                CacheInvalidation.prefix("probe-results", "t1:"),
+                CacheInvalidation.key("target-status", "t1")
+        ));
+
+        assertThat(removed).isEqualTo(3);
+        verify(redisTemplate, times(1)).executePipelined(any(RedisCallback.class));
+        verify(connection).unlink("target-status::t1", "probe-results::t1:20", "probe-results::t1:50");
+        verify(connection).publish("ict:cache:invalidation", "node-a|P|probe-results|t1:");
+        verify(connection).publish("ict:cache:invalidation", "node-a|K|target-status|t1");
+        assertThat(probeResults.localSize()).isEqualTo(1);
+    }
+
+    @Test
+    void prefixMatcher_matchesPrefixesOfDifferentLengths() {
+        RedisCacheFamilyEvictor.PrefixMatcher matcher = new RedisCacheFamilyEvictor.PrefixMatcher(Set.of("t1:", "target-22:"));
+
+        assertThat(matcher.matches("t1:20")).isTrue();
+        assertThat(matcher.matches("target-22:5")).isTrue();
+        assertThat(matcher.matches("t10:20")).isFalse();
+        assertThat(matcher.matches("t1")).isFalse();
+        assertThat(new RedisCacheFamilyEvictor.PrefixMatcher(Set.of("")).matches("anything")).isTrue();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Cursor<String> cursor(String... keys) {
+        Iterator<String> iterator = List.of(keys).iterator();
+        Cursor<String> cursor = mock(Cursor.class, withSettings().defaultAnswer(CALLS_REAL_METHODS));
+        when(cursor.hasNext()).thenAnswer(invocation -> iterator.hasNext());
+        when(cursor.next()).thenAnswer(invocation -> iterator.next());
+        return cursor;
+    }
+}
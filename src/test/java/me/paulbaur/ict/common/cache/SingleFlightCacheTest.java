@@ -0,0 +1,257 @@
+package me.paulbaur.ict.common.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import me.paulbaur.ict.common.exception.DeadlineExceededException;
+import me.paulbaur.ict.common.web.RequestDeadline;
+import me.paulbaur.ict.coordination.service.DistributedLockService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SingleFlightCacheTest {
+
+    private static final Duration TTL = Duration.ofMinutes(5);
+
+    private ConcurrentMapCacheManager cacheManager;
+    private SimpleMeterRegistry meterRegistry;
+    private MutableClock clock;
+    private List<Runnable> refreshQueue;
+    private double randomValue;
+
+    @BeforeEach
+    void setUp() {
+        cacheManager = new ConcurrentMapCacheManager("analytics");
+        meterRegistry = new SimpleMeterRegistry();
+        clock = new MutableClock(Instant.parse("2025-12-15T12:00:00Z"));
+        refreshQueue = new ArrayList<>();
+        // ln(1.0) == 0, so no early refresh unless a test lowers it
+        randomValue = 1.0;
+    }
+
+    @Test
+    void get_concurrentMisses_shareOneComputation() throws Exception {
+        SingleFlightCache cache = newCache(null);
+        CountDownLatch loaderStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger loads = new AtomicInteger();
+
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            results.add(pool.submit(() -> cache.get("k", () -> {
+                loads.incrementAndGet();
+                loaderStarted.countDown();
+                await(release);
+                return "value";
+            })));
+            assertThat(loaderStarted.await(5, TimeUnit.SECONDS)).isTrue();
+            for (int i = 0; i < 3; i++) {
+                results.add(pool.submit(() -> cache.get("k", () -> {
+                    loads.incrementAndGet();
+                    return "duplicate";
+                })));
+            }
+            while (meterRegistry.get("cache.singleflight.coalesced").counter().count() < 3) {
+                Thread.onSpinWait();
+            }
+            release.countDown();
+
+            for (Future<String> result : results) {
+                assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo("value");
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertThat(loads).hasValue(1);
+        assertThat(cache.get("k", () -> "unexpected")).isEqualTo("value");
+    }
+
+    @Test
+    void get_sharedLoad_runsUnderItsOwnBudgetAndEachCallerWaitsUntilItsOwnDeadline() throws Exception {
+        ExecutorService loadPool = Executors.newSingleThreadExecutor();
+        ExecutorService callers = Executors.newSingleThreadExecutor();
+        SingleFlightCache cache = new SingleFlightCache(cacheManager, "analytics", TTL, 1.0, null, Duration.ofSeconds(5),
+                refreshQueue::add, loadPool, Duration.ofMinutes(5), meterRegistry, clock, () -> randomValue);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Instant> loaderDeadlines = new ArrayList<>();
+        try {
+            // An API request that is out of time gives up at once, but the computation carries on
+            try (RequestDeadline ignored = RequestDeadline.at(clock.instant())) {
+                assertThatThrownBy(() -> cache.get("k", () -> {
+                    loaderDeadlines.add(RequestDeadline.current().orElse(null));
+                    await(release);
+                    return "value";
+                })).isInstanceOf(DeadlineExceededException.class);
+            }
+
+            // A job with a long deadline shares that computation and gets its result
+            Future<String> job = callers.submit(() -> {
+                try (RequestDeadline ignored = RequestDeadline.at(clock.instant().plus(Duration.ofMinutes(5)))) {
+                    return cache.get("k", () -> "duplicate");
+                }
+            });
+            while (meterRegistry.get("cache.singleflight.coalesced").counter().count() < 1) {
+                Thread.onSpinWait();
+            }
+            release.countDown();
+
+            assertThat(job.get(5, TimeUnit.SECONDS)).isEqualTo("value");
+            assertThat(loaderDeadlines).containsExactly(clock.instant().plus(Duration.ofMinutes(5)));
+        } finally {
+            loadPool.shutdownNow();
+            callers.shutdownNow();
+        }
+    }
+
+    @Test
+    void get_loaderFailure_propagatesAndIsNotCached() {
+        SingleFlightCache cache = newCache(null);
+
+        assertThatThrownBy(() -> cache.get("k", () -> {
+            throw new IllegalStateException("es down");
+        })).isInstanceOf(IllegalStateException.class).hasMessage("es down");
+
+        assertThat(cache.get("k", () -> "recovered")).isEqualTo("recovered");
+    }
+
+    @Test
+    void get_nearExpiry_refreshesInBackgroundAndServesCurrentValue() {
+        SingleFlightCache cache = newCache(null);
+        cache.get("k", () -> "v1");
+
+        clock.advance(TTL.minusMillis(10));
+        randomValue = 1e-9; // -ln(rand) ~ 20.7, so even a 1ms computation reaches the expiry 10ms away
+
+        assertThat(cache.get("k", () -> "v2")).isEqualTo("v1");
+        assertThat(refreshQueue).hasSize(1);
+
+        refreshQueue.remove(0).run();
+
+        randomValue = 1.0;
+        assertThat(cache.get("k", () -> "unexpected")).isEqualTo("v2");
+        assertThat(meterRegistry.get("cache.singleflight.loads").tag("reason", "refresh").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void expiresWithin_isTrueForMissingEntriesAndOnceTheMarginReachesExpiry() {
+        SingleFlightCache cache = newCache(null);
+        assertThat(cache.expiresWithin("k", Duration.ofMinutes(2))).isTrue();
+
+        cache.put("k", "v", 10);
+        assertThat(cache.expiresWithin("k", Duration.ofMinutes(2))).isFalse();
+
+        clock.advance(Duration.ofMinutes(3));
+        assertThat(cache.expiresWithin("k", Duration.ofMinutes(2))).isTrue();
+    }
+
+    @Test
+    void shouldRefreshEarly_growsMoreLikelyCloserToExpiryAndForSlowComputations() {
+        SingleFlightCache cache = newCache(null);
+        long now = clock.millis();
+        randomValue = Math.exp(-1); // -ln(rand) == 1
+
+        SingleFlightCache.Entry fast = new SingleFlightCache.Entry("v", now, 100, now + 10_000);
+        SingleFlightCache.Entry slow = new SingleFlightCache.Entry("v", now, 20_000, now + 10_000);
+
+        assertThat(cache.shouldRefreshEarly(fast, now)).isFalse();
+        assertThat(cache.shouldRefreshEarly(fast, now + 9_950)).isTrue();
+        assertThat(cache.shouldRefreshEarly(slow, now)).isTrue();
+    }
+
+    @Test
+    void get_afterWaitingForAnotherNode_usesItsResult() {
+        DistributedLockService lockService = mock(DistributedLockService.class);
+        SingleFlightCache cache = newCache(lockService);
+        when(lockService.tryLock(eq("ict:lock:cache:analytics:k"), eq(5000L), anyLong(), eq(TimeUnit.MILLISECONDS)))
+                .thenAnswer(invocation -> {
+                    // The other node finishes and stores its result while this one waits
+                    cacheManager.getCache("analytics").put("k",
+                            new SingleFlightCache.Entry("from other node", clock.millis(), 10, clock.millis() + TTL.toMillis()));
+                    return true;
+                });
+
+        assertThat(cache.get("k", () -> "computed locally")).isEqualTo("from other node");
+        verify(lockService).unlock("ict:lock:cache:analytics:k");
+    }
+
+    @Test
+    void backgroundRefresh_skippedWhileAnotherNodeHoldsTheLock() {
+        DistributedLockService lockService = mock(DistributedLockService.class);
+        when(lockService.tryLock(anyString(), anyLong(), anyLong(), eq(TimeUnit.MILLISECONDS))).thenReturn(true);
+        SingleFlightCache cache = newCache(lockService);
+        cache.get("k", () -> "v1");
+
+        when(lockService.tryLock(anyString(), eq(0L), anyLong(), eq(TimeUnit.MILLISECONDS))).thenReturn(false);
+        clock.advance(TTL.minusMillis(10));
+        randomValue = 1e-9;
+        cache.get("k", () -> "v2");
+        refreshQueue.remove(0).run();
+
+        randomValue = 1.0;
+        assertThat(cache.get("k", () -> "unexpected")).isEqualTo("v1");
+    }
+
+    private SingleFlightCache newCache(DistributedLockService lockService) {
+        return new SingleFlightCache(cacheManager, "analytics", TTL, 1.0, lockService, Duration.ofSeconds(5),
+                refreshQueue::add, Runnable::run, Duration.ofMinutes(5), meterRegistry, clock, () -> randomValue);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class MutableClock extends Clock {
+        private Instant now;
+
+        private MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package me.paulbaur.ict.common.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TwoTierCacheTest {
+
+    private static final String CACHE = "probe-results";
+
+    private SimpleMeterRegistry meterRegistry;
+    private ConcurrentMapCache l2;
+    private RecordingPublisher publisher;
+    private AtomicLong nanos;
+    private TwoTierCache cache;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        l2 = new ConcurrentMapCache(CACHE, false);
+        publisher = new RecordingPublisher();
+        nanos = new AtomicLong();
+        cache = new TwoTierCache(l2, 2, Duration.ofSeconds(30), meterRegistry, publisher, nanos::get, Runnable::run);
+    }
+
+    @Test
+    void get_l2Hit_isCopiedIntoL1AndServedLocallyAfterwards() {
+        l2.put("t1-20", "value");
+
+        assertThat(cache.get("t1-20", String.class)).isEqualTo("value");
+        l2.clear();
+        assertThat(cache.get("t1-20", String.class)).isEqualTo("value");
+
+        assertThat(gets(TwoTierCache.L1, "miss")).isEqualTo(1);
+        assertThat(gets(TwoTierCache.L2, "hit")).isEqualTo(1);
+        assertThat(gets(TwoTierCache.L1, "hit")).isEqualTo(1);
+    }
+
+    @Test
+    void get_missInBothTiers_countsBothMisses() {
+        assertThat(cache.get("absent")).isNull();
+
+        assertThat(gets(TwoTierCache.L1, "miss")).isEqualTo(1);
+        assertThat(gets(TwoTierCache.L2, "miss")).isEqualTo(1);
+    }
+
+    @Test
+    void getWithLoader_loadsOnceAndPublishesTheNewValue() {
+        List<String> loads = new ArrayList<>();
+
+        String first = cache.get("t1-20", () -> {
+            loads.add("t1-20");
+            return "loaded";
+        });
+        String second = cache.get("t1-20", () -> "unexpected");
+
+        assertThat(first).isEqualTo("loaded");
+        assertThat(second).isEqualTo("loaded");
+        assertThat(loads).hasSize(1);
+        assertThat(l2.get("t1-20", String.class)).isEqualTo("loaded");
+        assertThat(publisher.messages).containsExactly("KEY:probe-results:t1-20");
+    }
+
+    @Test
+    void putAndEvict_updateBothTiersAndNotifyOtherNodes() {
+        cache.put("t1-20", "value");
+        assertThat(l2.get("t1-20", String.class)).isEqualTo("value");
+
+        cache.evict("t1-20");
+
+        assertThat(l2.get("t1-20")).isNull();
+        assertThat(cache.get("t1-20")).isNull();
+        assertThat(publisher.messages).containsExactly("KEY:probe-results:t1-20", "KEY:probe-results:t1-20");
+    }
+
+    @Test
+    void clear_dropsBothTiersAndNotifiesOtherNodes() {
+        cache.put("a", "1");
+        cache.put("b", "2");
+
+        cache.clear();
+
+        assertThat(cache.localSize()).isZero();
+        assertThat(l2.getNativeCache()).isEmpty();
+        assertThat(publisher.messages).endsWith("ALL:probe-results");
+    }
+
+    @Test
+    void applyLocal_dropsOnlyTheL1Copy() {
+        cache.put("t1:20", "stale");
+        cache.put("t1:50", "stale");
+        cache.put("t10:20", "other target");
+        l2.put("t1:20", "fresh");
+
+        cache.applyLocal(CacheInvalidation.prefix(CACHE, "t1:"));
+
+        assertThat(cache.localSize()).isEqualTo(1);
+        assertThat(cache.get("t1:20", String.class)).isEqualTo("fresh");
+        assertThat(publisher.messages).hasSize(3);
+    }
+
+    @Test
+    void l1_isBoundedBySizeAndTtl() {
+        cache.put("a", "1");
+        cache.put("b", "2");
+        cache.put("c", "3");
+        cache.cleanUpLocal();
+
+        assertThat(cache.localSize()).isEqualTo(2);
+        assertThat(evictions("size")).isEqualTo(1);
+
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(31));
+        cache.cleanUpLocal();
+
+        assertThat(cache.localSize()).isZero();
+        assertThat(evictions("expired")).isEqualTo(2);
+        // L2 is unaffected by L1 eviction
+        assertThat(cache.get("a", String.class)).isEqualTo("1");
+    }
+
+    @Test
+    void manager_capsL1TtlAtRegionTtlAndRoutesRemoteInvalidations() {
+        TwoTierCacheManager manager = new TwoTierCacheManager(
+                new ConcurrentMapCacheManager("target-status", "analytics"),
+                100,
+                Duration.ofSeconds(30),
+                Map.of("target-status", Duration.ofSeconds(10), "analytics", Duration.ofMinutes(5)),
+                meterRegistry,
+                publisher);
+
+        assertThat(manager.l1TtlFor("target-status")).isEqualTo(Duration.ofSeconds(10));
+        assertThat(manager.l1TtlFor("analytics")).isEqualTo(Duration.ofSeconds(30));
+
+        RedisCacheInvalidationBus bus = new RedisCacheInvalidationBus(null, "channel", "node-a");
+        bus.bind(manager);
+        manager.getCache("target-status").put("t1", "UP");
+
+        bus.handle("node-a|K|target-status|t1");
+        assertThat(meterRegistry.find("cache.tier.invalidations.received").counter().count()).isZero();
+
+        bus.handle("node-b|K|target-status|t1");
+        assertThat(meterRegistry.find("cache.tier.invalidations.received").counter().count()).isEqualTo(1);
+        assertThat(((TwoTierCache) manager.getCache("target-status")).localSize()).isZero();
+        // Keys may contain the separator
+        bus.handle("node-b|K|target-status|t1|extra");
+        bus.handle("node-b|P|target-status|t");
+        bus.handle("node-b|A|target-status|");
+        bus.handle("node-b|K|never-used|t1");
+        bus.handle("node-b|X|target-status|t1");
+        assertThat(meterRegistry.find("cache.tier.invalidations.received").counter().count()).isEqualTo(4);
+
+        assertThat(bus.encode(CacheInvalidation.prefix("probe-results", "t1:"))).isEqualTo("node-a|P|probe-results|t1:");
+        assertThat(bus.encode(CacheInvalidation.all("probe-results"))).isEqualTo("node-a|A|probe-results|");
+    }
+
+    private double gets(String tier, String result) {
+        return meterRegistry.get("cache.tier.gets")
+                .tag("cache", CACHE)
+                .tag("tier", tier)
+                .tag("result", result)
+                .counter()
+                .count();
+    }
+
+    private double evictions(String cause) {
+        return meterRegistry.get("cache.tier.evictions")
+                .tag("cache", CACHE)
+                .tag("cause", cause)
+                .counter()
+                .count();
+    }
+
+    private static class RecordingPublisher implements CacheInvalidationPublisher {
+        private final List<String> messages = new ArrayList<>();
+
+        @Override
+        public void publish(CacheInvalidation invalidation) {
+            messages.add(invalidation.scope() + ":" + invalidation.cacheName()
+                    + (invalidation.key() != null ? ":" + invalidation.key() : ""));
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package me.paulbaur.ict.common.config;
+
+import me.paulbaur.ict.analytics.domain.AnalyticsBucket;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CacheConfigTest {
+
+    @Test
+    void valueSerializer_roundTripsRecordsWithInstants() {
+        GenericJackson2JsonRedisSerializer serializer = CacheConfig.valueSerializer();
+        AnalyticsBucket bucket = new AnalyticsBucket(Instant.parse("2025-12-15T10:00:00Z"),
+                Instant.parse("2025-12-15T11:00:00Z"), 10, 9, 1, 10, 100.0, 5.0, 20.0);
+
+        Object read = serializer.deserialize(serializer.serialize(bucket));
+
+        assertThat(read).isEqualTo(bucket);
+    }
+}
@@ -0,0 +1,53 @@
+package me.paulbaur.ict.common.config;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.retry.Retry;
+import io.github.resilience4j.retry.RetryRegistry;
+import me.paulbaur.ict.common.exception.DeadlineExceededException;
+import org.junit.jupiter.api.Test;
+
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ResilienceConfigTest {
+
+    private final ResilienceConfig config = new ResilienceConfig();
+
+    @Test
+    void elasticsearch_requestsAbandonedAtTheDeadline_areNotRetriedAndDoNotOpenTheBreaker() {
+        Retry retry = config.elasticsearchRetry(RetryRegistry.ofDefaults(), 3, Duration.ofMillis(1));
+        CircuitBreaker breaker = config.elasticsearchCircuitBreaker(CircuitBreakerRegistry.ofDefaults(),
+                10, 5, 50, Duration.ofSeconds(10), 3);
+        AtomicInteger attempts = new AtomicInteger();
+        Supplier<Object> abandoned = CircuitBreaker.decorateSupplier(breaker, Retry.decorateSupplier(retry, () -> {
+            attempts.incrementAndGet();
+            throw new DeadlineExceededException("deadline");
+        }));
+
+        for (int i = 0; i < 10; i++) {
+            assertThatThrownBy(abandoned::get).isInstanceOf(DeadlineExceededException.class);
+        }
+
+        assertThat(attempts).hasValue(10);
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        assertThat(breaker.getMetrics().getNumberOfFailedCalls()).isZero();
+    }
+
+    @Test
+    void abandonedByCaller_treatsSocketTimeoutsAsRealFailures() {
+        assertThat(ResilienceConfig.abandonedByCaller(new DeadlineExceededException("deadline"))).isTrue();
+        assertThat(ResilienceConfig.abandonedByCaller(
+                new UncheckedIOException(new InterruptedIOException("interrupted")))).isTrue();
+        assertThat(ResilienceConfig.abandonedByCaller(
+                new UncheckedIOException(new SocketTimeoutException("read timed out")))).isFalse();
+        assertThat(ResilienceConfig.abandonedByCaller(new IllegalStateException("es down"))).isFalse();
+    }
+}
@@ -0,0 +1,93 @@
+package me.paulbaur.ict.common.elasticsearch;
+
+import co.elastic.clients.elasticsearch.ElasticsearchAsyncClient;
+import co.elastic.clients.elasticsearch.core.CountRequest;
+import co.elastic.clients.elasticsearch.core.CountResponse;
+import co.elastic.clients.transport.TransportOptions;
+import co.elastic.clients.transport.rest_client.RestClientOptions;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import me.paulbaur.ict.common.exception.DeadlineExceededException;
+import me.paulbaur.ict.common.logging.LoggingContext;
+import me.paulbaur.ict.common.web.RequestCorrelationFilter;
+import me.paulbaur.ict.common.web.RequestDeadline;
+import org.elasticsearch.client.RequestOptions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ElasticsearchRequestExecutorTest {
+
+    private final ElasticsearchAsyncClient client = mock(ElasticsearchAsyncClient.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private ElasticsearchRequestExecutor executor;
+
+    @BeforeEach
+    void setUp() {
+        executor = new ElasticsearchRequestExecutor(client, meterRegistry);
+    }
+
+    @Test
+    void execute_pastTheDeadline_cancelsTheRequest() {
+        CompletableFuture<CountResponse> pending = new CompletableFuture<>();
+        when(client.count(any(CountRequest.class))).thenReturn(pending);
+
+        try (RequestDeadline ignored = RequestDeadline.at(Instant.now().plus(Duration.ofMillis(50)))) {
+            assertThatThrownBy(() -> executor.execute(c -> c.count(CountRequest.of(r -> r.index("probe-results*")))))
+                    .isInstanceOf(DeadlineExceededException.class);
+        }
+
+        assertThat(pending).isCancelled();
+        assertThat(meterRegistry.get("elasticsearch.requests.cancelled").tag("reason", "deadline").counter().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void execute_withExpiredDeadline_doesNotSendTheRequest() {
+        try (RequestDeadline ignored = RequestDeadline.at(Instant.now().minusSeconds(1))) {
+            assertThatThrownBy(() -> executor.execute(c -> c.count(CountRequest.of(r -> r.index("probe-results*")))))
+                    .isInstanceOf(DeadlineExceededException.class);
+        }
+
+        verify(client, never()).count(any(CountRequest.class));
+    }
+
+    @Test
+    void execute_failedRequest_rethrowsItsIOException() {
+        when(client.count(any(CountRequest.class))).thenReturn(CompletableFuture.failedFuture(new IOException("connection reset")));
+
+        assertThatThrownBy(() -> executor.execute(c -> c.count(CountRequest.of(r -> r.index("probe-results*")))))
+                .isInstanceOf(IOException.class)
+                .hasMessage("connection reset");
+    }
+
+    @Test
+    void execute_tagsTheRequestWithTheRequestId() throws IOException {
+        ElasticsearchAsyncClient tagged = mock(ElasticsearchAsyncClient.class);
+        when(client._transportOptions()).thenReturn(new RestClientOptions(RequestOptions.DEFAULT));
+        when(client.withTransportOptions(any(TransportOptions.class))).thenReturn(tagged);
+        CountResponse response = CountResponse.of(r -> r.count(3).shards(s -> s.total(1).successful(1).failed(0)));
+        when(tagged.count(any(CountRequest.class))).thenReturn(CompletableFuture.completedFuture(response));
+
+        try (LoggingContext ignored = LoggingContext.withValue(RequestCorrelationFilter.MDC_KEY, "req-42")) {
+            assertThat(executor.execute(c -> c.count(CountRequest.of(r -> r.index("probe-results*")))).count()).isEqualTo(3);
+        }
+
+        ArgumentCaptor<TransportOptions> options = ArgumentCaptor.forClass(TransportOptions.class);
+        verify(client).withTransportOptions(options.capture());
+        assertThat(options.getValue().headers()).contains(Map.entry(ElasticsearchRequestExecutor.OPAQUE_ID_HEADER, "req-42"));
+    }
+}
@@ -88,6 +88,10 @@ public final class LogCapture implements AutoCloseable {
             }
         }
 
+        if (str.matches("-?\\d+\\.\\d+")) {
+            return Double.parseDouble(str);
+        }
+
         return str;
     }
 
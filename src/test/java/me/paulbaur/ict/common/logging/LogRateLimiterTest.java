@@ -0,0 +1,150 @@
+package me.paulbaur.ict.common.logging;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LogRateLimiterTest {
+
+    private final MutableClock clock = new MutableClock();
+
+    @Test
+    void shouldLog_allowsFirstEventAndSuppressesUntilIntervalElapses() {
+        LogRateLimiter limiter = new LogRateLimiter(Duration.ofSeconds(30), clock);
+
+        assertThat(limiter.shouldLog("db.example", 5432)).isTrue();
+        assertThat(limiter.shouldLog("db.example", 5432)).isFalse();
+        assertThat(limiter.shouldLog("db.example", 5433)).isTrue();
+
+        clock.advance(Duration.ofSeconds(30));
+
+        assertThat(limiter.shouldLog("db.example", 5432)).isTrue();
+    }
+
+    @Test
+    void drainSuppressed_reportsCountsPerKeyAndResets() {
+        LogRateLimiter limiter = new LogRateLimiter(Duration.ofSeconds(30), clock);
+        limiter.shouldLog("a.example", 80);
+        limiter.shouldLog("a.example", 80);
+        limiter.shouldLog("a.example", 80);
+        limiter.shouldLog("b.example", 443);
+        limiter.shouldLog("b.example", 443);
+
+        List<String> reported = new ArrayList<>();
+        long total = limiter.drainSuppressed((key, port, count) -> reported.add(key + ":" + port + "=" + count));
+
+        assertThat(total).isEqualTo(3);
+        assertThat(reported).containsExactlyInAnyOrder("a.example:80=2", "b.example:443=1");
+        assertThat(limiter.drainSuppressed((key, port, count) -> { })).isZero();
+    }
+
+    @Test
+    void shouldLog_staysBoundedAndCountsEveryEventNotLogged() {
+        LogRateLimiter limiter = new LogRateLimiter(Duration.ofSeconds(30), 8, clock);
+
+        int allowed = 0;
+        for (int port = 0; port < 1_000; port++) {
+            allowed += limiter.shouldLog("host.example", port) ? 1 : 0;
+            allowed += limiter.shouldLog("host.example", port) ? 1 : 0;
+        }
+
+        AtomicInteger keys = new AtomicInteger();
+        long total = limiter.drainSuppressed((key, port, count) -> {
+            if (key != null) {
+                keys.incrementAndGet();
+            }
+        });
+
+        assertThat(keys.get()).isLessThanOrEqualTo(8);
+        assertThat(allowed).isLessThanOrEqualTo(8);
+        assertThat(total).isEqualTo(2_000 - allowed);
+    }
+
+    @Test
+    void shouldLog_collidingKeysBeyondTheProbeLimit_doNotEvictEachOtherWithinTheInterval() {
+        LogRateLimiter limiter = new LogRateLimiter(Duration.ofSeconds(30), 8, clock);
+        int keys = 32;
+
+        int allowed = 0;
+        for (int round = 0; round < 10; round++) {
+            for (int port = 0; port < keys; port++) {
+                allowed += limiter.shouldLog("host.example", port) ? 1 : 0;
+            }
+        }
+        // At most one event per slot until the interval elapses, however the keys collide
+        assertThat(allowed).isLessThanOrEqualTo(8);
+        assertThat(limiter.drainSuppressed((key, port, count) -> { })).isEqualTo(10L * keys - allowed);
+
+        clock.advance(Duration.ofSeconds(30));
+        int allowedAfterInterval = 0;
+        for (int port = 0; port < keys; port++) {
+            allowedAfterInterval += limiter.shouldLog("host.example", port) ? 1 : 0;
+        }
+        assertThat(allowedAfterInterval).isPositive().isLessThanOrEqualTo(8 * 2);
+    }
+
+    @Test
+    void shouldLog_underContention_allowsExactlyOneEventPerKey() throws InterruptedException {
+        LogRateLimiter limiter = new LogRateLimiter(Duration.ofSeconds(30), clock);
+        int threads = 8;
+        int eventsPerThread = 1_000;
+        AtomicInteger allowed = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        for (int t = 0; t < threads; t++) {
+            executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < eventsPerThread; i++) {
+                    if (limiter.shouldLog("shared.example", 22)) {
+                        allowed.incrementAndGet();
+                    }
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(allowed.get()).isEqualTo(1);
+        assertThat(limiter.drainSuppressed((key, port, count) -> { }))
+                .isEqualTo((long) threads * eventsPerThread - 1);
+    }
+
+    private static final class MutableClock extends Clock {
+        private Instant now = Instant.parse("2025-01-01T00:00:00Z");
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
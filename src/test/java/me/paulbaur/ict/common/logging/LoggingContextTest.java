@@ -0,0 +1,43 @@
+package me.paulbaur.ict.common.logging;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.MDC;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LoggingContextTest {
+
+    @AfterEach
+    void clearMdc() {
+        MDC.clear();
+    }
+
+    @Test
+    void withValues_twoKeys_restoresPreviousValuesAndLeavesOtherKeys() {
+        MDC.put("probeCycleId", "outer-cycle");
+        MDC.put("reqId", "req-1");
+
+        try (LoggingContext ignored = LoggingContext.withValues("probeCycleId", "inner-cycle", "targetId", "t-1")) {
+            assertThat(MDC.get("probeCycleId")).isEqualTo("inner-cycle");
+            assertThat(MDC.get("targetId")).isEqualTo("t-1");
+            MDC.put("addedInside", "kept");
+        }
+
+        assertThat(MDC.get("probeCycleId")).isEqualTo("outer-cycle");
+        assertThat(MDC.get("targetId")).isNull();
+        assertThat(MDC.get("reqId")).isEqualTo("req-1");
+        assertThat(MDC.get("addedInside")).isEqualTo("kept");
+    }
+
+    @Test
+    void withValue_nullValueRemovesKeyForScope() {
+        MDC.put("reqId", "req-1");
+
+        try (LoggingContext ignored = LoggingContext.withValue("reqId", null)) {
+            assertThat(MDC.get("reqId")).isNull();
+        }
+
+        assertThat(MDC.get("reqId")).isEqualTo("req-1");
+    }
+}
@@ -7,6 +7,8 @@ import me.paulbaur.ict.common.model.ProbeStatus;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.concurrent.TimeUnit;
+
 import static org.assertj.core.api.Assertions.assertThat;
 
 class ProbeMetricsTest {
@@ -34,7 +36,7 @@ class ProbeMetricsTest {
 
     @Test
     void shouldRecordProbeLatency() {
-        probeMetrics.recordProbeLatency("target-1", ProbeMethod.TCP, 50L);
+        probeMetrics.recordProbeLatency("target-1", ProbeMethod.TCP, 50.0);
 
         double count = meterRegistry.timer("probe.latency",
                 "targetId", "target-1",
@@ -43,6 +45,17 @@ class ProbeMetricsTest {
         assertThat(count).isEqualTo(1.0);
     }
 
+    @Test
+    void shouldRecordSubMillisecondProbeLatency() {
+        probeMetrics.recordProbeLatency("target-1", ProbeMethod.TCP, 0.237);
+
+        double totalMicros = meterRegistry.timer("probe.latency",
+                "targetId", "target-1",
+                "method", "TCP").totalTime(TimeUnit.MICROSECONDS);
+
+        assertThat(totalMicros).isEqualTo(237.0);
+    }
+
     @Test
     void shouldRecordElasticsearchOperation() {
         probeMetrics.recordElasticsearchOperation("save", "success");
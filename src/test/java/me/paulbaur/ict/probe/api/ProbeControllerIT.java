@@ -47,7 +47,7 @@ class ProbeControllerIT {
                 Instant.parse("2025-11-19T12:34:56Z"),
                 "00000000-0000-0000-0000-000000000000",
                 "example.org",
-                23L,
+                23.0,
                 "cycle-123",
                 ProbeStatus.UP,
                 ProbeMethod.TCP,
@@ -61,7 +61,7 @@ class ProbeControllerIT {
                 .andExpect(jsonPath("$.timestamp").value("2025-11-19T12:34:56Z"))
                 .andExpect(jsonPath("$.targetId").value("00000000-0000-0000-0000-000000000000"))
                 .andExpect(jsonPath("$.targetHost").value("example.org"))
-                .andExpect(jsonPath("$.latencyMs").value(23))
+                .andExpect(jsonPath("$.latencyMs").value(23.0))
                 .andExpect(jsonPath("$.probeCycleId").value("cycle-123"))
                 .andExpect(jsonPath("$.status").value("UP"))
                 .andExpect(jsonPath("$.method").value("TCP"))
@@ -84,7 +84,7 @@ class ProbeControllerIT {
     void recent_withValidParams_returnsResults() throws Exception {
         String targetId = "11111111-2222-3333-4444-555555555555";
         List<ProbeResult> results = List.of(
-                new ProbeResult(Instant.parse("2025-11-19T12:34:56Z"), targetId, "one.example", 10L, "cycle-1", ProbeStatus.UP, ProbeMethod.TCP, null),
+                new ProbeResult(Instant.parse("2025-11-19T12:34:56Z"), targetId, "one.example", 10.0, "cycle-1", ProbeStatus.UP, ProbeMethod.TCP, null),
                 new ProbeResult(Instant.parse("2025-11-19T12:33:56Z"), targetId, "one.example", null, "cycle-1", ProbeStatus.DOWN, ProbeMethod.TCP, "timeout")
         );
         when(probeService.getRecentResultsForTarget(targetId, 2)).thenReturn(results);
@@ -145,7 +145,7 @@ class ProbeControllerIT {
         Instant start = Instant.parse("2025-11-19T10:00:00Z");
         Instant end = Instant.parse("2025-11-19T12:00:00Z");
         List<ProbeResult> results = List.of(
-                new ProbeResult(Instant.parse("2025-11-19T11:10:00Z"), targetId, "range.example", 42L, "cycle-5", ProbeStatus.UP, ProbeMethod.TCP, null)
+                new ProbeResult(Instant.parse("2025-11-19T11:10:00Z"), targetId, "range.example", 42.0, "cycle-5", ProbeStatus.UP, ProbeMethod.TCP, null)
         );
         when(probeService.getHistoryForTarget(targetId, 5, start, end)).thenReturn(results);
 
@@ -1,5 +1,8 @@
 package me.paulbaur.ict.probe.event;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import me.paulbaur.ict.common.cache.CacheInvalidation;
+import me.paulbaur.ict.common.cache.RedisCacheFamilyEvictor;
 import me.paulbaur.ict.common.model.ProbeMethod;
 import me.paulbaur.ict.common.model.ProbeStatus;
 import me.paulbaur.ict.probe.domain.ProbeResult;
@@ -12,8 +15,6 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.cache.Cache;
-import org.springframework.cache.CacheManager;
 import org.springframework.context.ApplicationEventPublisher;
 
 import java.time.Instant;
@@ -21,6 +22,7 @@ import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.Mockito.*;
 
 /**
@@ -34,13 +36,7 @@ class ProbeEventIntegrationTest {
     private ProbeRepository probeRepository;
 
     @Mock
-    private CacheManager cacheManager;
-
-    @Mock
-    private Cache probeResultsCache;
-
-    @Mock
-    private Cache targetStatusCache;
+    private RedisCacheFamilyEvictor cacheFamilyEvictor;
 
     @Mock
     private ApplicationEventPublisher eventPublisher;
@@ -48,12 +44,14 @@ class ProbeEventIntegrationTest {
     private ProbeResultEventPublisher publisher;
     private ElasticsearchEventListener elasticsearchListener;
     private CacheInvalidationEventListener cacheListener;
+    private SimpleMeterRegistry meterRegistry;
 
     @BeforeEach
     void setUp() {
         publisher = new ProbeResultEventPublisher(eventPublisher, probeRepository);
         elasticsearchListener = new ElasticsearchEventListener(probeRepository);
-        cacheListener = new CacheInvalidationEventListener(cacheManager);
+        meterRegistry = new SimpleMeterRegistry();
+        cacheListener = new CacheInvalidationEventListener(cacheFamilyEvictor, meterRegistry);
     }
 
     @Test
@@ -63,7 +61,7 @@ class ProbeEventIntegrationTest {
                 Instant.now(),
                 "target-123",
                 "example.com",
-                42L,
+                42.0,
                 "cycle-123",
                 ProbeStatus.UP,
                 ProbeMethod.TCP,
@@ -91,7 +89,7 @@ class ProbeEventIntegrationTest {
                 Instant.now().minusSeconds(10),
                 "target-123",
                 "example.com",
-                42L,
+                42.0,
                 "cycle-122",
                 ProbeStatus.UP,
                 ProbeMethod.TCP,
@@ -121,6 +119,7 @@ class ProbeEventIntegrationTest {
         ProbeResultEvent capturedEvent = eventCaptor.getValue();
         assertThat(capturedEvent.getResult()).isEqualTo(newResult);
         assertThat(capturedEvent.isStateChange()).isTrue(); // UP -> DOWN is a state change
+        assertThat(capturedEvent.getPreviousStatus()).isEqualTo(ProbeStatus.UP);
     }
 
     @Test
@@ -130,7 +129,7 @@ class ProbeEventIntegrationTest {
                 Instant.now(),
                 "target-123",
                 "example.com",
-                42L,
+                42.0,
                 "cycle-123",
                 ProbeStatus.UP,
                 ProbeMethod.TCP,
@@ -153,7 +152,7 @@ class ProbeEventIntegrationTest {
                 Instant.now(),
                 "target-123",
                 "example.com",
-                42L,
+                42.0,
                 "cycle-123",
                 ProbeStatus.UP,
                 ProbeMethod.TCP,
@@ -161,16 +160,21 @@ class ProbeEventIntegrationTest {
         );
 
         ProbeResultEvent event = new ProbeResultEvent(this, result, false);
+        when(cacheFamilyEvictor.evict(anyList())).thenReturn(3L);
 
-        when(cacheManager.getCache("probe-results")).thenReturn(probeResultsCache);
-        when(cacheManager.getCache("target-status")).thenReturn(targetStatusCache);
-
-        // When
+        // When - repeated results for a target within one flush interval
         cacheListener.handleProbeResultEvent(event);
-
-        // Then
-        verify(probeResultsCache).evict("target-123");
-        verify(targetStatusCache).evict("target-123");
+        cacheListener.handleProbeResultEvent(event);
+        verifyNoInteractions(cacheFamilyEvictor);
+        cacheListener.flush();
+        cacheListener.flush();
+
+        // Then - every recent page of the target is evicted once
+        verify(cacheFamilyEvictor).evict(List.of(
+                CacheInvalidation.prefix("probe-results", "target-123:")
+        ));
+        assertThat(meterRegistry.get("cache.invalidation.targets").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("cache.invalidation.keys").counter().count()).isEqualTo(3);
     }
 
     @Test
@@ -180,7 +184,7 @@ class ProbeEventIntegrationTest {
                 Instant.now(),
                 "target-123",
                 "example.com",
-                42L,
+                42.0,
                 "cycle-123",
                 ProbeStatus.UP,
                 ProbeMethod.TCP,
@@ -205,7 +209,7 @@ class ProbeEventIntegrationTest {
                 Instant.now(),
                 "target-123",
                 "example.com",
-                42L,
+                42.0,
                 "cycle-123",
                 ProbeStatus.UP,
                 ProbeMethod.TCP,
@@ -214,14 +218,17 @@ class ProbeEventIntegrationTest {
 
         ProbeResultEvent event = new ProbeResultEvent(this, result, false);
 
-        when(cacheManager.getCache("probe-results")).thenReturn(probeResultsCache);
-
-        doThrow(new RuntimeException("Cache eviction failed")).when(probeResultsCache).evict(any());
+        doThrow(new RuntimeException("Cache eviction failed")).doReturn(0L).when(cacheFamilyEvictor).evict(anyList());
 
         // When - should not throw
         cacheListener.handleProbeResultEvent(event);
-
-        // Then - verify it attempted to evict
-        verify(probeResultsCache).evict("target-123");
+        cacheListener.flush();
+
+        // Then - the target is retried on the next flush
+        cacheListener.flush();
+        verify(cacheFamilyEvictor, times(2)).evict(List.of(
+                CacheInvalidation.prefix("probe-results", "target-123:")
+        ));
+        assertThat(meterRegistry.get("cache.invalidation.failures").counter().count()).isEqualTo(1);
     }
 }
@@ -42,7 +42,7 @@ public class ElasticProbeRepositoryIT {
                 Instant.now(),
                 "t1",
                 "localhost",
-                12L,
+                12.0,
                 "cycle-it",
                 ProbeStatus.UP,
                 ProbeMethod.TCP,
@@ -69,7 +69,7 @@ public class ElasticProbeRepositoryIT {
                 Instant.now(),
                 "t1",
                 "localhost",
-                20L,
+                20.0,
                 "cycle-it",
                 ProbeStatus.DOWN,
                 ProbeMethod.TCP,
@@ -91,9 +91,9 @@ public class ElasticProbeRepositoryIT {
         String target = "t-order";
         Instant now = Instant.now();
 
-        ProbeResult newest = new ProbeResult(now, target, "host", 5L, "cycle-order", ProbeStatus.UP, ProbeMethod.TCP, null);
-        ProbeResult mid = new ProbeResult(now.minusSeconds(10), target, "host", 6L, "cycle-order", ProbeStatus.UP, ProbeMethod.TCP, null);
-        ProbeResult oldest = new ProbeResult(now.minusSeconds(20), target, "host", 7L, "cycle-order", ProbeStatus.UP, ProbeMethod.TCP, null);
+        ProbeResult newest = new ProbeResult(now, target, "host", 5.0, "cycle-order", ProbeStatus.UP, ProbeMethod.TCP, null);
+        ProbeResult mid = new ProbeResult(now.minusSeconds(10), target, "host", 6.0, "cycle-order", ProbeStatus.UP, ProbeMethod.TCP, null);
+        ProbeResult oldest = new ProbeResult(now.minusSeconds(20), target, "host", 7.0, "cycle-order", ProbeStatus.UP, ProbeMethod.TCP, null);
 
         repo.save(oldest);
         repo.save(mid);
@@ -115,10 +115,10 @@ public class ElasticProbeRepositoryIT {
         String target = "t-range";
         Instant now = Instant.now();
 
-        ProbeResult a = new ProbeResult(now.minusSeconds(30), target, "host", 1L, "cycle-range", ProbeStatus.UP, ProbeMethod.TCP, null);
-        ProbeResult b = new ProbeResult(now.minusSeconds(20), target, "host", 2L, "cycle-range", ProbeStatus.UP, ProbeMethod.TCP, null);
-        ProbeResult c = new ProbeResult(now.minusSeconds(10), target, "host", 3L, "cycle-range", ProbeStatus.UP, ProbeMethod.TCP, null);
-        ProbeResult d = new ProbeResult(now, target, "host", 4L, "cycle-range", ProbeStatus.UP, ProbeMethod.TCP, null);
+        ProbeResult a = new ProbeResult(now.minusSeconds(30), target, "host", 1.0, "cycle-range", ProbeStatus.UP, ProbeMethod.TCP, null);
+        ProbeResult b = new ProbeResult(now.minusSeconds(20), target, "host", 2.0, "cycle-range", ProbeStatus.UP, ProbeMethod.TCP, null);
+        ProbeResult c = new ProbeResult(now.minusSeconds(10), target, "host", 3.0, "cycle-range", ProbeStatus.UP, ProbeMethod.TCP, null);
+        ProbeResult d = new ProbeResult(now, target, "host", 4.0, "cycle-range", ProbeStatus.UP, ProbeMethod.TCP, null);
 
         repo.save(a);
         repo.save(b);
@@ -0,0 +1,90 @@
+package me.paulbaur.ict.probe.service;
+
+import me.paulbaur.ict.common.model.ProbeMethod;
+import me.paulbaur.ict.common.model.ProbeStatus;
+import me.paulbaur.ict.probe.domain.ProbeResult;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LttbDownsamplerTest {
+
+    private static final Instant START = Instant.parse("2025-12-15T00:00:00Z");
+
+    @Test
+    void finish_keepsAtMostMaxPointsIncludingFirstLastAndSpikes() {
+        Instant end = START.plusSeconds(10_000);
+        LttbDownsampler downsampler = new LttbDownsampler(START, end, 12);
+        for (int i = 0; i <= 10_000; i++) {
+            double latency = i == 4_321 ? 900.0 : 20.0 + (i % 7);
+            downsampler.accept(up(i, latency));
+        }
+
+        List<ProbeResult> points = downsampler.finish();
+
+        assertThat(points).hasSize(12);
+        assertThat(points.get(0).timestamp()).isEqualTo(START);
+        assertThat(points.get(points.size() - 1).timestamp()).isEqualTo(end);
+        assertThat(points).extracting(ProbeResult::latencyMs).contains(900.0);
+        assertThat(points).isSortedAccordingTo((a, b) -> a.timestamp().compareTo(b.timestamp()));
+    }
+
+    @Test
+    void finish_keepsFirstAndLastResultOfEachOutage() {
+        LttbDownsampler downsampler = new LttbDownsampler(START, START.plusSeconds(1_000), 5);
+        for (int i = 0; i <= 1_000; i++) {
+            downsampler.accept(i >= 500 && i < 520 ? down(i) : up(i, 30.0));
+        }
+
+        List<ProbeResult> points = downsampler.finish();
+
+        assertThat(points).filteredOn(p -> p.status() == ProbeStatus.DOWN)
+                .extracting(ProbeResult::timestamp)
+                .containsExactly(START.plusSeconds(500), START.plusSeconds(519));
+        assertThat(points).filteredOn(p -> p.status() == ProbeStatus.UP).hasSize(5);
+    }
+
+    @Test
+    void finish_boundsDownResultsOfLongAndFlappingOutages() {
+        LttbDownsampler downsampler = new LttbDownsampler(START, START.plusSeconds(100_000), 12);
+        for (int i = 0; i <= 100_000; i++) {
+            // Down for the first half, then flapping every other second
+            downsampler.accept(i < 50_000 || i % 2 == 0 ? down(i) : up(i, 30.0));
+        }
+
+        List<ProbeResult> points = downsampler.finish();
+
+        assertThat(points).filteredOn(p -> p.status() == ProbeStatus.DOWN).hasSizeLessThanOrEqualTo(2 * 10);
+        assertThat(points).filteredOn(p -> p.status() == ProbeStatus.DOWN)
+                .extracting(ProbeResult::timestamp)
+                .contains(START, START.plusSeconds(100_000));
+        assertThat(points).isSortedAccordingTo((a, b) -> a.timestamp().compareTo(b.timestamp()));
+    }
+
+    @Test
+    void finish_withFewerResultsThanPoints_returnsThemAll() {
+        LttbDownsampler downsampler = new LttbDownsampler(START, START.plusSeconds(100), 50);
+        downsampler.accept(up(0, 10.0));
+        downsampler.accept(up(50, 20.0));
+        downsampler.accept(up(100, 30.0));
+
+        assertThat(downsampler.finish()).extracting(ProbeResult::latencyMs).containsExactly(10.0, 20.0, 30.0);
+        assertThat(new LttbDownsampler(START, START.plusSeconds(100), 3).finish()).isEmpty();
+        assertThatThrownBy(() -> new LttbDownsampler(START, START.plusSeconds(100), 2))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static ProbeResult up(int secondsFromStart, double latencyMs) {
+        return new ProbeResult(START.plusSeconds(secondsFromStart), "t1", "example.org", latencyMs,
+                "cycle", ProbeStatus.UP, ProbeMethod.TCP, null);
+    }
+
+    private static ProbeResult down(int secondsFromStart) {
+        return new ProbeResult(START.plusSeconds(secondsFromStart), "t1", "example.org", null,
+                "cycle", ProbeStatus.DOWN, ProbeMethod.TCP, "connection timed out");
+    }
+}
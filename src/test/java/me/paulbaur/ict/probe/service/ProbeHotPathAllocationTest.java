@@ -0,0 +1,43 @@
+package me.paulbaur.ict.probe.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assumptions.assumeThat;
+
+/**
+ * Guards the bytes allocated per probe on the service hot path. The budget leaves headroom
+ * over the measured figure (see {@code ProbeHotPathBenchmark} with {@code -prof gc}); a
+ * failure here means something started allocating per probe again.
+ */
+class ProbeHotPathAllocationTest {
+
+    private static final long BYTES_PER_PROBE_BUDGET = 1_024;
+    private static final int WARMUP_PROBES = 20_000;
+    private static final int MEASURED_PROBES = 20_000;
+
+    @Test
+    void probe_staysWithinAllocationBudget() {
+        assumeThat(ManagementFactory.getThreadMXBean()).isInstanceOf(com.sun.management.ThreadMXBean.class);
+        com.sun.management.ThreadMXBean threadMXBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeThat(threadMXBean.isThreadAllocatedMemorySupported()).isTrue();
+        threadMXBean.setThreadAllocatedMemoryEnabled(true);
+
+        try (ProbeHotPathFixture fixture = new ProbeHotPathFixture()) {
+            for (int i = 0; i < WARMUP_PROBES; i++) {
+                fixture.probe();
+            }
+
+            long before = threadMXBean.getCurrentThreadAllocatedBytes();
+            for (int i = 0; i < MEASURED_PROBES; i++) {
+                fixture.probe();
+            }
+            long bytesPerProbe = (threadMXBean.getCurrentThreadAllocatedBytes() - before) / MEASURED_PROBES;
+
+            assertThat(bytesPerProbe).isLessThanOrEqualTo(BYTES_PER_PROBE_BUDGET);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package me.paulbaur.ict.probe.service;
+
+import me.paulbaur.ict.probe.domain.ProbeResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-probe cost of {@link ProbeServiceImpl} with an instant strategy. The figure to watch is
+ * {@code gc.alloc.rate.norm} (bytes per probe), which {@link ProbeHotPathAllocationTest} guards.
+ *
+ * <p>Run with {@code mvn -Pbenchmark test-compile exec:exec -Dbenchmark="ProbeHotPath -prof gc"}.</p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dlogging.level.root=WARN")
+public class ProbeHotPathBenchmark {
+
+    private ProbeHotPathFixture fixture;
+
+    @Setup
+    public void setUp() {
+        fixture = new ProbeHotPathFixture();
+    }
+
+    @TearDown
+    public void tearDown() {
+        fixture.close();
+    }
+
+    @Benchmark
+    public ProbeResult probe() {
+        return fixture.probe();
+    }
+}
@@ -0,0 +1,118 @@
+package me.paulbaur.ict.probe.service;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import me.paulbaur.ict.common.metrics.ProbeMetrics;
+import me.paulbaur.ict.common.model.ProbeMethod;
+import me.paulbaur.ict.common.model.ProbeStatus;
+import me.paulbaur.ict.probe.domain.ProbeResult;
+import me.paulbaur.ict.probe.event.ProbeResultEventPublisher;
+import me.paulbaur.ict.probe.service.strategy.ProbeStrategy;
+import me.paulbaur.ict.probe.service.strategy.ProbeStrategyFactory;
+import me.paulbaur.ict.target.domain.Target;
+import me.paulbaur.ict.target.store.TargetRepository;
+import org.slf4j.LoggerFactory;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * A {@link ProbeServiceImpl} wired with in-memory collaborators, shared by the probe hot path
+ * benchmark and allocation test. The strategy answers immediately and nothing is persisted,
+ * so what remains is the service's own per-probe work: cycle IDs, MDC scope, logging, event
+ * publication and metrics.
+ */
+public final class ProbeHotPathFixture implements AutoCloseable {
+
+    private static final Target TARGET = new Target(UUID.randomUUID(), "Hot Path", "example.com", 443);
+
+    private final ProbeServiceImpl probeService;
+    private final Logger appLogger = (Logger) LoggerFactory.getLogger("me.paulbaur.ict");
+    private final Level previousLevel;
+
+    public ProbeHotPathFixture() {
+        // Probe completion is logged at INFO; measure the path with appenders out of the picture
+        previousLevel = appLogger.getLevel();
+        appLogger.setLevel(Level.WARN);
+
+        ProbeStrategy strategy = request -> new ProbeResult(
+                Instant.EPOCH,
+                request.targetId(),
+                request.host(),
+                1.25,
+                request.probeCycleId(),
+                ProbeStatus.UP,
+                ProbeMethod.TCP,
+                null
+        );
+        ProbeRepository repository = new EmptyProbeRepository();
+        probeService = new ProbeServiceImpl(
+                new RoundRobinTargetSelector(null),
+                new ProbeStrategyFactory(null, null) {
+                    @Override
+                    public ProbeStrategy getStrategy(Target target) {
+                        return strategy;
+                    }
+                },
+                repository,
+                new EmptyTargetRepository(),
+                new ProbeMetrics(new SimpleMeterRegistry()),
+                new ProbeResultEventPublisher(event -> { }, repository)
+        );
+    }
+
+    public ProbeResult probe() {
+        return probeService.probe(TARGET);
+    }
+
+    @Override
+    public void close() {
+        appLogger.setLevel(previousLevel);
+    }
+
+    private static final class EmptyProbeRepository implements ProbeRepository {
+        @Override
+        public void save(ProbeResult result) {
+        }
+
+        @Override
+        public List<ProbeResult> findRecent(String targetId, int limit) {
+            return List.of();
+        }
+
+        @Override
+        public List<ProbeResult> findBetween(String targetId, Instant start, Instant end) {
+            return List.of();
+        }
+
+        @Override
+        public Optional<ProbeResult> findLatest() {
+            return Optional.empty();
+        }
+    }
+
+    private static final class EmptyTargetRepository implements TargetRepository {
+        @Override
+        public List<Target> findAll() {
+            return List.of();
+        }
+
+        @Override
+        public Optional<Target> findById(UUID id) {
+            return Optional.empty();
+        }
+
+        @Override
+        public Target save(Target target) {
+            return target;
+        }
+
+        @Override
+        public boolean delete(UUID id) {
+            return false;
+        }
+    }
+}
@@ -66,7 +66,7 @@ class ProbeLoggingTest {
                 Instant.parse("2024-01-01T00:00:00Z"),
                 TARGET_ID.toString(),
                 TARGET.getHost(),
-                42L,
+                42.0,
                 "strategy-cycle",
                 ProbeStatus.UP,
                 ProbeMethod.TCP,
@@ -89,7 +89,7 @@ class ProbeLoggingTest {
                     .containsEntry("method", ProbeMethod.TCP.name());
 
             assertThat(args.get("latencyMs")).isInstanceOf(Number.class);
-            assertThat(((Number) args.get("latencyMs")).longValue()).isEqualTo(result.latencyMs());
+            assertThat(((Number) args.get("latencyMs")).doubleValue()).isEqualTo(result.latencyMs());
 
             assertThat(event.getMDCPropertyMap())
                     .containsEntry("targetId", TARGET_ID.toString())
@@ -1,5 +1,6 @@
 package me.paulbaur.ict.probe.service;
 
+import me.paulbaur.ict.common.exception.QueryTooExpensiveException;
 import me.paulbaur.ict.common.metrics.ProbeMetrics;
 import me.paulbaur.ict.common.model.ProbeMethod;
 import me.paulbaur.ict.common.model.ProbeStatus;
@@ -16,6 +17,7 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.time.Instant;
 import java.util.ArrayList;
@@ -24,6 +26,7 @@ import java.util.Optional;
 import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.verify;
 
@@ -70,7 +73,7 @@ class ProbeServiceImplTest {
     @Test
     void probe_whenStrategySucceeds_callsStrategyAndSavesResult() {
         // Arrange
-        ProbeResult successResult = new ProbeResult(Instant.now(), TEST_TARGET_ID.toString(), "example.com", 100L, "cycle-from-strategy", ProbeStatus.UP, ProbeMethod.TCP, null);
+        ProbeResult successResult = new ProbeResult(Instant.now(), TEST_TARGET_ID.toString(), "example.com", 100.0, "cycle-from-strategy", ProbeStatus.UP, ProbeMethod.TCP, null);
         probeStrategySpy.setNextResult(successResult);
 
         // Act
@@ -114,7 +117,7 @@ class ProbeServiceImplTest {
     void runScheduledProbes_whenTargetAvailable_probesTarget() {
         // Arrange
         targetSelectorStub.setNextTarget(TEST_TARGET);
-        ProbeResult successResult = new ProbeResult(Instant.now(), TEST_TARGET_ID.toString(), "example.com", 100L, "cycle-from-strategy", ProbeStatus.UP, ProbeMethod.TCP, null);
+        ProbeResult successResult = new ProbeResult(Instant.now(), TEST_TARGET_ID.toString(), "example.com", 100.0, "cycle-from-strategy", ProbeStatus.UP, ProbeMethod.TCP, null);
         probeStrategySpy.setNextResult(successResult);
 
         // Act
@@ -141,7 +144,7 @@ class ProbeServiceImplTest {
     @Test
     void getLatestResult_whenResultPresent_returnsResult() {
         // Arrange
-        ProbeResult latestResult = new ProbeResult(Instant.now(), TEST_TARGET_ID.toString(), "example.com", 50L, "cycle-latest", ProbeStatus.UP, ProbeMethod.TCP, null);
+        ProbeResult latestResult = new ProbeResult(Instant.now(), TEST_TARGET_ID.toString(), "example.com", 50.0, "cycle-latest", ProbeStatus.UP, ProbeMethod.TCP, null);
         probeRepositoryStub.setNextLatestResult(latestResult);
 
         // Act
@@ -163,6 +166,39 @@ class ProbeServiceImplTest {
         assertThat(result).isEmpty();
     }
 
+    @Test
+    void getDownsampledHistoryForTarget_rejectsRangeWithMoreResultsThanMayBeScanned() {
+        ReflectionTestUtils.setField(probeService, "downsampleMaxScan", 3);
+        Instant start = Instant.parse("2025-12-15T00:00:00Z");
+        for (int i = 0; i < 4; i++) {
+            probeRepositoryStub.save(upResult(start.plusSeconds(i)));
+        }
+
+        assertThatThrownBy(() -> probeService.getDownsampledHistoryForTarget(
+                TEST_TARGET_ID.toString(), start, start.plusSeconds(10), 10))
+                .isInstanceOf(QueryTooExpensiveException.class);
+    }
+
+    @Test
+    void getDownsampledHistoryForTarget_returnsRangeThatFitsTheScanLimit() {
+        ReflectionTestUtils.setField(probeService, "downsampleMaxScan", 3);
+        Instant start = Instant.parse("2025-12-15T00:00:00Z");
+        for (int i = 0; i < 3; i++) {
+            probeRepositoryStub.save(upResult(start.plusSeconds(i)));
+        }
+
+        List<ProbeResult> history = probeService.getDownsampledHistoryForTarget(
+                TEST_TARGET_ID.toString(), start, start.plusSeconds(10), 10);
+
+        assertThat(history).extracting(ProbeResult::timestamp)
+                .containsExactly(start.plusSeconds(2), start.plusSeconds(1), start);
+    }
+
+    private static ProbeResult upResult(Instant timestamp) {
+        return new ProbeResult(timestamp, TEST_TARGET_ID.toString(), "example.com", 20.0, "cycle",
+                ProbeStatus.UP, ProbeMethod.TCP, null);
+    }
+
     // --- Test Doubles ---
 
     static class ProbeStrategyFactoryStub extends ProbeStrategyFactory {
@@ -222,7 +258,7 @@ class ProbeServiceImplTest {
 
         @Override
         public List<ProbeResult> findBetween(String targetId, Instant start, Instant end) {
-            return List.of();
+            return new ArrayList<>(savedResults);
         }
 
         public List<ProbeResult> getSavedResults() {
@@ -8,6 +8,8 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.test.util.ReflectionTestUtils;
 
+import java.time.Instant;
+
 import static org.assertj.core.api.Assertions.assertThat;
 
 /**
@@ -47,8 +49,42 @@ class IcmpProbeStrategyTest {
         assertThat(result.method()).isEqualTo(ProbeMethod.ICMP);
         assertThat(result.status()).isEqualTo(ProbeStatus.UP);
         assertThat(result.errorMessage()).isNull();
-        // Latency may be null if parsing fails, but status should still be UP
-        // assertThat(result.latencyMs()).isNotNull();  // Optional check
+        assertThat(result.latencyMs()).isNotNull();
+    }
+
+    @Test
+    void interpretExit_successWithoutParsedReply_isDown() {
+        ProbeRequest request = new ProbeRequest("test-target-id", "127.0.0.1", 0, "test-cycle-id");
+        String output = """
+                PING 127.0.0.1 (127.0.0.1) 32(60) bytes of data.
+
+                --- 127.0.0.1 ping statistics ---
+                1 packets transmitted, 1 received, 0% packet loss
+                """;
+
+        ProbeResult single = icmpProbeStrategy.interpretExit(Instant.now(), request, 0, output, 1);
+        ProbeResult burst = icmpProbeStrategy.interpretExit(Instant.now(), request, 0, output, 5);
+
+        assertThat(single.status()).isEqualTo(ProbeStatus.DOWN);
+        assertThat(single.latencyMs()).isNull();
+        assertThat(single.errorMessage()).contains("no reply");
+        assertThat(burst.status()).isEqualTo(ProbeStatus.DOWN);
+        assertThat(burst.errorMessage()).contains("no reply");
+        assertThat(burst.burst().packetLoss()).isEqualTo(1.0);
+    }
+
+    @Test
+    void interpretExit_successWithParsedReply_isUpWithLatency() {
+        ProbeRequest request = new ProbeRequest("test-target-id", "127.0.0.1", 0, "test-cycle-id");
+        String output = System.getProperty("os.name").toLowerCase().contains("win")
+                ? "Reply from 127.0.0.1: bytes=32 time=3ms TTL=128\n"
+                : "40 bytes from 127.0.0.1: icmp_seq=1 ttl=64 time=0.042 ms\n";
+
+        ProbeResult result = icmpProbeStrategy.interpretExit(Instant.now(), request, 0, output, 1);
+
+        assertThat(result.status()).isEqualTo(ProbeStatus.UP);
+        assertThat(result.latencyMs()).isNotNull();
+        assertThat(result.errorMessage()).isNull();
     }
 
     @Test
@@ -0,0 +1,78 @@
+package me.paulbaur.ict.probe.service.strategy;
+
+import me.paulbaur.ict.probe.domain.BurstStatistics;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class LatencyAccumulatorTest {
+
+    @Test
+    void toStatistics_computesMinMedianMaxJitterAndLoss() {
+        LatencyAccumulator accumulator = new LatencyAccumulator(5);
+        accumulator.reset(5);
+
+        accumulator.recordSample(10_000_000); // 10ms
+        accumulator.recordSample(14_000_000); // 14ms
+        accumulator.recordSample(12_000_000); // 12ms
+        accumulator.recordSample(20_000_000); // 20ms
+        // fifth sample lost
+
+        BurstStatistics stats = accumulator.toStatistics();
+
+        assertThat(stats.samples()).isEqualTo(5);
+        assertThat(stats.received()).isEqualTo(4);
+        assertThat(stats.minLatencyMs()).isEqualTo(10.0);
+        assertThat(stats.medianLatencyMs()).isEqualTo(13.0);
+        assertThat(stats.maxLatencyMs()).isEqualTo(20.0);
+        // |14-10| + |12-14| + |20-12| = 14 over 3 pairs
+        assertThat(stats.jitterMs()).isCloseTo(14.0 / 3, within(1e-9));
+        assertThat(stats.packetLoss()).isEqualTo(0.2);
+    }
+
+    @Test
+    void toStatistics_whenNothingReceived_reportsFullLoss() {
+        LatencyAccumulator accumulator = new LatencyAccumulator(3);
+        accumulator.reset(3);
+
+        BurstStatistics stats = accumulator.toStatistics();
+
+        assertThat(stats.received()).isZero();
+        assertThat(stats.medianLatencyMs()).isNull();
+        assertThat(stats.jitterMs()).isNull();
+        assertThat(stats.packetLoss()).isEqualTo(1.0);
+    }
+
+    @Test
+    void reset_clearsPreviousBurstAndGrowsCapacity() {
+        LatencyAccumulator accumulator = new LatencyAccumulator(1);
+        accumulator.reset(1);
+        accumulator.recordSample(50_000_000);
+
+        accumulator.reset(3);
+        accumulator.recordSample(1_000_000);
+        accumulator.recordSample(3_000_000);
+        accumulator.recordSample(2_000_000);
+
+        BurstStatistics stats = accumulator.toStatistics();
+
+        assertThat(stats.received()).isEqualTo(3);
+        assertThat(stats.medianLatencyMs()).isEqualTo(2.0);
+        assertThat(stats.maxLatencyMs()).isEqualTo(3.0);
+        assertThat(stats.packetLoss()).isZero();
+    }
+
+    @Test
+    void recordSample_ignoresSamplesBeyondExpectedCount() {
+        LatencyAccumulator accumulator = new LatencyAccumulator(2);
+        accumulator.reset(2);
+
+        accumulator.recordSample(1_000_000);
+        accumulator.recordSample(2_000_000);
+        accumulator.recordSample(3_000_000);
+
+        assertThat(accumulator.received()).isEqualTo(2);
+        assertThat(accumulator.toStatistics().maxLatencyMs()).isEqualTo(2.0);
+    }
+}
@@ -0,0 +1,107 @@
+package me.paulbaur.ict.probe.service.strategy;
+
+import me.paulbaur.ict.common.model.ProbeMethod;
+import me.paulbaur.ict.common.model.ProbeStatus;
+import me.paulbaur.ict.probe.domain.ProbeRequest;
+import me.paulbaur.ict.probe.domain.ProbeResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the TCP probe failure path for a fleet where every target refuses connections.
+ *
+ * <p>{@code exceptionWrapping} reproduces the previous implementation: the connect
+ * {@link IOException} is wrapped in a {@link RuntimeException} inside the retry lambda and
+ * unwrapped with an {@code instanceof} chain. {@code typedOutcome} runs the current
+ * {@link TcpProbeStrategy}. Both sockets throw the same exception the JDK would, so the
+ * difference is the cost added on top of it.</p>
+ *
+ * <p>Run with {@code mvn -Pbenchmark test-compile exec:exec -Dbenchmark=TcpProbeFailurePath};
+ * append {@code -prof gc} via {@code -Dbenchmark="TcpProbeFailurePath -prof gc"} for allocation rates.</p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TcpProbeFailurePathBenchmark {
+
+    private TcpProbeStrategy strategy;
+    private ProbeRequest request;
+
+    @Setup
+    public void setUp() {
+        strategy = new TcpProbeStrategy(RefusingSocket::new, null);
+        request = new ProbeRequest(UUID.randomUUID().toString(), "127.0.0.1", 1, UUID.randomUUID().toString());
+    }
+
+    @Benchmark
+    public ProbeResult typedOutcome() {
+        return strategy.probe(request);
+    }
+
+    @Benchmark
+    public ProbeResult exceptionWrapping() {
+        Instant start = Instant.now();
+        try {
+            double latencyMs;
+            try (Socket socket = new RefusingSocket()) {
+                long beforeConnect = System.nanoTime();
+                socket.connect(new InetSocketAddress(request.host(), request.port()), 1000);
+                latencyMs = (System.nanoTime() - beforeConnect) / 1_000_000.0;
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            return result(start, ProbeStatus.UP, latencyMs, null);
+        } catch (RuntimeException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SocketTimeoutException) {
+                return result(start, ProbeStatus.DOWN, null, "connection timed out");
+            } else if (cause instanceof ConnectException) {
+                return result(start, ProbeStatus.DOWN, null, "connection refused");
+            } else if (cause instanceof UnknownHostException) {
+                return result(start, ProbeStatus.DOWN, null, "unknown host");
+            } else if (cause instanceof IOException) {
+                return result(start, ProbeStatus.DOWN, null, "I/O error: " + cause.getMessage());
+            }
+            return result(start, ProbeStatus.DOWN, null, "unexpected error: " + e.getMessage());
+        }
+    }
+
+    private ProbeResult result(Instant start, ProbeStatus status, Double latencyMs, String errorMessage) {
+        return new ProbeResult(start, request.targetId(), request.host(), latencyMs,
+                request.probeCycleId(), status, ProbeMethod.TCP, errorMessage);
+    }
+
+    private static class RefusingSocket extends Socket {
+        @Override
+        public void connect(SocketAddress endpoint, int timeout) throws IOException {
+            throw new ConnectException("Connection refused");
+        }
+
+        @Override
+        public void close() {
+            // nothing was opened
+        }
+    }
+}
@@ -1,20 +1,26 @@
 package me.paulbaur.ict.probe.service.strategy;
 
+import io.github.resilience4j.retry.Retry;
+import io.github.resilience4j.retry.RetryConfig;
 import me.paulbaur.ict.common.model.ProbeMethod;
 import me.paulbaur.ict.common.model.ProbeStatus;
 import me.paulbaur.ict.probe.domain.ProbeRequest;
 import me.paulbaur.ict.probe.domain.ProbeResult;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.Timeout;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.io.IOException;
 import java.net.ConnectException;
 import java.net.InetSocketAddress;
+import java.net.NoRouteToHostException;
 import java.net.Socket;
 import java.net.SocketAddress;
 import java.net.SocketTimeoutException;
 import java.net.UnknownHostException;
+import java.time.Duration;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -82,6 +88,110 @@ class TcpProbeStrategyTest {
         assertThat(result.method()).isEqualTo(ProbeMethod.TCP);
     }
 
+    @Test
+    @Timeout(2)
+    void probe_inBurstMode_reportsLossAndMedianLatency() {
+        AtomicInteger attempts = new AtomicInteger();
+        // every second connect is refused
+        TcpProbeStrategy strategy = new TcpProbeStrategy(
+                () -> attempts.getAndIncrement() % 2 == 0 ? new SuccessSocket() : new ConnectionRefusedSocket(),
+                null
+        );
+        ReflectionTestUtils.setField(strategy, "burstSamples", 4);
+        ProbeRequest request = new ProbeRequest(UUID.randomUUID().toString(), "localhost", 80, UUID.randomUUID().toString());
+
+        ProbeResult result = strategy.probe(request);
+
+        assertThat(attempts.get()).isEqualTo(4);
+        assertThat(result.status()).isEqualTo(ProbeStatus.UP);
+        assertThat(result.latencyMs()).isNotNull();
+        assertThat(result.burst()).isNotNull();
+        assertThat(result.burst().samples()).isEqualTo(4);
+        assertThat(result.burst().received()).isEqualTo(2);
+        assertThat(result.burst().packetLoss()).isEqualTo(0.5);
+        assertThat(result.burst().jitterMs()).isNotNull();
+    }
+
+    @Test
+    @Timeout(2)
+    void probe_inBurstMode_whenEverySampleFails_returnsDown() {
+        TcpProbeStrategy strategy = new TcpProbeStrategy(ConnectionRefusedSocket::new, null);
+        ReflectionTestUtils.setField(strategy, "burstSamples", 3);
+        ProbeRequest request = new ProbeRequest(UUID.randomUUID().toString(), "localhost", 1, UUID.randomUUID().toString());
+
+        ProbeResult result = strategy.probe(request);
+
+        assertThat(result.status()).isEqualTo(ProbeStatus.DOWN);
+        assertThat(result.latencyMs()).isNull();
+        assertThat(result.errorMessage()).isEqualTo("connection refused");
+        assertThat(result.burst().received()).isZero();
+        assertThat(result.burst().packetLoss()).isEqualTo(1.0);
+    }
+
+    @Test
+    @Timeout(2)
+    void probe_whenConnectionTimesOut_retriesTimeoutsOnly() {
+        AtomicInteger attempts = new AtomicInteger();
+        TcpProbeStrategy strategy = new TcpProbeStrategy(() -> {
+            attempts.incrementAndGet();
+            return new TimeoutSocket();
+        }, timeoutOnlyRetry());
+        ProbeRequest request = new ProbeRequest(UUID.randomUUID().toString(), "192.168.2.1", 80, UUID.randomUUID().toString());
+
+        ProbeResult result = strategy.probe(request);
+
+        assertThat(attempts.get()).isEqualTo(2);
+        assertThat(result.status()).isEqualTo(ProbeStatus.DOWN);
+        assertThat(result.errorMessage()).isEqualTo("connection timed out");
+    }
+
+    @Test
+    @Timeout(2)
+    void probe_whenConnectionIsRefused_doesNotRetry() {
+        AtomicInteger attempts = new AtomicInteger();
+        TcpProbeStrategy strategy = new TcpProbeStrategy(() -> {
+            attempts.incrementAndGet();
+            return new ConnectionRefusedSocket();
+        }, timeoutOnlyRetry());
+        ProbeRequest request = new ProbeRequest(UUID.randomUUID().toString(), "localhost", 1, UUID.randomUUID().toString());
+
+        ProbeResult result = strategy.probe(request);
+
+        assertThat(attempts.get()).isEqualTo(1);
+        assertThat(result.errorMessage()).isEqualTo("connection refused");
+    }
+
+    @Test
+    @Timeout(2)
+    void probe_whenOtherIoErrorOccurs_reportsDetail() {
+        TcpProbeStrategy strategy = new TcpProbeStrategy(NoRouteSocket::new, null);
+        ProbeRequest request = new ProbeRequest(UUID.randomUUID().toString(), "localhost", 80, UUID.randomUUID().toString());
+
+        ProbeResult result = strategy.probe(request);
+
+        assertThat(result.status()).isEqualTo(ProbeStatus.DOWN);
+        assertThat(result.errorMessage()).isEqualTo("I/O error: no route to host");
+    }
+
+    @Test
+    void connectAttempt_classifiesConnectExceptions() {
+        assertThat(ConnectAttempt.failure(new SocketTimeoutException("t")).outcome()).isEqualTo(ConnectOutcome.TIMEOUT);
+        assertThat(ConnectAttempt.failure(new ConnectException("r")).outcome()).isEqualTo(ConnectOutcome.REFUSED);
+        assertThat(ConnectAttempt.failure(new UnknownHostException("u")).outcome()).isEqualTo(ConnectOutcome.UNKNOWN_HOST);
+        assertThat(ConnectAttempt.failure(new NoRouteToHostException("n")).outcome()).isEqualTo(ConnectOutcome.IO_ERROR);
+        assertThat(ConnectAttempt.isRetryable(ConnectAttempt.TIMEOUT)).isTrue();
+        assertThat(ConnectAttempt.isRetryable(ConnectAttempt.REFUSED)).isFalse();
+    }
+
+    private static Retry timeoutOnlyRetry() {
+        return Retry.of("tcpProbe-test", RetryConfig.custom()
+                .maxAttempts(2)
+                .waitDuration(Duration.ofMillis(10))
+                .retryOnResult(ConnectAttempt::isRetryable)
+                .retryOnException(e -> false)
+                .build());
+    }
+
     private static class SuccessSocket extends Socket {
         @Override
         public void connect(SocketAddress endpoint, int timeout) {
@@ -118,6 +228,18 @@ class TcpProbeStrategyTest {
         }
     }
 
+    private static class NoRouteSocket extends Socket {
+        @Override
+        public void connect(SocketAddress endpoint, int timeout) throws IOException {
+            throw new NoRouteToHostException("no route to host");
+        }
+
+        @Override
+        public void close() {
+            // no-op for test
+        }
+    }
+
     private static class UnknownHostSocket extends Socket {
         @Override
         public void connect(SocketAddress endpoint, int timeout) throws IOException {
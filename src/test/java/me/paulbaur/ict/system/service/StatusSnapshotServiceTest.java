@@ -0,0 +1,145 @@
+package me.paulbaur.ict.system.service;
+
+import me.paulbaur.ict.common.exception.ServiceUnavailableException;
+import me.paulbaur.ict.common.model.ProbeMethod;
+import me.paulbaur.ict.common.model.ProbeStatus;
+import me.paulbaur.ict.coordination.service.LeaderElectionService;
+import me.paulbaur.ict.probe.domain.ProbeResult;
+import me.paulbaur.ict.probe.service.ProbeRepository;
+import me.paulbaur.ict.system.domain.StatusSnapshot;
+import me.paulbaur.ict.target.domain.Target;
+import me.paulbaur.ict.target.service.TargetService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class StatusSnapshotServiceTest {
+
+    private static final Instant NOW = Instant.parse("2025-12-15T12:00:00Z");
+    private static final UUID DOWN_ID = UUID.fromString("00000000-0000-0000-0000-000000000010");
+    private static final UUID UNKNOWN_ID = UUID.fromString("00000000-0000-0000-0000-000000000011");
+    private static final UUID DISABLED_ID = UUID.fromString("00000000-0000-0000-0000-000000000012");
+
+    @Mock
+    private TargetService targetService;
+
+    @Mock
+    private ProbeRepository probeRepository;
+
+    @Mock
+    private LeaderElectionService leaderElectionService;
+
+    private StatusSnapshotService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new StatusSnapshotService(targetService, probeRepository, leaderElectionService,
+                Clock.fixed(NOW, ZoneOffset.UTC));
+    }
+
+    @Test
+    void refresh_loadsLatestResultsOfEnabledTargetsInOneQuery() {
+        givenTargets();
+        when(leaderElectionService.isLeader()).thenReturn(true);
+        when(probeRepository.findLatestPerTarget(List.of(DOWN_ID.toString(), UNKNOWN_ID.toString())))
+                .thenReturn(Map.of(DOWN_ID.toString(), result(DOWN_ID, "2025-12-15T11:59:00Z", ProbeStatus.DOWN)));
+
+        assertThatThrownBy(() -> service.getSnapshot()).isInstanceOf(ServiceUnavailableException.class);
+        service.refresh();
+
+        assertThat(service.getSnapshot()).isEqualTo(new StatusSnapshot(NOW, true, 2, 1, 1, 1L));
+    }
+
+    @Test
+    void apply_updatesTheSnapshotAndBumpsTheVersionOnlyWhenItChanges() {
+        givenTargets();
+        when(probeRepository.findLatestPerTarget(any()))
+                .thenReturn(Map.of(DOWN_ID.toString(), result(DOWN_ID, "2025-12-15T11:59:00Z", ProbeStatus.DOWN)));
+        service.reload(true);
+
+        service.apply(result(UNKNOWN_ID, "2025-12-15T11:59:30Z", ProbeStatus.UP));
+        assertThat(service.getSnapshot()).isEqualTo(new StatusSnapshot(NOW, true, 2, 1, 0, 2L));
+
+        // Same counts: no new version
+        service.apply(result(UNKNOWN_ID, "2025-12-15T11:59:31Z", ProbeStatus.UP));
+        assertThat(service.getSnapshot().version()).isEqualTo(2L);
+
+        // A result older than the known one is ignored
+        service.apply(result(DOWN_ID, "2025-12-15T11:58:00Z", ProbeStatus.UP));
+        assertThat(service.getSnapshot().targetsDown()).isEqualTo(1);
+
+        service.apply(result(DOWN_ID, "2025-12-15T12:00:00Z", ProbeStatus.UP));
+        assertThat(service.getSnapshot()).isEqualTo(new StatusSnapshot(NOW, false, 2, 0, 0, 3L));
+    }
+
+    @Test
+    void refresh_onTheLeaderAfterLoading_keepsLiveResultsAndOnlyReadsTargets() {
+        givenTargets();
+        when(leaderElectionService.isLeader()).thenReturn(true);
+        when(probeRepository.findLatestPerTarget(any())).thenReturn(Map.of());
+        service.refresh();
+        service.apply(result(DOWN_ID, "2025-12-15T11:59:00Z", ProbeStatus.DOWN));
+
+        service.refresh();
+
+        verify(probeRepository).findLatestPerTarget(any());
+        assertThat(service.getSnapshot()).isEqualTo(new StatusSnapshot(NOW, true, 2, 1, 1, 2L));
+    }
+
+    @Test
+    void refresh_whenOnlyResultsFail_servesTargetsAsUnknownAndRetriesTheResults() {
+        givenTargets();
+        when(leaderElectionService.isLeader()).thenReturn(true);
+        when(probeRepository.findLatestPerTarget(any()))
+                .thenThrow(new IllegalStateException("es down"))
+                .thenReturn(Map.of(DOWN_ID.toString(), result(DOWN_ID, "2025-12-15T11:59:00Z", ProbeStatus.DOWN)));
+
+        service.refresh();
+        assertThat(service.getSnapshot()).isEqualTo(new StatusSnapshot(NOW, false, 2, 0, 2, 1L));
+        assertThat(service.isResultsLoaded()).isFalse();
+
+        service.refresh();
+        assertThat(service.getSnapshot()).isEqualTo(new StatusSnapshot(NOW, true, 2, 1, 1, 2L));
+        assertThat(service.isResultsLoaded()).isTrue();
+    }
+
+    @Test
+    void refresh_whenElasticsearchFails_staysUnavailableUntilLoaded() {
+        when(targetService.findAll()).thenThrow(new IllegalStateException("es down"));
+
+        service.refresh();
+
+        assertThat(service.isLoaded()).isFalse();
+        assertThatThrownBy(() -> service.getSnapshot()).isInstanceOf(ServiceUnavailableException.class);
+        verify(probeRepository, never()).findLatestPerTarget(any());
+    }
+
+    private void givenTargets() {
+        when(targetService.findAll()).thenReturn(List.of(
+                new Target(DOWN_ID, "Down Target", "down.example", 80, true),
+                new Target(UNKNOWN_ID, "Unknown Target", "unknown.example", 81, true),
+                new Target(DISABLED_ID, "Disabled Target", "disabled.example", 82, false)));
+    }
+
+    private static ProbeResult result(UUID targetId, String timestamp, ProbeStatus status) {
+        return new ProbeResult(Instant.parse(timestamp), targetId.toString(), "host.example", 12.0,
+                "cycle-1", status, ProbeMethod.TCP, null);
+    }
+}